@@ -0,0 +1,202 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Harri Pellikka.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.manabreak.libclicker;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Properties;
+import java.util.Random;
+
+/**
+ * Describes the content of the worlds a load simulation builds, and the
+ * rates at which the simulated players act. Read from a properties file;
+ * every key is optional and falls back to the defaults below.
+ *
+ * @author Harri Pellikka
+ */
+final class ContentProfile
+{
+    /** Number of resident worlds */
+    int worlds = 10000;
+    
+    /** Currencies per world */
+    int currencies = 2;
+    
+    /** Generators per world, spread evenly over the currencies */
+    int generators = 10;
+    
+    /** Automators per generator */
+    int automatorsPerGenerator = 1;
+    
+    /** Highest starting level of the generators and automators */
+    int maxLevel = 40;
+    
+    /** Enabled generator modifiers per world */
+    int modifiers = 2;
+    
+    /** Digits in the starting balance of each currency */
+    int balanceDigits = 12;
+    
+    /** Simulated seconds per update */
+    double tick = 1.0 / 30.0;
+    
+    /** Simulated seconds in total */
+    double duration = 60.0;
+    
+    /** Manual clicks per world per simulated second */
+    double clicksPerSecond = 4.0;
+    
+    /** Purchase attempts per world per simulated second */
+    double purchasesPerSecond = 0.05;
+    
+    /** "serial" or "parallel" */
+    String engine = "serial";
+    
+    /** Worker threads for the parallel engine */
+    int threads = Runtime.getRuntime().availableProcessors();
+    
+    /** Seed for the content and the player actions */
+    long seed = 42;
+    
+    static ContentProfile load(String path) throws IOException
+    {
+        ContentProfile p = new ContentProfile();
+        if(path == null) return p;
+        
+        Properties props = new Properties();
+        try(InputStream in = new FileInputStream(path))
+        {
+            props.load(in);
+        }
+        
+        p.worlds = Integer.parseInt(props.getProperty("worlds", "" + p.worlds));
+        p.currencies = Integer.parseInt(props.getProperty("currencies", "" + p.currencies));
+        p.generators = Integer.parseInt(props.getProperty("generators", "" + p.generators));
+        p.automatorsPerGenerator = Integer.parseInt(props.getProperty("automatorsPerGenerator", "" + p.automatorsPerGenerator));
+        p.maxLevel = Integer.parseInt(props.getProperty("maxLevel", "" + p.maxLevel));
+        p.modifiers = Integer.parseInt(props.getProperty("modifiers", "" + p.modifiers));
+        p.balanceDigits = Integer.parseInt(props.getProperty("balanceDigits", "" + p.balanceDigits));
+        p.tick = Double.parseDouble(props.getProperty("tick", "" + p.tick));
+        p.duration = Double.parseDouble(props.getProperty("duration", "" + p.duration));
+        p.clicksPerSecond = Double.parseDouble(props.getProperty("clicksPerSecond", "" + p.clicksPerSecond));
+        p.purchasesPerSecond = Double.parseDouble(props.getProperty("purchasesPerSecond", "" + p.purchasesPerSecond));
+        p.engine = props.getProperty("engine", p.engine);
+        p.threads = Integer.parseInt(props.getProperty("threads", "" + p.threads));
+        p.seed = Long.parseLong(props.getProperty("seed", "" + p.seed));
+        
+        if(p.worlds <= 0) throw new IllegalArgumentException("worlds must be greater than 0");
+        if(p.currencies <= 0) throw new IllegalArgumentException("currencies must be greater than 0");
+        if(p.tick <= 0.0) throw new IllegalArgumentException("tick must be greater than 0");
+        if(!"serial".equals(p.engine) && !"parallel".equals(p.engine)) throw new IllegalArgumentException("engine must be serial or parallel");
+        return p;
+    }
+    
+    /**
+     * A world built from this profile, with handles to what the
+     * simulated player clicks and buys
+     */
+    static final class Resident
+    {
+        final World world;
+        final ArrayList<Currency> currencies = new ArrayList<>();
+        final ArrayList<Generator> generators = new ArrayList<>();
+        final ArrayList<Item> items = new ArrayList<>();
+        
+        Resident(World world)
+        {
+            this.world = world;
+        }
+    }
+    
+    /**
+     * Builds one world. The same index and seed always build the same world.
+     * @param index Index of the world
+     * @return The world
+     */
+    Resident build(int index)
+    {
+        Random rnd = new Random(seed * 31 + index);
+        Resident r = new Resident(new World());
+        
+        for(int i = 0; i < currencies; ++i)
+        {
+            Currency c = new Currency.Builder(r.world)
+                .name("Currency " + i)
+                .build();
+            c.set(randomAmount(rnd, balanceDigits));
+            r.currencies.add(c);
+        }
+        
+        for(int i = 0; i < generators; ++i)
+        {
+            Generator g = new Generator.Builder(r.world)
+                .name("Generator " + i)
+                .baseAmount(1 + rnd.nextInt(1000))
+                .multiplier(1.05 + rnd.nextDouble() * 0.2)
+                .price(10 + rnd.nextInt(10000))
+                .priceMultiplier(1.07 + rnd.nextDouble() * 0.1)
+                .generate(r.currencies.get(i % currencies))
+                .build();
+            g.setItemLevel(1 + rnd.nextInt(maxLevel));
+            r.generators.add(g);
+            r.items.add(g);
+            
+            for(int j = 0; j < automatorsPerGenerator; ++j)
+            {
+                Automator a = new Automator.Builder(r.world)
+                    .automate(g)
+                    .every(0.5 + rnd.nextDouble() * 10.0)
+                    .basePrice(100 + rnd.nextInt(10000))
+                    .build();
+                a.setItemLevel(1 + rnd.nextInt(maxLevel));
+                r.items.add(a);
+            }
+        }
+        
+        for(int i = 0; i < modifiers && !r.generators.isEmpty(); ++i)
+        {
+            new Modifier.Builder()
+                .modify(r.generators.get(rnd.nextInt(r.generators.size())))
+                .multiplier(1.5 + rnd.nextDouble())
+                .build()
+                .enable();
+        }
+        return r;
+    }
+    
+    private static BigInteger randomAmount(Random rnd, int digits)
+    {
+        if(digits <= 0) return BigInteger.ZERO;
+        StringBuilder sb = new StringBuilder(digits);
+        sb.append((char)('1' + rnd.nextInt(9)));
+        for(int i = 1; i < digits; ++i)
+        {
+            sb.append((char)('0' + rnd.nextInt(10)));
+        }
+        return new BigInteger(sb.toString());
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Harri Pellikka.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.manabreak.libclicker;
+
+import java.math.BigInteger;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for Currency.add(), with and without pending thresholds
+ *
+ * @author Harri Pellikka
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CurrencyBenchmark
+{
+    @Param({"small", "huge"})
+    String magnitude;
+    
+    @Param({"0", "1000"})
+    int thresholds;
+    
+    private Currency mCurrency;
+    private BigInteger mAmount;
+    
+    @Setup
+    public void setUp()
+    {
+        Scenario s = Scenario.build(0, magnitude, false);
+        mCurrency = s.currency;
+        mAmount = "huge".equals(magnitude) ? BigInteger.TEN.pow(300) : BigInteger.TEN;
+        
+        // Thresholds far beyond reach, so only the pending check is measured
+        BigInteger far = mCurrency.getValue().shiftLeft(256);
+        for(int i = 0; i < thresholds; ++i)
+        {
+            mCurrency.addThreshold(far.add(BigInteger.valueOf(i)));
+        }
+    }
+    
+    @Benchmark
+    public void add()
+    {
+        mCurrency.add(mAmount);
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Harri Pellikka.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.manabreak.libclicker;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for Formatter.toString()
+ *
+ * @author Harri Pellikka
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FormatterBenchmark
+{
+    @Param({"small", "huge"})
+    String magnitude;
+    
+    private Formatter mHighest;
+    private Formatter mFully;
+    private Formatter.BatchFormatter mBatch;
+    
+    @Setup
+    public void setUp()
+    {
+        Scenario s = Scenario.build(10, magnitude, false);
+        
+        mHighest = new Formatter.ForCurrency(s.currency)
+            .showHighestThousand()
+            .showDecimals(2)
+            .useAbbreviations(new String[] {"K", "M", "B", "T"})
+            .build();
+        
+        mFully = new Formatter.ForCurrency(s.currency)
+            .showFully()
+            .groupDigits()
+            .build();
+        
+        mBatch = new Formatter.ForBatch()
+            .showHighestThousand()
+            .showDecimals(2)
+            .build();
+        mBatch.add(s.currency);
+        for(Generator g : s.generators)
+        {
+            mBatch.addPrice(g);
+        }
+    }
+    
+    @Benchmark
+    public String highestThousand()
+    {
+        return mHighest.toString();
+    }
+    
+    @Benchmark
+    public String fullyGrouped()
+    {
+        return mFully.toString();
+    }
+    
+    /**
+     * The currency and ten item prices in one batch
+     */
+    @Benchmark
+    public String[] batch()
+    {
+        return mBatch.formatAll();
+    }
+}
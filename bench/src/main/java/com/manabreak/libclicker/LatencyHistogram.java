@@ -0,0 +1,112 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Harri Pellikka.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.manabreak.libclicker;
+
+/**
+ * A log-linear latency histogram: every power of two is split into 16
+ * linear sub-buckets, which keeps the relative error of the percentiles
+ * under 7 % with a fixed, small footprint.
+ *
+ * @author Harri Pellikka
+ */
+final class LatencyHistogram
+{
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    
+    private final long[] mCounts = new long[64 * SUB_BUCKETS];
+    private long mTotal = 0;
+    private long mMax = 0;
+    private long mSum = 0;
+    
+    void record(long nanos)
+    {
+        if(nanos < 0) nanos = 0;
+        mCounts[indexOf(nanos)]++;
+        mTotal++;
+        mSum += nanos;
+        if(nanos > mMax) mMax = nanos;
+    }
+    
+    void add(LatencyHistogram other)
+    {
+        for(int i = 0; i < mCounts.length; ++i)
+        {
+            mCounts[i] += other.mCounts[i];
+        }
+        mTotal += other.mTotal;
+        mSum += other.mSum;
+        mMax = Math.max(mMax, other.mMax);
+    }
+    
+    long getCount()
+    {
+        return mTotal;
+    }
+    
+    double getMean()
+    {
+        return mTotal == 0 ? 0.0 : (double)mSum / mTotal;
+    }
+    
+    long getMax()
+    {
+        return mMax;
+    }
+    
+    /**
+     * Retrieves the upper bound of the bucket the percentile falls in
+     * @param percentile Percentile between 0.0 and 1.0
+     * @return Latency in nanoseconds
+     */
+    long getPercentile(double percentile)
+    {
+        if(mTotal == 0) return 0;
+        long rank = Math.max(1, (long)Math.ceil(percentile * mTotal));
+        long seen = 0;
+        for(int i = 0; i < mCounts.length; ++i)
+        {
+            seen += mCounts[i];
+            if(seen >= rank) return Math.min(upperBoundOf(i), mMax);
+        }
+        return mMax;
+    }
+    
+    private static int indexOf(long value)
+    {
+        if(value < SUB_BUCKETS) return (int)value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int)(value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+    
+    private static long upperBoundOf(int index)
+    {
+        if(index < SUB_BUCKETS) return index;
+        int exponent = index / SUB_BUCKETS + SUB_BITS - 1;
+        long sub = index % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BITS);
+        return ((SUB_BUCKETS + sub) << (exponent - SUB_BITS)) + width - 1;
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Harri Pellikka.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.manabreak.libclicker;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Headless load harness. Builds a population of worlds from a content
+ * profile, lets simulated players click and buy at the profile's rates,
+ * and reports update throughput, update latency percentiles and the heap
+ * footprint per world.
+ * 
+ * The simulation advances in lock-step: every tick, each world is
+ * updated once. The serial engine walks all worlds on the calling thread,
+ * the parallel engine partitions them into fixed slices that each belong
+ * to one worker thread for the whole run, so no world is ever touched
+ * by two threads.
+ * 
+ * Usage: java -cp benchmarks.jar com.manabreak.libclicker.LoadSimulation [profile.properties]
+ *
+ * @author Harri Pellikka
+ */
+public final class LoadSimulation
+{
+    /**
+     * A contiguous slice of the population, driven by one thread
+     */
+    private static final class Slice implements Callable<Void>
+    {
+        private final ContentProfile mProfile;
+        private final ContentProfile.Resident[] mResidents;
+        private final Random mRandom;
+        private final LatencyHistogram mLatency = new LatencyHistogram();
+        private long mClicks = 0;
+        private long mPurchases = 0;
+        private long mPurchasesOk = 0;
+        
+        Slice(ContentProfile profile, ContentProfile.Resident[] residents, long seed)
+        {
+            mProfile = profile;
+            mResidents = residents;
+            mRandom = new Random(seed);
+        }
+        
+        @Override
+        public Void call()
+        {
+            double dt = mProfile.tick;
+            double clicks = mProfile.clicksPerSecond * dt;
+            double purchases = mProfile.purchasesPerSecond * dt;
+            
+            for(ContentProfile.Resident r : mResidents)
+            {
+                int n = occurrences(clicks);
+                for(int i = 0; i < n && !r.generators.isEmpty(); ++i)
+                {
+                    r.generators.get(mRandom.nextInt(r.generators.size())).process();
+                    mClicks++;
+                }
+                
+                n = occurrences(purchases);
+                for(int i = 0; i < n && !r.items.isEmpty(); ++i)
+                {
+                    Item item = r.items.get(mRandom.nextInt(r.items.size()));
+                    Currency c = r.currencies.get(mRandom.nextInt(r.currencies.size()));
+                    if(item.buyWith(c) == PurchaseResult.OK) mPurchasesOk++;
+                    mPurchases++;
+                }
+                
+                long start = System.nanoTime();
+                r.world.update(dt);
+                mLatency.record(System.nanoTime() - start);
+            }
+            return null;
+        }
+        
+        /**
+         * Turns an expected count into an integral one, rounding the
+         * fraction up with the matching probability
+         */
+        private int occurrences(double expected)
+        {
+            int n = (int)expected;
+            if(mRandom.nextDouble() < expected - n) n++;
+            return n;
+        }
+    }
+    
+    private LoadSimulation()
+    {
+        
+    }
+    
+    public static void main(String[] args) throws Exception
+    {
+        ContentProfile profile = ContentProfile.load(args.length > 0 ? args[0] : null);
+        boolean parallel = "parallel".equals(profile.engine);
+        int threads = parallel ? Math.max(1, Math.min(profile.threads, profile.worlds)) : 1;
+        
+        System.out.println("Building " + profile.worlds + " worlds (" + profile.generators + " generators, "
+            + profile.generators * profile.automatorsPerGenerator + " automators, "
+            + profile.currencies + " currencies each)");
+        
+        long heapBefore = usedHeap();
+        ContentProfile.Resident[] residents = new ContentProfile.Resident[profile.worlds];
+        for(int i = 0; i < residents.length; ++i)
+        {
+            residents[i] = profile.build(i);
+        }
+        long heapAfter = usedHeap();
+        
+        Slice[] slices = new Slice[threads];
+        int per = (residents.length + threads - 1) / threads;
+        for(int i = 0; i < threads; ++i)
+        {
+            int from = Math.min(residents.length, i * per);
+            int to = Math.min(residents.length, from + per);
+            ContentProfile.Resident[] part = new ContentProfile.Resident[to - from];
+            System.arraycopy(residents, from, part, 0, part.length);
+            slices[i] = new Slice(profile, part, profile.seed ^ (0x9E3779B97F4A7C15L * (i + 1)));
+        }
+        
+        long ticks = Math.max(1, Math.round(profile.duration / profile.tick));
+        ExecutorService executor = parallel ? Executors.newFixedThreadPool(threads) : null;
+        List<Slice> tasks = new ArrayList<>();
+        for(Slice s : slices) tasks.add(s);
+        
+        System.out.println("Running " + ticks + " ticks of " + profile.tick + " s on the "
+            + profile.engine + " engine" + (parallel ? " with " + threads + " threads" : ""));
+        
+        long start = System.nanoTime();
+        try
+        {
+            for(long t = 0; t < ticks; ++t)
+            {
+                if(executor == null)
+                {
+                    slices[0].call();
+                }
+                else
+                {
+                    for(Future<Void> f : executor.invokeAll(tasks))
+                    {
+                        f.get();
+                    }
+                }
+            }
+        }
+        finally
+        {
+            if(executor != null) executor.shutdown();
+        }
+        long elapsed = System.nanoTime() - start;
+        
+        LatencyHistogram latency = new LatencyHistogram();
+        long clicks = 0, purchases = 0, purchasesOk = 0;
+        for(Slice s : slices)
+        {
+            latency.add(s.mLatency);
+            clicks += s.mClicks;
+            purchases += s.mPurchases;
+            purchasesOk += s.mPurchasesOk;
+        }
+        
+        double seconds = elapsed / 1e9;
+        System.out.println();
+        System.out.println(String.format("Wall time           %.3f s", seconds));
+        System.out.println(String.format("World updates       %d (%.0f / s)", latency.getCount(), latency.getCount() / seconds));
+        System.out.println(String.format("Simulated speed-up  %.1fx", profile.tick * ticks / seconds));
+        System.out.println(String.format("Clicks              %d (%.0f / s)", clicks, clicks / seconds));
+        System.out.println(String.format("Purchases           %d, %d succeeded", purchases, purchasesOk));
+        System.out.println(String.format("Update latency mean %s", micros((long)latency.getMean())));
+        System.out.println(String.format("Update latency p50  %s", micros(latency.getPercentile(0.50))));
+        System.out.println(String.format("Update latency p99  %s", micros(latency.getPercentile(0.99))));
+        System.out.println(String.format("Update latency p999 %s", micros(latency.getPercentile(0.999))));
+        System.out.println(String.format("Update latency max  %s", micros(latency.getMax())));
+        System.out.println(String.format("Heap per world      %.0f bytes", (double)(heapAfter - heapBefore) / profile.worlds));
+    }
+    
+    private static String micros(long nanos)
+    {
+        return String.format("%.2f us", nanos / 1000.0);
+    }
+    
+    /**
+     * Measures the live heap, collecting until the figure settles
+     */
+    private static long usedHeap() throws InterruptedException
+    {
+        Runtime rt = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for(int i = 0; i < 5; ++i)
+        {
+            System.gc();
+            Thread.sleep(50);
+            long now = rt.totalMemory() - rt.freeMemory();
+            if(Math.abs(used - now) < 1024) return now;
+            used = now;
+        }
+        return used;
+    }
+}
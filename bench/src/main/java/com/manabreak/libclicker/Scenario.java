@@ -0,0 +1,101 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Harri Pellikka.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.manabreak.libclicker;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+
+/**
+ * Builds the worlds the benchmarks run against.
+ * 
+ * A scenario has one currency and a number of generators, each with one
+ * automator. "small" scenarios produce amounts that fit in a long, "huge"
+ * ones produce amounts with hundreds of digits. Optionally every generator
+ * gets an enabled modifier, and the world a speed modifier.
+ *
+ * @author Harri Pellikka
+ */
+final class Scenario
+{
+    final World world;
+    final Currency currency;
+    final ArrayList<Generator> generators = new ArrayList<>();
+    final ArrayList<Automator> automators = new ArrayList<>();
+    
+    private Scenario(int count, String magnitude, boolean modifiers)
+    {
+        boolean huge = "huge".equals(magnitude);
+        BigInteger base = huge ? BigInteger.TEN.pow(300) : BigInteger.TEN;
+        
+        world = new World();
+        currency = new Currency.Builder(world)
+            .name("Gold")
+            .build();
+        currency.set(huge ? BigInteger.TEN.pow(600) : new BigInteger("1000000"));
+        
+        for(int i = 0; i < count; ++i)
+        {
+            Generator g = new Generator.Builder(world)
+                .name("Generator " + i)
+                .baseAmount(base)
+                .multiplier(1.15)
+                .price(base)
+                .priceMultiplier(1.07)
+                .generate(currency)
+                .build();
+            g.setItemLevel(1 + i % 50);
+            generators.add(g);
+            
+            Automator a = new Automator.Builder(world)
+                .automate(g)
+                .every(0.5 + (i % 10) * 0.25)
+                .build();
+            a.setItemLevel(1 + i % 5);
+            automators.add(a);
+            
+            if(modifiers)
+            {
+                new Modifier.Builder()
+                    .modify(g)
+                    .multiplier(1.5)
+                    .build()
+                    .enable();
+            }
+        }
+        
+        if(modifiers)
+        {
+            new Modifier.Builder()
+                .modify(world)
+                .speedBy(2.0)
+                .build()
+                .enable();
+        }
+    }
+    
+    static Scenario build(int count, String magnitude, boolean modifiers)
+    {
+        return new Scenario(count, magnitude, modifiers);
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Harri Pellikka.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.manabreak.libclicker;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for World.update() and Automator.update()
+ *
+ * @author Harri Pellikka
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WorldBenchmark
+{
+    @Param({"1", "100"})
+    int automators;
+    
+    @Param({"small", "huge"})
+    String magnitude;
+    
+    @Param({"false", "true"})
+    boolean modifiers;
+    
+    private Scenario mScenario;
+    
+    /**
+     * Rebuilds the world for each iteration, so the balances and the
+     * world time don't keep growing over the iterations
+     */
+    @Setup(Level.Iteration)
+    public void setUp()
+    {
+        mScenario = Scenario.build(automators, magnitude, modifiers);
+    }
+    
+    /**
+     * One frame at 60 frames per second
+     */
+    @Benchmark
+    public void updateFrame()
+    {
+        mScenario.world.update(1.0 / 60.0);
+    }
+    
+    /**
+     * One second. The automators tick every 0.5 to 2.75 seconds before
+     * their level and the speed modifier, so the slower ones fire only
+     * on some invocations.
+     */
+    @Benchmark
+    public void updateSecond()
+    {
+        mScenario.world.update(1.0);
+    }
+    
+    /**
+     * A single automator firing its generator once
+     */
+    @Benchmark
+    public int automatorTick()
+    {
+        Automator a = mScenario.automators.get(0);
+        return a.update(a.getActualTickRate());
+    }
+}
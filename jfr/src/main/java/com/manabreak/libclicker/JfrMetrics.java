@@ -0,0 +1,188 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Harri Pellikka.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.manabreak.libclicker;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Metrics recorder that emits Java Flight Recorder events, so that world
+ * updates, purchases, generator batches and serialization show up in
+ * flight recordings next to GC and I/O events.
+ * 
+ * Each event type is checked before the event is filled in, so the
+ * recorder costs next to nothing while no recording is running. World
+ * update and serialization events begin before the work and are
+ * committed after it, so the duration of the event is the duration of
+ * the work. The events in progress are kept per thread, so a single
+ * recorder can be shared by worlds updated on different threads.
+ * 
+ * Requires a JVM with Flight Recorder support (Java 8u262 or later). The
+ * recorder is built separately from the library, as the Flight Recorder
+ * API is not part of the Java 8 platform API.
+ *
+ * @author Harri Pellikka
+ */
+public class JfrMetrics implements Metrics
+{
+    @Name("libclicker.WorldUpdate")
+    @Label("World Update")
+    @Category("libclicker")
+    @Description("A world has been advanced in time")
+    static final class WorldUpdateEvent extends Event
+    {
+        @Label("Delta")
+        @Description("Seconds advanced, after the speed multiplier")
+        double delta;
+        
+        @Label("Automators Fired")
+        int automatorsFired;
+    }
+    
+    @Name("libclicker.Purchase")
+    @Label("Purchase")
+    @Category("libclicker")
+    @Description("An item has been attempted to buy")
+    static final class PurchaseEvent extends Event
+    {
+        @Label("Item")
+        String item;
+        
+        @Label("Level")
+        @Description("Level of the item after the purchase")
+        long level;
+        
+        @Label("Result")
+        String result;
+    }
+    
+    @Name("libclicker.GeneratorBatch")
+    @Label("Generator Batch")
+    @Category("libclicker")
+    @Description("An automator has processed its generator during an update")
+    static final class GeneratorBatchEvent extends Event
+    {
+        @Label("Automator")
+        String automator;
+        
+        @Label("Generator")
+        String generator;
+        
+        @Label("Times Processed")
+        int times;
+    }
+    
+    @Name("libclicker.Serialization")
+    @Label("World Serialization")
+    @Category("libclicker")
+    @Description("A world has been serialized")
+    static final class SerializationEvent extends Event
+    {
+        
+    }
+    
+    private final ThreadLocal<WorldUpdateEvent> mUpdate = new ThreadLocal<>();
+    private final ThreadLocal<SerializationEvent> mSerialization = new ThreadLocal<>();
+    
+    @Override
+    public void onUpdateStarted(World world)
+    {
+        WorldUpdateEvent event = new WorldUpdateEvent();
+        if(event.isEnabled())
+        {
+            event.begin();
+            mUpdate.set(event);
+        }
+    }
+
+    @Override
+    public void onUpdate(World world, double seconds, int automatorsFired, long nanos)
+    {
+        WorldUpdateEvent event = mUpdate.get();
+        if(event == null) return;
+        mUpdate.remove();
+        
+        event.end();
+        if(event.shouldCommit())
+        {
+            event.delta = seconds;
+            event.automatorsFired = automatorsFired;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void onAutomatorFired(Automator automator, int times)
+    {
+        GeneratorBatchEvent event = new GeneratorBatchEvent();
+        if(event.shouldCommit())
+        {
+            event.automator = automator.getName();
+            event.generator = automator.getGenerator().getName();
+            event.times = times;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void onPurchase(Item item, PurchaseResult result)
+    {
+        PurchaseEvent event = new PurchaseEvent();
+        if(event.shouldCommit())
+        {
+            event.item = item.getName();
+            event.level = item.getItemLevel();
+            event.result = result.name();
+            event.commit();
+        }
+    }
+
+    @Override
+    public void onSerializationStarted(World world)
+    {
+        SerializationEvent event = new SerializationEvent();
+        if(event.isEnabled())
+        {
+            event.begin();
+            mSerialization.set(event);
+        }
+    }
+
+    @Override
+    public void onSerialized(World world, long nanos)
+    {
+        SerializationEvent event = mSerialization.get();
+        if(event == null) return;
+        mSerialization.remove();
+        
+        event.end();
+        if(event.shouldCommit())
+        {
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Harri Pellikka.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.manabreak.libclicker;
+
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the flight recorder metrics
+ *
+ * @author Harri Pellikka
+ */
+public class JfrMetricsTest
+{
+    @Test
+    public void testEvents() throws Exception
+    {
+        World w = new World();
+        w.setMetrics(new JfrMetrics());
+        
+        Currency c = new Currency.Builder(w).name("Gold").build();
+        Generator g = new Generator.Builder(w)
+            .name("Mine")
+            .baseAmount(5)
+            .price(10)
+            .generate(c)
+            .build();
+        g.upgrade();
+        new Automator.Builder(w)
+            .automate(g)
+            .every(1.0)
+            .build()
+            .upgrade();
+        
+        // Nothing is recorded while no recording is running
+        w.update(1.0);
+        
+        Path file = Files.createTempFile("libclicker", ".jfr");
+        try(Recording recording = new Recording())
+        {
+            recording.enable("libclicker.WorldUpdate");
+            recording.enable("libclicker.Purchase");
+            recording.enable("libclicker.GeneratorBatch");
+            recording.enable("libclicker.Serialization");
+            recording.start();
+            
+            w.update(2.0);
+            g.buyWith(c);
+            new ObjectOutputStream(new ByteArrayOutputStream()).writeObject(w);
+            
+            recording.stop();
+            recording.dump(file);
+        }
+        
+        HashMap<String, RecordedEvent> events = new HashMap<>();
+        List<RecordedEvent> recorded = RecordingFile.readAllEvents(file);
+        for(RecordedEvent e : recorded)
+        {
+            events.put(e.getEventType().getName(), e);
+        }
+        Files.delete(file);
+        
+        assertEquals(4, recorded.size());
+        assertEquals(2, events.get("libclicker.WorldUpdate").getInt("automatorsFired"));
+        assertEquals(2, events.get("libclicker.GeneratorBatch").getInt("times"));
+        assertEquals("Mine", events.get("libclicker.GeneratorBatch").getString("generator"));
+        assertEquals("OK", events.get("libclicker.Purchase").getString("result"));
+        assertEquals(2, events.get("libclicker.Purchase").getLong("level"));
+        assertNotNull(events.get("libclicker.Serialization"));
+        
+        // The timed events span the work they measure
+        assertTrue(events.get("libclicker.WorldUpdate").getDuration().toNanos() > 0);
+        assertTrue(events.get("libclicker.Serialization").getDuration().toNanos() > 0);
+    }
+}
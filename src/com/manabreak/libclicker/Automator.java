@@ -1,253 +1,432 @@
-/*
- * The MIT License
- *
- * Copyright 2015 Harri Pellikka.
- *
- * Permission is hereby granted, free of charge, to any person obtaining a copy
- * of this software and associated documentation files (the "Software"), to deal
- * in the Software without restriction, including without limitation the rights
- * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
- * copies of the Software, and to permit persons to whom the Software is
- * furnished to do so, subject to the following conditions:
- *
- * The above copyright notice and this permission notice shall be included in
- * all copies or substantial portions of the Software.
- *
- * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
- * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
- * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
- * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
- * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
- * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
- * THE SOFTWARE.
- */
-package com.manabreak.libclicker;
-
-import java.io.Serializable;
-import java.math.BigInteger;
-
-/**
- * Automator class for automating generators.
- * 
- * Normally generators are manually controlled, i.e. they generate resources
- * when explicitly told to. Automators are used to trigger generators
- * during the world's update cycles.
- *
- * @author Harri Pellikka
- */
-public class Automator extends Item implements Serializable
-{
-    private Generator mGenerator;
-    private double mTickRate = 1.0;
-    private double mTickTimer = 0.0;
-    private double mMultiplier;
-    private boolean mEnabled;
-    private double mActualTickRate;
-    
-    public static class Builder
-    {
-        private final World mWorld;
-        private Generator mGenerator;
-        private double mTickRate = 1.0;
-        private String mName = "Nameless automator";
-        private boolean mEnabled = true;
-        private BigInteger mBasePrice = BigInteger.ONE;
-        private double mPriceMultiplier = 1.1;
-        private double mTickRateMultiplier = 1.08;
-        
-        /**
-         * Constructs a new automator builder
-         * @param world World the automator belongs to
-         */
-        public Builder(World world)
-        {
-            mWorld = world;
-        }
-        
-        /**
-         * Constructs a new automator builder for the given generator
-         * @param world World the automator belongs to
-         * @param generator Generator to automate
-         */
-        public Builder(World world, Generator generator)
-        {
-            mWorld = world;
-            mGenerator = generator;
-        }
-        
-        public Builder basePrice(int price)
-        {
-            mBasePrice = new BigInteger("" + price);
-            return this;
-        }
-        
-        public Builder basePrice(long price)
-        {
-            mBasePrice = new BigInteger("" + price);
-            return this;
-        }
-        
-        public Builder basePrice(BigInteger price)
-        {
-            mBasePrice = price;
-            return this;
-        }
-        
-        public Builder priceMultiplier(double multiplier)
-        {
-            mPriceMultiplier = multiplier;
-            return this;
-        }
-        
-        public Builder tickRateMultiplier(double multiplier)
-        {
-            mTickRateMultiplier = multiplier;
-            return this;
-        }
-        
-        /**
-         * Sets the target generator this automator should automate.
-         * 
-         * @param generator Generator to automate
-         * @return This builder for chaining
-         */
-        public Builder automate(Generator generator)
-        {
-            mGenerator = generator;
-            return this;
-        }
-        
-        /**
-         * Sets the name for this automator.
-         * 
-         * @param name Name
-         * @return This builder for chaining
-         */
-        public Builder name(String name)
-        {
-            mName = name;
-            return this;
-        }
-        
-        /**
-         * Sets the tick rate of this automator, i.e. how often
-         * this automator should do its business.
-         * 
-         * @param seconds Tick rate in seconds
-         * @return This builder for chaining
-         */
-        public Builder every(double seconds)
-        {
-            mTickRate = seconds;
-            return this;
-        }
-        
-        /**
-         * Constructs the automator based on the given properties.
-         * @return The automator
-         */
-        public Automator build()
-        {
-            if(mGenerator == null) throw new IllegalStateException("Generator cannot be null");
-            
-            Automator a = new Automator(mWorld, mName);
-            a.mGenerator = mGenerator;
-            a.mTickRate = mTickRate;
-            a.mEnabled = mEnabled;
-            a.mBasePrice = mBasePrice;
-            a.mPriceMultiplier = mPriceMultiplier;
-            a.mMultiplier = mTickRateMultiplier;
-            mWorld.addAutomator(a);
-            return a;
-        }
-    }
-    
-    private Automator(World world, String name)
-    {
-        super(world, name);
-    }
-    
-    /**
-     * Enables this automator. Automators are enabled by default when
-     * they are created.
-     */
-    public void enable()
-    {
-        if(!mEnabled)
-        {
-            getWorld().addAutomator(this);
-            mEnabled = true;
-        }
-    }
-    
-    /**
-     * Disables this automator, effectively turning the automation off.
-     */
-    public void disable()
-    {
-        if(mEnabled)
-        {
-            getWorld().removeAutomator(this);
-            mEnabled = false;
-        }
-    }
-
-    @Override
-    public void upgrade()
-    {
-        super.upgrade(); //To change body of generated methods, choose Tools | Templates.
-        mActualTickRate = getFinalTickRate();
-        System.out.println("Upgraded, final tick rate now: " + mActualTickRate);
-    }
-    
-    private double getFinalTickRate()
-    {
-        if(mItemLevel == 0) return 0.0;
-        double r = mTickRate;
-        double m = Math.pow(mMultiplier, mItemLevel - 1);
-        return r / m;
-    }
-    
-    void update(double delta)
-    {
-        if(!mEnabled || mItemLevel == 0) return;
-        
-        mTickTimer += delta;
-        while(mTickTimer >= mActualTickRate)
-        {
-            mTickTimer -= mActualTickRate;
-            mGenerator.process();
-        }
-    }
-    
-    /**
-     * Retrieves the tick rate of this automator.
-     * @return Tick rate in seconds
-     */
-    public double getTickRate()
-    {
-        return mTickRate;
-    }
-    
-    /**
-     * Sets the tick rate of this automator.
-     * 
-     * @param tickRate Tick rate in seconds
-     */
-    public void setTickRate(double tickRate)
-    {
-        mTickRate = tickRate;
-        if(mTickRate < 0.0) mTickRate = 0.0;
-    }
-    
-    /**
-     * Retrieves the percentage of the tick. Useful
-     * when creating progress bars for generators.
-     * 
-     * @return Percentage of tick completion
-     */
-    public double getTimerPercentage()
-    {
-        return mTickRate != 0.0 ? mTickTimer / mTickRate : 1.0;
-    }
-}
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Harri Pellikka.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.manabreak.libclicker;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.util.ArrayList;
+
+/**
+ * Automator class for automating generators.
+ * 
+ * Normally generators are manually controlled, i.e. they generate resources
+ * when explicitly told to. Automators are used to trigger generators
+ * during the world's update cycles.
+ *
+ * @author Harri Pellikka
+ */
+public class Automator extends Item implements Serializable
+{
+    private Generator mGenerator;
+    private double mTickRate = 1.0;
+    private double mTickTimer = 0.0;
+    private double mMultiplier;
+    private boolean mEnabled;
+    private double mActualTickRate;
+    
+    /**
+     * Income per second this automator currently contributes to
+     * the world, kept up to date by the world
+     */
+    private transient BigDecimal mIncome = BigDecimal.ZERO;
+    
+    public static class Builder
+    {
+        private final World mWorld;
+        private Generator mGenerator;
+        private double mTickRate = 1.0;
+        private String mName = "Nameless automator";
+        private boolean mEnabled = true;
+        private BigInteger mBasePrice = BigInteger.ONE;
+        private double mPriceMultiplier = 1.1;
+        private Curve mPriceCurve = null;
+        private final ArrayList<Item.Cost> mCosts = new ArrayList<>();
+        private double mTickRateMultiplier = 1.08;
+        
+        /**
+         * Constructs a new automator builder
+         * @param world World the automator belongs to
+         */
+        public Builder(World world)
+        {
+            mWorld = world;
+        }
+        
+        /**
+         * Constructs a new automator builder for the given generator
+         * @param world World the automator belongs to
+         * @param generator Generator to automate
+         */
+        public Builder(World world, Generator generator)
+        {
+            mWorld = world;
+            mGenerator = generator;
+        }
+        
+        public Builder basePrice(int price)
+        {
+            mBasePrice = new BigInteger("" + price);
+            return this;
+        }
+        
+        public Builder basePrice(long price)
+        {
+            mBasePrice = new BigInteger("" + price);
+            return this;
+        }
+        
+        public Builder basePrice(BigInteger price)
+        {
+            mBasePrice = price;
+            return this;
+        }
+        
+        /**
+         * Prices the automator in a currency. An automator priced in
+         * several currencies costs all of them at once.
+         * @param currency Currency of the price
+         * @param price Price of the first level
+         * @return This builder for chaining
+         */
+        public Builder basePrice(Currency currency, BigInteger price)
+        {
+            mCosts.add(new Item.Cost(currency, price));
+            return this;
+        }
+        
+        public Builder basePrice(Currency currency, long price)
+        {
+            return basePrice(currency, BigInteger.valueOf(price));
+        }
+        
+        public Builder priceMultiplier(double multiplier)
+        {
+            mPriceMultiplier = multiplier;
+            mPriceCurve = null;
+            return this;
+        }
+        
+        /**
+         * Sets the curve of the price over the levels. Replaces the
+         * price multiplier.
+         * @param curve Price curve
+         * @return This builder for chaining
+         */
+        public Builder priceCurve(Curve curve)
+        {
+            if(curve == null) throw new IllegalArgumentException("Curve cannot be null");
+            mPriceCurve = curve;
+            return this;
+        }
+        
+        public Builder tickRateMultiplier(double multiplier)
+        {
+            mTickRateMultiplier = multiplier;
+            return this;
+        }
+        
+        /**
+         * Sets the target generator this automator should automate.
+         * 
+         * @param generator Generator to automate
+         * @return This builder for chaining
+         */
+        public Builder automate(Generator generator)
+        {
+            mGenerator = generator;
+            return this;
+        }
+        
+        /**
+         * Sets the name for this automator.
+         * 
+         * @param name Name
+         * @return This builder for chaining
+         */
+        public Builder name(String name)
+        {
+            mName = name;
+            return this;
+        }
+        
+        /**
+         * Sets the tick rate of this automator, i.e. how often
+         * this automator should do its business.
+         * 
+         * @param seconds Tick rate in seconds
+         * @return This builder for chaining
+         */
+        public Builder every(double seconds)
+        {
+            mTickRate = seconds;
+            return this;
+        }
+        
+        /**
+         * Constructs the automator based on the given properties.
+         * @return The automator
+         */
+        public Automator build()
+        {
+            if(mGenerator == null) throw new IllegalStateException("Generator cannot be null");
+            
+            Automator a = new Automator(mWorld, mName);
+            a.mGenerator = mGenerator;
+            a.mTickRate = mTickRate;
+            a.mEnabled = mEnabled;
+            a.mBasePrice = mBasePrice;
+            a.mPriceMultiplier = mPriceMultiplier;
+            a.mPriceCurve = mPriceCurve;
+            a.mMultiplier = mTickRateMultiplier;
+            for(Item.Cost cost : mCosts)
+            {
+                a.setBasePrice(cost.mCurrency, cost.mBasePrice);
+            }
+            mWorld.addAutomator(a);
+            return a;
+        }
+    }
+    
+    private Automator(World world, String name)
+    {
+        super(world, name);
+    }
+    
+    /**
+     * Enables this automator. Automators are enabled by default when
+     * they are created.
+     */
+    public void enable()
+    {
+        if(!mEnabled)
+        {
+            mEnabled = true;
+            getWorld().enableAutomator(this);
+        }
+    }
+    
+    /**
+     * Disables this automator, effectively turning the automation off.
+     */
+    public void disable()
+    {
+        if(mEnabled)
+        {
+            getWorld().disableAutomator(this);
+            mEnabled = false;
+        }
+    }
+    
+    /**
+     * Checks whether or not this automator is enabled
+     * @return True if enabled, false otherwise
+     */
+    public boolean isEnabled()
+    {
+        return mEnabled;
+    }
+
+    @Override
+    protected void onLevelChanged()
+    {
+        mActualTickRate = getFinalTickRate();
+        getWorld().updateIncome(this);
+        super.onLevelChanged();
+    }
+    
+    private double getFinalTickRate()
+    {
+        if(mItemLevel == 0) return 0.0;
+        double r = mTickRate;
+        double m = Math.pow(mMultiplier, mItemLevel - 1);
+        return r / m;
+    }
+    
+    /**
+     * Advances the timer of this automator, firing the generator
+     * once per full tick. An automator without a positive tick rate
+     * never fires, and a converter fires only as often as its inputs
+     * pay for.
+     * @param delta Seconds to advance
+     * @return Number of times the generator was fired
+     */
+    int update(double delta)
+    {
+        if(!mEnabled || mItemLevel == 0) return 0;
+        if(mActualTickRate <= 0.0) return 0;
+        
+        mTickTimer += delta;
+        int fired = 0;
+        if(mGenerator.isConverter())
+        {
+            // All the ticks at once, limited by the supply of the inputs
+            long ticks = (long)Math.floor(mTickTimer / mActualTickRate);
+            mTickTimer -= ticks * mActualTickRate;
+            if(mTickTimer < 0.0)
+            {
+                mTickTimer += mActualTickRate;
+                ticks--;
+            }
+            if(ticks > 0)
+            {
+                // Only the cycles the inputs paid for count as fires
+                long before = mGenerator.getTimesProcessed();
+                mGenerator.click(ticks);
+                fired = (int)Math.min(mGenerator.getTimesProcessed() - before, Integer.MAX_VALUE);
+            }
+        }
+        else
+        {
+            while(mTickTimer >= mActualTickRate)
+            {
+                mTickTimer -= mActualTickRate;
+                mGenerator.process();
+                fired++;
+            }
+        }
+        
+        if(fired > 0)
+        {
+            Metrics metrics = getWorld().getMetrics();
+            if(metrics != null) metrics.onAutomatorFired(this, fired);
+        }
+        return fired;
+    }
+    
+    /**
+     * Retrieves the tick rate of this automator.
+     * @return Tick rate in seconds
+     */
+    public double getTickRate()
+    {
+        return mTickRate;
+    }
+    
+    /**
+     * Sets the tick rate of this automator.
+     * 
+     * @param tickRate Tick rate in seconds
+     */
+    public void setTickRate(double tickRate)
+    {
+        mTickRate = tickRate;
+        if(mTickRate < 0.0) mTickRate = 0.0;
+        mActualTickRate = getFinalTickRate();
+        getWorld().updateIncome(this);
+    }
+    
+    /**
+     * Computes the average amount of currency this automator makes its
+     * generator produce per second of world time. If the generator has a
+     * cooldown and other automators, the income is estimated as if this
+     * automator was the only one.
+     * 
+     * @return Average income per second
+     */
+    BigDecimal computeIncome()
+    {
+        if(!mEnabled || mItemLevel == 0) return BigDecimal.ZERO;
+        if(mActualTickRate <= 0.0) return BigDecimal.ZERO;
+        return mGenerator.getExpectedAmount().divide(new BigDecimal(getEffectiveTickRate()), MathContext.DECIMAL64);
+    }
+    
+    /**
+     * Computes the average number of cycles per second of world time this
+     * automator makes its generator run, estimated like computeIncome()
+     * @return Average cycles per second
+     */
+    BigDecimal computeCycles()
+    {
+        if(!mEnabled || mItemLevel == 0) return BigDecimal.ZERO;
+        if(mActualTickRate <= 0.0) return BigDecimal.ZERO;
+        return mGenerator.getExpectedCycles().divide(new BigDecimal(getEffectiveTickRate()), MathContext.DECIMAL64);
+    }
+    
+    /**
+     * Retrieves the effective tick rate, i.e. the tick rate after the
+     * level bonuses, or 0 if this automator doesn't tick at all
+     * @return Effective tick rate in seconds
+     */
+    double getActualTickRate()
+    {
+        return !mEnabled || mItemLevel == 0 ? 0.0 : mActualTickRate;
+    }
+    
+    /**
+     * Retrieves the time accumulated towards the next tick
+     * @return Accumulated time in seconds
+     */
+    double getTickTimer()
+    {
+        return mTickTimer;
+    }
+    
+    void setTickTimer(double timer)
+    {
+        mTickTimer = timer;
+    }
+    
+    /**
+     * Retrieves the average time between the processings this automator
+     * causes, which is longer than the tick rate if the cooldown of the
+     * generator is longer
+     * @return Time in seconds, or 0 if this automator doesn't tick at all
+     */
+    double getEffectiveTickRate()
+    {
+        return mGenerator.getEffectiveTickRate(getActualTickRate());
+    }
+    
+    BigDecimal getIncome()
+    {
+        return mIncome != null ? mIncome : BigDecimal.ZERO;
+    }
+    
+    void setIncome(BigDecimal income)
+    {
+        mIncome = income;
+    }
+    
+    /**
+     * Retrieves the generator this automator automates
+     * @return The automated generator
+     */
+    Generator getGenerator()
+    {
+        return mGenerator;
+    }
+    
+    /**
+     * Retrieves the percentage of the tick. Useful
+     * when creating progress bars for generators.
+     * 
+     * @return Percentage of tick completion
+     */
+    public double getTimerPercentage()
+    {
+        return mTickRate != 0.0 ? mTickTimer / mTickRate : 1.0;
+    }
+}
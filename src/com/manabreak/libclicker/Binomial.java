@@ -0,0 +1,164 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Harri Pellikka.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.manabreak.libclicker;
+
+import java.util.Random;
+
+/**
+ * Draws the number of successes out of n independent trials with the
+ * same probability, without rolling each trial.
+ *
+ * @author Harri Pellikka
+ */
+final class Binomial
+{
+    /**
+     * Up to this many trials are simply rolled one by one
+     */
+    private static final long DIRECT_LIMIT = 16;
+    
+    /**
+     * Up to this mean the successes are found by jumping between them
+     */
+    private static final double GEOMETRIC_LIMIT = 16.0;
+    
+    private static final double[] LOG_FACTORIALS = new double[256];
+    
+    static
+    {
+        for(int i = 1; i < LOG_FACTORIALS.length; ++i)
+        {
+            LOG_FACTORIALS[i] = LOG_FACTORIALS[i - 1] + Math.log(i);
+        }
+    }
+    
+    private Binomial()
+    {
+        
+    }
+    
+    /**
+     * Draws a binomially distributed number
+     * @param random Random number generator
+     * @param n Number of trials
+     * @param p Probability of success of each trial
+     * @return Number of successes
+     */
+    static long sample(Random random, long n, double p)
+    {
+        if(n <= 0 || p <= 0.0) return 0;
+        if(p >= 1.0) return n;
+        
+        if(n <= DIRECT_LIMIT)
+        {
+            long k = 0;
+            for(long i = 0; i < n; ++i)
+            {
+                if(random.nextDouble() < p) k++;
+            }
+            return k;
+        }
+        
+        // Draw the rarer outcome and mirror
+        if(p > 0.5) return n - sample(random, n, 1.0 - p);
+        
+        if(n * p <= GEOMETRIC_LIMIT) return sampleGeometric(random, n, p);
+        return sampleFromMode(random, n, p);
+    }
+    
+    /**
+     * Jumps from one success to the next by drawing the geometrically
+     * distributed gaps between them. Expected cost O(n * p).
+     */
+    private static long sampleGeometric(Random random, long n, double p)
+    {
+        double logQ = Math.log1p(-p);
+        long k = 0;
+        double trials = 0.0;
+        while(true)
+        {
+            double u = 1.0 - random.nextDouble();
+            trials += Math.floor(Math.log(u) / logQ) + 1.0;
+            if(trials > n) return k;
+            k++;
+        }
+    }
+    
+    /**
+     * Inverts the distribution function starting from the mode and
+     * walking outwards, always towards the more likely neighbour.
+     * Expected cost O(sqrt(n * p * (1 - p))).
+     */
+    private static long sampleFromMode(Random random, long n, double p)
+    {
+        double q = 1.0 - p;
+        double ratio = p / q;
+        long mode = (long)Math.floor((n + 1) * p);
+        if(mode > n) mode = n;
+        
+        double u = random.nextDouble();
+        double fMode = Math.exp(logFactorial(n) - logFactorial(mode) - logFactorial(n - mode)
+            + mode * Math.log(p) + (n - mode) * Math.log1p(-p));
+        
+        u -= fMode;
+        if(u < 0.0) return mode;
+        
+        long lo = mode, hi = mode;
+        double fLo = fMode, fHi = fMode;
+        while(true)
+        {
+            double nextLo = lo > 0 ? fLo * lo / ((n - lo + 1) * ratio) : 0.0;
+            double nextHi = hi < n ? fHi * (n - hi) / (hi + 1) * ratio : 0.0;
+            if(nextLo <= 0.0 && nextHi <= 0.0) return mode;
+            
+            if(nextHi >= nextLo)
+            {
+                hi++;
+                fHi = nextHi;
+                u -= fHi;
+                if(u < 0.0) return hi;
+            }
+            else
+            {
+                lo--;
+                fLo = nextLo;
+                u -= fLo;
+                if(u < 0.0) return lo;
+            }
+        }
+    }
+    
+    /**
+     * Natural logarithm of k!, from a table or the Stirling series
+     */
+    static double logFactorial(long k)
+    {
+        if(k < LOG_FACTORIALS.length) return LOG_FACTORIALS[(int)k];
+        double x = k;
+        double inv = 1.0 / x;
+        double inv2 = inv * inv;
+        return x * Math.log(x) - x + 0.5 * Math.log(2.0 * Math.PI * x)
+            + inv * (1.0 / 12.0 - inv2 * (1.0 / 360.0 - inv2 / 1260.0));
+    }
+}
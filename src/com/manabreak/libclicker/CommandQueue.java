@@ -0,0 +1,273 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Harri Pellikka.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.manabreak.libclicker;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded multi-producer, single-consumer queue of player commands.
+ * 
+ * Clicks, purchases and modifier toggles can be offered from any thread.
+ * They are applied in order by the thread that owns the world, at the
+ * start of the next World.update(). Offering never blocks: when the queue
+ * is full the command is rejected and offer returns false, so the caller
+ * can drop the message or tell the client to slow down.
+ * 
+ * The queue is a ring of slots, each with a sequence number. A producer
+ * claims a position by advancing the tail with a compare-and-set, writes
+ * the slot and publishes it by storing the sequence. The consumer reads
+ * slots in order until it finds one that hasn't been published yet.
+ *
+ * @author Harri Pellikka
+ */
+public final class CommandQueue
+{
+    private static final int CLICK = 1;
+    private static final int BUY = 2;
+    private static final int ENABLE = 3;
+    private static final int DISABLE = 4;
+    
+    private final World mWorld;
+    private final int mMask;
+    
+    /**
+     * Sequence of each slot. A slot at position p is free for the producer
+     * when its sequence is p, and ready for the consumer when it is p + 1.
+     */
+    private final AtomicLongArray mSequences;
+    
+    private final int[] mKinds;
+    private final Item[] mItems;
+    private final Currency[] mCurrencies;
+    private final long[] mCounts;
+    
+    /**
+     * Next position to claim, shared by the producers
+     */
+    private final AtomicLong mTail = new AtomicLong();
+    
+    /**
+     * Next position to apply, owned by the consumer
+     */
+    private volatile long mHead = 0;
+    
+    private final AtomicLong mRejected = new AtomicLong();
+    
+    CommandQueue(World world, int capacity)
+    {
+        if(capacity <= 0 || capacity > (1 << 30)) throw new IllegalArgumentException("Capacity must be between 1 and 2^30");
+        
+        int size = Integer.highestOneBit(capacity);
+        if(size < capacity) size <<= 1;
+        
+        mWorld = world;
+        mMask = size - 1;
+        mSequences = new AtomicLongArray(size);
+        for(int i = 0; i < size; ++i)
+        {
+            mSequences.set(i, i);
+        }
+        mKinds = new int[size];
+        mItems = new Item[size];
+        mCurrencies = new Currency[size];
+        mCounts = new long[size];
+    }
+    
+    /**
+     * Queues a batch of clicks on a generator
+     * @param generator Generator to click
+     * @param count Number of clicks
+     * @return True if the command was queued, false if the queue was full
+     */
+    public boolean click(Generator generator, long count)
+    {
+        check(generator);
+        return offer(CLICK, generator, null, count);
+    }
+    
+    /**
+     * Queues a purchase of an item
+     * @param item Item to buy
+     * @param currency Currency to buy the item with
+     * @return True if the command was queued, false if the queue was full
+     */
+    public boolean buy(Item item, Currency currency)
+    {
+        check(item);
+        if(currency == null) throw new IllegalArgumentException("Currency cannot be null");
+        if(currency.getWorld() != mWorld) throw new IllegalArgumentException("Currency belongs to another world");
+        return offer(BUY, item, currency, 0);
+    }
+    
+    /**
+     * Queues a purchase of an item with its prices in all the currencies
+     * it is priced in
+     * @see Item#buy()
+     * @param item Item to buy
+     * @return True if the command was queued, false if the queue was full
+     */
+    public boolean buy(Item item)
+    {
+        check(item);
+        if(item.mCosts == null) throw new IllegalArgumentException("Item has no prices in currencies");
+        return offer(BUY, item, null, 0);
+    }
+    
+    /**
+     * Queues enabling a modifier
+     * @param modifier Modifier to enable
+     * @return True if the command was queued, false if the queue was full
+     */
+    public boolean enable(Modifier modifier)
+    {
+        check(modifier);
+        return offer(ENABLE, modifier, null, 0);
+    }
+    
+    /**
+     * Queues disabling a modifier
+     * @param modifier Modifier to disable
+     * @return True if the command was queued, false if the queue was full
+     */
+    public boolean disable(Modifier modifier)
+    {
+        check(modifier);
+        return offer(DISABLE, modifier, null, 0);
+    }
+    
+    private void check(Item item)
+    {
+        if(item == null) throw new IllegalArgumentException("Item cannot be null");
+        if(item.getWorld() != mWorld) throw new IllegalArgumentException("Item belongs to another world");
+    }
+    
+    private boolean offer(int kind, Item item, Currency currency, long count)
+    {
+        while(true)
+        {
+            long tail = mTail.get();
+            int slot = (int)tail & mMask;
+            long sequence = mSequences.get(slot);
+            if(sequence == tail)
+            {
+                if(mTail.compareAndSet(tail, tail + 1))
+                {
+                    mKinds[slot] = kind;
+                    mItems[slot] = item;
+                    mCurrencies[slot] = currency;
+                    mCounts[slot] = count;
+                    mSequences.lazySet(slot, tail + 1);
+                    return true;
+                }
+            }
+            else if(sequence < tail)
+            {
+                // The slot still holds a command from the previous lap
+                mRejected.incrementAndGet();
+                return false;
+            }
+            // Otherwise another producer claimed the position, try again
+        }
+    }
+    
+    /**
+     * Applies the queued commands. Called by the world on the thread
+     * that updates it.
+     * @return Number of commands applied
+     */
+    int drain()
+    {
+        long head = mHead;
+        long end = head + mMask + 1;
+        int applied = 0;
+        while(head < end)
+        {
+            int slot = (int)head & mMask;
+            if(mSequences.get(slot) != head + 1) break;
+            
+            int kind = mKinds[slot];
+            Item item = mItems[slot];
+            Currency currency = mCurrencies[slot];
+            long count = mCounts[slot];
+            mItems[slot] = null;
+            mCurrencies[slot] = null;
+            mSequences.lazySet(slot, head + mMask + 1);
+            ++head;
+            mHead = head;
+            
+            apply(kind, item, currency, count);
+            ++applied;
+        }
+        return applied;
+    }
+    
+    private static void apply(int kind, Item item, Currency currency, long count)
+    {
+        switch(kind)
+        {
+            case CLICK:
+                ((Generator)item).click(count);
+                break;
+            case BUY:
+                if(currency != null) item.buyWith(currency);
+                else item.buy();
+                break;
+            case ENABLE:
+                ((Modifier)item).enable();
+                break;
+            case DISABLE:
+                ((Modifier)item).disable();
+                break;
+        }
+    }
+    
+    /**
+     * Retrieves the number of commands waiting to be applied
+     * @return Number of queued commands
+     */
+    public int size()
+    {
+        long size = mTail.get() - mHead;
+        return (int)Math.max(0, Math.min(size, mMask + 1));
+    }
+    
+    /**
+     * Retrieves the maximum number of queued commands
+     * @return Capacity of the queue
+     */
+    public int getCapacity()
+    {
+        return mMask + 1;
+    }
+    
+    /**
+     * Retrieves the number of commands rejected because the queue was full
+     * @return Number of rejected commands
+     */
+    public long getRejectedCount()
+    {
+        return mRejected.get();
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Harri Pellikka.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.manabreak.libclicker;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Currency that many threads can add to and buy with at once.
+ * 
+ * Positive additions that fit in a long go to one of several cells,
+ * picked per thread, so contributors on different threads rarely touch
+ * the same memory. Everything else, and any addition that would overflow
+ * its cell, goes to a shared big number base. The value is the base plus
+ * the sum of the cells.
+ * 
+ * Operations that depend on the whole value, such as trySub(), first fold
+ * the cells into the base. Folds are counted with a sequence number so
+ * that getValue() can retry instead of counting a folded cell twice or
+ * not at all.
+ *
+ * @author Harri Pellikka
+ */
+final class ConcurrentCurrency extends Currency
+{
+    /**
+     * Cells are spaced a cache line apart to avoid false sharing
+     */
+    private static final int SPACING = 8;
+    
+    /**
+     * Cell probe of each thread, moved to another cell on contention
+     */
+    private static final ThreadLocal<int[]> PROBE = new ThreadLocal<int[]>()
+    {
+        @Override
+        protected int[] initialValue()
+        {
+            long id = Thread.currentThread().getId();
+            int h = (int)(id * 0x9E3779B97F4A7C15L >>> 32);
+            return new int[] { h != 0 ? h : 1 };
+        }
+    };
+    
+    private final int mMask;
+    private final AtomicLongArray mCells;
+    private final AtomicReference<BigInteger> mBase = new AtomicReference<>(BigInteger.ZERO);
+    
+    /**
+     * Odd while the cells are being folded into the base
+     */
+    private final AtomicInteger mFolds = new AtomicInteger();
+    
+    ConcurrentCurrency(World world, String name)
+    {
+        super(world, name);
+        int cells = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() - 1)) << 1;
+        mMask = cells - 1;
+        mCells = new AtomicLongArray(cells * SPACING);
+    }
+    
+    @Override
+    BigInteger getValue()
+    {
+        while(true)
+        {
+            int folds = mFolds.get();
+            if((folds & 1) == 0)
+            {
+                BigInteger value = mBase.get();
+                long sum = 0;
+                for(int i = 0; i <= mMask; ++i)
+                {
+                    long cell = mCells.get(i * SPACING);
+                    if(sum > Long.MAX_VALUE - cell)
+                    {
+                        value = value.add(BigInteger.valueOf(sum));
+                        sum = 0;
+                    }
+                    sum += cell;
+                }
+                if(mFolds.get() == folds) return value.add(BigInteger.valueOf(sum));
+            }
+            Thread.yield();
+        }
+    }
+    
+    @Override
+    public void add(BigInteger other)
+    {
+        if(other.signum() > 0 && other.bitLength() < 63)
+        {
+            long amount = other.longValue();
+            int[] probe = PROBE.get();
+            while(true)
+            {
+                int index = (probe[0] & mMask) * SPACING;
+                long cell = mCells.get(index);
+                if(cell > Long.MAX_VALUE - amount) break;
+                if(mCells.compareAndSet(index, cell, cell + amount)) return;
+                
+                // Another thread uses the same cell, move on
+                int h = probe[0];
+                h ^= h << 13;
+                h ^= h >>> 17;
+                h ^= h << 5;
+                probe[0] = h;
+            }
+        }
+        addToBase(other);
+    }
+    
+    private void addToBase(BigInteger other)
+    {
+        while(true)
+        {
+            BigInteger base = mBase.get();
+            if(mBase.compareAndSet(base, base.add(other))) return;
+        }
+    }
+    
+    @Override
+    public void sub(BigInteger other)
+    {
+        addToBase(other.negate());
+    }
+    
+    @Override
+    public synchronized boolean trySub(BigInteger other)
+    {
+        fold();
+        
+        // Other threads only add to the cells meanwhile, so a base that
+        // covers the amount means the whole value does
+        while(true)
+        {
+            BigInteger base = mBase.get();
+            if(base.compareTo(other) < 0) return false;
+            if(mBase.compareAndSet(base, base.subtract(other))) return true;
+        }
+    }
+    
+    @Override
+    public synchronized void multiply(double multiplier)
+    {
+        fold();
+        while(true)
+        {
+            BigInteger base = mBase.get();
+            BigDecimal tmp = new BigDecimal(base);
+            tmp = tmp.multiply(new BigDecimal(multiplier));
+            if(mBase.compareAndSet(base, tmp.toBigInteger())) return;
+        }
+    }
+    
+    @Override
+    synchronized void set(BigInteger newValue)
+    {
+        mFolds.incrementAndGet();
+        for(int i = 0; i <= mMask; ++i)
+        {
+            mCells.set(i * SPACING, 0);
+        }
+        mBase.set(newValue);
+        mFolds.incrementAndGet();
+    }
+    
+    /**
+     * Moves the amounts in the cells to the base. Must be called while
+     * holding the lock of this currency.
+     */
+    private void fold()
+    {
+        mFolds.incrementAndGet();
+        BigInteger sum = BigInteger.ZERO;
+        for(int i = 0; i <= mMask; ++i)
+        {
+            long cell = mCells.getAndSet(i * SPACING, 0);
+            if(cell != 0) sum = sum.add(BigInteger.valueOf(cell));
+        }
+        if(sum.signum() != 0) addToBase(sum);
+        mFolds.incrementAndGet();
+    }
+}
@@ -1,129 +1,300 @@
-/*
- * The MIT License
- *
- * Copyright 2015 Harri Pellikka.
- *
- * Permission is hereby granted, free of charge, to any person obtaining a copy
- * of this software and associated documentation files (the "Software"), to deal
- * in the Software without restriction, including without limitation the rights
- * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
- * copies of the Software, and to permit persons to whom the Software is
- * furnished to do so, subject to the following conditions:
- *
- * The above copyright notice and this permission notice shall be included in
- * all copies or substantial portions of the Software.
- *
- * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
- * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
- * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
- * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
- * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
- * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
- * THE SOFTWARE.
- */
-package com.manabreak.libclicker;
-
-import java.io.Serializable;
-import java.math.BigDecimal;
-import java.math.BigInteger;
-
-/**
- * Base class for all currencies.
- *
- * @author Harri Pellikka
- */
-public class Currency implements Serializable
-{
-    /**
-     * Name of this currency
-     */
-    private String mName;
-    
-    /**
-     * Huge number to hold the amount for this currency
-     */
-    private BigInteger mValue = BigInteger.ZERO;
-    
-    private final World mWorld;
-    
-    public static class Builder
-    {
-        private final World mWorld;
-        private String mName = "Gold";
-        
-        public Builder(World world)
-        {
-            mWorld = world;
-        }
-        
-        public Builder name(String name)
-        {
-            mName = name;
-            return this;
-        }
-        
-        public Currency build()
-        {
-            Currency c = new Currency(mWorld, mName);
-            mWorld.addCurrency(c);
-            return c;
-        }
-    }
-    
-    /**
-     * Constructs a new currency with initial amount of 0
-     * @param name 
-     */
-    private Currency(World world, String name)
-    {
-        mWorld = world;
-        mName = name;
-    }
-    
-    /**
-     * Retrieves the name of this currency
-     * @return 
-     */
-    public String getName()
-    {
-        return mName;
-    }
-    
-    public String getAmountAsString()
-    {
-        return mValue.toString();
-    }
-    
-    @Override
-    public String toString()
-    {
-        return mName + ": " + getAmountAsString();
-    }
-
-    BigInteger getValue()
-    {
-        return mValue;
-    }
-    
-    public void add(BigInteger other)
-    {
-        mValue = mValue.add(other);
-    }
-    
-    public void sub(BigInteger other)
-    {
-        mValue = mValue.subtract(other);
-    }
-    
-    public void multiply(double multiplier)
-    {
-        BigDecimal tmp = new BigDecimal(mValue);
-        tmp = tmp.multiply(new BigDecimal(multiplier));
-        mValue = tmp.toBigInteger();
-    }
-
-    void set(BigInteger newValue)
-    {
-        mValue = newValue;
-    }
-}
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Harri Pellikka.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.manabreak.libclicker;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Base class for all currencies.
+ *
+ * @author Harri Pellikka
+ */
+public class Currency implements Serializable
+{
+    /**
+     * Name of this currency
+     */
+    private String mName;
+    
+    /**
+     * Huge number to hold the amount for this currency
+     */
+    private BigInteger mValue = BigInteger.ZERO;
+    
+    private final World mWorld;
+    
+    /**
+     * Id of this currency in the world, or -1 if it isn't registered
+     */
+    int mId = -1;
+    
+    /**
+     * Generators producing this currency
+     */
+    final ItemGroup<Generator> mGenerators = new ItemGroup<>();
+    
+    /**
+     * Converters consuming this currency
+     */
+    final ArrayList<Generator> mConsumers = new ArrayList<>();
+    
+    /**
+     * Callback for when the amount of a currency reaches a threshold
+     */
+    public interface ThresholdCallback
+    {
+        void onThresholdCrossed(Currency currency, BigInteger threshold);
+    }
+    
+    /**
+     * Thresholds not yet reached, in ascending order
+     */
+    private transient TreeMap<BigInteger, ArrayList<ThresholdCallback>> mThresholds = null;
+    
+    /**
+     * Lowest threshold not yet reached, or null if there are none
+     */
+    private transient BigInteger mNextThreshold = null;
+    
+    public static class Builder
+    {
+        private final World mWorld;
+        private String mName = "Gold";
+        private boolean mConcurrent = false;
+        
+        public Builder(World world)
+        {
+            mWorld = world;
+        }
+        
+        public Builder name(String name)
+        {
+            mName = name;
+            return this;
+        }
+        
+        /**
+         * Makes the currency safe to add to and buy with from many threads
+         * at once. Additions from different threads go to separate cells
+         * and don't contend with each other. Thresholds of a concurrent
+         * currency are checked at the end of each world update instead
+         * of on every addition.
+         * @return This builder for chaining
+         */
+        public Builder concurrent()
+        {
+            mConcurrent = true;
+            return this;
+        }
+        
+        public Currency build()
+        {
+            Currency c = mConcurrent ? new ConcurrentCurrency(mWorld, mName) : new Currency(mWorld, mName);
+            mWorld.addCurrency(c);
+            return c;
+        }
+    }
+    
+    /**
+     * Constructs a new currency with initial amount of 0
+     * @param name 
+     */
+    Currency(World world, String name)
+    {
+        mWorld = world;
+        mName = name;
+    }
+    
+    /**
+     * Retrieves the id of this currency in its world
+     * @return Id of this currency, or -1 if it isn't registered
+     */
+    public int getId()
+    {
+        return mId;
+    }
+    
+    /**
+     * Retrieves the name of this currency
+     * @return 
+     */
+    public String getName()
+    {
+        return mName;
+    }
+    
+    public String getAmountAsString()
+    {
+        return getValue().toString();
+    }
+    
+    @Override
+    public String toString()
+    {
+        return mName + ": " + getAmountAsString();
+    }
+
+    BigInteger getValue()
+    {
+        return mValue;
+    }
+    
+    public void add(BigInteger other)
+    {
+        mValue = mValue.add(other);
+        if(mNextThreshold != null && mValue.compareTo(mNextThreshold) >= 0) crossThresholds();
+    }
+    
+    public void sub(BigInteger other)
+    {
+        mValue = mValue.subtract(other);
+    }
+    
+    /**
+     * Subtracts the given amount if there is at least that much of this
+     * currency. For a concurrent currency the check and the subtraction
+     * are one atomic step.
+     * @param other Amount to subtract
+     * @return True if the amount was subtracted, false if there wasn't enough
+     */
+    public boolean trySub(BigInteger other)
+    {
+        if(mValue.compareTo(other) < 0) return false;
+        mValue = mValue.subtract(other);
+        return true;
+    }
+    
+    public void multiply(double multiplier)
+    {
+        BigDecimal tmp = new BigDecimal(mValue);
+        tmp = tmp.multiply(new BigDecimal(multiplier));
+        mValue = tmp.toBigInteger();
+        if(mNextThreshold != null && mValue.compareTo(mNextThreshold) >= 0) crossThresholds();
+    }
+
+    void set(BigInteger newValue)
+    {
+        mValue = newValue;
+        if(mNextThreshold != null && mValue.compareTo(mNextThreshold) >= 0) crossThresholds();
+    }
+    
+    /**
+     * Adds a threshold for this currency. When the amount reaches the
+     * threshold, an EventBus.ThresholdCrossed event is raised. Each
+     * threshold fires once; if the amount has already reached it, it
+     * fires right away.
+     * 
+     * Only the lowest pending threshold is checked when the amount grows,
+     * so any number of thresholds can be added without slowing down
+     * the generation.
+     * 
+     * @param threshold Amount to wait for
+     */
+    public void addThreshold(BigInteger threshold)
+    {
+        addThreshold(threshold, null);
+    }
+    
+    /**
+     * Adds a threshold for this currency with a callback to call when
+     * the amount reaches it, in addition to raising an event.
+     * 
+     * @see #addThreshold(BigInteger)
+     * @param threshold Amount to wait for
+     * @param callback Callback to call, or null for just the event
+     */
+    public void addThreshold(BigInteger threshold, ThresholdCallback callback)
+    {
+        if(threshold == null) throw new IllegalArgumentException("Threshold cannot be null");
+        
+        if(mThresholds == null) mThresholds = new TreeMap<>();
+        ArrayList<ThresholdCallback> callbacks = mThresholds.get(threshold);
+        if(callbacks == null)
+        {
+            callbacks = new ArrayList<>(1);
+            mThresholds.put(threshold, callbacks);
+        }
+        if(callback != null) callbacks.add(callback);
+        
+        mNextThreshold = mThresholds.firstKey();
+        checkThresholds();
+    }
+    
+    /**
+     * Removes a pending threshold and all its callbacks
+     * @param threshold Threshold to remove
+     */
+    public void removeThreshold(BigInteger threshold)
+    {
+        if(mThresholds == null || mThresholds.remove(threshold) == null) return;
+        mNextThreshold = mThresholds.isEmpty() ? null : mThresholds.firstKey();
+    }
+    
+    /**
+     * Retrieves the number of thresholds not yet reached
+     * @return Number of pending thresholds
+     */
+    public int getPendingThresholdCount()
+    {
+        return mThresholds != null ? mThresholds.size() : 0;
+    }
+    
+    /**
+     * Fires the thresholds the amount has reached, if any
+     */
+    void checkThresholds()
+    {
+        if(mNextThreshold != null && getValue().compareTo(mNextThreshold) >= 0) crossThresholds();
+    }
+    
+    /**
+     * Fires all the thresholds the amount has reached, lowest first
+     */
+    private void crossThresholds()
+    {
+        EventBus events = mWorld != null ? mWorld.events() : null;
+        while(mNextThreshold != null && getValue().compareTo(mNextThreshold) >= 0)
+        {
+            Map.Entry<BigInteger, ArrayList<ThresholdCallback>> entry = mThresholds.pollFirstEntry();
+            mNextThreshold = mThresholds.isEmpty() ? null : mThresholds.firstKey();
+            
+            // The event first, so what the callbacks do comes after it
+            if(events != null) events.thresholdCrossed(this, entry.getKey());
+            for(ThresholdCallback callback : entry.getValue())
+            {
+                callback.onThresholdCrossed(this, entry.getKey());
+            }
+        }
+    }
+    
+    World getWorld()
+    {
+        return mWorld;
+    }
+}
@@ -0,0 +1,511 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Harri Pellikka.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.manabreak.libclicker;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * A curve giving a factor for each level, such as how the price of an item
+ * or the amount a generator produces grows with the level. The factor
+ * multiplies a base value, so level zero is usually 1.
+ * 
+ * Besides the value at a level, a curve can sum itself over a range of
+ * levels, which is the total price of buying those levels at once, and
+ * invert the sum, which is how many levels a budget buys. The built-in
+ * curves do both in closed form. A custom curve only has to implement
+ * valueAt(); its sums come from a table of prefix sums cached on first
+ * use, and its inverse from a search over the sums. Curves must be
+ * non-negative, and non-decreasing for the inverse to be exact.
+ *
+ * @author Harri Pellikka
+ */
+public abstract class Curve implements Serializable
+{
+    /**
+     * Levels covered by the prefix sum table of a custom curve. Sums past
+     * the table are computed level by level.
+     */
+    static final int TABLE_LIMIT = 1 << 16;
+    
+    /**
+     * Prefix sums of a custom curve: the sum of the levels below i at i
+     */
+    private transient double[] mPrefix = null;
+    
+    /**
+     * Retrieves the factor at a level
+     * @param level Level, zero or more
+     * @return Factor at the level
+     */
+    public abstract double valueAt(long level);
+    
+    /**
+     * Sums the factors of the levels from (inclusive) to (exclusive)
+     * @param from First level of the range
+     * @param to Level after the last one of the range
+     * @return Sum of the factors, or 0 if the range is empty
+     */
+    public double sum(long from, long to)
+    {
+        if(to <= from) return 0.0;
+        if(to <= TABLE_LIMIT)
+        {
+            double[] prefix = prefix((int)to);
+            return prefix[(int)to] - prefix[(int)from];
+        }
+        
+        double sum = from < TABLE_LIMIT ? sum(from, TABLE_LIMIT) : 0.0;
+        for(long level = Math.max(from, TABLE_LIMIT); level < to; ++level)
+        {
+            sum += valueAt(level);
+        }
+        return sum;
+    }
+    
+    private synchronized double[] prefix(int to)
+    {
+        if(mPrefix == null || mPrefix.length <= to)
+        {
+            int size = Math.max(64, Integer.highestOneBit(to) << 1);
+            int start = mPrefix != null ? mPrefix.length - 1 : 0;
+            double[] prefix = mPrefix != null ? Arrays.copyOf(mPrefix, size + 1) : new double[size + 1];
+            for(int i = start; i < size; ++i)
+            {
+                prefix[i + 1] = prefix[i] + valueAt(i);
+            }
+            mPrefix = prefix;
+        }
+        return mPrefix;
+    }
+    
+    /**
+     * Finds how many levels starting from the given one fit in a budget,
+     * i.e. the largest n for which sum(from, from + n) is at most the
+     * budget
+     * @param from First level to buy
+     * @param budget Budget in units of the factor
+     * @return Number of levels that fit in the budget
+     */
+    public long maxAffordable(long from, double budget)
+    {
+        return maxAffordable(from, budget, Long.MAX_VALUE - from);
+    }
+    
+    /**
+     * Finds how many levels starting from the given one fit in a budget,
+     * up to a limit such as the levels left below the max level of an
+     * item. A custom curve sums the levels past its prefix table one by
+     * one, so the search stops as soon as the budget or the limit is
+     * passed.
+     * @param from First level to buy
+     * @param budget Budget in units of the factor
+     * @param limit Most levels to return
+     * @return Number of levels that fit in the budget, at most the limit
+     */
+    public long maxAffordable(long from, double budget, long limit)
+    {
+        limit = Math.min(limit, Long.MAX_VALUE - from);
+        if(!(budget >= 0.0) || limit <= 0 || sum(from, from + 1) > budget) return 0;
+        if(budget == Double.POSITIVE_INFINITY) return limit;
+        
+        // Double until the sum goes over, then bisect. The sums of a custom
+        // curve are only cheap within the table.
+        long end = hasClosedSum() ? limit : Math.min(limit, Math.max(1, TABLE_LIMIT - from));
+        long lo = 1, hi = 2;
+        while(hi < end && sum(from, from + hi) <= budget)
+        {
+            lo = hi;
+            hi = hi > end / 2 ? end : hi * 2;
+        }
+        if(hi >= end && sum(from, from + end) <= budget)
+        {
+            if(end == limit) return limit;
+            
+            // Past the table, add the levels one by one
+            long n = end;
+            double sum = sum(from, from + n);
+            while(n < limit)
+            {
+                sum += valueAt(from + n);
+                if(sum > budget) break;
+                n++;
+            }
+            return n;
+        }
+        
+        while(hi - lo > 1)
+        {
+            long mid = lo + (hi - lo) / 2;
+            if(sum(from, from + mid) <= budget) lo = mid;
+            else hi = mid;
+        }
+        return lo;
+    }
+    
+    /**
+     * Checks whether this curve sums any range in closed form rather than
+     * with the prefix table
+     * @return True if the sums are cheap over any range
+     */
+    boolean hasClosedSum()
+    {
+        return false;
+    }
+    
+    /**
+     * Corrects an inverse computed in closed form for rounding, so that
+     * the result matches the sums
+     */
+    long settle(long from, double budget, long n, long limit)
+    {
+        limit = Math.min(limit, Long.MAX_VALUE - from);
+        n = Math.max(0, Math.min(n, limit));
+        while(n > 0 && sum(from, from + n) > budget) n--;
+        while(n < limit && sum(from, from + n + 1) <= budget) n++;
+        return n;
+    }
+    
+    /**
+     * Creates a curve growing by a constant multiplier per level:
+     * multiplier ^ level. This is the default curve of prices and
+     * generated amounts.
+     * @param multiplier Multiplier per level
+     * @return The curve
+     */
+    public static Curve exponential(double multiplier)
+    {
+        if(!(multiplier > 0.0)) throw new IllegalArgumentException("Multiplier must be positive");
+        return new Exponential(multiplier);
+    }
+    
+    /**
+     * Creates a curve growing by a constant step per level:
+     * 1 + step * level
+     * @param step Growth per level
+     * @return The curve
+     */
+    public static Curve linear(double step)
+    {
+        if(!(step >= 0.0)) throw new IllegalArgumentException("Step cannot be negative");
+        return new Linear(step);
+    }
+    
+    /**
+     * Creates a polynomial curve: c0 + c1 * level + c2 * level^2 + ...
+     * @param coefficients Coefficients from the constant term up, at most
+     * eleven of them, none negative
+     * @return The curve
+     */
+    public static Curve polynomial(double... coefficients)
+    {
+        if(coefficients == null || coefficients.length == 0) throw new IllegalArgumentException("Coefficients cannot be empty");
+        if(coefficients.length > Polynomial.BERNOULLI.length) throw new IllegalArgumentException("Polynomial degree cannot exceed " + (Polynomial.BERNOULLI.length - 1));
+        for(double c : coefficients)
+        {
+            if(!(c >= 0.0)) throw new IllegalArgumentException("Coefficients cannot be negative");
+        }
+        return new Polynomial(coefficients.clone());
+    }
+    
+    /**
+     * Creates a curve that stays level for a number of levels at a time
+     * and then grows by a multiplier: multiplier ^ floor(level / width)
+     * @param width Number of levels per step
+     * @param multiplier Multiplier per step
+     * @return The curve
+     */
+    public static Curve stepped(long width, double multiplier)
+    {
+        if(width <= 0) throw new IllegalArgumentException("Width must be positive");
+        if(!(multiplier > 0.0)) throw new IllegalArgumentException("Multiplier must be positive");
+        return new Stepped(width, multiplier);
+    }
+    
+    /**
+     * Creates a curve made of other curves, each used from a level on.
+     * The first curve is used from level 0 until the first start, the
+     * second from the first start until the second one, and so on. The
+     * curves are evaluated at the actual level, not relative to their
+     * start.
+     * @param starts Levels at which the second and later curves start,
+     * in ascending order
+     * @param curves Curves, one more than the starts
+     * @return The curve
+     */
+    public static Curve piecewise(long[] starts, Curve... curves)
+    {
+        if(starts == null || curves == null || curves.length != starts.length + 1) throw new IllegalArgumentException("There must be one curve more than starts");
+        for(int i = 0; i < starts.length; ++i)
+        {
+            if(starts[i] <= (i > 0 ? starts[i - 1] : 0)) throw new IllegalArgumentException("Starts must be positive and ascending");
+        }
+        for(Curve c : curves)
+        {
+            if(c == null) throw new IllegalArgumentException("Curve cannot be null");
+        }
+        return new Piecewise(starts.clone(), curves.clone());
+    }
+    
+    private static final class Exponential extends Curve
+    {
+        private final double mMultiplier;
+        
+        Exponential(double multiplier)
+        {
+            mMultiplier = multiplier;
+        }
+        
+        @Override
+        public double valueAt(long level)
+        {
+            return Math.pow(mMultiplier, level);
+        }
+        
+        @Override
+        public double sum(long from, long to)
+        {
+            if(to <= from) return 0.0;
+            if(mMultiplier == 1.0) return (double)(to - from);
+            return (Math.pow(mMultiplier, to) - Math.pow(mMultiplier, from)) / (mMultiplier - 1.0);
+        }
+        
+        @Override
+        boolean hasClosedSum()
+        {
+            return true;
+        }
+        
+        @Override
+        public long maxAffordable(long from, double budget, long limit)
+        {
+            if(!(budget >= 0.0) || limit <= 0) return 0;
+            if(mMultiplier == 1.0) return settle(from, budget, (long)Math.min(budget, Long.MAX_VALUE), limit);
+            
+            // multiplier^from * (multiplier^n - 1) / (multiplier - 1) <= budget
+            double start = Math.pow(mMultiplier, from);
+            if(start > budget) return 0;
+            double x = 1.0 + budget * (mMultiplier - 1.0) / start;
+            if(x <= 0.0) return Math.min(limit, Long.MAX_VALUE - from);
+            double n = Math.floor(Math.log(x) / Math.log(mMultiplier));
+            return settle(from, budget, (long)Math.min(n, Long.MAX_VALUE), limit);
+        }
+    }
+    
+    private static final class Linear extends Curve
+    {
+        private final double mStep;
+        
+        Linear(double step)
+        {
+            mStep = step;
+        }
+        
+        @Override
+        public double valueAt(long level)
+        {
+            return 1.0 + mStep * level;
+        }
+        
+        @Override
+        public double sum(long from, long to)
+        {
+            if(to <= from) return 0.0;
+            double n = to - from;
+            return n + mStep * ((double)from + (double)to - 1.0) * n / 2.0;
+        }
+        
+        @Override
+        boolean hasClosedSum()
+        {
+            return true;
+        }
+        
+        @Override
+        public long maxAffordable(long from, double budget, long limit)
+        {
+            if(!(budget >= 0.0) || limit <= 0) return 0;
+            if(mStep == 0.0) return settle(from, budget, (long)Math.min(budget, Long.MAX_VALUE), limit);
+            
+            // step / 2 * n^2 + (1 + step * from - step / 2) * n <= budget
+            double b = 1.0 + mStep * from - mStep / 2.0;
+            double n = (Math.sqrt(b * b + 2.0 * mStep * budget) - b) / mStep;
+            return settle(from, budget, (long)Math.min(Math.floor(n), Long.MAX_VALUE), limit);
+        }
+    }
+    
+    private static final class Polynomial extends Curve
+    {
+        /**
+         * Bernoulli numbers B0 to B10, with B1 = -1/2
+         */
+        static final double[] BERNOULLI = {
+            1.0, -1.0 / 2.0, 1.0 / 6.0, 0.0, -1.0 / 30.0, 0.0, 1.0 / 42.0, 0.0, -1.0 / 30.0, 0.0, 5.0 / 66.0
+        };
+        
+        private final double[] mCoefficients;
+        
+        Polynomial(double[] coefficients)
+        {
+            mCoefficients = coefficients;
+        }
+        
+        @Override
+        public double valueAt(long level)
+        {
+            double value = 0.0;
+            for(int i = mCoefficients.length - 1; i >= 0; --i)
+            {
+                value = value * level + mCoefficients[i];
+            }
+            return value;
+        }
+        
+        @Override
+        public double sum(long from, long to)
+        {
+            if(to <= from) return 0.0;
+            return prefix(to) - prefix(from);
+        }
+        
+        @Override
+        boolean hasClosedSum()
+        {
+            return true;
+        }
+        
+        /**
+         * Sum of the levels below n, with Faulhaber's formula for the
+         * sum of each power
+         */
+        private double prefix(long n)
+        {
+            double sum = 0.0;
+            for(int p = 0; p < mCoefficients.length; ++p)
+            {
+                if(mCoefficients[p] == 0.0) continue;
+                
+                // Sum of k^p for k < n
+                double powers = 0.0;
+                double binomial = 1.0;
+                for(int j = 0; j <= p; ++j)
+                {
+                    if(BERNOULLI[j] != 0.0) powers += binomial * BERNOULLI[j] * Math.pow(n, p + 1 - j);
+                    binomial = binomial * (p + 1 - j) / (j + 1);
+                }
+                sum += mCoefficients[p] * powers / (p + 1);
+            }
+            return sum;
+        }
+    }
+    
+    private static final class Stepped extends Curve
+    {
+        private final long mWidth;
+        private final double mMultiplier;
+        
+        Stepped(long width, double multiplier)
+        {
+            mWidth = width;
+            mMultiplier = multiplier;
+        }
+        
+        @Override
+        public double valueAt(long level)
+        {
+            return Math.pow(mMultiplier, level / mWidth);
+        }
+        
+        @Override
+        public double sum(long from, long to)
+        {
+            if(to <= from) return 0.0;
+            return prefix(to) - prefix(from);
+        }
+        
+        @Override
+        boolean hasClosedSum()
+        {
+            return true;
+        }
+        
+        /**
+         * Sum of the levels below n: the full steps as a geometric series,
+         * then the partial step
+         */
+        private double prefix(long n)
+        {
+            long steps = n / mWidth;
+            double full = mMultiplier == 1.0 ? steps : (Math.pow(mMultiplier, steps) - 1.0) / (mMultiplier - 1.0);
+            return mWidth * full + (n - steps * mWidth) * Math.pow(mMultiplier, steps);
+        }
+    }
+    
+    private static final class Piecewise extends Curve
+    {
+        private final long[] mStarts;
+        private final Curve[] mCurves;
+        
+        Piecewise(long[] starts, Curve[] curves)
+        {
+            mStarts = starts;
+            mCurves = curves;
+        }
+        
+        private int segmentOf(long level)
+        {
+            int index = Arrays.binarySearch(mStarts, level);
+            return index >= 0 ? index + 1 : -index - 1;
+        }
+        
+        @Override
+        public double valueAt(long level)
+        {
+            return mCurves[segmentOf(level)].valueAt(level);
+        }
+        
+        @Override
+        public double sum(long from, long to)
+        {
+            double sum = 0.0;
+            for(int i = segmentOf(from); from < to; ++i)
+            {
+                long end = i < mStarts.length ? Math.min(to, mStarts[i]) : to;
+                sum += mCurves[i].sum(from, end);
+                from = end;
+            }
+            return sum;
+        }
+        
+        @Override
+        boolean hasClosedSum()
+        {
+            for(Curve c : mCurves)
+            {
+                if(!c.hasClosedSum()) return false;
+            }
+            return true;
+        }
+    }
+}
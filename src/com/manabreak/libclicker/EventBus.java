@@ -0,0 +1,458 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Harri Pellikka.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.manabreak.libclicker;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+
+/**
+ * Typed event bus of a world. Listeners subscribe to a single event type
+ * and any number of listeners can subscribe to each type.
+ * 
+ * Events raised while the world is being updated are coalesced: instead
+ * of one event per generator processing cycle, one event with the count
+ * and the total amount is delivered per generator after the update.
+ * Events raised outside updates (e.g. manual clicks and purchases) are
+ * delivered right away.
+ * 
+ * The events of an update are delivered in the order they first
+ * occurred: a coalesced event takes the place of the first cycle or
+ * level change it covers, so the production that paid for a purchase
+ * or crossed a threshold is delivered before it.
+ * 
+ * By default the listeners are called on the thread raising the events.
+ * With an executor set, the events are handed to the executor instead,
+ * which keeps the listeners off the simulation thread.
+ *
+ * @author Harri Pellikka
+ */
+public class EventBus
+{
+    /**
+     * Listener for events of a single type
+     * @param <E> Type of the events
+     */
+    public interface Listener<E>
+    {
+        void onEvent(E event);
+    }
+    
+    /**
+     * A generator has produced something. When coalesced, the count
+     * and the amount cover all the processing cycles of an update.
+     */
+    public static class GeneratorProcessed
+    {
+        private final Generator mGenerator;
+        private int mCount = 0;
+        private BigInteger mAmount = BigInteger.ZERO;
+        
+        GeneratorProcessed(Generator generator)
+        {
+            mGenerator = generator;
+        }
+        
+        void add(BigInteger amount, long count)
+        {
+            mCount = (int)Math.min(Integer.MAX_VALUE, mCount + count);
+            mAmount = mAmount.add(amount);
+        }
+        
+        public Generator getGenerator()
+        {
+            return mGenerator;
+        }
+        
+        public Currency getCurrency()
+        {
+            return mGenerator.getCurrency();
+        }
+        
+        /**
+         * Retrieves the number of processing cycles this event covers
+         * @return Number of processing cycles
+         */
+        public int getCount()
+        {
+            return mCount;
+        }
+        
+        /**
+         * Retrieves the total amount produced
+         * @return Produced amount
+         */
+        public BigInteger getAmount()
+        {
+            return mAmount;
+        }
+    }
+    
+    /**
+     * An item has been bought
+     */
+    public static class ItemPurchased
+    {
+        private final Item mItem;
+        private final Currency mCurrency;
+        private final BigInteger mPrice;
+        
+        ItemPurchased(Item item, Currency currency, BigInteger price)
+        {
+            mItem = item;
+            mCurrency = currency;
+            mPrice = price;
+        }
+        
+        public Item getItem()
+        {
+            return mItem;
+        }
+        
+        public Currency getCurrency()
+        {
+            return mCurrency;
+        }
+        
+        public BigInteger getPrice()
+        {
+            return mPrice;
+        }
+    }
+    
+    /**
+     * The level of an item has changed. When coalesced, the count covers
+     * all the level changes of the item during an update.
+     */
+    public static class LevelChanged
+    {
+        private final Item mItem;
+        private int mCount = 0;
+        private long mLevel;
+        
+        LevelChanged(Item item)
+        {
+            mItem = item;
+        }
+        
+        void add(long level)
+        {
+            mCount++;
+            mLevel = level;
+        }
+        
+        public Item getItem()
+        {
+            return mItem;
+        }
+        
+        /**
+         * Retrieves the number of level changes this event covers
+         * @return Number of level changes
+         */
+        public int getCount()
+        {
+            return mCount;
+        }
+        
+        /**
+         * Retrieves the level of the item after the changes
+         * @return Item level
+         */
+        public long getLevel()
+        {
+            return mLevel;
+        }
+    }
+    
+    /**
+     * A modifier has been enabled or disabled
+     */
+    public static class ModifierToggled
+    {
+        private final Modifier mModifier;
+        private final boolean mEnabled;
+        
+        ModifierToggled(Modifier modifier, boolean enabled)
+        {
+            mModifier = modifier;
+            mEnabled = enabled;
+        }
+        
+        public Modifier getModifier()
+        {
+            return mModifier;
+        }
+        
+        public boolean isEnabled()
+        {
+            return mEnabled;
+        }
+    }
+    
+    /**
+     * The amount of a currency has reached a threshold
+     */
+    public static class ThresholdCrossed
+    {
+        private final Currency mCurrency;
+        private final BigInteger mThreshold;
+        
+        ThresholdCrossed(Currency currency, BigInteger threshold)
+        {
+            mCurrency = currency;
+            mThreshold = threshold;
+        }
+        
+        public Currency getCurrency()
+        {
+            return mCurrency;
+        }
+        
+        public BigInteger getThreshold()
+        {
+            return mThreshold;
+        }
+    }
+    
+    /**
+     * Subscribers per event type
+     */
+    private final ConcurrentHashMap<Class<?>, CopyOnWriteArrayList<Listener<?>>> mListeners = new ConcurrentHashMap<>();
+    
+    /**
+     * Executor for asynchronous delivery, or null for synchronous delivery
+     */
+    private volatile Executor mExecutor = null;
+    
+    /**
+     * Are the events currently being coalesced?
+     */
+    private boolean mBatching = false;
+    
+    private final HashMap<Generator, GeneratorProcessed> mPendingProcessed = new HashMap<>();
+    private final HashMap<Item, LevelChanged> mPendingLevels = new HashMap<>();
+    
+    /**
+     * Events of the batch in the order they first occurred, including
+     * the coalesced events, which still collect later occurrences
+     */
+    private final ArrayList<Object> mPending = new ArrayList<>();
+    
+    EventBus()
+    {
+        
+    }
+    
+    /**
+     * Subscribes a listener to the given type of events
+     * @param <E> Type of the events
+     * @param type Class of the events
+     * @param listener Listener to call
+     */
+    public synchronized <E> void subscribe(Class<E> type, Listener<? super E> listener)
+    {
+        if(type == null) throw new IllegalArgumentException("Event type cannot be null");
+        if(listener == null) throw new IllegalArgumentException("Listener cannot be null");
+        
+        CopyOnWriteArrayList<Listener<?>> list = mListeners.get(type);
+        if(list == null)
+        {
+            list = new CopyOnWriteArrayList<>();
+            mListeners.put(type, list);
+        }
+        list.addIfAbsent(listener);
+    }
+    
+    /**
+     * Unsubscribes a listener from the given type of events
+     * @param <E> Type of the events
+     * @param type Class of the events
+     * @param listener Listener to remove
+     */
+    public synchronized <E> void unsubscribe(Class<E> type, Listener<? super E> listener)
+    {
+        CopyOnWriteArrayList<Listener<?>> list = mListeners.get(type);
+        if(list != null) list.remove(listener);
+    }
+    
+    /**
+     * Sets the executor used for delivering the events
+     * @param executor Executor, or null to call the listeners directly
+     */
+    public void setExecutor(Executor executor)
+    {
+        mExecutor = executor;
+    }
+    
+    /**
+     * Checks whether anyone listens to the given type of events
+     */
+    boolean hasListeners(Class<?> type)
+    {
+        List<Listener<?>> list = mListeners.get(type);
+        return list != null && !list.isEmpty();
+    }
+    
+    void beginBatch()
+    {
+        mBatching = true;
+    }
+    
+    boolean isBatching()
+    {
+        return mBatching;
+    }
+    
+    /**
+     * Stops coalescing and delivers the events raised during the batch
+     */
+    void endBatch()
+    {
+        mBatching = false;
+        if(mPending.isEmpty()) return;
+        
+        ArrayList<Object> events = new ArrayList<>(mPending);
+        mPending.clear();
+        mPendingLevels.clear();
+        mPendingProcessed.clear();
+        
+        for(Object event : events)
+        {
+            deliver(event);
+        }
+    }
+    
+    void generatorProcessed(Generator generator, BigInteger amount)
+    {
+        generatorProcessed(generator, amount, 1);
+    }
+    
+    void generatorProcessed(Generator generator, BigInteger amount, long count)
+    {
+        if(!hasListeners(GeneratorProcessed.class)) return;
+        
+        if(mBatching)
+        {
+            GeneratorProcessed event = mPendingProcessed.get(generator);
+            if(event == null)
+            {
+                event = new GeneratorProcessed(generator);
+                mPendingProcessed.put(generator, event);
+                mPending.add(event);
+            }
+            event.add(amount, count);
+        }
+        else
+        {
+            GeneratorProcessed event = new GeneratorProcessed(generator);
+            event.add(amount, count);
+            deliver(event);
+        }
+    }
+    
+    void levelChanged(Item item)
+    {
+        if(!hasListeners(LevelChanged.class)) return;
+        
+        if(mBatching)
+        {
+            LevelChanged event = mPendingLevels.get(item);
+            if(event == null)
+            {
+                event = new LevelChanged(item);
+                mPendingLevels.put(item, event);
+                mPending.add(event);
+            }
+            event.add(item.getItemLevel());
+        }
+        else
+        {
+            LevelChanged event = new LevelChanged(item);
+            event.add(item.getItemLevel());
+            deliver(event);
+        }
+    }
+    
+    void itemPurchased(Item item, Currency currency, BigInteger price)
+    {
+        if(hasListeners(ItemPurchased.class)) raise(new ItemPurchased(item, currency, price));
+    }
+    
+    void modifierToggled(Modifier modifier, boolean enabled)
+    {
+        if(hasListeners(ModifierToggled.class)) raise(new ModifierToggled(modifier, enabled));
+    }
+    
+    void thresholdCrossed(Currency currency, BigInteger threshold)
+    {
+        if(hasListeners(ThresholdCrossed.class)) raise(new ThresholdCrossed(currency, threshold));
+    }
+    
+    /**
+     * Delivers an event that isn't coalesced, keeping the order of the
+     * events if a batch is in progress
+     */
+    void raise(Object event)
+    {
+        if(mBatching) mPending.add(event);
+        else deliver(event);
+    }
+    
+    private void deliver(final Object event)
+    {
+        final CopyOnWriteArrayList<Listener<?>> list = mListeners.get(event.getClass());
+        if(list == null || list.isEmpty()) return;
+        
+        Executor executor = mExecutor;
+        if(executor != null)
+        {
+            executor.execute(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    notifyListeners(list, event);
+                }
+            });
+        }
+        else
+        {
+            notifyListeners(list, event);
+        }
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static void notifyListeners(List<Listener<?>> listeners, Object event)
+    {
+        for(Listener<?> listener : listeners)
+        {
+            ((Listener<Object>)listener).onEvent(event);
+        }
+    }
+}
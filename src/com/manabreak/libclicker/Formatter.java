@@ -1,267 +1,1239 @@
-/*
- * The MIT License
- *
- * Copyright 2015 Harri Pellikka.
- *
- * Permission is hereby granted, free of charge, to any person obtaining a copy
- * of this software and associated documentation files (the "Software"), to deal
- * in the Software without restriction, including without limitation the rights
- * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
- * copies of the Software, and to permit persons to whom the Software is
- * furnished to do so, subject to the following conditions:
- *
- * The above copyright notice and this permission notice shall be included in
- * all copies or substantial portions of the Software.
- *
- * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
- * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
- * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
- * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
- * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
- * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
- * THE SOFTWARE.
- */
-package com.manabreak.libclicker;
-
-/**
- * A formatter for BigInteger values.
- *
- * @author Harri Pellikka
- */
-public class Formatter
-{
-    /**
-     * Formats a currency to a nice string representation.
-     */
-    public static class CurrencyFormatter extends Formatter
-    {
-        private final Currency mCurrency;
-        
-        private CurrencyFormatter(Builder builder, Currency currency)
-        {
-            super(builder);
-            mCurrency = currency;
-        }
-
-        @Override
-        public String toString()
-        {
-            setRawString(mCurrency.getValue().toString());
-            return super.toString();
-        }
-    }
-    
-    /**
-     * Formats an item's price to a nice string representation.
-     */
-    public static class ItemPriceFormatter extends Formatter
-    {
-        private final Item mItem;
-        
-        private ItemPriceFormatter(Builder builder, Item item)
-        {
-            super(builder);
-            mItem = item;
-        }
-
-        @Override
-        public String toString()
-        {
-            setRawString(mItem.getPrice().toString());
-            return super.toString();
-        }
-    }
-    
-    protected final boolean mGroupDigits;
-    protected final String mThousandSeparator;
-    protected final boolean mShowDecimals;
-    protected final int mDecimals;
-    protected final String mDecimalSeparator;
-    protected final boolean mCutAtHighest;
-    protected final String[] mAbbreviations;
-    
-    protected Formatter(Builder builder)
-    {
-        mGroupDigits = builder.mGroupDigits;
-        mThousandSeparator = builder.mThousandSeparator;
-        mShowDecimals = builder.mShowDecimals;
-        mDecimals = builder.mDecimals;
-        mDecimalSeparator = builder.mDecimalSeparator;
-        mCutAtHighest = builder.mCutAtHighest;
-        mAbbreviations = builder.mAbbreviations;
-    }
-    
-    public static class ForItemPrice extends Builder
-    {
-        private Item mItem;
-        
-        public ForItemPrice(Item item)
-        {
-            mItem = item;
-        }
-        
-        @Override
-        public ItemPriceFormatter build()
-        {
-            return new ItemPriceFormatter(this, mItem);
-        }
-    }
-    
-    public static class ForCurrency extends Builder
-    {
-        private Currency mCurrency;
-        
-        public ForCurrency(Currency c)
-        {
-            mCurrency = c;
-        }
-        
-        public CurrencyFormatter build()
-        {
-            return new CurrencyFormatter(this, mCurrency);
-        }
-    }
-    
-    public static abstract class Builder
-    {   
-        private boolean mGroupDigits = true;
-        private String mThousandSeparator = ",";
-        private boolean mShowDecimals = false;
-        private int mDecimals = 2;
-        private String mDecimalSeparator;
-        private boolean mCutAtHighest = true;
-        private String[] mAbbreviations = null;
-        
-        private Builder()
-        {
-            
-        }
-        
-        public Builder showHighestThousand()
-        {
-            mCutAtHighest = true;
-            return this;
-        }
-        
-        public Builder showFully()
-        {
-            mCutAtHighest = false;
-            return this;
-        }
-        
-        public Builder groupDigits() 
-        {
-            return groupDigits(",");
-        }
-        
-        public Builder groupDigits(String separator)
-        {
-            mGroupDigits = true;
-            mThousandSeparator = separator;
-            return this;
-        }
-        
-        public Builder dontGroupDigits()
-        {
-            mGroupDigits = false;
-            mThousandSeparator = null;
-            return this;
-        }
-        
-        public Builder showDecimals()
-        {
-            return showDecimals(2, ".");
-        }
-        
-        public Builder showDecimals(int count)
-        {
-            return showDecimals(count, ".");
-        }
-        
-        public Builder showDecimals(String separator)
-        {
-            return showDecimals(2, separator);
-        }
-        
-        public Builder showDecimals(int count, String separator)
-        {
-            mShowDecimals = true;
-            mDecimals = count;
-            mDecimalSeparator = separator;
-            return this;
-        }
-        
-        public Builder dontShowDecimals()
-        {
-            mShowDecimals = false;
-            mDecimals = 0;
-            mDecimalSeparator = null;
-            return this;
-        }
-        
-        public Builder useAbbreviations(String[] abbreviations)
-        {
-            mAbbreviations = abbreviations;
-            return this;
-        }
-        
-        public abstract Formatter build();
-    }
-    
-    
-    
-    private String mRawString = "";
-    
-    public void setRawString(String raw)
-    {
-        mRawString = raw;
-        if(mRawString == null) mRawString = "";
-    }
-
-    @Override
-    public String toString()
-    {
-        String raw = mRawString;
-        if(mCutAtHighest)
-        {
-            int length = raw.length();
-            if(length < 4) return raw;
-            int rem = length % 3;
-            rem = rem == 0 ? 3 : rem;
-            String top = raw.substring(0, rem);
-            
-            if(mShowDecimals)
-            {
-                top += mDecimalSeparator;
-                int decimals = Math.min(mDecimals, length - rem);
-                top += raw.substring(rem, rem + decimals);
-            }
-            
-            if(mAbbreviations != null)
-            {
-                int tri = (raw.length() - 1) / 3;
-                if(tri > 0 && tri <= mAbbreviations.length)
-                {
-                    top += mAbbreviations[tri - 1];
-                }
-            }
-            
-            return top;
-        }
-        else
-        {
-            if(mGroupDigits)
-            {
-                int len = raw.length() - 3;
-                for(int i = len; i > 0; --i)
-                {
-                    if((len - i) % 3 == 0)
-                    {
-                        raw = raw.substring(0, i) + mThousandSeparator + raw.substring(i);
-                    }
-                }
-            }
-            return raw;
-        }
-    }
-}
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Harri Pellikka.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.manabreak.libclicker;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.text.DecimalFormatSymbols;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Supplier;
+
+/**
+ * A formatter for BigInteger values.
+ *
+ * @author Harri Pellikka
+ */
+public class Formatter
+{
+    /**
+     * Formats a currency to a nice string representation.
+     */
+    public static class CurrencyFormatter extends Formatter
+    {
+        private final Currency mCurrency;
+        
+        private CurrencyFormatter(Builder builder, Currency currency)
+        {
+            super(builder);
+            mCurrency = currency;
+        }
+
+        @Override
+        public String toString()
+        {
+            return format(mCurrency.getValue());
+        }
+    }
+    
+    /**
+     * Formats an item's price to a nice string representation.
+     */
+    public static class ItemPriceFormatter extends Formatter
+    {
+        private final Item mItem;
+        
+        private ItemPriceFormatter(Builder builder, Item item)
+        {
+            super(builder);
+            mItem = item;
+        }
+
+        @Override
+        public String toString()
+        {
+            return format(mItem.getPrice());
+        }
+    }
+    
+    /**
+     * Formats the income per second of a currency. The income is
+     * taken from the world's cached income, so refreshing the text
+     * every frame doesn't recompute it. With decimals shown, the
+     * fraction of the income is shown too, truncated.
+     */
+    public static class RateFormatter extends Formatter
+    {
+        private final Currency mCurrency;
+        private final String mSuffix;
+        
+        private RateFormatter(Builder builder, Currency currency, String suffix)
+        {
+            super(builder);
+            mCurrency = currency;
+            mSuffix = suffix;
+        }
+        
+        @Override
+        public String toString()
+        {
+            BigDecimal income = mCurrency.getWorld().getIncomePerSecond(mCurrency);
+            BigInteger whole = income.toBigInteger();
+            StringBuilder sb = new StringBuilder();
+            if(income.signum() < 0 && whole.signum() == 0) sb.append('-');
+            appendValue(whole, sb);
+            
+            // The highest thousand brings its own decimals
+            if(mShowDecimals && mDecimals > 0 && (!mCutAtHighest || digitCount(whole.abs()) < 4))
+            {
+                BigInteger fraction = income.subtract(new BigDecimal(whole)).abs().movePointRight(mDecimals).toBigInteger();
+                String digits = fraction.toString();
+                sb.append(mDecimalSeparator);
+                for(int i = digits.length(); i < mDecimals; ++i)
+                {
+                    sb.append('0');
+                }
+                sb.append(digits);
+            }
+            sb.append(mSuffix);
+            return sb.toString();
+        }
+    }
+    
+    /**
+     * Formats a duration to a short string representation such as
+     * "2h 15m", showing the highest unit and the one below it.
+     */
+    public static class DurationFormatter extends Formatter
+    {
+        private static final long[] UNIT_SECONDS = { 86400, 3600, 60, 1 };
+        
+        private final String[] mUnits;
+        private final String mNever;
+        
+        private DurationFormatter(Builder builder, String[] units, String never)
+        {
+            super(builder);
+            mUnits = units;
+            mNever = never;
+        }
+        
+        /**
+         * Formats the given duration. Fractions of a second are rounded up,
+         * so that "0s" is only shown when the duration is over.
+         * 
+         * @param seconds Duration in seconds
+         * @return Formatted duration
+         */
+        public String format(double seconds)
+        {
+            if(Double.isNaN(seconds) || seconds >= Long.MAX_VALUE) return mNever;
+            
+            long left = (long)Math.ceil(Math.max(seconds, 0.0));
+            StringBuilder sb = new StringBuilder();
+            for(int i = 0; i < UNIT_SECONDS.length; ++i)
+            {
+                long count = left / UNIT_SECONDS[i];
+                if(count == 0 && i < UNIT_SECONDS.length - 1) continue;
+                appendUnit(count, i, sb);
+                
+                // Show the next smaller unit too, unless it's zero
+                if(i + 1 < UNIT_SECONDS.length)
+                {
+                    long next = left % UNIT_SECONDS[i] / UNIT_SECONDS[i + 1];
+                    if(next > 0)
+                    {
+                        sb.append(' ');
+                        appendUnit(next, i + 1, sb);
+                    }
+                }
+                break;
+            }
+            return sb.toString();
+        }
+        
+        private void appendUnit(long count, int unit, StringBuilder out)
+        {
+            String raw = Long.toString(count);
+            if(mGroupDigits) group(raw, mThousandSeparator, mIndianGrouping, out);
+            else out.append(raw);
+            out.append(mUnits[unit]);
+        }
+        
+        /**
+         * Retrieves the duration to format when this formatter is
+         * turned into a string
+         * @return Duration in seconds
+         */
+        protected double getSeconds()
+        {
+            return 0.0;
+        }
+        
+        @Override
+        public String toString()
+        {
+            return format(getSeconds());
+        }
+    }
+    
+    /**
+     * Formats the time it takes until an item can be afforded with the
+     * current income of a currency.
+     */
+    public static class TimeUntilAffordableFormatter extends DurationFormatter
+    {
+        private final Item mItem;
+        private final Currency mCurrency;
+        
+        private TimeUntilAffordableFormatter(Builder builder, String[] units, String never, Item item, Currency currency)
+        {
+            super(builder, units, never);
+            mItem = item;
+            mCurrency = currency;
+        }
+        
+        @Override
+        protected double getSeconds()
+        {
+            return mItem.timeUntilAffordable(mCurrency);
+        }
+    }
+    
+    /**
+     * Formats a batch of values (currencies, item prices or plain values)
+     * in one pass. The values share one scratch buffer and the results
+     * are written into a reusable array, which makes it cheap to refresh
+     * a whole HUD every frame.
+     */
+    public static class BatchFormatter extends Formatter
+    {
+        private final ArrayList<Supplier<BigInteger>> mSources = new ArrayList<>();
+        private final StringBuilder mScratch = new StringBuilder();
+        private String[] mResults = new String[0];
+        
+        private BatchFormatter(Builder builder)
+        {
+            super(builder);
+        }
+        
+        /**
+         * Adds a currency to the batch
+         * @param currency Currency to format
+         * @return Index of the currency in the results
+         */
+        public int add(Currency currency)
+        {
+            if(currency == null) throw new IllegalArgumentException("Currency cannot be null");
+            return addSource(currency::getValue);
+        }
+        
+        /**
+         * Adds the price of an item to the batch
+         * @param item Item whose price to format
+         * @return Index of the price in the results
+         */
+        public int addPrice(Item item)
+        {
+            if(item == null) throw new IllegalArgumentException("Item cannot be null");
+            return addSource(item::getPrice);
+        }
+        
+        /**
+         * Adds all the currencies of a world to the batch
+         * @param world World whose currencies to format
+         */
+        public void addCurrencies(World world)
+        {
+            for(Currency c : world.getCurrencies())
+            {
+                add(c);
+            }
+        }
+        
+        private int addSource(Supplier<BigInteger> source)
+        {
+            mSources.add(source);
+            return mSources.size() - 1;
+        }
+        
+        /**
+         * Retrieves the number of values in this batch
+         * @return Number of values
+         */
+        public int size()
+        {
+            return mSources.size();
+        }
+        
+        /**
+         * Formats all the values in this batch. The returned array is
+         * reused by the following calls, so copy it if you need to keep
+         * the old results around.
+         * 
+         * @return Formatted values in the order they were added
+         */
+        public String[] formatAll()
+        {
+            int count = mSources.size();
+            if(mResults.length != count) mResults = new String[count];
+            
+            for(int i = 0; i < count; ++i)
+            {
+                mScratch.setLength(0);
+                appendValue(mSources.get(i).get(), mScratch);
+                mResults[i] = mScratch.toString();
+            }
+            return mResults;
+        }
+        
+        /**
+         * Formats the given values into the given array, reusing the
+         * scratch buffer of this batch.
+         * 
+         * @param values Values to format
+         * @param results Array to write the results to, at least as long as the list
+         */
+        public void formatAll(List<BigInteger> values, String[] results)
+        {
+            for(int i = 0; i < values.size(); ++i)
+            {
+                mScratch.setLength(0);
+                appendValue(values.get(i), mScratch);
+                results[i] = mScratch.toString();
+            }
+        }
+        
+        @Override
+        public String toString()
+        {
+            return Arrays.toString(formatAll());
+        }
+    }
+    
+    protected final boolean mGroupDigits;
+    protected final String mThousandSeparator;
+    protected final boolean mIndianGrouping;
+    protected final boolean mShowDecimals;
+    protected final int mDecimals;
+    protected final String mDecimalSeparator;
+    protected final boolean mCutAtHighest;
+    protected final String[] mAbbreviations;
+    
+    protected Formatter(Builder builder)
+    {
+        mGroupDigits = builder.mGroupDigits;
+        mThousandSeparator = builder.mThousandSeparator;
+        mIndianGrouping = builder.mIndianGrouping;
+        mShowDecimals = builder.mShowDecimals;
+        mDecimals = builder.mDecimals;
+        mDecimalSeparator = builder.mDecimalSeparator;
+        mCutAtHighest = builder.mCutAtHighest;
+        mAbbreviations = builder.mAbbreviations;
+    }
+    
+    public static class ForItemPrice extends Builder
+    {
+        private Item mItem;
+        
+        public ForItemPrice(Item item)
+        {
+            mItem = item;
+        }
+        
+        @Override
+        public ItemPriceFormatter build()
+        {
+            return new ItemPriceFormatter(this, mItem);
+        }
+    }
+    
+    public static class ForCurrency extends Builder
+    {
+        private Currency mCurrency;
+        
+        public ForCurrency(Currency c)
+        {
+            mCurrency = c;
+        }
+        
+        public CurrencyFormatter build()
+        {
+            return new CurrencyFormatter(this, mCurrency);
+        }
+    }
+    
+    public static class ForRate extends Builder
+    {
+        private final Currency mCurrency;
+        private String mSuffix = "/s";
+        
+        public ForRate(Currency c)
+        {
+            if(c == null) throw new IllegalArgumentException("Currency cannot be null");
+            mCurrency = c;
+        }
+        
+        /**
+         * Sets the text to append after the rate
+         * @param suffix Suffix, "/s" by default
+         * @return This builder for chaining
+         */
+        public ForRate suffix(String suffix)
+        {
+            mSuffix = suffix != null ? suffix : "";
+            return this;
+        }
+        
+        @Override
+        public ForRate showHighestThousand()
+        {
+            super.showHighestThousand();
+            return this;
+        }
+        
+        @Override
+        public ForRate showFully()
+        {
+            super.showFully();
+            return this;
+        }
+        
+        @Override
+        public ForRate groupDigits()
+        {
+            super.groupDigits();
+            return this;
+        }
+        
+        @Override
+        public ForRate groupDigits(String separator)
+        {
+            super.groupDigits(separator);
+            return this;
+        }
+        
+        @Override
+        public ForRate groupDigits(Locale locale)
+        {
+            super.groupDigits(locale);
+            return this;
+        }
+        
+        @Override
+        public ForRate groupDigitsIndian()
+        {
+            super.groupDigitsIndian();
+            return this;
+        }
+        
+        @Override
+        public ForRate groupDigitsIndian(String separator)
+        {
+            super.groupDigitsIndian(separator);
+            return this;
+        }
+        
+        @Override
+        public ForRate dontGroupDigits()
+        {
+            super.dontGroupDigits();
+            return this;
+        }
+        
+        @Override
+        public ForRate showDecimals()
+        {
+            super.showDecimals();
+            return this;
+        }
+        
+        @Override
+        public ForRate showDecimals(int count)
+        {
+            super.showDecimals(count);
+            return this;
+        }
+        
+        @Override
+        public ForRate showDecimals(String separator)
+        {
+            super.showDecimals(separator);
+            return this;
+        }
+        
+        @Override
+        public ForRate showDecimals(int count, String separator)
+        {
+            super.showDecimals(count, separator);
+            return this;
+        }
+        
+        @Override
+        public ForRate dontShowDecimals()
+        {
+            super.dontShowDecimals();
+            return this;
+        }
+        
+        @Override
+        public ForRate useAbbreviations(String[] abbreviations)
+        {
+            super.useAbbreviations(abbreviations);
+            return this;
+        }
+        
+        @Override
+        public RateFormatter build()
+        {
+            return new RateFormatter(this, mCurrency, mSuffix);
+        }
+    }
+    
+    public static class ForDuration extends Builder
+    {
+        String[] mUnits = { "d", "h", "m", "s" };
+        String mNever = "never";
+        
+        public ForDuration()
+        {
+            
+        }
+        
+        /**
+         * Sets the unit names for days, hours, minutes and seconds
+         * @param days Unit name for days
+         * @param hours Unit name for hours
+         * @param minutes Unit name for minutes
+         * @param seconds Unit name for seconds
+         * @return This builder for chaining
+         */
+        public ForDuration units(String days, String hours, String minutes, String seconds)
+        {
+            mUnits = new String[] { days, hours, minutes, seconds };
+            return this;
+        }
+        
+        /**
+         * Sets the text to show for infinite durations
+         * @param never Text to show, "never" by default
+         * @return This builder for chaining
+         */
+        public ForDuration never(String never)
+        {
+            mNever = never;
+            return this;
+        }
+        
+        @Override
+        public ForDuration showHighestThousand()
+        {
+            super.showHighestThousand();
+            return this;
+        }
+        
+        @Override
+        public ForDuration showFully()
+        {
+            super.showFully();
+            return this;
+        }
+        
+        @Override
+        public ForDuration groupDigits()
+        {
+            super.groupDigits();
+            return this;
+        }
+        
+        @Override
+        public ForDuration groupDigits(String separator)
+        {
+            super.groupDigits(separator);
+            return this;
+        }
+        
+        @Override
+        public ForDuration groupDigits(Locale locale)
+        {
+            super.groupDigits(locale);
+            return this;
+        }
+        
+        @Override
+        public ForDuration groupDigitsIndian()
+        {
+            super.groupDigitsIndian();
+            return this;
+        }
+        
+        @Override
+        public ForDuration groupDigitsIndian(String separator)
+        {
+            super.groupDigitsIndian(separator);
+            return this;
+        }
+        
+        @Override
+        public ForDuration dontGroupDigits()
+        {
+            super.dontGroupDigits();
+            return this;
+        }
+        
+        @Override
+        public ForDuration showDecimals()
+        {
+            super.showDecimals();
+            return this;
+        }
+        
+        @Override
+        public ForDuration showDecimals(int count)
+        {
+            super.showDecimals(count);
+            return this;
+        }
+        
+        @Override
+        public ForDuration showDecimals(String separator)
+        {
+            super.showDecimals(separator);
+            return this;
+        }
+        
+        @Override
+        public ForDuration showDecimals(int count, String separator)
+        {
+            super.showDecimals(count, separator);
+            return this;
+        }
+        
+        @Override
+        public ForDuration dontShowDecimals()
+        {
+            super.dontShowDecimals();
+            return this;
+        }
+        
+        @Override
+        public ForDuration useAbbreviations(String[] abbreviations)
+        {
+            super.useAbbreviations(abbreviations);
+            return this;
+        }
+        
+        @Override
+        public DurationFormatter build()
+        {
+            return new DurationFormatter(this, mUnits, mNever);
+        }
+    }
+    
+    public static class ForTimeUntilAffordable extends ForDuration
+    {
+        private final Item mItem;
+        private final Currency mCurrency;
+        
+        public ForTimeUntilAffordable(Item item, Currency c)
+        {
+            if(item == null) throw new IllegalArgumentException("Item cannot be null");
+            if(c == null) throw new IllegalArgumentException("Currency cannot be null");
+            mItem = item;
+            mCurrency = c;
+        }
+        
+        @Override
+        public ForTimeUntilAffordable showHighestThousand()
+        {
+            super.showHighestThousand();
+            return this;
+        }
+        
+        @Override
+        public ForTimeUntilAffordable showFully()
+        {
+            super.showFully();
+            return this;
+        }
+        
+        @Override
+        public ForTimeUntilAffordable groupDigits()
+        {
+            super.groupDigits();
+            return this;
+        }
+        
+        @Override
+        public ForTimeUntilAffordable groupDigits(String separator)
+        {
+            super.groupDigits(separator);
+            return this;
+        }
+        
+        @Override
+        public ForTimeUntilAffordable groupDigits(Locale locale)
+        {
+            super.groupDigits(locale);
+            return this;
+        }
+        
+        @Override
+        public ForTimeUntilAffordable groupDigitsIndian()
+        {
+            super.groupDigitsIndian();
+            return this;
+        }
+        
+        @Override
+        public ForTimeUntilAffordable groupDigitsIndian(String separator)
+        {
+            super.groupDigitsIndian(separator);
+            return this;
+        }
+        
+        @Override
+        public ForTimeUntilAffordable dontGroupDigits()
+        {
+            super.dontGroupDigits();
+            return this;
+        }
+        
+        @Override
+        public ForTimeUntilAffordable showDecimals()
+        {
+            super.showDecimals();
+            return this;
+        }
+        
+        @Override
+        public ForTimeUntilAffordable showDecimals(int count)
+        {
+            super.showDecimals(count);
+            return this;
+        }
+        
+        @Override
+        public ForTimeUntilAffordable showDecimals(String separator)
+        {
+            super.showDecimals(separator);
+            return this;
+        }
+        
+        @Override
+        public ForTimeUntilAffordable showDecimals(int count, String separator)
+        {
+            super.showDecimals(count, separator);
+            return this;
+        }
+        
+        @Override
+        public ForTimeUntilAffordable dontShowDecimals()
+        {
+            super.dontShowDecimals();
+            return this;
+        }
+        
+        @Override
+        public ForTimeUntilAffordable useAbbreviations(String[] abbreviations)
+        {
+            super.useAbbreviations(abbreviations);
+            return this;
+        }
+        
+        @Override
+        public ForTimeUntilAffordable units(String days, String hours, String minutes, String seconds)
+        {
+            super.units(days, hours, minutes, seconds);
+            return this;
+        }
+        
+        @Override
+        public ForTimeUntilAffordable never(String never)
+        {
+            super.never(never);
+            return this;
+        }
+        
+        @Override
+        public TimeUntilAffordableFormatter build()
+        {
+            return new TimeUntilAffordableFormatter(this, mUnits, mNever, mItem, mCurrency);
+        }
+    }
+    
+    /**
+     * Builder for batch formatters. The setters are overridden to return
+     * this type, so build() can be chained to a BatchFormatter directly.
+     */
+    public static class ForBatch extends Builder
+    {
+        public ForBatch()
+        {
+            
+        }
+        
+        @Override
+        public ForBatch showHighestThousand()
+        {
+            super.showHighestThousand();
+            return this;
+        }
+        
+        @Override
+        public ForBatch showFully()
+        {
+            super.showFully();
+            return this;
+        }
+        
+        @Override
+        public ForBatch groupDigits()
+        {
+            super.groupDigits();
+            return this;
+        }
+        
+        @Override
+        public ForBatch groupDigits(String separator)
+        {
+            super.groupDigits(separator);
+            return this;
+        }
+        
+        @Override
+        public ForBatch groupDigits(Locale locale)
+        {
+            super.groupDigits(locale);
+            return this;
+        }
+        
+        @Override
+        public ForBatch groupDigitsIndian()
+        {
+            super.groupDigitsIndian();
+            return this;
+        }
+        
+        @Override
+        public ForBatch groupDigitsIndian(String separator)
+        {
+            super.groupDigitsIndian(separator);
+            return this;
+        }
+        
+        @Override
+        public ForBatch dontGroupDigits()
+        {
+            super.dontGroupDigits();
+            return this;
+        }
+        
+        @Override
+        public ForBatch showDecimals()
+        {
+            super.showDecimals();
+            return this;
+        }
+        
+        @Override
+        public ForBatch showDecimals(int count)
+        {
+            super.showDecimals(count);
+            return this;
+        }
+        
+        @Override
+        public ForBatch showDecimals(String separator)
+        {
+            super.showDecimals(separator);
+            return this;
+        }
+        
+        @Override
+        public ForBatch showDecimals(int count, String separator)
+        {
+            super.showDecimals(count, separator);
+            return this;
+        }
+        
+        @Override
+        public ForBatch dontShowDecimals()
+        {
+            super.dontShowDecimals();
+            return this;
+        }
+        
+        @Override
+        public ForBatch useAbbreviations(String[] abbreviations)
+        {
+            super.useAbbreviations(abbreviations);
+            return this;
+        }
+        
+        @Override
+        public BatchFormatter build()
+        {
+            return new BatchFormatter(this);
+        }
+    }
+    
+    public static abstract class Builder
+    {   
+        private boolean mGroupDigits = true;
+        private String mThousandSeparator = ",";
+        private boolean mIndianGrouping = false;
+        private boolean mShowDecimals = false;
+        private int mDecimals = 2;
+        private String mDecimalSeparator;
+        private boolean mCutAtHighest = true;
+        private String[] mAbbreviations = null;
+        
+        private Builder()
+        {
+            
+        }
+        
+        public Builder showHighestThousand()
+        {
+            mCutAtHighest = true;
+            return this;
+        }
+        
+        public Builder showFully()
+        {
+            mCutAtHighest = false;
+            return this;
+        }
+        
+        public Builder groupDigits() 
+        {
+            return groupDigits(",");
+        }
+        
+        public Builder groupDigits(String separator)
+        {
+            mGroupDigits = true;
+            mThousandSeparator = separator;
+            mIndianGrouping = false;
+            return this;
+        }
+        
+        /**
+         * Groups the digits using the grouping separator of the given locale.
+         * @param locale Locale to take the separator from
+         * @return This builder for chaining
+         */
+        public Builder groupDigits(Locale locale)
+        {
+            if(locale == null) throw new IllegalArgumentException("Locale cannot be null");
+            return groupDigits(String.valueOf(DecimalFormatSymbols.getInstance(locale).getGroupingSeparator()));
+        }
+        
+        /**
+         * Groups the digits in the Indian (lakh) style, i.e. the lowest
+         * group has three digits and the rest have two: 12,34,56,789
+         * @return This builder for chaining
+         */
+        public Builder groupDigitsIndian()
+        {
+            return groupDigitsIndian(",");
+        }
+        
+        /**
+         * Groups the digits in the Indian (lakh) style using the given separator
+         * @param separator Separator to put between the groups
+         * @return This builder for chaining
+         */
+        public Builder groupDigitsIndian(String separator)
+        {
+            groupDigits(separator);
+            mIndianGrouping = true;
+            return this;
+        }
+        
+        public Builder dontGroupDigits()
+        {
+            mGroupDigits = false;
+            mThousandSeparator = null;
+            mIndianGrouping = false;
+            return this;
+        }
+        
+        public Builder showDecimals()
+        {
+            return showDecimals(2, ".");
+        }
+        
+        public Builder showDecimals(int count)
+        {
+            return showDecimals(count, ".");
+        }
+        
+        public Builder showDecimals(String separator)
+        {
+            return showDecimals(2, separator);
+        }
+        
+        public Builder showDecimals(int count, String separator)
+        {
+            mShowDecimals = true;
+            mDecimals = count;
+            mDecimalSeparator = separator;
+            return this;
+        }
+        
+        public Builder dontShowDecimals()
+        {
+            mShowDecimals = false;
+            mDecimals = 0;
+            mDecimalSeparator = null;
+            return this;
+        }
+        
+        public Builder useAbbreviations(String[] abbreviations)
+        {
+            mAbbreviations = abbreviations;
+            return this;
+        }
+        
+        public abstract Formatter build();
+    }
+    
+    
+    
+    private String mRawString = "";
+    
+    public void setRawString(String raw)
+    {
+        mRawString = raw;
+        if(mRawString == null) mRawString = "";
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder();
+        appendRaw(mRawString, sb);
+        return sb.toString();
+    }
+    
+    /**
+     * Formats the given value as per the rules of this formatter
+     * @param value Value to format
+     * @return Formatted value
+     */
+    public String format(BigInteger value)
+    {
+        StringBuilder sb = new StringBuilder();
+        appendValue(value, sb);
+        return sb.toString();
+    }
+    
+    /**
+     * Appends the formatted value to the given buffer. When only the highest
+     * thousand is shown, only the leading digits of the value are converted
+     * to a string.
+     */
+    void appendValue(BigInteger value, StringBuilder out)
+    {
+        if(!mCutAtHighest || value.signum() < 0)
+        {
+            appendRaw(value.toString(), out);
+            return;
+        }
+        
+        int digits = digitCount(value);
+        if(digits < 4)
+        {
+            out.append(value.toString());
+            return;
+        }
+        
+        int lead = leadingDigits(digits);
+        appendHighest(value.divide(powerOfTen(digits - lead)).toString(), digits, out);
+    }
+    
+    private void appendRaw(String raw, StringBuilder out)
+    {
+        if(mCutAtHighest)
+        {
+            appendHighest(raw, raw.length(), out);
+        }
+        else if(mGroupDigits)
+        {
+            group(raw, mThousandSeparator, mIndianGrouping, out);
+        }
+        else
+        {
+            out.append(raw);
+        }
+    }
+    
+    /**
+     * Number of leading digits needed to show the highest thousand
+     * of a value with the given number of digits
+     */
+    private int leadingDigits(int digits)
+    {
+        int rem = digits % 3;
+        rem = rem == 0 ? 3 : rem;
+        return mShowDecimals ? rem + Math.min(mDecimals, digits - rem) : rem;
+    }
+    
+    /**
+     * Appends the highest thousand of a number.
+     * 
+     * @param lead Leading digits of the number, at least as many as needed
+     * @param digits Total number of digits in the number
+     * @param out Buffer to append to
+     */
+    private void appendHighest(String lead, int digits, StringBuilder out)
+    {
+        if(digits < 4)
+        {
+            out.append(lead);
+            return;
+        }
+        
+        int rem = digits % 3;
+        rem = rem == 0 ? 3 : rem;
+        out.append(lead, 0, rem);
+        
+        if(mShowDecimals)
+        {
+            out.append(mDecimalSeparator);
+            int decimals = Math.min(mDecimals, digits - rem);
+            out.append(lead, rem, rem + decimals);
+        }
+        
+        if(mAbbreviations != null)
+        {
+            int tri = (digits - 1) / 3;
+            if(tri > 0 && tri <= mAbbreviations.length)
+            {
+                out.append(mAbbreviations[tri - 1]);
+            }
+        }
+    }
+    
+    /**
+     * Powers of ten shared by all the formatters, grown on demand
+     */
+    private static volatile BigInteger[] sPowersOfTen = { BigInteger.ONE };
+    
+    private static final double LOG10_OF_2 = Math.log10(2.0);
+    
+    /**
+     * Retrieves 10^n from the shared table
+     */
+    static BigInteger powerOfTen(int n)
+    {
+        BigInteger[] powers = sPowersOfTen;
+        if(n < powers.length) return powers[n];
+        
+        synchronized(Formatter.class)
+        {
+            powers = sPowersOfTen;
+            if(n >= powers.length)
+            {
+                BigInteger[] grown = Arrays.copyOf(powers, Math.max(n + 1, powers.length * 2));
+                for(int i = powers.length; i < grown.length; ++i)
+                {
+                    grown[i] = grown[i - 1].multiply(BigInteger.TEN);
+                }
+                sPowersOfTen = grown;
+                powers = grown;
+            }
+        }
+        return powers[n];
+    }
+    
+    /**
+     * Counts the decimal digits of a non-negative value without
+     * converting it to a string
+     */
+    static int digitCount(BigInteger value)
+    {
+        if(value.signum() == 0) return 1;
+        
+        // 2^(bits - 1) <= value < 2^bits, so the estimate is off by one at most
+        int digits = (int)((value.bitLength() - 1) * LOG10_OF_2) + 1;
+        if(value.compareTo(powerOfTen(digits)) >= 0) digits++;
+        return digits;
+    }
+    
+    /**
+     * Inserts the separator between the digit groups of the given raw
+     * number string. The output is built in a single pass into a buffer
+     * of the exact final length.
+     * 
+     * @param raw Raw number string, optionally with a leading minus sign
+     * @param separator Separator to insert between the groups
+     * @param indian Use the Indian (3-2-2...) grouping instead of groups of three
+     * @return The grouped number string
+     */
+    static String group(String raw, String separator, boolean indian)
+    {
+        StringBuilder sb = new StringBuilder();
+        group(raw, separator, indian, sb);
+        return sb.toString();
+    }
+    
+    /**
+     * Appends the grouped number string to the given buffer
+     * @see #group(String, String, boolean)
+     */
+    static void group(String raw, String separator, boolean indian, StringBuilder out)
+    {
+        int start = raw.startsWith("-") ? 1 : 0;
+        int digits = raw.length() - start;
+        if(digits <= 3 || separator == null || separator.isEmpty())
+        {
+            out.append(raw);
+            return;
+        }
+        
+        int groups = indian ? 1 + (digits - 2) / 2 : (digits + 2) / 3;
+        out.ensureCapacity(out.length() + raw.length() + (groups - 1) * separator.length());
+        
+        // The first group takes whatever is left over from the full groups
+        int head = indian ? (digits - 3) % 2 : digits % 3;
+        if(head == 0) head = indian ? 2 : 3;
+        int pos = start + head;
+        out.append(raw, 0, pos);
+        
+        // In the Indian style, only the last group has three digits
+        int last = raw.length() - 3;
+        while(pos < raw.length())
+        {
+            int size = indian && pos < last ? 2 : 3;
+            out.append(separator).append(raw, pos, pos + size);
+            pos += size;
+        }
+    }
+}
@@ -1,462 +1,1044 @@
-/*
- * The MIT License
- *
- * Copyright 2015 Harri Pellikka.
- *
- * Permission is hereby granted, free of charge, to any person obtaining a copy
- * of this software and associated documentation files (the "Software"), to deal
- * in the Software without restriction, including without limitation the rights
- * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
- * copies of the Software, and to permit persons to whom the Software is
- * furnished to do so, subject to the following conditions:
- *
- * The above copyright notice and this permission notice shall be included in
- * all copies or substantial portions of the Software.
- *
- * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
- * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
- * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
- * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
- * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
- * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
- * THE SOFTWARE.
- */
-package com.manabreak.libclicker;
-
-import com.manabreak.libclicker.Modifier.GeneratorModifier;
-import java.io.Serializable;
-import java.math.BigDecimal;
-import java.math.BigInteger;
-import java.util.ArrayList;
-import java.util.Random;
-
-/**
- * A base class for all the generators.
- * 
- * Generators are used to produce resources (currencies), and
- * can be controlled either manually or automatically by using
- * an Automator.
- *
- * @author Harri Pellikka
- */
-public class Generator extends Item implements Serializable
-{
-    public interface Callback
-    {
-        void onProcessed();
-    }
-    
-    /**
-     * Callback for extended functionality
-     */
-    private Callback mCallback = null;
-    
-    /**
-     * Currency this generator should generate
-     */
-    private Currency mCurrency;
-    
-    /**
-     * How many times this generator has been processed
-     */
-    private long mTimesProcessed = 0;
-    
-    /**
-     * Base amount of resources this generator generates
-     */
-    private BigInteger mBaseAmount;
-    
-    /**
-     * Multiplier used to increase the amount of resources generated
-     * when this generator is upgraded
-     */
-    private double mAmountMultiplier;
-    
-    /**
-     * Probability for this generator to "work"
-     */
-    private double mProbability;
-    
-    /**
-     * Should this generator use probability?
-     */
-    private boolean mUseProbability;
-    
-    /**
-     * RNG for probability
-     */
-    private Random mRandom;
-    
-    /**
-     * Should we take remainders into consideration?
-     */
-    private boolean mUseRemainder;
-    
-    /**
-     * Remainder of the last processing cycle
-     */
-    private double mRemainder;
-    
-    /**
-     * Cooldown time between processing cycles.
-     */
-    private double mCooldown;
-    
-    /**
-     * List of active modifiers attached to this generator
-     */
-    private ArrayList<GeneratorModifier> mModifiers = new ArrayList<>();
-    
-    /**
-     * Builder class for creating new generators
-     */
-    public static class Builder
-    {
-        private final World mWorld;
-        private String mName = "Nameless generator";
-        private Callback mOnProcessed = null;
-        private Currency mCurrency = null;
-        private BigInteger mBaseAmount = BigInteger.ONE;
-        private double mAmountMultiplier = 1.1;
-        private long mMaxLevel = Long.MAX_VALUE;
-        private BigInteger mBasePrice = BigInteger.ONE;
-        private double mPriceMultiplier = 1.1;
-        private double mProbability = 1.0;
-        private boolean mProbabilitySet = false;
-        private boolean mUseRemainder = true;
-        private double mCooldown = 0.0;
-        /**
-         * Creates a new generator builder
-         * @param world World to build the generator into
-         */
-        public Builder(World world)
-        {
-            mWorld = world;
-        }
-        
-        public Builder cooldown(double cooldown)
-        {
-            mCooldown = cooldown;
-            return this;
-        }
-        
-        /**
-         * Store remainder of resources and add an extra
-         * when the remainder "overflows"
-         * @return This builder for chaining
-         */
-        public Builder useRemainder()
-        {
-            mUseRemainder = true;
-            return this;
-        }
-        
-        /**
-         * Discard remainder of resources when generating.
-         * @return This builder for chaining
-         */
-        public Builder discardRemainder()
-        {
-            mUseRemainder = false;
-            return this;
-        }
-        
-        /**
-         * Sets the name for the generator
-         * @param name Name for the generator
-         * @return This builder for chaining
-         */
-        public Builder name(String name)
-        {
-            mName = name;
-            return this;
-        }
-        
-        /**
-         * Sets the multiplier for resource generation. This multiplier
-         * is used in the formula (amount) = (base amount) * (multiplier) ^ (level)
-         * @param multiplier Amount generation multiplier per level
-         * @return This builder for chaining
-         */
-        public Builder multiplier(double multiplier)
-        {
-            mAmountMultiplier = multiplier;
-            return this;
-        }
-        
-        /**
-         * Sets the maximum allowed level for this generator. The max level must
-         * be greated than zero.
-         * @param maxLevel Maximum allowed level for this generator
-         * @return This builder for chaining
-         */
-        public Builder maxLevel(long maxLevel)
-        {
-            if(maxLevel <= 0) throw new IllegalArgumentException("Max level must be greater than 0");
-            mMaxLevel = maxLevel;
-            return this;
-        }
-        
-        /**
-         * Sets the base amount of resources generated by this generator.
-         * This is the amount the generator generates at level 1 and is used
-         * as the base for the higher levels.
-         * @param amount Base amount of resources generated at level 1
-         * @return This builder for chaining
-         */
-        public Builder baseAmount(BigInteger amount)
-        {
-            if(amount == null) throw new IllegalArgumentException("Base amount cannot be null");
-            mBaseAmount = amount;
-            return this;
-        }
-        
-        /**
-         * Sets the base amount of resources generated by this generator.
-         * This is the amount the generator generates at level 1 and is used
-         * as the base for the higher levels.
-         * @param amount Base amount of resources generated at level 1
-         * @return This builder for chaining
-         */
-        public Builder baseAmount(long amount)
-        {
-            mBaseAmount = new BigInteger("" + amount);
-            return this;
-        }
-        
-        /**
-         * Sets the base amount of resources generated by this generator.
-         * This is the amount the generator generates at level 1 and is used
-         * as the base for the higher levels.
-         * @param amount Base amount of resources generated at level 1
-         * @return This builder for chaining
-         */
-        public Builder baseAmount(int amount)
-        {
-            mBaseAmount = new BigInteger("" + amount);
-            return this;
-        }
-        
-        /**
-         * Sets the currency that should be generated by the generator.
-         * @param c Currency to generate
-         * @return This builder for chaining
-         * @throws IllegalArgumentException Thrown if the currency is null
-         */
-        public Builder generate(Currency c) throws IllegalArgumentException
-        {
-            if(c == null) throw new IllegalArgumentException("Currency cannot be null");
-            mCurrency = c;
-            return this;
-        }
-        
-        /**
-         * Sets a callback for the generator to be called when the generator
-         * has finished its processing cycle (i.e. has generated something).
-         * @param callback Callback to call after generating something
-         * @return This builder for chaining
-         */
-        public Builder callback(Callback callback)
-        {
-            mOnProcessed = callback;
-            return this;
-        }
-        
-        public Builder price(BigInteger price)
-        {
-            mBasePrice = price;
-            return this;
-        }
-        
-        public Builder price(long price)
-        {
-            mBasePrice = new BigInteger("" + price);
-            return this;
-        }
-        
-        public Builder price(int price)
-        {
-            mBasePrice = new BigInteger("" + price);
-            return this;
-        }
-        
-        public Builder priceMultiplier(double multiplier)
-        {
-            mPriceMultiplier = multiplier;
-            return this;
-        }
-        
-        /**
-         * Set a probability for this generator to "work" when it's processed
-         * @param probability Probability percentage (between 0.0 and 1.0)
-         * @return This builder for chaining
-         */
-        public Builder probability(double probability)
-        {
-            if(probability < 0 || probability > 1.0) throw new IllegalArgumentException("Probability should be between 0.0 and 1.0");
-            mProbability = probability;
-            mProbabilitySet = true;
-            return this;
-        }
-        
-        /**
-         * Constructs the generator based on the given parameters
-         * @return The generator
-         */
-        public Generator build()
-        {
-            Generator g = new Generator(mWorld, mName);
-            g.mCallback = mOnProcessed;
-            g.mCurrency = mCurrency;
-            g.mAmountMultiplier = mAmountMultiplier;
-            g.mBaseAmount = mBaseAmount;
-            g.mMaxItemLevel = mMaxLevel;
-            g.mBasePrice = mBasePrice;
-            g.mPriceMultiplier = mPriceMultiplier;
-            g.mProbability = mProbability;
-            g.mUseProbability = mProbabilitySet;
-            g.mRandom = new Random();
-            g.mRandom.setSeed(g.hashCode());
-            g.mUseRemainder = mUseRemainder;
-            g.mCooldown = mCooldown;
-            mWorld.addGenerator(g);
-            return g;
-        }
-    }
-    
-    /**
-     * Constructs a new generator
-     */
-    private Generator(World world)
-    {
-        super(world);
-    }
-    
-    /**
-     * Constructs a new generator
-     * @param name Name of this generator
-     */
-    private Generator(World world, String name)
-    {
-        super(world, name);
-    }
-
-    /**
-     * Upgrades this generator by one level
-     */
-    public void upgrade()
-    {
-        if(mItemLevel < mMaxItemLevel)
-        {
-            mItemLevel++;
-        }
-    }
-    
-    /**
-     * Downgrades this generator by one level
-     */
-    public void downgrade()
-    {
-        if(mItemLevel > 0)
-        {
-            mItemLevel--;
-        }
-    }
-    
-    /**
-     * Retrieves the amount this generator currently is generating per
-     * processing cycle
-     * @return Amount of resources generated by this generator
-     */
-    public BigInteger getGeneratedAmount()
-    {
-        if(mItemLevel == 0) return BigInteger.ZERO;
-        
-        BigDecimal tmp = new BigDecimal(mBaseAmount);
-        tmp = tmp.multiply(new BigDecimal(Math.pow(mAmountMultiplier, mItemLevel - 1)));
-        if(mUseRemainder)
-        {
-            double tmpRem = tmp.remainder(BigDecimal.ONE).doubleValue();
-            mRemainder += tmpRem;
-            if(mRemainder >= 0.999)
-            {
-                mRemainder -= 1.0;
-                tmp = tmp.add(new BigDecimal(1));
-            }
-        }
-        
-        tmp = processModifiers(tmp);
-        
-        return tmp.toBigInteger();
-    }
-    
-    private BigDecimal processModifiers(BigDecimal val)
-    {
-        if(mModifiers.size() == 0) return val;
-        
-        for(GeneratorModifier m : mModifiers)
-        {
-            double d = m.getMultiplier();
-            if(d != 1.0)
-            {
-                val = val.multiply(new BigDecimal(d));
-            }
-        }
-        
-        return val;
-    }
-    
-    /**
-     * Determines if this generator should generate anything based on its
-     * properties such as item level and probability.
-     * 
-     * @return True if should work, false otherwise
-     */
-    private boolean isWorking()
-    {
-        if(mItemLevel > 0)
-        {
-            if(!mUseProbability || mRandom.nextDouble() < mProbability) return true;
-        }
-        return false;
-    }
-    
-    /**
-     * Processes this generator, generating resources as per the rules
-     * of this generator.
-     */
-    public void process()
-    {
-        if(isWorking())
-        {
-            mCurrency.add(getGeneratedAmount());   
-            mTimesProcessed++;
-            if(mCallback != null) mCallback.onProcessed();
-        }
-    }
-    
-    /**
-     * Retrieves the number of times this generator has done its processing
-     * @return Number of times processed
-     */
-    public long getTimesProcessed()
-    {
-        return mTimesProcessed;
-    }
-    
-    void attachModifier(GeneratorModifier modifier)
-    {
-        if(modifier != null && !mModifiers.contains(modifier))
-        {
-            mModifiers.add(modifier);
-        }
-    }
-    
-    void detachModifier(GeneratorModifier modifier)
-    {
-        if(modifier != null)
-        {
-            mModifiers.remove(modifier);
-        }
-    }
-}
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Harri Pellikka.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.manabreak.libclicker;
+
+import com.manabreak.libclicker.Modifier.GeneratorModifier;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A base class for all the generators.
+ * 
+ * Generators are used to produce resources (currencies), and
+ * can be controlled either manually or automatically by using
+ * an Automator.
+ *
+ * @author Harri Pellikka
+ */
+public class Generator extends Item implements Serializable
+{
+    public interface Callback
+    {
+        void onProcessed();
+        
+        /**
+         * Called once for a batch of processing cycles, e.g. coalesced
+         * clicks. By default calls onProcessed() once per cycle.
+         * @param times Number of processing cycles
+         */
+        default void onProcessed(long times)
+        {
+            for(long i = 0; i < times; ++i)
+            {
+                onProcessed();
+            }
+        }
+    }
+    
+    /**
+     * Callback for extended functionality
+     */
+    private Callback mCallback = null;
+    
+    /**
+     * Currency this generator should generate
+     */
+    private Currency mCurrency;
+    
+    /**
+     * How many times this generator has been processed
+     */
+    private long mTimesProcessed = 0;
+    
+    /**
+     * Base amount of resources this generator generates
+     */
+    private BigInteger mBaseAmount;
+    
+    /**
+     * Multiplier used to increase the amount of resources generated
+     * when this generator is upgraded
+     */
+    private double mAmountMultiplier;
+    
+    /**
+     * Curve of the generated amount over the levels, or null for the
+     * exponential curve of the amount multiplier
+     */
+    private Curve mAmountCurve;
+    
+    /**
+     * Probability for this generator to "work"
+     */
+    private double mProbability;
+    
+    /**
+     * Should this generator use probability?
+     */
+    private boolean mUseProbability;
+    
+    /**
+     * RNG for probability
+     */
+    private Random mRandom;
+    
+    /**
+     * Should we take remainders into consideration?
+     */
+    private boolean mUseRemainder;
+    
+    /**
+     * Remainder of the last processing cycle. Kept exact, so that a
+     * batch of cycles carries over exactly as the cycles one by one.
+     */
+    private BigDecimal mRemainder = BigDecimal.ZERO;
+    
+    /**
+     * The remainder overflows when it reaches this
+     */
+    private static final BigDecimal OVERFLOW = new BigDecimal("0.999");
+    
+    /**
+     * Cooldown time between processing cycles.
+     */
+    private double mCooldown;
+    
+    /**
+     * World time at which the cooldown is over
+     */
+    private double mReadyAt = Double.NEGATIVE_INFINITY;
+    
+    /**
+     * Currencies consumed per processing cycle, or null if this generator
+     * isn't a converter
+     */
+    private Currency[] mInputs = null;
+    
+    /**
+     * Amount of each input consumed per cycle at level one
+     */
+    private BigInteger[] mInputAmounts = null;
+    
+    /**
+     * List of active modifiers attached to this generator
+     */
+    private final ItemGroup<GeneratorModifier> mModifiers = new ItemGroup<>();
+    
+    /**
+     * Enabled automators automating this generator
+     */
+    private final ItemGroup<Automator> mAutomators = new ItemGroup<>();
+    
+    /**
+     * Builder class for creating new generators
+     */
+    public static class Builder
+    {
+        private final World mWorld;
+        private String mName = "Nameless generator";
+        private Callback mOnProcessed = null;
+        private Currency mCurrency = null;
+        private BigInteger mBaseAmount = BigInteger.ONE;
+        private double mAmountMultiplier = 1.1;
+        private Curve mAmountCurve = null;
+        private long mMaxLevel = Long.MAX_VALUE;
+        private BigInteger mBasePrice = BigInteger.ONE;
+        private double mPriceMultiplier = 1.1;
+        private Curve mPriceCurve = null;
+        private final ArrayList<Item.Cost> mCosts = new ArrayList<>();
+        private double mProbability = 1.0;
+        private boolean mProbabilitySet = false;
+        private boolean mUseRemainder = true;
+        private double mCooldown = 0.0;
+        private final ArrayList<Currency> mInputs = new ArrayList<>();
+        private final ArrayList<BigInteger> mInputAmounts = new ArrayList<>();
+        /**
+         * Creates a new generator builder
+         * @param world World to build the generator into
+         */
+        public Builder(World world)
+        {
+            mWorld = world;
+        }
+        
+        /**
+         * Sets the cooldown of the generator, i.e. the world time that has
+         * to pass after processing before the generator can process again.
+         * Processing during the cooldown does nothing, whether it is a
+         * manual click or a tick of an automator.
+         * @param cooldown Cooldown in seconds
+         * @return This builder for chaining
+         */
+        public Builder cooldown(double cooldown)
+        {
+            if(cooldown < 0.0) throw new IllegalArgumentException("Cooldown cannot be negative");
+            mCooldown = cooldown;
+            return this;
+        }
+        
+        /**
+         * Makes the generator a converter that consumes the given amount
+         * of a currency on each processing cycle. The amount grows with
+         * the level like the generated amount, before the modifiers. A
+         * converter that can't pay all its inputs doesn't process.
+         * @param currency Currency to consume
+         * @param amount Amount consumed per cycle at level one
+         * @return This builder for chaining
+         */
+        public Builder consume(Currency currency, BigInteger amount)
+        {
+            if(currency == null) throw new IllegalArgumentException("Currency cannot be null");
+            if(amount == null || amount.signum() <= 0) throw new IllegalArgumentException("Amount must be positive");
+            mInputs.add(currency);
+            mInputAmounts.add(amount);
+            return this;
+        }
+        
+        public Builder consume(Currency currency, long amount)
+        {
+            return consume(currency, BigInteger.valueOf(amount));
+        }
+        
+        /**
+         * Store remainder of resources and add an extra
+         * when the remainder "overflows"
+         * @return This builder for chaining
+         */
+        public Builder useRemainder()
+        {
+            mUseRemainder = true;
+            return this;
+        }
+        
+        /**
+         * Discard remainder of resources when generating.
+         * @return This builder for chaining
+         */
+        public Builder discardRemainder()
+        {
+            mUseRemainder = false;
+            return this;
+        }
+        
+        /**
+         * Sets the name for the generator
+         * @param name Name for the generator
+         * @return This builder for chaining
+         */
+        public Builder name(String name)
+        {
+            mName = name;
+            return this;
+        }
+        
+        /**
+         * Sets the multiplier for resource generation. This multiplier
+         * is used in the formula (amount) = (base amount) * (multiplier) ^ (level)
+         * @param multiplier Amount generation multiplier per level
+         * @return This builder for chaining
+         */
+        public Builder multiplier(double multiplier)
+        {
+            mAmountMultiplier = multiplier;
+            mAmountCurve = null;
+            return this;
+        }
+        
+        /**
+         * Sets the curve of the generated amount over the levels. The
+         * amount at level n is the base amount times the curve at n - 1.
+         * Replaces the multiplier.
+         * @param curve Amount curve
+         * @return This builder for chaining
+         */
+        public Builder amountCurve(Curve curve)
+        {
+            if(curve == null) throw new IllegalArgumentException("Curve cannot be null");
+            mAmountCurve = curve;
+            return this;
+        }
+        
+        /**
+         * Sets the curve of the price over the levels. Replaces the
+         * price multiplier.
+         * @param curve Price curve
+         * @return This builder for chaining
+         */
+        public Builder priceCurve(Curve curve)
+        {
+            if(curve == null) throw new IllegalArgumentException("Curve cannot be null");
+            mPriceCurve = curve;
+            return this;
+        }
+        
+        /**
+         * Sets the maximum allowed level for this generator. The max level must
+         * be greated than zero.
+         * @param maxLevel Maximum allowed level for this generator
+         * @return This builder for chaining
+         */
+        public Builder maxLevel(long maxLevel)
+        {
+            if(maxLevel <= 0) throw new IllegalArgumentException("Max level must be greater than 0");
+            mMaxLevel = maxLevel;
+            return this;
+        }
+        
+        /**
+         * Sets the base amount of resources generated by this generator.
+         * This is the amount the generator generates at level 1 and is used
+         * as the base for the higher levels.
+         * @param amount Base amount of resources generated at level 1
+         * @return This builder for chaining
+         */
+        public Builder baseAmount(BigInteger amount)
+        {
+            if(amount == null) throw new IllegalArgumentException("Base amount cannot be null");
+            mBaseAmount = amount;
+            return this;
+        }
+        
+        /**
+         * Sets the base amount of resources generated by this generator.
+         * This is the amount the generator generates at level 1 and is used
+         * as the base for the higher levels.
+         * @param amount Base amount of resources generated at level 1
+         * @return This builder for chaining
+         */
+        public Builder baseAmount(long amount)
+        {
+            mBaseAmount = new BigInteger("" + amount);
+            return this;
+        }
+        
+        /**
+         * Sets the base amount of resources generated by this generator.
+         * This is the amount the generator generates at level 1 and is used
+         * as the base for the higher levels.
+         * @param amount Base amount of resources generated at level 1
+         * @return This builder for chaining
+         */
+        public Builder baseAmount(int amount)
+        {
+            mBaseAmount = new BigInteger("" + amount);
+            return this;
+        }
+        
+        /**
+         * Sets the currency that should be generated by the generator.
+         * @param c Currency to generate
+         * @return This builder for chaining
+         * @throws IllegalArgumentException Thrown if the currency is null
+         */
+        public Builder generate(Currency c) throws IllegalArgumentException
+        {
+            if(c == null) throw new IllegalArgumentException("Currency cannot be null");
+            mCurrency = c;
+            return this;
+        }
+        
+        /**
+         * Sets a callback for the generator to be called when the generator
+         * has finished its processing cycle (i.e. has generated something).
+         * @param callback Callback to call after generating something
+         * @return This builder for chaining
+         */
+        public Builder callback(Callback callback)
+        {
+            mOnProcessed = callback;
+            return this;
+        }
+        
+        public Builder price(BigInteger price)
+        {
+            mBasePrice = price;
+            return this;
+        }
+        
+        public Builder price(long price)
+        {
+            mBasePrice = new BigInteger("" + price);
+            return this;
+        }
+        
+        public Builder price(int price)
+        {
+            mBasePrice = new BigInteger("" + price);
+            return this;
+        }
+        
+        /**
+         * Prices the generator in a currency. A generator priced in
+         * several currencies costs all of them at once.
+         * @param currency Currency of the price
+         * @param price Price of the first level
+         * @return This builder for chaining
+         */
+        public Builder price(Currency currency, BigInteger price)
+        {
+            mCosts.add(new Item.Cost(currency, price));
+            return this;
+        }
+        
+        public Builder price(Currency currency, long price)
+        {
+            return price(currency, BigInteger.valueOf(price));
+        }
+        
+        public Builder priceMultiplier(double multiplier)
+        {
+            mPriceMultiplier = multiplier;
+            mPriceCurve = null;
+            return this;
+        }
+        
+        /**
+         * Set a probability for this generator to "work" when it's processed
+         * @param probability Probability percentage (between 0.0 and 1.0)
+         * @return This builder for chaining
+         */
+        public Builder probability(double probability)
+        {
+            if(probability < 0 || probability > 1.0) throw new IllegalArgumentException("Probability should be between 0.0 and 1.0");
+            mProbability = probability;
+            mProbabilitySet = true;
+            return this;
+        }
+        
+        /**
+         * Constructs the generator based on the given parameters
+         * @return The generator
+         */
+        public Generator build()
+        {
+            Generator g = new Generator(mWorld, mName);
+            g.mCallback = mOnProcessed;
+            g.mCurrency = mCurrency;
+            g.mAmountMultiplier = mAmountMultiplier;
+            g.mAmountCurve = mAmountCurve;
+            g.mBaseAmount = mBaseAmount;
+            g.mMaxItemLevel = mMaxLevel;
+            g.mBasePrice = mBasePrice;
+            g.mPriceMultiplier = mPriceMultiplier;
+            g.mPriceCurve = mPriceCurve;
+            g.mProbability = mProbability;
+            g.mUseProbability = mProbabilitySet;
+            g.mRandom = new Random();
+            g.mRandom.setSeed(g.hashCode());
+            g.mUseRemainder = mUseRemainder;
+            g.mCooldown = mCooldown;
+            for(Item.Cost cost : mCosts)
+            {
+                g.setBasePrice(cost.mCurrency, cost.mBasePrice);
+            }
+            if(!mInputs.isEmpty())
+            {
+                g.mInputs = mInputs.toArray(new Currency[mInputs.size()]);
+                g.mInputAmounts = mInputAmounts.toArray(new BigInteger[mInputAmounts.size()]);
+            }
+            mWorld.addGenerator(g);
+            return g;
+        }
+    }
+    
+    /**
+     * Constructs a new generator
+     */
+    private Generator(World world)
+    {
+        super(world);
+    }
+    
+    /**
+     * Constructs a new generator
+     * @param name Name of this generator
+     */
+    private Generator(World world, String name)
+    {
+        super(world, name);
+    }
+
+    /**
+     * Upgrades this generator by one level
+     */
+    public void upgrade()
+    {
+        if(mItemLevel < mMaxItemLevel)
+        {
+            mItemLevel++;
+            onLevelChanged();
+        }
+    }
+    
+    /**
+     * Downgrades this generator by one level
+     */
+    public void downgrade()
+    {
+        if(mItemLevel > 0)
+        {
+            mItemLevel--;
+            onLevelChanged();
+        }
+    }
+    
+    @Override
+    protected void onLevelChanged()
+    {
+        updateIncome();
+        super.onLevelChanged();
+    }
+    
+    @Override
+    protected void onTagsChanged()
+    {
+        updateIncome();
+    }
+    
+    /**
+     * Updates the income of all the automators automating this generator
+     */
+    void updateIncome()
+    {
+        for(Automator a : mAutomators)
+        {
+            getWorld().updateIncome(a);
+        }
+    }
+    
+    /**
+     * Retrieves the amount this generator currently is generating per
+     * processing cycle. When the remainder is in use, the fraction of
+     * the amount is accumulated into the remainder, so this should only
+     * be called when the amount is actually generated.
+     * 
+     * @see #peekGeneratedAmount()
+     * @return Amount of resources generated by this generator
+     */
+    public BigInteger getGeneratedAmount()
+    {
+        return computeGeneratedAmount(true);
+    }
+    
+    /**
+     * Retrieves the amount this generator would generate on its next
+     * processing cycle without changing the state of this generator.
+     * 
+     * @return Amount of resources the next processing cycle would generate
+     */
+    public BigInteger peekGeneratedAmount()
+    {
+        return computeGeneratedAmount(false);
+    }
+    
+    private BigInteger computeGeneratedAmount(boolean consumeRemainder)
+    {
+        if(mItemLevel == 0) return BigInteger.ZERO;
+        
+        BigDecimal tmp = new BigDecimal(mBaseAmount);
+        tmp = tmp.multiply(new BigDecimal(amountFactor(mItemLevel)));
+        if(mUseRemainder)
+        {
+            BigDecimal remainder = mRemainder.add(tmp.remainder(BigDecimal.ONE));
+            if(remainder.compareTo(OVERFLOW) >= 0)
+            {
+                remainder = remainder.subtract(BigDecimal.ONE);
+                tmp = tmp.add(BigDecimal.ONE);
+            }
+            if(consumeRemainder) mRemainder = remainder;
+        }
+        
+        tmp = processModifiers(tmp);
+        
+        return tmp.toBigInteger();
+    }
+    
+    /**
+     * Retrieves the factor of the amount at a level, before the modifiers
+     * @param level Level, one or more
+     * @return Factor multiplying the base amount
+     */
+    private double amountFactor(long level)
+    {
+        return mAmountCurve != null ? mAmountCurve.valueAt(level - 1) : Math.pow(mAmountMultiplier, level - 1);
+    }
+    
+    /**
+     * Retrieves the curve of the generated amount over the levels
+     * @return Amount curve
+     */
+    public Curve getAmountCurve()
+    {
+        return mAmountCurve != null ? mAmountCurve : Curve.exponential(mAmountMultiplier);
+    }
+    
+    /**
+     * Retrieves the average amount this generator produces per processing
+     * cycle, taking probability, modifiers and the remainder into account.
+     * Unlike getGeneratedAmount(), this does not touch the remainder.
+     * 
+     * @return Average amount of resources per processing cycle
+     */
+    BigDecimal getExpectedAmount()
+    {
+        if(mItemLevel == 0) return BigDecimal.ZERO;
+        
+        BigDecimal tmp = new BigDecimal(mBaseAmount);
+        tmp = tmp.multiply(new BigDecimal(amountFactor(mItemLevel)));
+        BigDecimal fraction = tmp.remainder(BigDecimal.ONE);
+        BigDecimal amount = new BigDecimal(processModifiers(tmp).toBigInteger());
+        if(mUseRemainder && fraction.signum() != 0)
+        {
+            // In the long run, the remainder overflows on the given
+            // fraction of the cycles, and those cycles add one unit
+            // before the modifiers and the truncation
+            BigDecimal carried = new BigDecimal(processModifiers(tmp.add(BigDecimal.ONE)).toBigInteger());
+            amount = amount.add(carried.subtract(amount).multiply(fraction));
+        }
+        tmp = amount;
+        if(mUseProbability)
+        {
+            tmp = tmp.multiply(new BigDecimal(mProbability));
+        }
+        return tmp;
+    }
+    
+    /**
+     * Computes the average number of cycles one processing runs, which
+     * is below one for a generator using probability
+     * @return Expected cycles per processing
+     */
+    BigDecimal getExpectedCycles()
+    {
+        if(mItemLevel == 0) return BigDecimal.ZERO;
+        return mUseProbability ? new BigDecimal(mProbability) : BigDecimal.ONE;
+    }
+    
+    /**
+     * Retrieves the currency this generator produces
+     * @return Currency produced by this generator
+     */
+    Currency getCurrency()
+    {
+        return mCurrency;
+    }
+    
+    private BigDecimal processModifiers(BigDecimal val)
+    {
+        for(int i = 0; i < mModifiers.size(); ++i)
+        {
+            double d = mModifiers.get(i).getMultiplier();
+            if(d != 1.0)
+            {
+                val = val.multiply(new BigDecimal(d));
+            }
+        }
+        
+        if(mTags != null)
+        {
+            World world = getWorld();
+            for(int bit = mTags.nextSetBit(0); bit >= 0; bit = mTags.nextSetBit(bit + 1))
+            {
+                double d = world.getTagFactor(bit);
+                if(d != 1.0)
+                {
+                    val = val.multiply(new BigDecimal(d));
+                }
+            }
+        }
+        
+        return val;
+    }
+    
+    /**
+     * Determines if this generator should generate anything based on its
+     * properties such as item level and probability.
+     * 
+     * @return True if should work, false otherwise
+     */
+    private boolean isWorking()
+    {
+        if(mItemLevel > 0)
+        {
+            if(!mUseProbability || mRandom.nextDouble() < mProbability) return true;
+        }
+        return false;
+    }
+    
+    /**
+     * Processes this generator, generating resources as per the rules
+     * of this generator.
+     */
+    public void process()
+    {
+        process(getWorld().getTime());
+    }
+    
+    /**
+     * Processes this generator at the given world time, unless it is
+     * still cooling down
+     * @param time World time of the processing
+     * @return True if the generator was ready, false if it was cooling down
+     */
+    boolean process(double time)
+    {
+        if(mCooldown > 0.0)
+        {
+            if(time < mReadyAt || mItemLevel == 0) return false;
+        }
+        
+        // A converter short of its inputs doesn't start the cooldown
+        boolean working = isWorking();
+        if(working && mInputs != null && consumeInputs(1) == 0) return false;
+        if(mCooldown > 0.0) mReadyAt = time + mCooldown;
+        
+        if(working)
+        {
+            BigInteger amount = getGeneratedAmount();
+            
+            // During an update the event is only collected, so collect it
+            // before the amount can cross a threshold that raises its own
+            EventBus events = getWorld().events();
+            boolean batching = events != null && events.isBatching();
+            if(batching) events.generatorProcessed(this, amount);
+            
+            mCurrency.add(amount);
+            mTimesProcessed++;
+            if(mCallback != null) mCallback.onProcessed();
+            
+            Metrics metrics = getWorld().getMetrics();
+            if(metrics != null) metrics.onGeneratorProcessed(this, mCurrency, amount);
+            
+            if(events != null && !batching) events.generatorProcessed(this, amount);
+        }
+        return true;
+    }
+    
+    /**
+     * Processes this generator as if it was clicked the given number of
+     * times in a row, in one batched step. The result is the same as
+     * calling process() that many times: the successes of a generator
+     * using probability are drawn from the binomial distribution, the
+     * remainder carries over exactly as it would, and the callback, the
+     * metrics and the events are told about all the cycles at once.
+     * A generator with a cooldown processes at most once.
+     * 
+     * @param count Number of clicks
+     * @return Amount produced by the clicks
+     */
+    public BigInteger click(long count)
+    {
+        if(count <= 0 || mItemLevel == 0) return BigInteger.ZERO;
+        if(mCooldown > 0.0 || count == 1)
+        {
+            BigInteger before = mCurrency.getValue();
+            process();
+            return mCurrency.getValue().subtract(before);
+        }
+        
+        long times = mUseProbability ? Binomial.sample(mRandom, count, mProbability) : count;
+        if(times > 0 && mInputs != null) times = consumeInputs(times);
+        if(times == 0) return BigInteger.ZERO;
+        
+        // Each cycle produces either the base amount or, when the
+        // remainder overflows, one more before the modifiers
+        BigDecimal tmp = new BigDecimal(mBaseAmount);
+        tmp = tmp.multiply(new BigDecimal(amountFactor(mItemLevel)));
+        long carries = 0;
+        if(mUseRemainder)
+        {
+            // The remainder stays in [0.999 - 1, 0.999), so the cycles
+            // one by one overflow once for every unit below this
+            BigDecimal total = mRemainder.add(tmp.remainder(BigDecimal.ONE).multiply(BigDecimal.valueOf(times)));
+            carries = total.add(BigDecimal.ONE).subtract(OVERFLOW).setScale(0, RoundingMode.FLOOR).longValue();
+            mRemainder = total.subtract(BigDecimal.valueOf(carries));
+        }
+        
+        BigInteger amount = processModifiers(tmp).toBigInteger().multiply(BigInteger.valueOf(times - carries));
+        if(carries > 0)
+        {
+            BigInteger carried = processModifiers(tmp.add(BigDecimal.ONE)).toBigInteger();
+            amount = amount.add(carried.multiply(BigInteger.valueOf(carries)));
+        }
+        
+        EventBus events = getWorld().events();
+        boolean batching = events != null && events.isBatching();
+        if(batching) events.generatorProcessed(this, amount, times);
+        
+        mCurrency.add(amount);
+        mTimesProcessed += times;
+        if(mCallback != null) mCallback.onProcessed(times);
+        
+        Metrics metrics = getWorld().getMetrics();
+        if(metrics != null) metrics.onGeneratorProcessed(this, mCurrency, amount, times);
+        
+        if(events != null && !batching) events.generatorProcessed(this, amount, times);
+        return amount;
+    }
+    
+    /**
+     * Consumes the inputs of up to the given number of cycles, as many as
+     * all the inputs can pay for
+     * @param times Number of cycles wanted
+     * @return Number of cycles paid for
+     */
+    private long consumeInputs(long times)
+    {
+        BigDecimal level = new BigDecimal(amountFactor(mItemLevel));
+        BigInteger[] amounts = new BigInteger[mInputs.length];
+        BigInteger affordable = BigInteger.valueOf(times);
+        for(int i = 0; i < mInputs.length; ++i)
+        {
+            amounts[i] = new BigDecimal(mInputAmounts[i]).multiply(level).toBigInteger();
+            if(amounts[i].signum() > 0) affordable = affordable.min(mInputs[i].getValue().divide(amounts[i]));
+        }
+        if(affordable.signum() <= 0) return 0;
+        
+        for(int i = 0; i < mInputs.length; ++i)
+        {
+            amounts[i] = amounts[i].multiply(affordable);
+            if(!mInputs[i].trySub(amounts[i]))
+            {
+                // Another thread spent a concurrent input meanwhile
+                for(int j = 0; j < i; ++j)
+                {
+                    mInputs[j].add(amounts[j]);
+                }
+                return 0;
+            }
+        }
+        return affordable.longValue();
+    }
+    
+    /**
+     * Checks whether this generator consumes other currencies
+     * @return True if this generator is a converter
+     */
+    public boolean isConverter()
+    {
+        return mInputs != null;
+    }
+    
+    /**
+     * Retrieves the currencies this generator consumes
+     * @return Input currencies, empty if this generator isn't a converter
+     */
+    public List<Currency> getInputs()
+    {
+        return mInputs != null ? Collections.unmodifiableList(Arrays.asList(mInputs)) : Collections.<Currency>emptyList();
+    }
+    
+    /**
+     * Retrieves the amount of a currency consumed per processing cycle
+     * at the current level
+     * @param currency Input currency
+     * @return Amount consumed per cycle, or zero if the currency isn't
+     * an input of this generator
+     */
+    public BigInteger getInputAmount(Currency currency)
+    {
+        for(int i = 0; mInputs != null && i < mInputs.length; ++i)
+        {
+            if(mInputs[i] == currency)
+            {
+                BigDecimal tmp = new BigDecimal(mInputAmounts[i]);
+                tmp = tmp.multiply(new BigDecimal(amountFactor(Math.max(1, mItemLevel))));
+                return tmp.toBigInteger();
+            }
+        }
+        return BigInteger.ZERO;
+    }
+    
+    Currency[] inputs()
+    {
+        return mInputs;
+    }
+    
+    /**
+     * Retrieves the cooldown of this generator
+     * @return Cooldown in seconds of world time
+     */
+    public double getCooldown()
+    {
+        return mCooldown;
+    }
+    
+    /**
+     * Checks whether this generator is done cooling down
+     * @return True if the generator can process, false otherwise
+     */
+    public boolean isReady()
+    {
+        return getWorld().getTime() >= mReadyAt;
+    }
+    
+    /**
+     * Retrieves the world time left until this generator is done
+     * cooling down
+     * @return Time in seconds, or 0 if the generator is ready
+     */
+    public double getCooldownRemaining()
+    {
+        return Math.max(0.0, mReadyAt - getWorld().getTime());
+    }
+    
+    boolean hasCooldown()
+    {
+        return mCooldown > 0.0;
+    }
+    
+    /**
+     * Retrieves the average time between the processings caused by an
+     * automator ticking at the given rate, taking the cooldown into
+     * account: a tick inside the cooldown is skipped, so the automator
+     * processes on the first tick after the cooldown.
+     * @param tickRate Tick rate of the automator in seconds
+     * @return Time between processings in seconds
+     */
+    double getEffectiveTickRate(double tickRate)
+    {
+        if(mCooldown <= tickRate || tickRate <= 0.0) return tickRate;
+        return tickRate * Math.ceil(mCooldown / tickRate);
+    }
+    
+    /**
+     * Advances all the automators of this generator when it has a
+     * cooldown. The ticks of the automators are merged in time order, so
+     * the cooldown started by one automator gates the ticks of the others,
+     * and the ticks inside a cooldown are skipped in one step, so the cost
+     * depends on the number of processings rather than ticks.
+     * 
+     * @param start World time at the start of the advance
+     * @param delta World time to advance
+     * @return Number of times the automators processed this generator
+     */
+    int updateAutomators(double start, double delta)
+    {
+        int n = mAutomators.size();
+        double[] next = new double[n];
+        int[] fired = new int[n];
+        for(int i = 0; i < n; ++i)
+        {
+            Automator a = mAutomators.get(i);
+            double period = a.getActualTickRate();
+            next[i] = period > 0.0 ? period - a.getTickTimer() : Double.POSITIVE_INFINITY;
+        }
+        
+        int total = 0;
+        while(true)
+        {
+            // Earliest tick within the delta, the first automator on ties
+            int best = -1;
+            for(int i = 0; i < n; ++i)
+            {
+                if(next[i] <= delta && (best < 0 || next[i] < next[best])) best = i;
+            }
+            if(best < 0) break;
+            
+            double period = mAutomators.get(best).getActualTickRate();
+            double time = start + next[best];
+            if(time < mReadyAt)
+            {
+                next[best] += period * Math.max(1.0, Math.ceil((mReadyAt - time) / period));
+                continue;
+            }
+            
+            if(process(time))
+            {
+                fired[best]++;
+                total++;
+            }
+            next[best] += period;
+        }
+        
+        Metrics metrics = getWorld().getMetrics();
+        for(int i = 0; i < n; ++i)
+        {
+            Automator a = mAutomators.get(i);
+            double period = a.getActualTickRate();
+            if(period <= 0.0) continue;
+            a.setTickTimer(delta - next[i] + period);
+            if(metrics != null && fired[i] > 0) metrics.onAutomatorFired(a, fired[i]);
+        }
+        return total;
+    }
+    
+    /**
+     * Retrieves the number of times this generator has done its processing
+     * @return Number of times processed
+     */
+    public long getTimesProcessed()
+    {
+        return mTimesProcessed;
+    }
+    
+    void attachModifier(GeneratorModifier modifier)
+    {
+        if(modifier != null && mModifiers.add(modifier))
+        {
+            updateIncome();
+        }
+    }
+    
+    void detachModifier(GeneratorModifier modifier)
+    {
+        if(modifier != null && mModifiers.remove(modifier))
+        {
+            updateIncome();
+        }
+    }
+    
+    void attachAutomator(Automator automator)
+    {
+        if(automator != null)
+        {
+            mAutomators.add(automator);
+        }
+    }
+    
+    void detachAutomator(Automator automator)
+    {
+        if(automator != null)
+        {
+            mAutomators.remove(automator);
+        }
+    }
+    
+    ItemGroup<Automator> automators()
+    {
+        return mAutomators;
+    }
+    
+    ItemGroup<GeneratorModifier> modifiers()
+    {
+        return mModifiers;
+    }
+}
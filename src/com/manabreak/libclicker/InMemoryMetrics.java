@@ -0,0 +1,248 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Harri Pellikka.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.manabreak.libclicker;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A simple metrics recorder that keeps the measurements in memory.
+ * 
+ * Update latencies are recorded in a histogram with power-of-two buckets:
+ * bucket i counts the updates that took [2^i, 2^(i+1)) nanoseconds.
+ * 
+ * The recorder is not thread-safe; read it on the thread updating
+ * the world, or copy the values out between updates.
+ *
+ * @author Harri Pellikka
+ */
+public class InMemoryMetrics implements Metrics
+{
+    private final long[] mLatencyBuckets = new long[64];
+    private long mUpdates = 0;
+    private long mUpdateNanos = 0;
+    private long mAutomatorFires = 0;
+    private long mGeneratorProcesses = 0;
+    private long mModifierToggles = 0;
+    private final long[] mPurchases = new long[PurchaseResult.values().length];
+    private final HashMap<Automator, Long> mFiresByAutomator = new HashMap<>();
+    private final HashMap<Generator, Long> mProcessesByGenerator = new HashMap<>();
+    private final HashMap<Currency, BigInteger> mProduced = new HashMap<>();
+
+    @Override
+    public void onUpdate(World world, double seconds, int automatorsFired, long nanos)
+    {
+        mUpdates++;
+        mUpdateNanos += nanos;
+        mLatencyBuckets[bucketOf(nanos)]++;
+    }
+
+    @Override
+    public void onAutomatorFired(Automator automator, int times)
+    {
+        mAutomatorFires += times;
+        Long count = mFiresByAutomator.get(automator);
+        mFiresByAutomator.put(automator, count == null ? times : count + times);
+    }
+
+    @Override
+    public void onGeneratorProcessed(Generator generator, Currency currency, BigInteger amount)
+    {
+        onGeneratorProcessed(generator, currency, amount, 1);
+    }
+
+    @Override
+    public void onGeneratorProcessed(Generator generator, Currency currency, BigInteger amount, long times)
+    {
+        mGeneratorProcesses += times;
+        Long count = mProcessesByGenerator.get(generator);
+        mProcessesByGenerator.put(generator, count == null ? times : count + times);
+        BigInteger sum = mProduced.get(currency);
+        mProduced.put(currency, sum == null ? amount : sum.add(amount));
+    }
+
+    @Override
+    public void onPurchase(Item item, PurchaseResult result)
+    {
+        mPurchases[result.ordinal()]++;
+    }
+
+    @Override
+    public void onModifierToggled(Modifier modifier, boolean enabled)
+    {
+        mModifierToggles++;
+    }
+    
+    private static int bucketOf(long nanos)
+    {
+        return nanos <= 0 ? 0 : 63 - Long.numberOfLeadingZeros(nanos);
+    }
+    
+    /**
+     * Retrieves the number of recorded world updates
+     * @return Number of updates
+     */
+    public long getUpdateCount()
+    {
+        return mUpdates;
+    }
+    
+    /**
+     * Retrieves the total time spent in the recorded world updates
+     * @return Total time in nanoseconds
+     */
+    public long getTotalUpdateNanos()
+    {
+        return mUpdateNanos;
+    }
+    
+    /**
+     * Retrieves a copy of the update latency histogram
+     * @return Number of updates per power-of-two nanosecond bucket
+     */
+    public long[] getUpdateLatencyHistogram()
+    {
+        return mLatencyBuckets.clone();
+    }
+    
+    /**
+     * Estimates an update latency percentile from the histogram. The
+     * result is the upper bound of the bucket the percentile falls in.
+     * 
+     * @param percentile Percentile between 0.0 and 1.0
+     * @return Latency in nanoseconds, or 0 if nothing has been recorded
+     */
+    public long getUpdateLatencyPercentile(double percentile)
+    {
+        if(percentile < 0.0 || percentile > 1.0) throw new IllegalArgumentException("Percentile should be between 0.0 and 1.0");
+        if(mUpdates == 0) return 0;
+        
+        long rank = Math.max(1, (long)Math.ceil(percentile * mUpdates));
+        long seen = 0;
+        for(int i = 0; i < mLatencyBuckets.length; ++i)
+        {
+            seen += mLatencyBuckets[i];
+            if(seen >= rank) return i == 63 ? Long.MAX_VALUE : (1L << (i + 1)) - 1;
+        }
+        return Long.MAX_VALUE;
+    }
+    
+    /**
+     * Retrieves the total number of times the automators have fired
+     * @return Number of automator fires
+     */
+    public long getAutomatorFireCount()
+    {
+        return mAutomatorFires;
+    }
+    
+    /**
+     * Retrieves the number of times the given automator has fired
+     * @param automator Automator to query
+     * @return Number of fires
+     */
+    public long getFireCount(Automator automator)
+    {
+        Long count = mFiresByAutomator.get(automator);
+        return count != null ? count : 0;
+    }
+    
+    /**
+     * Retrieves the total number of times the generators have produced something
+     * @return Number of generator processing cycles
+     */
+    public long getGeneratorProcessCount()
+    {
+        return mGeneratorProcesses;
+    }
+    
+    /**
+     * Retrieves the number of times the given generator has produced something
+     * @param generator Generator to query
+     * @return Number of processing cycles
+     */
+    public long getProcessCount(Generator generator)
+    {
+        Long count = mProcessesByGenerator.get(generator);
+        return count != null ? count : 0;
+    }
+    
+    /**
+     * Retrieves the amount of the given currency produced by the generators
+     * @param currency Currency to query
+     * @return Produced amount
+     */
+    public BigInteger getProduced(Currency currency)
+    {
+        BigInteger sum = mProduced.get(currency);
+        return sum != null ? sum : BigInteger.ZERO;
+    }
+    
+    /**
+     * Retrieves the produced amounts of all the currencies
+     * @return Copy of the produced amounts per currency
+     */
+    public Map<Currency, BigInteger> getProduced()
+    {
+        return new HashMap<>(mProduced);
+    }
+    
+    /**
+     * Retrieves the number of purchases with the given result
+     * @param result Purchase result
+     * @return Number of purchases
+     */
+    public long getPurchaseCount(PurchaseResult result)
+    {
+        return mPurchases[result.ordinal()];
+    }
+    
+    /**
+     * Retrieves the number of times modifiers have been enabled or disabled
+     * @return Number of modifier toggles
+     */
+    public long getModifierToggleCount()
+    {
+        return mModifierToggles;
+    }
+    
+    /**
+     * Clears all the recorded measurements
+     */
+    public void reset()
+    {
+        Arrays.fill(mLatencyBuckets, 0);
+        Arrays.fill(mPurchases, 0);
+        mUpdates = 0;
+        mUpdateNanos = 0;
+        mAutomatorFires = 0;
+        mGeneratorProcesses = 0;
+        mModifierToggles = 0;
+        mFiresByAutomator.clear();
+        mProcessesByGenerator.clear();
+        mProduced.clear();
+    }
+}
@@ -1,245 +1,701 @@
-/*
- * The MIT License
- *
- * Copyright 2015 Harri Pellikka.
- *
- * Permission is hereby granted, free of charge, to any person obtaining a copy
- * of this software and associated documentation files (the "Software"), to deal
- * in the Software without restriction, including without limitation the rights
- * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
- * copies of the Software, and to permit persons to whom the Software is
- * furnished to do so, subject to the following conditions:
- *
- * The above copyright notice and this permission notice shall be included in
- * all copies or substantial portions of the Software.
- *
- * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
- * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
- * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
- * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
- * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
- * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
- * THE SOFTWARE.
- */
-package com.manabreak.libclicker;
-
-import java.io.Serializable;
-import java.math.BigDecimal;
-import java.math.BigInteger;
-import java.util.ArrayList;
-
-/**
- * Base class for all the purchasable "items".
- * 
- * @author Harri Pellikka
- */
-public abstract class Item implements Serializable
-{
-    /**
-     * The base price of the item (i.e. the price of the first level of this item)
-     */
-    protected BigInteger mBasePrice = BigInteger.ONE;
-    
-    /**
-     * Name of this item
-     */
-    protected String mName = "Nameless Item";
-    
-    /**
-     * Description text for this item
-     */
-    protected String mDescription = "No description.";
-    
-    /**
-     * Current level of this item
-     */
-    protected long mItemLevel = 0;
-    
-    /**
-     * Max. item level
-     */
-    protected long mMaxItemLevel = Long.MAX_VALUE;
-    
-    /**
-     * Price multiplier per level. This is used in the price formula
-     * like this: price = (base price) * (price multiplier) ^ (item level)
-     */
-    protected double mPriceMultiplier = 1.145;
-    
-    /**
-     * World this item belongs to
-     */
-    private final World mWorld;
-    
-    /**
-     * Modifiers applied to this item
-     */
-    final ArrayList<Modifier> mModifiers = new ArrayList<>();
-    
-    /**
-     * Constructs a new item
-     * @param world World this item belongs to
-     */
-    protected Item(World world)
-    {
-        mWorld = world;
-    }
-    
-    /**
-     * Constructs a new item
-     * @param world World this item belongs to
-     * @param name Name of this item
-     */
-    protected Item(World world, String name)
-    {
-        mWorld = world;
-        setName(name);
-    }
-    
-    /**
-     * Retrieves the name of this item
-     * @return Name of this item 
-     */
-    public String getName()
-    {
-        return mName;
-    }
-    
-    /**
-     * Sets the name of this item
-     * @param name New name for this item
-     */
-    public void setName(String name)
-    {
-        if(name == null || name.isEmpty()) throw new RuntimeException("Item name cannot be null or empty");
-        mName = name;
-    }
-    
-    public String getDescription()
-    {
-        return mDescription;
-    }
-    
-    public void setDescription(String description)
-    {
-        mDescription = description;
-    }
-    
-    /**
-     * Retrieves the base price of this item
-     * @return Base price of this item
-     */
-    public BigInteger getBasePrice()
-    {
-        return mBasePrice;
-    }
-    
-    public BigInteger getPrice()
-    {
-        BigDecimal tmp = new BigDecimal(mBasePrice);
-        tmp = tmp.multiply(new BigDecimal(Math.pow(mPriceMultiplier, mItemLevel)));
-        return tmp.toBigInteger();
-    }
-    
-    public PurchaseResult buyWith(Currency currency)
-    {
-        if(currency == null) throw new IllegalArgumentException("Currency cannot be null");
-        if(mItemLevel >= mMaxItemLevel) return PurchaseResult.MAX_LEVEL_REACHED;
-        
-        BigInteger price = getPrice();
-        BigInteger result = currency.getValue().subtract(price);
-        if(result.signum() < 0)
-        {
-            return PurchaseResult.INSUFFICIENT_FUNDS;
-        }
-        currency.sub(price);
-        upgrade();
-        return PurchaseResult.OK;
-    }
-    
-    /**
-     * Sets the base price of this item
-     * @param basePrice New base price for this item
-     */
-    public void setBasePrice(BigInteger basePrice)
-    {
-        if(basePrice == null) throw new RuntimeException("Base price cannot be null");
-        if(basePrice.equals(BigInteger.ZERO)) throw new RuntimeException("Base price cannot be zero");
-        mBasePrice = basePrice;
-    }
-    
-    public void setBasePrice(long basePrice)
-    {
-        mBasePrice = new BigInteger("" + basePrice);
-    }
-    
-    public void setBasePrice(int basePrice)
-    {
-        mBasePrice = new BigInteger("" + basePrice);
-    }
-    
-    /**
-     * Retrieves the price multiplier
-     * @return Price multiplier
-     */
-    public double getPriceMultiplier()
-    {
-        return mPriceMultiplier;
-    }
-    
-    /**
-     * Sets the price multiplier of this item
-     * @param multiplier Price multiplier
-     */
-    public void setPriceMultiplier(double multiplier)
-    {
-        mPriceMultiplier = multiplier;
-    }
-    
-    public long getMaxItemLevel()
-    {
-        return mMaxItemLevel;
-    }
-    
-    public void setMaxItemLevel(long maxLvl)
-    {
-        if(maxLvl <= 0) throw new RuntimeException("Max item level cannot be zero or negative");
-        mMaxItemLevel = maxLvl;
-    }
-    
-    public long getItemLevel()
-    {
-        return mItemLevel;
-    }
-    
-    public void setItemLevel(long lvl)
-    {
-        mItemLevel = lvl < 0 ? 0 : lvl > mMaxItemLevel ? mMaxItemLevel : lvl;
-    }
-    
-    public void upgrade()
-    {
-        if(mItemLevel < mMaxItemLevel)
-        {
-            mItemLevel++;
-        }
-    }
-    
-    public void downgrade()
-    {
-        if(mItemLevel > 0)
-        {
-            mItemLevel--;
-        }
-    }
-    
-    public void maximize()
-    {
-        mItemLevel = mMaxItemLevel;
-    }
-    
-    protected World getWorld()
-    {
-        return mWorld;
-    }
-}
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Harri Pellikka.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.manabreak.libclicker;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Base class for all the purchasable "items".
+ * 
+ * @author Harri Pellikka
+ */
+public abstract class Item implements Serializable
+{
+    /**
+     * Levels a bulk price adds up one by one, so that it matches the
+     * levels bought one at a time. Past them, the sum of the price curve
+     * is used.
+     */
+    static final int EXACT_LEVELS = 1 << 12;
+    
+    /**
+     * The base price of the item (i.e. the price of the first level of this item)
+     */
+    protected BigInteger mBasePrice = BigInteger.ONE;
+    
+    /**
+     * Name of this item
+     */
+    protected String mName = "Nameless Item";
+    
+    /**
+     * Description text for this item
+     */
+    protected String mDescription = "No description.";
+    
+    /**
+     * Current level of this item
+     */
+    protected long mItemLevel = 0;
+    
+    /**
+     * Max. item level
+     */
+    protected long mMaxItemLevel = Long.MAX_VALUE;
+    
+    /**
+     * Price multiplier per level. This is used in the price formula
+     * like this: price = (base price) * (price multiplier) ^ (item level)
+     */
+    protected double mPriceMultiplier = 1.145;
+    
+    /**
+     * Curve of the price over the levels, or null for the exponential
+     * curve of the price multiplier
+     */
+    protected Curve mPriceCurve = null;
+    
+    /**
+     * Base prices in specific currencies, or null if the item is only
+     * priced with the base price
+     */
+    ArrayList<Cost> mCosts = null;
+    
+    /**
+     * Base price of an item in one currency
+     */
+    static final class Cost implements Serializable
+    {
+        final Currency mCurrency;
+        BigInteger mBasePrice;
+        
+        Cost(Currency currency, BigInteger basePrice)
+        {
+            mCurrency = currency;
+            mBasePrice = basePrice;
+        }
+    }
+    
+    /**
+     * World this item belongs to
+     */
+    private final World mWorld;
+    
+    /**
+     * Modifiers applied to this item
+     */
+    final ArrayList<Modifier> mModifiers = new ArrayList<>();
+    
+    /**
+     * Id of this item in the world, or -1 if it isn't registered
+     */
+    int mId = -1;
+    
+    /**
+     * Position of this item in the group of its target, or -1
+     */
+    int mGroupSlot = -1;
+    
+    /**
+     * Position of this item in the enabled items of its world, or -1
+     */
+    int mEnabledSlot = -1;
+    
+    /**
+     * Tags of this item as bits assigned by the world, or null if
+     * this item has no tags
+     */
+    BitSet mTags = null;
+    
+    /**
+     * Constructs a new item
+     * @param world World this item belongs to
+     */
+    protected Item(World world)
+    {
+        mWorld = world;
+    }
+    
+    /**
+     * Constructs a new item
+     * @param world World this item belongs to
+     * @param name Name of this item
+     */
+    protected Item(World world, String name)
+    {
+        mWorld = world;
+        setName(name);
+    }
+    
+    /**
+     * Retrieves the name of this item
+     * @return Name of this item 
+     */
+    public String getName()
+    {
+        return mName;
+    }
+    
+    /**
+     * Sets the name of this item
+     * @param name New name for this item
+     */
+    public void setName(String name)
+    {
+        if(name == null || name.isEmpty()) throw new RuntimeException("Item name cannot be null or empty");
+        String oldName = mName;
+        mName = name;
+        if(mId >= 0) mWorld.onRenamed(this, oldName);
+    }
+    
+    /**
+     * Retrieves the id of this item in its world. Generators, automators
+     * and modifiers are numbered separately. Automators and modifiers
+     * keep their ids while they are disabled. The id of a generator that
+     * is no longer registered may be given to another generator.
+     * 
+     * @return Id of this item, or -1 if it isn't registered in the world
+     */
+    public int getId()
+    {
+        return mId;
+    }
+    
+    public String getDescription()
+    {
+        return mDescription;
+    }
+    
+    public void setDescription(String description)
+    {
+        mDescription = description;
+    }
+    
+    /**
+     * Retrieves the base price of this item
+     * @return Base price of this item
+     */
+    public BigInteger getBasePrice()
+    {
+        return mBasePrice;
+    }
+    
+    public BigInteger getPrice()
+    {
+        return priceAt(mBasePrice, mItemLevel);
+    }
+    
+    /**
+     * Computes the price of a level with the price curve of this item
+     * @param basePrice Price of the first level
+     * @param level Current level
+     * @return Price of the next level
+     */
+    BigInteger priceAt(BigInteger basePrice, long level)
+    {
+        return priceAt(basePrice, mPriceCurve, mPriceMultiplier, level);
+    }
+    
+    /**
+     * Computes the price of a level from the given pricing, shared with
+     * the snapshots of the world
+     * @param basePrice Price of the first level
+     * @param curve Price curve, or null for the exponential price
+     * @param multiplier Price multiplier of the exponential price
+     * @param level Current level
+     * @return Price of the next level
+     */
+    static BigInteger priceAt(BigInteger basePrice, Curve curve, double multiplier, long level)
+    {
+        double factor = curve != null ? curve.valueAt(level) : Math.pow(multiplier, level);
+        BigDecimal tmp = new BigDecimal(basePrice);
+        tmp = tmp.multiply(new BigDecimal(factor));
+        return tmp.toBigInteger();
+    }
+    
+    /**
+     * Retrieves the total price of the next levels of this item, up to
+     * the max level. This is the sum of the prices of the levels bought
+     * one at a time, each rounded down like getPrice(). Past the first
+     * 4096 levels, the rest is priced with the sum of the price curve,
+     * which can be up to one unit per level more.
+     * @param count Number of levels
+     * @return Total price of the levels
+     */
+    public BigInteger getBulkPrice(long count)
+    {
+        count = Math.min(count, mMaxItemLevel - mItemLevel);
+        if(count <= 0) return BigInteger.ZERO;
+        
+        BigInteger total = BigInteger.ZERO;
+        long exact = Math.min(count, EXACT_LEVELS);
+        for(long level = mItemLevel; level < mItemLevel + exact; ++level)
+        {
+            total = total.add(priceAt(mBasePrice, level));
+        }
+        if(count > exact)
+        {
+            BigDecimal tmp = new BigDecimal(mBasePrice);
+            tmp = tmp.multiply(new BigDecimal(getPriceCurve().sum(mItemLevel + exact, mItemLevel + count)));
+            total = total.add(tmp.toBigInteger());
+        }
+        return total;
+    }
+    
+    /**
+     * Retrieves how many levels of this item the current amount of a
+     * currency buys at once, up to the max level
+     * @param currency Currency to buy with
+     * @return Number of affordable levels
+     */
+    public long getMaxAffordable(Currency currency)
+    {
+        if(currency == null) throw new IllegalArgumentException("Currency cannot be null");
+        
+        long remaining = mMaxItemLevel - mItemLevel;
+        if(remaining <= 0) return 0;
+        
+        // Free levels are all affordable
+        if(mBasePrice.signum() == 0) return remaining;
+        
+        BigInteger value = currency.getValue();
+        if(value.signum() <= 0) return 0;
+        
+        double budget = new BigDecimal(value).divide(new BigDecimal(mBasePrice), MathContext.DECIMAL64).doubleValue();
+        long count = getPriceCurve().maxAffordable(mItemLevel, budget, remaining);
+        
+        // The curve works in doubles; make sure the exact price fits
+        while(count > 0 && getBulkPrice(count).compareTo(value) > 0)
+        {
+            count--;
+        }
+        
+        // The curve sums the prices before they are rounded down, so more
+        // levels may fit: gallop up from the estimate, then bisect
+        long hi = remaining;
+        for(long step = 1; count < remaining; step *= 2)
+        {
+            long next = count + Math.min(step, remaining - count);
+            if(getBulkPrice(next).compareTo(value) > 0)
+            {
+                hi = next;
+                break;
+            }
+            count = next;
+        }
+        while(hi - count > 1)
+        {
+            long mid = count + (hi - count) / 2;
+            if(getBulkPrice(mid).compareTo(value) <= 0) count = mid;
+            else hi = mid;
+        }
+        return count;
+    }
+    
+    /**
+     * Buys several levels of this item at once for their bulk price
+     * @see #getBulkPrice(long)
+     * @param currency Currency to buy with
+     * @param count Number of levels to buy
+     * @return Result of the purchase
+     */
+    public PurchaseResult buyWith(Currency currency, long count)
+    {
+        if(currency == null) throw new IllegalArgumentException("Currency cannot be null");
+        if(count <= 0) throw new IllegalArgumentException("Count must be positive");
+        
+        PurchaseResult result = PurchaseResult.OK;
+        BigInteger price = null;
+        if(mMaxItemLevel - mItemLevel < count)
+        {
+            result = PurchaseResult.MAX_LEVEL_REACHED;
+        }
+        else
+        {
+            price = getBulkPrice(count);
+            if(!currency.trySub(price)) result = PurchaseResult.INSUFFICIENT_FUNDS;
+        }
+        
+        if(result == PurchaseResult.OK)
+        {
+            setItemLevel(mItemLevel + count);
+            
+            EventBus events = mWorld != null ? mWorld.events() : null;
+            if(events != null) events.itemPurchased(this, currency, price);
+        }
+        
+        Metrics metrics = mWorld != null ? mWorld.getMetrics() : null;
+        if(metrics != null) metrics.onPurchase(this, result);
+        return result;
+    }
+    
+    /**
+     * Sets the base price of this item in a currency. An item with
+     * prices in several currencies costs all of them at once; buy it with
+     * buy() or in a transaction. The prices grow by the same price
+     * multiplier as the base price.
+     * 
+     * @param currency Currency of the price
+     * @param basePrice Price of the first level, or null to remove the
+     * price in the currency
+     */
+    public void setBasePrice(Currency currency, BigInteger basePrice)
+    {
+        if(currency == null) throw new IllegalArgumentException("Currency cannot be null");
+        if(basePrice != null && basePrice.signum() <= 0) throw new IllegalArgumentException("Base price must be positive");
+        
+        int index = indexOfCost(currency);
+        if(basePrice == null)
+        {
+            if(index >= 0) mCosts.remove(index);
+            if(mCosts != null && mCosts.isEmpty()) mCosts = null;
+        }
+        else if(index >= 0)
+        {
+            mCosts.get(index).mBasePrice = basePrice;
+        }
+        else
+        {
+            if(mCosts == null) mCosts = new ArrayList<>(2);
+            mCosts.add(new Cost(currency, basePrice));
+        }
+    }
+    
+    /**
+     * Retrieves the base price of this item in a currency
+     * @param currency Currency of the price
+     * @return Price of the first level, or null if the item isn't priced
+     * in the currency
+     */
+    public BigInteger getBasePrice(Currency currency)
+    {
+        int index = indexOfCost(currency);
+        return index >= 0 ? mCosts.get(index).mBasePrice : null;
+    }
+    
+    /**
+     * Retrieves the price of the next level of this item in a currency
+     * @param currency Currency of the price
+     * @return The price, or null if the item isn't priced in the currency
+     */
+    public BigInteger getPrice(Currency currency)
+    {
+        int index = indexOfCost(currency);
+        return index >= 0 ? priceAt(mCosts.get(index).mBasePrice, mItemLevel) : null;
+    }
+    
+    /**
+     * Retrieves the currencies this item is priced in
+     * @return Currencies set with setBasePrice(Currency, BigInteger)
+     */
+    public List<Currency> getPriceCurrencies()
+    {
+        if(mCosts == null) return Collections.emptyList();
+        ArrayList<Currency> currencies = new ArrayList<>(mCosts.size());
+        for(Cost cost : mCosts)
+        {
+            currencies.add(cost.mCurrency);
+        }
+        return currencies;
+    }
+    
+    private int indexOfCost(Currency currency)
+    {
+        if(mCosts == null) return -1;
+        for(int i = 0; i < mCosts.size(); ++i)
+        {
+            if(mCosts.get(i).mCurrency == currency) return i;
+        }
+        return -1;
+    }
+    
+    /**
+     * Buys the next level of this item with its prices in all the
+     * currencies it is priced in. Either all the prices are paid or,
+     * if any currency falls short, none.
+     * 
+     * @see World#transaction()
+     * @return Result of the purchase
+     */
+    public PurchaseResult buy()
+    {
+        return mWorld.transaction().buy(this).commit();
+    }
+    
+    public PurchaseResult buyWith(Currency currency)
+    {
+        if(currency == null) throw new IllegalArgumentException("Currency cannot be null");
+        
+        PurchaseResult result = purchase(currency);
+        
+        Metrics metrics = mWorld != null ? mWorld.getMetrics() : null;
+        if(metrics != null) metrics.onPurchase(this, result);
+        return result;
+    }
+    
+    private PurchaseResult purchase(Currency currency)
+    {
+        if(mItemLevel >= mMaxItemLevel) return PurchaseResult.MAX_LEVEL_REACHED;
+        
+        BigInteger price = getPrice();
+        if(!currency.trySub(price))
+        {
+            return PurchaseResult.INSUFFICIENT_FUNDS;
+        }
+        upgrade();
+        
+        EventBus events = mWorld != null ? mWorld.events() : null;
+        if(events != null) events.itemPurchased(this, currency, price);
+        return PurchaseResult.OK;
+    }
+    
+    /**
+     * Estimates how long it takes until this item can be bought with
+     * the current income of the given currency.
+     * 
+     * @see World#timeUntil(Currency, BigInteger)
+     * @param currency Currency to buy this item with
+     * @return Time in seconds, or positive infinity if never
+     */
+    public double timeUntilAffordable(Currency currency)
+    {
+        if(currency == null) throw new IllegalArgumentException("Currency cannot be null");
+        if(mItemLevel >= mMaxItemLevel) return Double.POSITIVE_INFINITY;
+        return mWorld.timeUntil(currency, getPrice());
+    }
+    
+    /**
+     * Sets the base price of this item
+     * @param basePrice New base price for this item
+     */
+    public void setBasePrice(BigInteger basePrice)
+    {
+        if(basePrice == null) throw new RuntimeException("Base price cannot be null");
+        if(basePrice.equals(BigInteger.ZERO)) throw new RuntimeException("Base price cannot be zero");
+        mBasePrice = basePrice;
+    }
+    
+    public void setBasePrice(long basePrice)
+    {
+        mBasePrice = new BigInteger("" + basePrice);
+    }
+    
+    public void setBasePrice(int basePrice)
+    {
+        mBasePrice = new BigInteger("" + basePrice);
+    }
+    
+    /**
+     * Retrieves the price multiplier
+     * @return Price multiplier
+     */
+    public double getPriceMultiplier()
+    {
+        return mPriceMultiplier;
+    }
+    
+    /**
+     * Sets the price multiplier of this item
+     * @param multiplier Price multiplier
+     */
+    public void setPriceMultiplier(double multiplier)
+    {
+        mPriceMultiplier = multiplier;
+        mPriceCurve = null;
+    }
+    
+    /**
+     * Retrieves the curve of the price of this item over its levels
+     * @return Price curve
+     */
+    public Curve getPriceCurve()
+    {
+        return mPriceCurve != null ? mPriceCurve : Curve.exponential(mPriceMultiplier);
+    }
+    
+    /**
+     * Sets the curve of the price of this item over its levels. The price
+     * of the next level is the base price times the curve at the current
+     * level. Replaces the price multiplier.
+     * @param curve Price curve
+     */
+    public void setPriceCurve(Curve curve)
+    {
+        if(curve == null) throw new IllegalArgumentException("Curve cannot be null");
+        mPriceCurve = curve;
+    }
+    
+    public long getMaxItemLevel()
+    {
+        return mMaxItemLevel;
+    }
+    
+    public void setMaxItemLevel(long maxLvl)
+    {
+        if(maxLvl <= 0) throw new RuntimeException("Max item level cannot be zero or negative");
+        mMaxItemLevel = maxLvl;
+    }
+    
+    public long getItemLevel()
+    {
+        return mItemLevel;
+    }
+    
+    public void setItemLevel(long lvl)
+    {
+        mItemLevel = lvl < 0 ? 0 : lvl > mMaxItemLevel ? mMaxItemLevel : lvl;
+        onLevelChanged();
+    }
+    
+    public void upgrade()
+    {
+        if(mItemLevel < mMaxItemLevel)
+        {
+            mItemLevel++;
+            onLevelChanged();
+        }
+    }
+    
+    public void downgrade()
+    {
+        if(mItemLevel > 0)
+        {
+            mItemLevel--;
+            onLevelChanged();
+        }
+    }
+    
+    public void maximize()
+    {
+        mItemLevel = mMaxItemLevel;
+        onLevelChanged();
+    }
+    
+    /**
+     * Called whenever the level of this item changes
+     */
+    protected void onLevelChanged()
+    {
+        EventBus events = mWorld != null ? mWorld.events() : null;
+        if(events != null) events.levelChanged(this);
+    }
+    
+    /**
+     * Called whenever the tags of this item change
+     */
+    protected void onTagsChanged()
+    {
+        
+    }
+    
+    /**
+     * Adds a tag to this item
+     * @param tag Tag to add
+     */
+    public void addTag(String tag)
+    {
+        if(tag == null) throw new IllegalArgumentException("Tag cannot be null");
+        int bit = mWorld.getTagBit(tag);
+        if(mTags == null) mTags = new BitSet();
+        if(!mTags.get(bit))
+        {
+            mTags.set(bit);
+            mWorld.onTagAdded(this, bit);
+            onTagsChanged();
+        }
+    }
+    
+    /**
+     * Removes a tag from this item
+     * @param tag Tag to remove
+     */
+    public void removeTag(String tag)
+    {
+        int bit = mWorld.findTagBit(tag);
+        if(bit >= 0 && mTags != null && mTags.get(bit))
+        {
+            mTags.clear(bit);
+            mWorld.onTagRemoved(this, bit);
+            onTagsChanged();
+        }
+    }
+    
+    /**
+     * Checks whether this item has the given tag
+     * @param tag Tag to check
+     * @return True if this item has the tag, false otherwise
+     */
+    public boolean hasTag(String tag)
+    {
+        int bit = mWorld.findTagBit(tag);
+        return bit >= 0 && mTags != null && mTags.get(bit);
+    }
+    
+    /**
+     * Retrieves the tags of this item
+     * @return Tags of this item
+     */
+    public Set<String> getTags()
+    {
+        Set<String> tags = new LinkedHashSet<>();
+        if(mTags != null)
+        {
+            for(int bit = mTags.nextSetBit(0); bit >= 0; bit = mTags.nextSetBit(bit + 1))
+            {
+                tags.add(mWorld.getTagName(bit));
+            }
+        }
+        return tags;
+    }
+    
+    /**
+     * Checks whether this item has all the tags in the given mask
+     * @param mask Tag bits
+     * @return True if every bit of the mask is set in the tags of this item
+     */
+    boolean hasTags(BitSet mask)
+    {
+        if(mask.isEmpty()) return true;
+        if(mTags == null) return false;
+        for(int bit = mask.nextSetBit(0); bit >= 0; bit = mask.nextSetBit(bit + 1))
+        {
+            if(!mTags.get(bit)) return false;
+        }
+        return true;
+    }
+    
+    protected World getWorld()
+    {
+        return mWorld;
+    }
+}
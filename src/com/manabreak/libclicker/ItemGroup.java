@@ -0,0 +1,146 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Harri Pellikka.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.manabreak.libclicker;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A list of the items targeting one object, e.g. the generators of a
+ * currency or the modifiers of a generator. An item targets only one
+ * object, so it belongs to at most one group and can keep its position
+ * in the group itself. Adding and removing are O(1); removing moves the
+ * last item into the freed slot.
+ * 
+ * The enabled items of a world are kept in groups of their own, which
+ * use a second slot of the item, as the items also belong to the group
+ * of their target.
+ *
+ * @author Harri Pellikka
+ */
+final class ItemGroup<T extends Item> implements Iterable<T>, Serializable
+{
+    private final ArrayList<T> mItems = new ArrayList<>();
+    
+    private transient List<T> mView = null;
+    
+    /**
+     * True if this group keeps the items in their enabled slot
+     */
+    private final boolean mEnabledItems;
+    
+    ItemGroup()
+    {
+        this(false);
+    }
+    
+    /**
+     * Constructs a group
+     * @param enabledItems True to keep the items in their enabled slot,
+     * false to keep them in their group slot
+     */
+    ItemGroup(boolean enabledItems)
+    {
+        mEnabledItems = enabledItems;
+    }
+    
+    /**
+     * Adds an item to this group
+     * @param item Item to add
+     * @return True if the item was added, false if it already was in the group
+     */
+    boolean add(T item)
+    {
+        if(contains(item)) return false;
+        setSlot(item, mItems.size());
+        mItems.add(item);
+        return true;
+    }
+    
+    /**
+     * Removes an item from this group
+     * @param item Item to remove
+     * @return True if the item was removed, false if it wasn't in the group
+     */
+    boolean remove(T item)
+    {
+        if(!contains(item)) return false;
+        int slot = slotOf(item);
+        T last = mItems.remove(mItems.size() - 1);
+        if(last != item)
+        {
+            mItems.set(slot, last);
+            setSlot(last, slot);
+        }
+        setSlot(item, -1);
+        return true;
+    }
+    
+    boolean contains(T item)
+    {
+        if(item == null) return false;
+        int slot = slotOf(item);
+        return slot >= 0 && slot < mItems.size() && mItems.get(slot) == item;
+    }
+    
+    private int slotOf(T item)
+    {
+        return mEnabledItems ? item.mEnabledSlot : item.mGroupSlot;
+    }
+    
+    private void setSlot(T item, int slot)
+    {
+        if(mEnabledItems) item.mEnabledSlot = slot;
+        else item.mGroupSlot = slot;
+    }
+    
+    int size()
+    {
+        return mItems.size();
+    }
+    
+    T get(int index)
+    {
+        return mItems.get(index);
+    }
+    
+    /**
+     * Retrieves a read-only view of this group
+     * @return The items in this group
+     */
+    List<T> view()
+    {
+        if(mView == null) mView = Collections.unmodifiableList(mItems);
+        return mView;
+    }
+    
+    @Override
+    public Iterator<T> iterator()
+    {
+        return mItems.iterator();
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Harri Pellikka.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.manabreak.libclicker;
+
+import java.math.BigInteger;
+
+/**
+ * Receives measurements from the simulation of a world. All the methods
+ * do nothing by default, so implementations only need to override what
+ * they are interested in.
+ * 
+ * Metrics are disabled unless set with World.setMetrics(), in which
+ * case the simulation doesn't measure anything at all. The callbacks are
+ * called on the thread updating the world.
+ *
+ * @author Harri Pellikka
+ */
+public interface Metrics
+{
+    /**
+     * Called before the world is updated
+     * @param world World to update
+     */
+    default void onUpdateStarted(World world)
+    {
+        
+    }
+    
+    /**
+     * Called after the world has been updated
+     * @param world Updated world
+     * @param seconds Seconds the world was advanced, after the speed multiplier
+     * @param nanos Wall-clock duration of the update in nanoseconds
+     */
+    default void onUpdate(World world, double seconds, long nanos)
+    {
+        
+    }
+    
+    /**
+     * Called after the world has been updated, along with the number of
+     * automator fires. By default reported without the fires.
+     * @param world Updated world
+     * @param seconds Seconds the world was advanced, after the speed multiplier
+     * @param automatorsFired Total number of automator fires during the update
+     * @param nanos Wall-clock duration of the update in nanoseconds
+     */
+    default void onUpdate(World world, double seconds, int automatorsFired, long nanos)
+    {
+        onUpdate(world, seconds, nanos);
+    }
+    
+    /**
+     * Called after an automator has fired during an update
+     * @param automator Automator that fired
+     * @param times Number of times it fired during the update
+     */
+    default void onAutomatorFired(Automator automator, int times)
+    {
+        
+    }
+    
+    /**
+     * Called after a generator has produced something
+     * @param generator Generator that was processed
+     * @param currency Currency produced
+     * @param amount Amount produced
+     */
+    default void onGeneratorProcessed(Generator generator, Currency currency, BigInteger amount)
+    {
+        
+    }
+    
+    /**
+     * Called after a batch of processing cycles of a generator, e.g.
+     * coalesced clicks. By default reported as a single processing.
+     * @param generator Generator that was processed
+     * @param currency Currency produced
+     * @param amount Total amount produced
+     * @param times Number of processing cycles
+     */
+    default void onGeneratorProcessed(Generator generator, Currency currency, BigInteger amount, long times)
+    {
+        onGeneratorProcessed(generator, currency, amount);
+    }
+    
+    /**
+     * Called after an item has been attempted to buy
+     * @param item Item to buy
+     * @param result Result of the purchase
+     */
+    default void onPurchase(Item item, PurchaseResult result)
+    {
+        
+    }
+    
+    /**
+     * Called after a modifier has been enabled or disabled
+     * @param modifier Modifier toggled
+     * @param enabled True if the modifier was enabled, false if disabled
+     */
+    default void onModifierToggled(Modifier modifier, boolean enabled)
+    {
+        
+    }
+    
+    /**
+     * Called before the world is serialized
+     * @param world World to serialize
+     */
+    default void onSerializationStarted(World world)
+    {
+        
+    }
+    
+    /**
+     * Called after the world has been serialized. Deserialization is not
+     * reported, as metrics are not serialized with the world.
+     * @param world Serialized world
+     * @param nanos Wall-clock duration of the serialization in nanoseconds
+     */
+    default void onSerialized(World world, long nanos)
+    {
+        
+    }
+}
@@ -0,0 +1,299 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Harri Pellikka.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.manabreak.libclicker;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Registry of the entities of one kind in a world.
+ * 
+ * Each registered entity gets a small integer id that stays the same for
+ * as long as the entity is registered. Ids of removed entities are reused,
+ * so the ids stay dense: they are always less than the largest number of
+ * entities registered at once. The entities themselves are kept in a
+ * packed list for iteration; removing one moves the last entity into its
+ * slot. Adding, removing and looking up by id or by name are all O(1).
+ * 
+ * The id is stored in the entity itself, which is how an entity is found
+ * without searching.
+ *
+ * @author Harri Pellikka
+ */
+abstract class Registry<T> implements Serializable
+{
+    /**
+     * Registered entities, in no particular order
+     */
+    private final ArrayList<T> mEntries = new ArrayList<>();
+    
+    /**
+     * Position of each id in mEntries, or -1 if the id is free
+     */
+    private int[] mIndex = new int[0];
+    
+    /**
+     * Ids freed by removals, reused before new ones are issued
+     */
+    private int[] mFree = new int[0];
+    private int mFreeCount = 0;
+    
+    /**
+     * Entities sharing a name form a doubly linked list of ids. The head of
+     * each list is the entity registered under that name most recently.
+     */
+    private final HashMap<String, Integer> mNames = new HashMap<>();
+    private int[] mPrevByName = new int[0];
+    private int[] mNextByName = new int[0];
+    
+    abstract int idOf(T entity);
+    
+    abstract void setId(T entity, int id);
+    
+    abstract String nameOf(T entity);
+    
+    /**
+     * Registers an entity. Registering an entity twice does nothing.
+     * @param entity Entity to register
+     * @return Id of the entity
+     */
+    int add(T entity)
+    {
+        int id = idOf(entity);
+        if(contains(entity)) return id;
+        
+        if(mFreeCount > 0)
+        {
+            id = mFree[--mFreeCount];
+        }
+        else
+        {
+            id = mIndex.length;
+            int capacity = Math.max(8, id * 2);
+            mIndex = Arrays.copyOf(mIndex, capacity);
+            mPrevByName = Arrays.copyOf(mPrevByName, capacity);
+            mNextByName = Arrays.copyOf(mNextByName, capacity);
+            mFree = Arrays.copyOf(mFree, capacity);
+            for(int i = capacity - 1; i > id; --i)
+            {
+                mIndex[i] = -1;
+                mFree[mFreeCount++] = i;
+            }
+        }
+        
+        setId(entity, id);
+        mIndex[id] = mEntries.size();
+        mEntries.add(entity);
+        link(id, nameOf(entity));
+        return id;
+    }
+    
+    /**
+     * Unregisters an entity
+     * @param entity Entity to unregister
+     * @return True if the entity was registered, false otherwise
+     */
+    boolean remove(T entity)
+    {
+        if(!contains(entity)) return false;
+        
+        int id = idOf(entity);
+        int index = mIndex[id];
+        T last = mEntries.remove(mEntries.size() - 1);
+        if(last != entity)
+        {
+            mEntries.set(index, last);
+            mIndex[idOf(last)] = index;
+        }
+        
+        unlink(id, nameOf(entity));
+        mIndex[id] = -1;
+        mFree[mFreeCount++] = id;
+        setId(entity, -1);
+        return true;
+    }
+    
+    /**
+     * Unregisters all the entities
+     */
+    void clear()
+    {
+        for(T entity : mEntries)
+        {
+            setId(entity, -1);
+        }
+        mEntries.clear();
+        mNames.clear();
+        mFreeCount = 0;
+        for(int i = mIndex.length - 1; i >= 0; --i)
+        {
+            mIndex[i] = -1;
+            mFree[mFreeCount++] = i;
+        }
+    }
+    
+    boolean contains(T entity)
+    {
+        if(entity == null) return false;
+        int id = idOf(entity);
+        return id >= 0 && id < mIndex.length && mIndex[id] >= 0 && mEntries.get(mIndex[id]) == entity;
+    }
+    
+    /**
+     * Retrieves an entity by its id
+     * @param id Id of the entity
+     * @return The entity, or null if no entity has the id
+     */
+    T get(int id)
+    {
+        if(id < 0 || id >= mIndex.length || mIndex[id] < 0) return null;
+        return mEntries.get(mIndex[id]);
+    }
+    
+    /**
+     * Retrieves an entity by its name. If several entities share the name,
+     * the one registered under it most recently is returned.
+     * @param name Name of the entity
+     * @return The entity, or null if no entity has the name
+     */
+    T get(String name)
+    {
+        Integer id = mNames.get(name);
+        return id != null ? get(id) : null;
+    }
+    
+    /**
+     * Updates the name index after an entity has been renamed
+     * @param entity Renamed entity
+     * @param oldName Previous name of the entity
+     */
+    void rename(T entity, String oldName)
+    {
+        if(!contains(entity)) return;
+        int id = idOf(entity);
+        unlink(id, oldName);
+        link(id, nameOf(entity));
+    }
+    
+    int size()
+    {
+        return mEntries.size();
+    }
+    
+    /**
+     * Retrieves the number of ids issued so far. All ids are less than it.
+     * @return Upper bound of the ids
+     */
+    int capacity()
+    {
+        return mIndex.length;
+    }
+    
+    /**
+     * Retrieves the registered entities. The list must not be modified.
+     * @return The registered entities
+     */
+    List<T> entries()
+    {
+        return mEntries;
+    }
+    
+    private void link(int id, String name)
+    {
+        Integer head = mNames.put(name, id);
+        mPrevByName[id] = -1;
+        mNextByName[id] = head != null ? head : -1;
+        if(head != null) mPrevByName[head] = id;
+    }
+    
+    private void unlink(int id, String name)
+    {
+        int prev = mPrevByName[id];
+        int next = mNextByName[id];
+        if(next >= 0) mPrevByName[next] = prev;
+        if(prev >= 0)
+        {
+            mNextByName[prev] = next;
+        }
+        else if(next >= 0)
+        {
+            mNames.put(name, next);
+        }
+        else
+        {
+            mNames.remove(name);
+        }
+    }
+    
+    /**
+     * Registry of items, which keep their id in Item.mId
+     */
+    static final class OfItems<T extends Item> extends Registry<T>
+    {
+        @Override
+        int idOf(T entity)
+        {
+            return entity.mId;
+        }
+        
+        @Override
+        void setId(T entity, int id)
+        {
+            entity.mId = id;
+        }
+        
+        @Override
+        String nameOf(T entity)
+        {
+            return entity.getName();
+        }
+    }
+    
+    /**
+     * Registry of currencies, which keep their id in Currency.mId
+     */
+    static final class OfCurrencies extends Registry<Currency>
+    {
+        @Override
+        int idOf(Currency entity)
+        {
+            return entity.mId;
+        }
+        
+        @Override
+        void setId(Currency entity, int id)
+        {
+            entity.mId = id;
+        }
+        
+        @Override
+        String nameOf(Currency entity)
+        {
+            return entity.getName();
+        }
+    }
+}
@@ -0,0 +1,245 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Harri Pellikka.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.manabreak.libclicker;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.PriorityQueue;
+
+/**
+ * Hierarchical timing wheel for the expiry of timed modifiers.
+ * 
+ * Time is divided into ticks of 1 / RESOLUTION seconds. The wheel has
+ * LEVELS levels of SLOTS slots each. A slot on level k spans SLOTS^k
+ * ticks. An entry is kept on the level of the highest group of bits in
+ * which its tick differs from the current tick. Entries at or before the
+ * current tick are moved into a small queue ordered by their exact time.
+ * 
+ * Advancing the wheel visits at most SLOTS slots per level and moves each
+ * entry down at most once per level, so the cost of an update is
+ * O(expired) plus a constant, however far the wheel advances.
+ *
+ * @author Harri Pellikka
+ */
+final class TimingWheel implements Serializable
+{
+    static final int RESOLUTION = 64;
+    
+    private static final int BITS = 6;
+    private static final int SLOTS = 1 << BITS;
+    private static final int LEVELS = 6;
+    
+    /**
+     * A scheduled expiry
+     */
+    static final class Entry implements Comparable<Entry>, Serializable
+    {
+        private final Modifier mModifier;
+        private final double mTime;
+        private final long mTick;
+        private boolean mCancelled = false;
+        
+        Entry(Modifier modifier, double time)
+        {
+            mModifier = modifier;
+            mTime = time;
+            mTick = (long)Math.floor(time * RESOLUTION);
+        }
+        
+        Modifier getModifier()
+        {
+            return mModifier;
+        }
+        
+        double getTime()
+        {
+            return mTime;
+        }
+        
+        @Override
+        public int compareTo(Entry o)
+        {
+            return Double.compare(mTime, o.mTime);
+        }
+    }
+    
+    @SuppressWarnings("unchecked")
+    private final ArrayList<Entry>[][] mSlots = (ArrayList<Entry>[][])new ArrayList<?>[LEVELS][SLOTS];
+    
+    /**
+     * Entries too far ahead for the wheel
+     */
+    private final ArrayList<Entry> mOverflow = new ArrayList<>();
+    
+    /**
+     * Entries at or before the current tick
+     */
+    private final PriorityQueue<Entry> mDue = new PriorityQueue<>();
+    
+    private long mCurrent;
+    
+    private int mSize = 0;
+    
+    /**
+     * Constructs a wheel starting at the given time
+     * @param time Time in seconds
+     */
+    TimingWheel(double time)
+    {
+        mCurrent = (long)Math.floor(time * RESOLUTION);
+    }
+    
+    /**
+     * Schedules an expiry
+     * @param modifier Modifier to expire
+     * @param time Time of the expiry in seconds
+     * @return Entry that can be used to cancel the expiry
+     */
+    Entry schedule(Modifier modifier, double time)
+    {
+        Entry e = new Entry(modifier, time);
+        insert(e);
+        mSize++;
+        return e;
+    }
+    
+    /**
+     * Cancels a scheduled expiry. The entry is dropped when its slot is
+     * next visited.
+     * @param e Entry to cancel
+     */
+    void cancel(Entry e)
+    {
+        if(e != null && !e.mCancelled)
+        {
+            e.mCancelled = true;
+            mSize--;
+        }
+    }
+    
+    /**
+     * Checks whether there are any pending expiries
+     * @return True if nothing is scheduled
+     */
+    boolean isEmpty()
+    {
+        return mSize == 0;
+    }
+    
+    /**
+     * Removes and returns the earliest expiry at or before the given time.
+     * Expiries are returned in the order of their time.
+     * 
+     * @param time Time in seconds
+     * @return The earliest due entry, or null if nothing is due
+     */
+    Entry pollDue(double time)
+    {
+        if(mSize == 0) return null;
+        
+        long tick = (long)Math.floor(time * RESOLUTION);
+        if(tick > mCurrent) advance(tick);
+        
+        while(true)
+        {
+            Entry e = mDue.peek();
+            if(e == null || e.mTime > time) return null;
+            mDue.poll();
+            if(!e.mCancelled)
+            {
+                e.mCancelled = true;
+                mSize--;
+                return e;
+            }
+        }
+    }
+    
+    private void insert(Entry e)
+    {
+        if(e.mTick <= mCurrent)
+        {
+            mDue.add(e);
+            return;
+        }
+        
+        long diff = e.mTick ^ mCurrent;
+        int level = (63 - Long.numberOfLeadingZeros(diff)) / BITS;
+        if(level >= LEVELS)
+        {
+            mOverflow.add(e);
+            return;
+        }
+        
+        int slot = (int)(e.mTick >>> (level * BITS)) & (SLOTS - 1);
+        ArrayList<Entry> list = mSlots[level][slot];
+        if(list == null)
+        {
+            list = new ArrayList<>();
+            mSlots[level][slot] = list;
+        }
+        list.add(e);
+    }
+    
+    /**
+     * Moves the current tick forward, collecting the entries of the
+     * passed ticks and cascading the rest down to lower levels
+     */
+    private void advance(long target)
+    {
+        ArrayList<Entry> moved = new ArrayList<>();
+        long current = mCurrent;
+        
+        for(int level = 0; level < LEVELS; ++level)
+        {
+            int shift = level * BITS;
+            int from = (int)(current >>> shift) & (SLOTS - 1);
+            int to = (int)(target >>> shift) & (SLOTS - 1);
+            boolean sameAbove = (current >>> (shift + BITS)) == (target >>> (shift + BITS));
+            int last = sameAbove ? to : SLOTS - 1;
+            
+            for(int slot = from + 1; slot <= last; ++slot)
+            {
+                ArrayList<Entry> list = mSlots[level][slot];
+                if(list != null && !list.isEmpty())
+                {
+                    moved.addAll(list);
+                    list.clear();
+                }
+            }
+            if(sameAbove) break;
+            
+            if(level == LEVELS - 1)
+            {
+                moved.addAll(mOverflow);
+                mOverflow.clear();
+            }
+        }
+        
+        mCurrent = target;
+        for(Entry e : moved)
+        {
+            if(!e.mCancelled) insert(e);
+        }
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Harri Pellikka.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.manabreak.libclicker;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * A set of purchases that either all succeed or all fail.
+ * 
+ * Purchases are added with buy() and applied with commit(). Committing
+ * computes the price of every purchase once, adds up the totals per
+ * currency and checks them against the amounts before anything is
+ * changed. Only if every item can be upgraded and every currency covers
+ * its total are the currencies debited and the items upgraded.
+ * 
+ * An item can be bought several times in one transaction; each purchase
+ * pays for the next level.
+ *
+ * @author Harri Pellikka
+ */
+public final class Transaction
+{
+    private final World mWorld;
+    
+    /**
+     * Items to buy, in order
+     */
+    private final ArrayList<Item> mItems = new ArrayList<>();
+    
+    /**
+     * Currency of each purchase, or null to pay the item's prices in all
+     * its currencies
+     */
+    private final ArrayList<Currency> mCurrencies = new ArrayList<>();
+    
+    private boolean mCommitted = false;
+    
+    Transaction(World world)
+    {
+        mWorld = world;
+    }
+    
+    /**
+     * Adds a purchase of the next level of an item with its prices in all
+     * the currencies it is priced in
+     * @param item Item to buy
+     * @return This transaction for chaining
+     */
+    public Transaction buy(Item item)
+    {
+        if(item == null) throw new IllegalArgumentException("Item cannot be null");
+        if(item.mCosts == null) throw new IllegalArgumentException("Item has no prices in currencies");
+        return add(item, null);
+    }
+    
+    /**
+     * Adds a purchase of the next level of an item with its base price
+     * in the given currency, like Item.buyWith()
+     * @param item Item to buy
+     * @param currency Currency to pay with
+     * @return This transaction for chaining
+     */
+    public Transaction buyWith(Item item, Currency currency)
+    {
+        if(item == null) throw new IllegalArgumentException("Item cannot be null");
+        if(currency == null) throw new IllegalArgumentException("Currency cannot be null");
+        return add(item, currency);
+    }
+    
+    private Transaction add(Item item, Currency currency)
+    {
+        if(mCommitted) throw new IllegalStateException("Transaction already committed");
+        if(item.getWorld() != mWorld) throw new IllegalArgumentException("Item belongs to another world");
+        mItems.add(item);
+        mCurrencies.add(currency);
+        return this;
+    }
+    
+    /**
+     * Applies the purchases. If any of them can't be made, nothing
+     * changes.
+     * @return PurchaseResult.OK if everything was bought, otherwise the
+     * reason the first failing purchase couldn't be made
+     */
+    public PurchaseResult commit()
+    {
+        if(mCommitted) throw new IllegalStateException("Transaction already committed");
+        mCommitted = true;
+        
+        PurchaseResult result = PurchaseResult.OK;
+        
+        // Price every purchase once, at the level it will be bought at
+        IdentityHashMap<Item, Long> levels = new IdentityHashMap<>();
+        Map<Currency, BigInteger> totals = new IdentityHashMap<>();
+        ArrayList<Currency> paidWith = new ArrayList<>();
+        ArrayList<BigInteger> prices = new ArrayList<>();
+        for(int i = 0; i < mItems.size() && result == PurchaseResult.OK; ++i)
+        {
+            Item item = mItems.get(i);
+            Long planned = levels.get(item);
+            long level = planned != null ? planned : item.getItemLevel();
+            if(level >= item.getMaxItemLevel())
+            {
+                result = PurchaseResult.MAX_LEVEL_REACHED;
+                break;
+            }
+            levels.put(item, level + 1);
+            
+            Currency currency = mCurrencies.get(i);
+            if(currency != null)
+            {
+                charge(currency, item.priceAt(item.getBasePrice(), level), totals, paidWith, prices);
+            }
+            else
+            {
+                for(Item.Cost cost : item.mCosts)
+                {
+                    charge(cost.mCurrency, item.priceAt(cost.mBasePrice, level), totals, paidWith, prices);
+                }
+            }
+        }
+        
+        if(result == PurchaseResult.OK)
+        {
+            for(Map.Entry<Currency, BigInteger> total : totals.entrySet())
+            {
+                if(total.getKey().getValue().compareTo(total.getValue()) < 0)
+                {
+                    result = PurchaseResult.INSUFFICIENT_FUNDS;
+                    break;
+                }
+            }
+        }
+        
+        if(result == PurchaseResult.OK)
+        {
+            // A concurrent currency may have been spent by another thread
+            // after the check, so give back what was taken if one falls short
+            ArrayList<Map.Entry<Currency, BigInteger>> debited = new ArrayList<>(totals.size());
+            for(Map.Entry<Currency, BigInteger> total : totals.entrySet())
+            {
+                if(!total.getKey().trySub(total.getValue()))
+                {
+                    for(Map.Entry<Currency, BigInteger> refund : debited)
+                    {
+                        refund.getKey().add(refund.getValue());
+                    }
+                    result = PurchaseResult.INSUFFICIENT_FUNDS;
+                    break;
+                }
+                debited.add(total);
+            }
+        }
+        
+        if(result == PurchaseResult.OK)
+        {
+            for(Item item : mItems)
+            {
+                item.upgrade();
+            }
+            
+            EventBus events = mWorld.events();
+            if(events != null)
+            {
+                int line = 0;
+                for(int i = 0; i < mItems.size(); ++i)
+                {
+                    Item item = mItems.get(i);
+                    int count = mCurrencies.get(i) != null ? 1 : item.mCosts.size();
+                    for(int j = 0; j < count; ++j, ++line)
+                    {
+                        events.itemPurchased(item, paidWith.get(line), prices.get(line));
+                    }
+                }
+            }
+        }
+        
+        Metrics metrics = mWorld.getMetrics();
+        if(metrics != null)
+        {
+            for(Item item : mItems)
+            {
+                metrics.onPurchase(item, result);
+            }
+        }
+        return result;
+    }
+    
+    private static void charge(Currency currency, BigInteger price, Map<Currency, BigInteger> totals,
+            ArrayList<Currency> paidWith, ArrayList<BigInteger> prices)
+    {
+        BigInteger total = totals.get(currency);
+        totals.put(currency, total != null ? total.add(price) : price);
+        paidWith.add(currency);
+        prices.add(price);
+    }
+}
@@ -1,233 +1,1448 @@
-/*
- * The MIT License
- *
- * Copyright 2015 Harri Pellikka.
- *
- * Permission is hereby granted, free of charge, to any person obtaining a copy
- * of this software and associated documentation files (the "Software"), to deal
- * in the Software without restriction, including without limitation the rights
- * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
- * copies of the Software, and to permit persons to whom the Software is
- * furnished to do so, subject to the following conditions:
- *
- * The above copyright notice and this permission notice shall be included in
- * all copies or substantial portions of the Software.
- *
- * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
- * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
- * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
- * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
- * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
- * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
- * THE SOFTWARE.
- */
-package com.manabreak.libclicker;
-
-import java.io.Serializable;
-import java.util.ArrayList;
-import java.util.List;
-
-/**
- * A container for all the clicker objects
- *
- * @author Harri Pellikka
- */
-public class World implements Serializable
-{
-    /**
-     * Active generators
-     */
-    private ArrayList<Generator> mGenerators = new ArrayList<>();
-    
-    /**
-     * Active automators
-     */
-    private ArrayList<Automator> mAutomators = new ArrayList<>();
-    
-    /**
-     * Currencies in use
-     */
-    private ArrayList<Currency> mCurrencies = new ArrayList<>();
-    
-    /**
-     * Modifiers in use
-     */
-    private ArrayList<Modifier> mModifiers = new ArrayList<>();
-    
-    /**
-     * Speed multiplier - used to multiply the time the world advances
-     */
-    private double mSpeedMultiplier = 1.0;
-    
-    /**
-     * Should automators be updated?
-     */
-    private boolean mUpdateAutomators = true;
-    
-    /**
-     * Constructs a new world. All the other components require an existing
-     * "world" to function. A world is a container for the whole system.
-     */
-    public World()
-    {
-        
-    }
-
-    /**
-     * Adds a new generator to this world
-     * @param generator Generator to add
-     */
-    void addGenerator(Generator generator)
-    {
-        if(generator != null && !mGenerators.contains(generator))
-        {
-            mGenerators.add(generator);
-        }
-    }
-
-    /**
-     * Returns the number of generators in this world
-     * @return The number of generators in this world
-     */
-    public int getGeneratorCount()
-    {
-        return mGenerators.size();
-    }
-
-    /**
-     * Removes a generator
-     * @param generator Generator to remove
-     */
-    void removeGenerator(Generator generator)
-    {
-        if(generator != null && mGenerators.contains(generator))
-        {
-            mGenerators.remove(generator);
-        }
-    }
-    
-    /**
-     * Removes all the generators from this world
-     */
-    void removeAllGenerators()
-    {
-        mGenerators.clear();
-    }
-    
-    void addCurrency(Currency c)
-    {
-        if(c != null && !mCurrencies.contains(c))
-        {
-            mCurrencies.add(c);
-        }
-    }
-    
-    void removeCurrency(Currency c)
-    {
-        if(c != null)
-        {
-            mCurrencies.remove(c);
-        }
-    }
-    
-    Currency getCurrency(int index)
-    {
-        return mCurrencies.get(index);
-    }
-    
-    List<Currency> getCurrencies()
-    {
-        return mCurrencies;
-    }
-    
-    void removeAllCurrencies()
-    {
-        mCurrencies.clear();
-    }
-    
-    /**
-     * Advances the world state by the given amount of seconds.
-     * Useful when calculating away-from-keyboard income etc.
-     * 
-     * @param seconds Seconds to advance
-     */
-    public void update(double seconds)
-    {
-        seconds *= mSpeedMultiplier;
-        
-        if(mUpdateAutomators)
-        {
-            for(Automator a : mAutomators)
-            {
-                a.update(seconds);
-            }
-        }
-    }
-
-    void addAutomator(Automator automator)
-    {
-        if(automator != null && !mAutomators.contains(automator))
-        {
-            mAutomators.add(automator);
-        }
-    }
-    
-    void addModifier(Modifier modifier)
-    {
-        if(modifier != null && !mModifiers.contains(modifier))
-        {
-            mModifiers.add(modifier);
-        }
-    }
-
-    double getSpeedMultiplier()
-    {
-        return mSpeedMultiplier;
-    }
-
-    void setSpeedMultiplier(double multiplier)
-    {
-        mSpeedMultiplier = multiplier;
-    }
-
-    void disableAutomators()
-    {
-        mUpdateAutomators = false;
-    }
-    
-    void enableAutomators()
-    {
-        mUpdateAutomators = true;
-    }
-
-    void removeAutomator(Automator automator)
-    {
-        if(automator != null)
-        {
-            mAutomators.remove(automator);
-        }
-    }
-
-    List<Automator> getAutomators()
-    {
-        return mAutomators;
-    }
-    
-    List<Modifier> getModifiers()
-    {
-        return mModifiers;
-    }
-    
-    void removeModifier(Modifier modifier)
-    {
-        if(modifier != null)
-        {
-            mModifiers.remove(modifier);
-        }
-    }
-    
-    boolean isAutomationEnabled()
-    {
-        return mUpdateAutomators;
-    }
-}
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Harri Pellikka.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.manabreak.libclicker;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A container for all the clicker objects
+ *
+ * @author Harri Pellikka
+ */
+public class World implements Serializable
+{
+    /**
+     * Active generators
+     */
+    private final Registry<Generator> mGenerators = new Registry.OfItems<>();
+    
+    /**
+     * All the automators, enabled or not, so that their ids stay the
+     * same while they are disabled
+     */
+    private final Registry<Automator> mAutomators = new Registry.OfItems<>();
+    
+    /**
+     * Enabled automators
+     */
+    private final ItemGroup<Automator> mEnabledAutomators = new ItemGroup<>(true);
+    
+    /**
+     * Currencies in use
+     */
+    private final Registry<Currency> mCurrencies = new Registry.OfCurrencies();
+    
+    /**
+     * Concurrent currencies, whose thresholds are checked after each update
+     */
+    private final ArrayList<Currency> mConcurrentCurrencies = new ArrayList<>();
+    
+    /**
+     * All the modifiers, enabled or not, so that their ids stay the same
+     * while they are disabled
+     */
+    private final Registry<Modifier> mModifiers = new Registry.OfItems<>();
+    
+    /**
+     * Enabled modifiers
+     */
+    private final ItemGroup<Modifier> mEnabledModifiers = new ItemGroup<>(true);
+    
+    /**
+     * Enabled modifiers targeting the world itself
+     */
+    private final ItemGroup<Modifier> mWorldModifiers = new ItemGroup<>();
+    
+    /**
+     * Number of converters, i.e. generators consuming other currencies
+     */
+    private int mConverterCount = 0;
+    
+    /**
+     * Automators in processing order when there are converters, or null
+     * if it has to be recomputed
+     */
+    private transient ArrayList<Automator> mOrder = null;
+    
+    /**
+     * Bits of the tags in use, and the tag of each bit
+     */
+    private final HashMap<String, Integer> mTagBits = new HashMap<>();
+    private final ArrayList<String> mTagNames = new ArrayList<>();
+    
+    /**
+     * Enabled category modifiers of each tag, and the product of their
+     * multipliers
+     */
+    private final ArrayList<ItemGroup<Modifier>> mTagModifiers = new ArrayList<>();
+    private double[] mTagFactors = new double[0];
+    
+    /**
+     * Generators carrying each tag
+     */
+    private final ArrayList<LinkedHashSet<Generator>> mTagGenerators = new ArrayList<>();
+    
+    /**
+     * Speed multiplier - used to multiply the time the world advances.
+     * This is the product of the speed factors of the enabled world
+     * modifiers, or 0 if any of them is 0.
+     */
+    private double mSpeedMultiplier = 1.0;
+    
+    /**
+     * Product of the non-zero speed factors, the number of zero factors
+     * and the number of factors removed since the product was last
+     * computed from scratch
+     */
+    private double mSpeedProduct = 1.0;
+    private int mZeroSpeedFactors = 0;
+    private int mSpeedFactorsRemoved = 0;
+    
+    /**
+     * Number of removed speed factors after which the product is
+     * recomputed, so rounding errors from the divisions can't build up
+     */
+    private static final int SPEED_RECOMPUTE_INTERVAL = 32;
+    
+    /**
+     * Should automators be updated?
+     */
+    private boolean mUpdateAutomators = true;
+    
+    /**
+     * World time in seconds, i.e. the time advanced with the speed
+     * multiplier applied
+     */
+    private double mTime = 0.0;
+    
+    /**
+     * Expiries of the timed modifiers, created when first needed
+     */
+    private TimingWheel mExpiries = null;
+    
+    /**
+     * Income per second for each currency before the speed multiplier,
+     * or null if it hasn't been computed yet
+     */
+    private transient HashMap<Currency, BigDecimal> mIncome = null;
+    
+    /**
+     * Income after the consumption of the converters, or null if it has
+     * to be recomputed
+     */
+    private transient HashMap<Currency, BigDecimal> mNetIncome = null;
+    
+    /**
+     * Metrics recorder, or null if metrics are disabled
+     */
+    private transient Metrics mMetrics = null;
+    
+    /**
+     * Event bus, created when first requested
+     */
+    private transient EventBus mEvents = null;
+    
+    /**
+     * Queue of commands from other threads, or null if none has been opened
+     */
+    private transient volatile CommandQueue mCommands = null;
+    
+    /**
+     * Whether a snapshot is published after each update
+     */
+    private transient boolean mSnapshotsEnabled = false;
+    
+    /**
+     * Latest published snapshot, or null if none has been published
+     */
+    private transient volatile WorldSnapshot mSnapshot = null;
+    
+    /**
+     * Constructs a new world. All the other components require an existing
+     * "world" to function. A world is a container for the whole system.
+     */
+    public World()
+    {
+        
+    }
+
+    /**
+     * Adds a new generator to this world
+     * @param generator Generator to add
+     */
+    void addGenerator(Generator generator)
+    {
+        if(generator != null && !mGenerators.contains(generator))
+        {
+            Currency[] inputs = generator.inputs();
+            if(inputs != null) checkCycles(generator);
+            
+            mGenerators.add(generator);
+            Currency c = generator.getCurrency();
+            if(c != null) c.mGenerators.add(generator);
+            BitSet tags = generator.mTags;
+            if(tags != null)
+            {
+                for(int bit = tags.nextSetBit(0); bit >= 0; bit = tags.nextSetBit(bit + 1))
+                {
+                    mTagGenerators.get(bit).add(generator);
+                }
+            }
+            if(inputs != null)
+            {
+                for(Currency input : inputs)
+                {
+                    input.mConsumers.add(generator);
+                }
+                mConverterCount++;
+                mOrder = null;
+                mNetIncome = null;
+            }
+        }
+    }
+    
+    /**
+     * Checks that a converter doesn't close a cycle in the currency graph,
+     * in which each converter leads from its inputs to its output. The
+     * converter closes a cycle if its output leads back to an input.
+     * @param converter Converter to check
+     */
+    private void checkCycles(Generator converter)
+    {
+        Currency output = converter.getCurrency();
+        if(output == null) return;
+        
+        List<Currency> inputs = Arrays.asList(converter.inputs());
+        IdentityHashMap<Currency, Boolean> visited = new IdentityHashMap<>();
+        ArrayDeque<Currency> pending = new ArrayDeque<>();
+        pending.push(output);
+        visited.put(output, Boolean.TRUE);
+        while(!pending.isEmpty())
+        {
+            Currency c = pending.pop();
+            if(inputs.contains(c))
+            {
+                throw new IllegalStateException("Converter " + converter.getName()
+                        + " would form a cycle through " + c.getName());
+            }
+            for(Generator g : c.mConsumers)
+            {
+                Currency next = g.getCurrency();
+                if(next != null && visited.put(next, Boolean.TRUE) == null) pending.push(next);
+            }
+        }
+    }
+    
+    /**
+     * Retrieves the automators in the order they are advanced. When there
+     * are converters, the automators are sorted by the depth of their
+     * generator in the currency graph, so everything producing the inputs
+     * of a converter runs before the converter in each update.
+     * @return Automators in processing order
+     */
+    private List<Automator> processingOrder()
+    {
+        if(mConverterCount == 0) return mEnabledAutomators.view();
+        if(mOrder == null)
+        {
+            final IdentityHashMap<Generator, Integer> ranks = new IdentityHashMap<>();
+            ArrayList<Automator> order = new ArrayList<>(mEnabledAutomators.view());
+            for(Automator a : order)
+            {
+                rankOf(a.getGenerator(), ranks);
+            }
+            Collections.sort(order, (a, b) -> Integer.compare(ranks.get(a.getGenerator()), ranks.get(b.getGenerator())));
+            mOrder = order;
+        }
+        return mOrder;
+    }
+    
+    /**
+     * Computes the depth of a generator: 0 for a plain generator, one more
+     * than the deepest producer of its inputs for a converter
+     */
+    private static int rankOf(Generator generator, IdentityHashMap<Generator, Integer> ranks)
+    {
+        Integer known = ranks.get(generator);
+        if(known != null) return known;
+        
+        int rank = 0;
+        Currency[] inputs = generator.inputs();
+        if(inputs != null)
+        {
+            for(Currency c : inputs)
+            {
+                for(Generator producer : c.mGenerators)
+                {
+                    rank = Math.max(rank, rankOf(producer, ranks) + 1);
+                }
+            }
+        }
+        ranks.put(generator, rank);
+        return rank;
+    }
+
+    /**
+     * Returns the number of generators in this world
+     * @return The number of generators in this world
+     */
+    public int getGeneratorCount()
+    {
+        return mGenerators.size();
+    }
+
+    /**
+     * Removes a generator
+     * @param generator Generator to remove
+     */
+    void removeGenerator(Generator generator)
+    {
+        if(generator != null && mGenerators.remove(generator))
+        {
+            Currency c = generator.getCurrency();
+            if(c != null) c.mGenerators.remove(generator);
+            BitSet tags = generator.mTags;
+            if(tags != null)
+            {
+                for(int bit = tags.nextSetBit(0); bit >= 0; bit = tags.nextSetBit(bit + 1))
+                {
+                    mTagGenerators.get(bit).remove(generator);
+                }
+            }
+            Currency[] inputs = generator.inputs();
+            if(inputs != null)
+            {
+                for(Currency input : inputs)
+                {
+                    input.mConsumers.remove(generator);
+                }
+                mConverterCount--;
+                mOrder = null;
+                mNetIncome = null;
+            }
+        }
+    }
+    
+    /**
+     * Retrieves a generator by its id
+     * @param id Id of the generator
+     * @return The generator, or null if there's no generator with the id
+     */
+    public Generator getGenerator(int id)
+    {
+        return mGenerators.get(id);
+    }
+    
+    /**
+     * Retrieves a generator by its name. If several generators share the
+     * name, the one that got it most recently is returned.
+     * @param name Name of the generator
+     * @return The generator, or null if there's no generator with the name
+     */
+    public Generator getGenerator(String name)
+    {
+        return mGenerators.get(name);
+    }
+    
+    /**
+     * Removes all the generators from this world
+     */
+    void removeAllGenerators()
+    {
+        for(Generator g : mGenerators.entries())
+        {
+            Currency c = g.getCurrency();
+            if(c != null) c.mGenerators.remove(g);
+            Currency[] inputs = g.inputs();
+            for(int i = 0; inputs != null && i < inputs.length; ++i)
+            {
+                inputs[i].mConsumers.remove(g);
+            }
+        }
+        mGenerators.clear();
+        mConverterCount = 0;
+        mOrder = null;
+        mNetIncome = null;
+    }
+    
+    /**
+     * Retrieves the generators producing the given currency
+     * @param currency Currency to query
+     * @return Read-only list of the generators
+     */
+    public List<Generator> getGenerators(Currency currency)
+    {
+        if(currency == null) throw new IllegalArgumentException("Currency cannot be null");
+        return currency.mGenerators.view();
+    }
+    
+    void addCurrency(Currency c)
+    {
+        if(c != null)
+        {
+            mCurrencies.add(c);
+            if(c instanceof ConcurrentCurrency) mConcurrentCurrencies.add(c);
+        }
+    }
+    
+    void removeCurrency(Currency c)
+    {
+        if(c != null)
+        {
+            mCurrencies.remove(c);
+            mConcurrentCurrencies.remove(c);
+        }
+    }
+    
+    /**
+     * Retrieves a currency by its id
+     * @param id Id of the currency
+     * @return The currency, or null if there's no currency with the id
+     */
+    public Currency getCurrency(int id)
+    {
+        return mCurrencies.get(id);
+    }
+    
+    /**
+     * Retrieves a currency by its name. If several currencies share the
+     * name, the one created last is returned.
+     * @param name Name of the currency
+     * @return The currency, or null if there's no currency with the name
+     */
+    public Currency getCurrency(String name)
+    {
+        return mCurrencies.get(name);
+    }
+    
+    List<Currency> getCurrencies()
+    {
+        return mCurrencies.entries();
+    }
+    
+    void removeAllCurrencies()
+    {
+        mCurrencies.clear();
+        mConcurrentCurrencies.clear();
+    }
+    
+    /**
+     * Advances the world state by the given amount of seconds.
+     * Useful when calculating away-from-keyboard income etc.
+     * 
+     * Timed modifiers expiring during the update are disabled at their
+     * exact expiry time, so the time before the expiry is advanced with
+     * the modifier and the time after it without. This holds however
+     * long the update is.
+     * 
+     * Commands queued with the command queue are applied before the
+     * world is advanced.
+     * 
+     * @param seconds Seconds to advance
+     */
+    public void update(double seconds)
+    {
+        Metrics metrics = mMetrics;
+        if(metrics != null) metrics.onUpdateStarted(this);
+        long start = metrics != null ? System.nanoTime() : 0;
+        double startTime = mTime;
+        
+        int fired = 0;
+        EventBus events = mEvents;
+        if(events != null) events.beginBatch();
+        try
+        {
+            CommandQueue commands = mCommands;
+            if(commands != null) commands.drain();
+            
+            double remaining = seconds;
+            while(true)
+            {
+                double speed = mSpeedMultiplier;
+                double target = mTime + remaining * speed;
+                TimingWheel.Entry expiry = mExpiries != null ? mExpiries.pollDue(target) : null;
+                if(expiry == null)
+                {
+                    fired += advance(target - mTime);
+                    mTime = target;
+                    break;
+                }
+                
+                // Advance up to the expiry, then continue at the new speed
+                double step = expiry.getTime() - mTime;
+                if(step > 0.0)
+                {
+                    fired += advance(step);
+                    mTime = expiry.getTime();
+                    remaining = Math.max(0.0, remaining - step / speed);
+                }
+                expiry.getModifier().expire();
+            }
+            
+            for(int i = 0; i < mConcurrentCurrencies.size(); ++i)
+            {
+                mConcurrentCurrencies.get(i).checkThresholds();
+            }
+        }
+        finally
+        {
+            if(events != null) events.endBatch();
+        }
+        
+        if(mSnapshotsEnabled) publishSnapshot();
+        if(metrics != null) metrics.onUpdate(this, mTime - startTime, fired, System.nanoTime() - start);
+    }
+    
+    /**
+     * Advances the automators by the given amount of world time. The
+     * caller sets the world time to the end of the advance.
+     * 
+     * A converter tick can only use the inputs produced before it, so
+     * while the inputs at hand can't pay for all the ticks the converters
+     * may make, the time is advanced from one tick of a converter or of
+     * a producer of their inputs to the next. The result is then the
+     * same however the time is split into updates.
+     * 
+     * @return Number of times the automators fired
+     */
+    private int advance(double seconds)
+    {
+        if(!mUpdateAutomators) return 0;
+        if(mConverterCount == 0) return advanceAutomators(seconds);
+        
+        int fired = 0;
+        double remaining = seconds;
+        while(remaining > 0.0)
+        {
+            double step = remaining;
+            if(!inputsCover(remaining)) step = Math.min(remaining, nextConverterTick());
+            fired += advanceAutomators(step);
+            mTime += step;
+            remaining -= step;
+        }
+        return fired;
+    }
+    
+    /**
+     * Advances the automators in processing order by the given amount of
+     * world time
+     * @return Number of times the automators fired
+     */
+    private int advanceAutomators(double seconds)
+    {
+        int fired = 0;
+        for(Automator a : processingOrder())
+        {
+            Generator g = a.getGenerator();
+            if(!g.hasCooldown())
+            {
+                fired += a.update(seconds);
+            }
+            else if(g.automators().get(0) == a)
+            {
+                // The first automator of the generator advances them all
+                fired += g.updateAutomators(mTime, seconds);
+            }
+        }
+        return fired;
+    }
+    
+    /**
+     * Checks whether the inputs at hand pay for every tick the converters
+     * can make within the given time, in which case the ticks don't have
+     * to be ordered against the production of the inputs
+     * @param seconds World time
+     * @return True if all the ticks are paid for
+     */
+    private boolean inputsCover(double seconds)
+    {
+        IdentityHashMap<Currency, BigInteger> demand = new IdentityHashMap<>();
+        for(Automator a : processingOrder())
+        {
+            Generator g = a.getGenerator();
+            Currency[] inputs = g.inputs();
+            double period = a.getActualTickRate();
+            if(inputs == null || period <= 0.0) continue;
+            
+            long ticks = (long)Math.floor((a.getTickTimer() + seconds) / period);
+            if(ticks <= 0) continue;
+            for(Currency input : inputs)
+            {
+                BigInteger amount = demand.merge(input, g.getInputAmount(input).multiply(BigInteger.valueOf(ticks)), BigInteger::add);
+                if(input.getValue().compareTo(amount) < 0) return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Retrieves the time until the next tick of an automator running a
+     * converter or producing an input of one
+     * @return Time in seconds, 0 if an automator is already due
+     */
+    private double nextConverterTick()
+    {
+        double next = Double.POSITIVE_INFINITY;
+        for(Automator a : processingOrder())
+        {
+            Generator g = a.getGenerator();
+            Currency c = g.getCurrency();
+            double period = a.getActualTickRate();
+            if(period <= 0.0 || !g.isConverter() && (c == null || c.mConsumers.isEmpty())) continue;
+            next = Math.min(next, Math.max(0.0, period - a.getTickTimer()));
+        }
+        return next;
+    }
+    
+    /**
+     * Retrieves the world time, i.e. the total time this world has been
+     * advanced with the speed multiplier applied
+     * @return World time in seconds
+     */
+    public double getTime()
+    {
+        return mTime;
+    }
+    
+    /**
+     * Schedules the expiry of a timed modifier
+     * @param modifier Modifier to expire
+     * @param duration World time until the expiry
+     * @return The scheduled expiry
+     */
+    TimingWheel.Entry scheduleExpiry(Modifier modifier, double duration)
+    {
+        if(mExpiries == null) mExpiries = new TimingWheel(mTime);
+        return mExpiries.schedule(modifier, mTime + duration);
+    }
+    
+    void cancelExpiry(TimingWheel.Entry expiry)
+    {
+        if(mExpiries != null) mExpiries.cancel(expiry);
+    }
+    
+    private void writeObject(ObjectOutputStream out) throws IOException
+    {
+        Metrics metrics = mMetrics;
+        if(metrics != null) metrics.onSerializationStarted(this);
+        long start = metrics != null ? System.nanoTime() : 0;
+        
+        out.defaultWriteObject();
+        
+        if(metrics != null) metrics.onSerialized(this, System.nanoTime() - start);
+    }
+    
+    /**
+     * Sets the metrics recorder for this world. Metrics are not
+     * serialized with the world.
+     * 
+     * @param metrics Metrics recorder, or null to disable metrics
+     */
+    public void setMetrics(Metrics metrics)
+    {
+        mMetrics = metrics;
+    }
+    
+    /**
+     * Retrieves the event bus of this world. Subscribers are not
+     * serialized with the world.
+     * 
+     * @return Event bus
+     */
+    public EventBus getEvents()
+    {
+        if(mEvents == null) mEvents = new EventBus();
+        return mEvents;
+    }
+    
+    /**
+     * Retrieves the event bus if one has been created
+     * @return Event bus, or null if nobody has asked for one
+     */
+    EventBus events()
+    {
+        return mEvents;
+    }
+    
+    /**
+     * Opens a queue through which other threads can send clicks, purchases
+     * and modifier toggles to this world. The commands are applied on the
+     * thread that calls update(), at the start of the next update. If a
+     * queue is already open, it is returned as is.
+     * 
+     * The queue is not serialized with the world.
+     * 
+     * @param capacity Maximum number of queued commands, rounded up to
+     * a power of two
+     * @return Command queue
+     */
+    public synchronized CommandQueue openCommandQueue(int capacity)
+    {
+        if(mCommands == null) mCommands = new CommandQueue(this, capacity);
+        return mCommands;
+    }
+    
+    /**
+     * Starts a transaction for buying several items at once. Nothing is
+     * bought until the transaction is committed, and then either every
+     * purchase in it succeeds or none does.
+     * @return New transaction
+     */
+    public Transaction transaction()
+    {
+        return new Transaction(this);
+    }
+    
+    /**
+     * Enables or disables publishing a snapshot of this world at the end
+     * of each update. Enabling publishes one right away.
+     * @param enabled True to publish snapshots, false to stop
+     */
+    public void setSnapshotsEnabled(boolean enabled)
+    {
+        mSnapshotsEnabled = enabled;
+        if(enabled) publishSnapshot();
+    }
+    
+    /**
+     * Takes a snapshot of this world and publishes it to the readers.
+     * Must be called on the thread that updates the world. Useful after
+     * changing the world between updates, e.g. after a purchase.
+     * @return The published snapshot
+     */
+    public WorldSnapshot publishSnapshot()
+    {
+        WorldSnapshot snapshot = new WorldSnapshot(this, mCurrencies, mGenerators, mAutomators, mModifiers);
+        mSnapshot = snapshot;
+        return snapshot;
+    }
+    
+    /**
+     * Retrieves the latest published snapshot of this world. Safe to call
+     * from any thread; never blocks.
+     * @return The latest snapshot, or null if none has been published
+     */
+    public WorldSnapshot getSnapshot()
+    {
+        return mSnapshot;
+    }
+    
+    /**
+     * Retrieves the command queue of this world
+     * @return Command queue, or null if none has been opened
+     */
+    public CommandQueue getCommandQueue()
+    {
+        return mCommands;
+    }
+    
+    /**
+     * Retrieves the metrics recorder of this world
+     * @return Metrics recorder, or null if metrics are disabled
+     */
+    public Metrics getMetrics()
+    {
+        return mMetrics;
+    }
+
+    /**
+     * Registers a new automator, enabling it if it is enabled
+     * @param automator Automator to register
+     */
+    void addAutomator(Automator automator)
+    {
+        if(automator != null && !mAutomators.contains(automator))
+        {
+            mAutomators.add(automator);
+            if(automator.isEnabled()) enableAutomator(automator);
+        }
+    }
+    
+    void enableAutomator(Automator automator)
+    {
+        if(mEnabledAutomators.add(automator))
+        {
+            automator.getGenerator().attachAutomator(automator);
+            mOrder = null;
+            mNetIncome = null;
+            if(mIncome != null) setIncome(automator, automator.computeIncome());
+        }
+    }
+    
+    /**
+     * Registers a new modifier, enabling it if it is enabled
+     * @param modifier Modifier to register
+     */
+    void addModifier(Modifier modifier)
+    {
+        if(modifier != null && !mModifiers.contains(modifier))
+        {
+            mModifiers.add(modifier);
+            if(modifier.isEnabled()) enableModifier(modifier);
+        }
+    }
+    
+    void enableModifier(Modifier modifier)
+    {
+        if(mEnabledModifiers.add(modifier))
+        {
+            if(modifier instanceof Modifier.WorldModifier) mWorldModifiers.add(modifier);
+        }
+    }
+
+    double getSpeedMultiplier()
+    {
+        return mSpeedMultiplier;
+    }
+
+    /**
+     * Adds a speed factor of an enabled world modifier
+     * @param factor Speed factor
+     */
+    void addSpeedFactor(double factor)
+    {
+        if(factor == 0.0) mZeroSpeedFactors++;
+        else mSpeedProduct *= factor;
+        updateSpeedMultiplier();
+    }
+    
+    /**
+     * Removes a speed factor of a disabled world modifier. The modifier
+     * must already be gone from the enabled world modifiers.
+     * @param factor Speed factor
+     */
+    void removeSpeedFactor(double factor)
+    {
+        if(factor == 0.0)
+        {
+            mZeroSpeedFactors--;
+        }
+        else if(++mSpeedFactorsRemoved >= SPEED_RECOMPUTE_INTERVAL || mWorldModifiers.size() == 0)
+        {
+            recomputeSpeedProduct();
+        }
+        else
+        {
+            mSpeedProduct /= factor;
+        }
+        updateSpeedMultiplier();
+    }
+    
+    private void recomputeSpeedProduct()
+    {
+        double product = 1.0;
+        for(Modifier m : mWorldModifiers)
+        {
+            double factor = ((Modifier.WorldModifier)m).getSpeedMultiplier();
+            if(factor != 0.0) product *= factor;
+        }
+        mSpeedProduct = product;
+        mSpeedFactorsRemoved = 0;
+    }
+    
+    private void updateSpeedMultiplier()
+    {
+        mSpeedMultiplier = mZeroSpeedFactors > 0 ? 0.0 : mSpeedProduct;
+    }
+
+    void disableAutomators()
+    {
+        mUpdateAutomators = false;
+    }
+    
+    void enableAutomators()
+    {
+        mUpdateAutomators = true;
+    }
+
+    void disableAutomator(Automator automator)
+    {
+        if(mEnabledAutomators.remove(automator))
+        {
+            automator.getGenerator().detachAutomator(automator);
+            mOrder = null;
+            mNetIncome = null;
+            if(mIncome != null) setIncome(automator, BigDecimal.ZERO);
+        }
+    }
+
+    List<Automator> getAutomators()
+    {
+        return mEnabledAutomators.view();
+    }
+    
+    /**
+     * Retrieves an automator by its id. The id of an automator stays the
+     * same when it is disabled and enabled again.
+     * @param id Id of the automator
+     * @return The automator, or null if there's no automator with the id
+     */
+    public Automator getAutomator(int id)
+    {
+        return mAutomators.get(id);
+    }
+    
+    /**
+     * Retrieves an automator by its name. If several automators
+     * share the name, the one that got it most recently is returned.
+     * @param name Name of the automator
+     * @return The automator, or null if there's no automator with the name
+     */
+    public Automator getAutomator(String name)
+    {
+        return mAutomators.get(name);
+    }
+    
+    /**
+     * Retrieves the enabled automators automating the given generator
+     * @param generator Generator to query
+     * @return Read-only list of the automators
+     */
+    public List<Automator> getAutomators(Generator generator)
+    {
+        if(generator == null) throw new IllegalArgumentException("Generator cannot be null");
+        return generator.automators().view();
+    }
+    
+    List<Modifier> getModifiers()
+    {
+        return mEnabledModifiers.view();
+    }
+    
+    /**
+     * Retrieves the enabled modifiers modifying the given generator
+     * @param generator Generator to query
+     * @return Read-only list of the modifiers
+     */
+    public List<Modifier> getModifiers(Generator generator)
+    {
+        if(generator == null) throw new IllegalArgumentException("Generator cannot be null");
+        return Collections.<Modifier>unmodifiableList(generator.modifiers().view());
+    }
+    
+    /**
+     * Retrieves the enabled modifiers modifying this world
+     * @return Read-only list of the modifiers
+     */
+    public List<Modifier> getWorldModifiers()
+    {
+        return mWorldModifiers.view();
+    }
+    
+    /**
+     * Retrieves a modifier by its id. The id of a modifier stays the
+     * same when it is disabled and enabled again.
+     * @param id Id of the modifier
+     * @return The modifier, or null if there's no modifier with the id
+     */
+    public Modifier getModifier(int id)
+    {
+        return mModifiers.get(id);
+    }
+    
+    /**
+     * Retrieves the bit of the given tag, assigning a new bit if the tag
+     * isn't in use yet
+     * @param tag Tag
+     * @return Bit of the tag
+     */
+    int getTagBit(String tag)
+    {
+        Integer bit = mTagBits.get(tag);
+        if(bit != null) return bit;
+        
+        int b = mTagNames.size();
+        mTagBits.put(tag, b);
+        mTagNames.add(tag);
+        mTagModifiers.add(new ItemGroup<>());
+        mTagGenerators.add(new LinkedHashSet<>());
+        mTagFactors = Arrays.copyOf(mTagFactors, b + 1);
+        mTagFactors[b] = 1.0;
+        return b;
+    }
+    
+    /**
+     * Retrieves the bit of the given tag
+     * @param tag Tag
+     * @return Bit of the tag, or -1 if the tag isn't in use
+     */
+    int findTagBit(String tag)
+    {
+        Integer bit = mTagBits.get(tag);
+        return bit != null ? bit : -1;
+    }
+    
+    /**
+     * Called when an item gets a tag, so that a registered generator
+     * joins the generators of the tag
+     * @param item Item that got the tag
+     * @param bit Bit of the tag
+     */
+    void onTagAdded(Item item, int bit)
+    {
+        if(item instanceof Generator && mGenerators.contains((Generator)item))
+        {
+            mTagGenerators.get(bit).add((Generator)item);
+        }
+    }
+    
+    /**
+     * Called when an item loses a tag, so that a registered generator
+     * leaves the generators of the tag
+     * @param item Item that lost the tag
+     * @param bit Bit of the tag
+     */
+    void onTagRemoved(Item item, int bit)
+    {
+        if(item instanceof Generator)
+        {
+            mTagGenerators.get(bit).remove((Generator)item);
+        }
+    }
+    
+    String getTagName(int bit)
+    {
+        return mTagNames.get(bit);
+    }
+    
+    /**
+     * Retrieves the combined multiplier of the enabled category modifiers
+     * of the given tag
+     * @param bit Bit of the tag
+     * @return Multiplier
+     */
+    double getTagFactor(int bit)
+    {
+        return mTagFactors[bit];
+    }
+    
+    void attachCategoryModifier(Modifier.CategoryModifier modifier)
+    {
+        int bit = modifier.getTag();
+        if(mTagModifiers.get(bit).add(modifier))
+        {
+            mTagFactors[bit] *= modifier.getMultiplier();
+            updateTaggedIncome(bit);
+        }
+    }
+    
+    void detachCategoryModifier(Modifier.CategoryModifier modifier)
+    {
+        int bit = modifier.getTag();
+        ItemGroup<Modifier> group = mTagModifiers.get(bit);
+        if(group.remove(modifier))
+        {
+            // Recompute rather than divide, so no error builds up
+            double factor = 1.0;
+            for(Modifier m : group)
+            {
+                factor *= ((Modifier.CategoryModifier)m).getMultiplier();
+            }
+            mTagFactors[bit] = factor;
+            updateTaggedIncome(bit);
+        }
+    }
+    
+    /**
+     * Updates the income of the generators carrying the given tag, so
+     * that the income of the other generators isn't recomputed
+     */
+    private void updateTaggedIncome(int bit)
+    {
+        if(mIncome == null) return;
+        for(Generator g : mTagGenerators.get(bit))
+        {
+            g.updateIncome();
+        }
+    }
+    
+    private BitSet getTagMask(String... tags)
+    {
+        BitSet mask = new BitSet();
+        for(String tag : tags)
+        {
+            int bit = findTagBit(tag);
+            if(bit < 0) return null;
+            mask.set(bit);
+        }
+        return mask;
+    }
+    
+    /**
+     * Finds the generators that have all the given tags
+     * @param tags Tags to look for
+     * @return The generators with all the tags
+     */
+    public List<Generator> findGenerators(String... tags)
+    {
+        ArrayList<Generator> result = new ArrayList<>();
+        BitSet mask = getTagMask(tags);
+        if(mask == null) return result;
+        for(Generator g : mGenerators.entries())
+        {
+            if(g.hasTags(mask)) result.add(g);
+        }
+        return result;
+    }
+    
+    /**
+     * Finds the generators, enabled automators and enabled modifiers that
+     * have all the given tags
+     * @param tags Tags to look for
+     * @return The items with all the tags
+     */
+    public List<Item> findItems(String... tags)
+    {
+        ArrayList<Item> result = new ArrayList<>();
+        BitSet mask = getTagMask(tags);
+        if(mask == null) return result;
+        for(Generator g : mGenerators.entries())
+        {
+            if(g.hasTags(mask)) result.add(g);
+        }
+        for(Automator a : mEnabledAutomators)
+        {
+            if(a.hasTags(mask)) result.add(a);
+        }
+        for(Modifier m : mEnabledModifiers)
+        {
+            if(m.hasTags(mask)) result.add(m);
+        }
+        return result;
+    }
+    
+    /**
+     * Updates the name lookups after an item has been renamed
+     * @param item Renamed item
+     * @param oldName Previous name of the item
+     */
+    void onRenamed(Item item, String oldName)
+    {
+        if(item instanceof Generator) mGenerators.rename((Generator)item, oldName);
+        else if(item instanceof Automator) mAutomators.rename((Automator)item, oldName);
+        else if(item instanceof Modifier) mModifiers.rename((Modifier)item, oldName);
+    }
+    
+    void disableModifier(Modifier modifier)
+    {
+        if(mEnabledModifiers.remove(modifier))
+        {
+            if(modifier instanceof Modifier.WorldModifier) mWorldModifiers.remove(modifier);
+        }
+    }
+    
+    boolean isAutomationEnabled()
+    {
+        return mUpdateAutomators;
+    }
+    
+    /**
+     * Retrieves the average amount of the given currency the automators
+     * of this world produce per second. The income is kept up to date
+     * incrementally as levels, modifiers and tick rates change, so
+     * querying it is cheap.
+     * 
+     * The automated converters are accounted for: their draw is taken off
+     * the income of their inputs, and they run no faster than their
+     * inputs are produced. The inputs at hand are not counted, so this is
+     * the income the world can sustain.
+     * 
+     * @param currency Currency to query
+     * @return Income per second
+     */
+    public BigDecimal getIncomePerSecond(Currency currency)
+    {
+        if(!mUpdateAutomators) return BigDecimal.ZERO;
+        if(mIncome == null) rebuildIncome();
+        
+        HashMap<Currency, BigDecimal> income = mIncome;
+        if(mConverterCount > 0)
+        {
+            if(mNetIncome == null) mNetIncome = computeNetIncome();
+            income = mNetIncome;
+        }
+        BigDecimal amount = income.get(currency);
+        if(amount == null || amount.signum() == 0) return BigDecimal.ZERO;
+        return mSpeedMultiplier == 1.0 ? amount : amount.multiply(new BigDecimal(mSpeedMultiplier));
+    }
+    
+    /**
+     * Recomputes the income contribution of the given automator and
+     * applies the difference to the income of its currency.
+     * 
+     * @param automator Automator whose income may have changed
+     */
+    void updateIncome(Automator automator)
+    {
+        if(mIncome == null) return;
+        setIncome(automator, automator.computeIncome());
+    }
+    
+    private void setIncome(Automator automator, BigDecimal income)
+    {
+        // The draw of a converter may change with its output unchanged
+        mNetIncome = null;
+        
+        BigDecimal old = automator.getIncome();
+        if(old.compareTo(income) == 0) return;
+        automator.setIncome(income);
+        
+        Currency c = automator.getGenerator().getCurrency();
+        BigDecimal sum = mIncome.get(c);
+        sum = (sum == null ? BigDecimal.ZERO : sum).subtract(old).add(income);
+        mIncome.put(c, sum);
+    }
+    
+    /**
+     * Computes the income after the consumption of the converters. The
+     * converters are visited in processing order, so the production of
+     * their inputs is final when they are reached. When the converters
+     * want more of an input than is produced, each gets the same share
+     * of its draw, and a converter runs at the share of its scarcest
+     * input.
+     * @return Income of each currency
+     */
+    private HashMap<Currency, BigDecimal> computeNetIncome()
+    {
+        List<Automator> order = processingOrder();
+        IdentityHashMap<Currency, BigDecimal> demand = new IdentityHashMap<>();
+        for(Automator a : order)
+        {
+            Generator g = a.getGenerator();
+            Currency[] inputs = g.inputs();
+            if(inputs == null) continue;
+            BigDecimal cycles = a.computeCycles();
+            if(cycles.signum() == 0) continue;
+            for(Currency input : inputs)
+            {
+                demand.merge(input, cycles.multiply(new BigDecimal(g.getInputAmount(input))), BigDecimal::add);
+            }
+        }
+        
+        HashMap<Currency, BigDecimal> income = new HashMap<>(mIncome);
+        IdentityHashMap<Currency, BigDecimal> shares = new IdentityHashMap<>();
+        IdentityHashMap<Currency, BigDecimal> drawn = new IdentityHashMap<>();
+        for(Automator a : order)
+        {
+            Generator g = a.getGenerator();
+            Currency[] inputs = g.inputs();
+            if(inputs == null) continue;
+            BigDecimal cycles = a.computeCycles();
+            if(cycles.signum() == 0) continue;
+            
+            BigDecimal share = BigDecimal.ONE;
+            for(Currency input : inputs)
+            {
+                BigDecimal s = shares.get(input);
+                if(s == null)
+                {
+                    BigDecimal produced = income.get(input);
+                    BigDecimal wanted = demand.get(input);
+                    if(produced == null || produced.signum() <= 0) s = BigDecimal.ZERO;
+                    else if(produced.compareTo(wanted) >= 0) s = BigDecimal.ONE;
+                    else s = produced.divide(wanted, MathContext.DECIMAL64);
+                    shares.put(input, s);
+                }
+                share = share.min(s);
+            }
+            
+            if(share.compareTo(BigDecimal.ONE) < 0 && a.getIncome().signum() != 0)
+            {
+                Currency c = g.getCurrency();
+                income.put(c, income.get(c).subtract(a.getIncome().multiply(BigDecimal.ONE.subtract(share))));
+            }
+            for(Currency input : inputs)
+            {
+                BigDecimal draw = cycles.multiply(share).multiply(new BigDecimal(g.getInputAmount(input)));
+                drawn.merge(input, draw, BigDecimal::add);
+            }
+        }
+        
+        for(Map.Entry<Currency, BigDecimal> entry : drawn.entrySet())
+        {
+            BigDecimal produced = income.get(entry.getKey());
+            BigDecimal net = (produced == null ? BigDecimal.ZERO : produced).subtract(entry.getValue());
+            income.put(entry.getKey(), net.max(BigDecimal.ZERO));
+        }
+        return income;
+    }
+    
+    /**
+     * Computes the income of every automator from scratch, e.g. after
+     * this world has been deserialized
+     */
+    private void rebuildIncome()
+    {
+        mIncome = new HashMap<>();
+        for(Automator a : mAutomators.entries())
+        {
+            a.setIncome(BigDecimal.ZERO);
+            setIncome(a, a.computeIncome());
+        }
+    }
+    
+    /**
+     * Computes how long it takes until the balance of the given currency
+     * reaches the target with the current income. The automators fire at
+     * discrete intervals, so the answer is the moment of the exact tick
+     * that pushes the balance over the target.
+     * 
+     * The production of each automator is a step function of time. A
+     * straight line through the steps bounds the answer from both sides,
+     * and the answer is found by bisecting that bracket, which costs
+     * O(automators of the currency) per step. Generators using probability
+     * or remainders are estimated by their average output per tick, and
+     * generators with a cooldown by their average time between processings.
+     * Timed modifiers are assumed to stay as they are.
+     * 
+     * The production of a currency that automated converters consume or
+     * produce depends on the supply of their inputs, so the time for such
+     * a currency is estimated from its income, as given by
+     * getIncomePerSecond().
+     * 
+     * @param currency Currency to query
+     * @param target Balance to reach
+     * @return Time in seconds, or positive infinity if never
+     */
+    public double timeUntil(Currency currency, BigInteger target)
+    {
+        if(currency == null) throw new IllegalArgumentException("Currency cannot be null");
+        if(target == null) throw new IllegalArgumentException("Target cannot be null");
+        
+        BigDecimal needed = new BigDecimal(target.subtract(currency.getValue()));
+        if(needed.signum() <= 0) return 0.0;
+        if(!mUpdateAutomators || mSpeedMultiplier <= 0.0) return Double.POSITIVE_INFINITY;
+        
+        if(isConverted(currency))
+        {
+            BigDecimal income = getIncomePerSecond(currency);
+            if(income.signum() <= 0) return Double.POSITIVE_INFINITY;
+            return needed.divide(income, MathContext.DECIMAL64).doubleValue();
+        }
+        
+        // Gather the producing automators and the continuous approximation
+        ArrayList<Automator> producers = new ArrayList<>();
+        ArrayList<BigDecimal> amounts = new ArrayList<>();
+        BigDecimal rate = BigDecimal.ZERO;
+        BigDecimal head = BigDecimal.ZERO;
+        BigDecimal step = BigDecimal.ZERO;
+        for(Generator g : currency.mGenerators)
+        {
+            BigDecimal amount = g.getExpectedAmount();
+            if(amount.signum() <= 0) continue;
+            
+            for(Automator a : g.automators())
+            {
+                double period = a.getEffectiveTickRate();
+                if(period <= 0.0) continue;
+                
+                producers.add(a);
+                amounts.add(amount);
+                BigDecimal perSecond = amount.divide(new BigDecimal(period), MathContext.DECIMAL64);
+                rate = rate.add(perSecond);
+                head = head.add(perSecond.multiply(new BigDecimal(a.getTickTimer())));
+                step = step.add(amount);
+            }
+        }
+        if(rate.signum() <= 0) return Double.POSITIVE_INFINITY;
+        
+        // Production by time t is between (head + rate * t - step) and (head + rate * t)
+        double lo = Math.max(0.0, needed.subtract(head).divide(rate, MathContext.DECIMAL64).doubleValue());
+        double hi = needed.subtract(head).add(step).divide(rate, MathContext.DECIMAL64).doubleValue();
+        if(Double.isInfinite(hi)) return Double.POSITIVE_INFINITY;
+        hi = Math.max(hi, lo);
+        if(producedBy(lo, producers, amounts).compareTo(needed) >= 0)
+        {
+            hi = lo;
+        }
+        else
+        {
+            while(true)
+            {
+                double mid = lo + (hi - lo) / 2;
+                if(mid <= lo || mid >= hi) break;
+                if(producedBy(mid, producers, amounts).compareTo(needed) >= 0) hi = mid;
+                else lo = mid;
+            }
+        }
+        
+        // Snap to the last tick at or before the upper end of the bracket
+        double time = 0.0;
+        for(Automator a : producers)
+        {
+            double period = a.getEffectiveTickRate();
+            double ticks = Math.floor((a.getTickTimer() + hi) / period);
+            if(ticks >= 1.0) time = Math.max(time, ticks * period - a.getTickTimer());
+        }
+        return time / mSpeedMultiplier;
+    }
+    
+    /**
+     * Checks whether an automated converter consumes or produces the
+     * given currency
+     */
+    private boolean isConverted(Currency currency)
+    {
+        for(Generator g : currency.mConsumers)
+        {
+            if(g.automators().size() > 0) return true;
+        }
+        for(Generator g : currency.mGenerators)
+        {
+            if(g.isConverter() && g.automators().size() > 0) return true;
+        }
+        return false;
+    }
+    
+    /**
+     * Computes the amount the given automators produce in the given
+     * (speed multiplied) time
+     */
+    private static BigDecimal producedBy(double time, List<Automator> producers, List<BigDecimal> amounts)
+    {
+        BigDecimal sum = BigDecimal.ZERO;
+        for(int i = 0; i < producers.size(); ++i)
+        {
+            Automator a = producers.get(i);
+            double ticks = Math.floor((a.getTickTimer() + time) / a.getEffectiveTickRate());
+            if(ticks >= 1.0) sum = sum.add(amounts.get(i).multiply(new BigDecimal(ticks)));
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Harri Pellikka.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.manabreak.libclicker;
+
+import java.math.BigInteger;
+
+/**
+ * Immutable view of a world at one moment, for reading the state from
+ * other threads, such as render or dashboard threads.
+ * 
+ * A world publishes a new snapshot at the end of each update, once
+ * snapshots have been enabled with World.setSnapshotsEnabled(). Readers
+ * get the latest one with World.getSnapshot() without blocking the thread
+ * updating the world, and always see a state between two steps of the
+ * simulation: a purchase is either fully in the snapshot, with the money
+ * debited and the item upgraded, or not at all.
+ * 
+ * Values are stored by the ids of the entities, so looking one up is
+ * O(1). Entities added after the snapshot was taken are not in it.
+ *
+ * @author Harri Pellikka
+ */
+public final class WorldSnapshot
+{
+    /**
+     * Levels and pricing of the items of one kind, by id
+     */
+    private static final class Items
+    {
+        private final Item[] mItems;
+        private final long[] mLevels;
+        private final BigInteger[] mBasePrices;
+        private final double[] mPriceMultipliers;
+        private final Curve[] mPriceCurves;
+        private final Item.Cost[][] mCosts;
+        
+        private <T extends Item> Items(Registry<T> registry)
+        {
+            int capacity = registry.capacity();
+            mItems = new Item[capacity];
+            mLevels = new long[capacity];
+            mBasePrices = new BigInteger[capacity];
+            mPriceMultipliers = new double[capacity];
+            mPriceCurves = new Curve[capacity];
+            mCosts = new Item.Cost[capacity][];
+            for(T item : registry.entries())
+            {
+                int id = item.mId;
+                mItems[id] = item;
+                mLevels[id] = item.mItemLevel;
+                mBasePrices[id] = item.mBasePrice;
+                mPriceMultipliers[id] = item.mPriceMultiplier;
+                mPriceCurves[id] = item.mPriceCurve;
+                if(item.mCosts != null)
+                {
+                    // Costs are updated in place, so copy them
+                    Item.Cost[] costs = new Item.Cost[item.mCosts.size()];
+                    for(int i = 0; i < costs.length; ++i)
+                    {
+                        Item.Cost cost = item.mCosts.get(i);
+                        costs[i] = new Item.Cost(cost.mCurrency, cost.mBasePrice);
+                    }
+                    mCosts[id] = costs;
+                }
+            }
+        }
+        
+        private int indexOf(Item item)
+        {
+            int id = item != null ? item.mId : -1;
+            return id >= 0 && id < mItems.length && mItems[id] == item ? id : -1;
+        }
+        
+        private BigInteger priceAt(int index, BigInteger basePrice)
+        {
+            return Item.priceAt(basePrice, mPriceCurves[index], mPriceMultipliers[index], mLevels[index]);
+        }
+    }
+    
+    private final double mTime;
+    private final double mSpeedMultiplier;
+    
+    private final Currency[] mCurrencies;
+    private final BigInteger[] mValues;
+    
+    private final Items mGenerators;
+    private final Items mAutomators;
+    private final Items mModifiers;
+    private final boolean[] mEnabled;
+    
+    WorldSnapshot(World world, Registry<Currency> currencies, Registry<Generator> generators,
+            Registry<Automator> automators, Registry<Modifier> modifiers)
+    {
+        mTime = world.getTime();
+        mSpeedMultiplier = world.getSpeedMultiplier();
+        
+        int capacity = currencies.capacity();
+        mCurrencies = new Currency[capacity];
+        mValues = new BigInteger[capacity];
+        for(Currency c : currencies.entries())
+        {
+            mCurrencies[c.mId] = c;
+            mValues[c.mId] = c.getValue();
+        }
+        
+        mGenerators = new Items(generators);
+        mAutomators = new Items(automators);
+        mModifiers = new Items(modifiers);
+        mEnabled = new boolean[modifiers.capacity()];
+        for(Modifier m : modifiers.entries())
+        {
+            mEnabled[m.mId] = m.isEnabled();
+        }
+    }
+    
+    /**
+     * Retrieves the world time when this snapshot was taken
+     * @return World time in seconds
+     */
+    public double getTime()
+    {
+        return mTime;
+    }
+    
+    /**
+     * Retrieves the speed multiplier of the world
+     * @return Speed multiplier
+     */
+    public double getSpeedMultiplier()
+    {
+        return mSpeedMultiplier;
+    }
+    
+    /**
+     * Retrieves the amount of a currency
+     * @param currency Currency to query
+     * @return The amount, or null if the currency isn't in this snapshot
+     */
+    public BigInteger getValue(Currency currency)
+    {
+        int id = currency != null ? currency.mId : -1;
+        return id >= 0 && id < mCurrencies.length && mCurrencies[id] == currency ? mValues[id] : null;
+    }
+    
+    /**
+     * Retrieves the level of a generator, an automator or a modifier
+     * @param item Item to query
+     * @return The level, or -1 if the item isn't in this snapshot
+     */
+    public long getLevel(Item item)
+    {
+        Items items = itemsOf(item);
+        int index = items != null ? items.indexOf(item) : -1;
+        return index >= 0 ? items.mLevels[index] : -1;
+    }
+    
+    /**
+     * Retrieves the price of the next level of an item, computed like
+     * Item.getPrice() from the state in this snapshot
+     * @param item Item to query
+     * @return The price, or null if the item isn't in this snapshot
+     */
+    public BigInteger getPrice(Item item)
+    {
+        Items items = itemsOf(item);
+        int index = items != null ? items.indexOf(item) : -1;
+        if(index < 0) return null;
+        
+        return items.priceAt(index, items.mBasePrices[index]);
+    }
+    
+    /**
+     * Retrieves the price of the next level of an item in a currency,
+     * computed like Item.getPrice(Currency) from the state in this
+     * snapshot
+     * @param item Item to query
+     * @param currency Currency of the price
+     * @return The price, or null if the item isn't in this snapshot or
+     * isn't priced in the currency
+     */
+    public BigInteger getPrice(Item item, Currency currency)
+    {
+        Items items = itemsOf(item);
+        int index = items != null ? items.indexOf(item) : -1;
+        if(index < 0 || items.mCosts[index] == null) return null;
+        
+        for(Item.Cost cost : items.mCosts[index])
+        {
+            if(cost.mCurrency == currency) return items.priceAt(index, cost.mBasePrice);
+        }
+        return null;
+    }
+    
+    /**
+     * Checks whether a modifier was enabled
+     * @param modifier Modifier to query
+     * @return True if the modifier was enabled, false if it wasn't or
+     * it isn't in this snapshot
+     */
+    public boolean isEnabled(Modifier modifier)
+    {
+        int index = mModifiers.indexOf(modifier);
+        return index >= 0 && mEnabled[index];
+    }
+    
+    private Items itemsOf(Item item)
+    {
+        if(item instanceof Generator) return mGenerators;
+        if(item instanceof Automator) return mAutomators;
+        if(item instanceof Modifier) return mModifiers;
+        return null;
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Harri Pellikka.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.manabreak.libclicker;
+
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Harri Pellikka
+ */
+public class BinomialTest
+{
+    /**
+     * Checks the sample mean and variance against n * p and n * p * q
+     */
+    private static void check(long n, double p)
+    {
+        Random rnd = new Random(n ^ Double.doubleToLongBits(p));
+        int samples = 20000;
+        double sum = 0.0, sumSq = 0.0;
+        for(int i = 0; i < samples; ++i)
+        {
+            long k = Binomial.sample(rnd, n, p);
+            assertTrue(k >= 0 && k <= n);
+            sum += k;
+            sumSq += (double)k * k;
+        }
+        double mean = sum / samples;
+        double variance = sumSq / samples - mean * mean;
+        double expectedMean = n * p;
+        double expectedVariance = n * p * (1.0 - p);
+        
+        // Five standard errors
+        assertEquals("mean, n = " + n + ", p = " + p, expectedMean, mean, 5.0 * Math.sqrt(expectedVariance / samples));
+        assertEquals("variance, n = " + n + ", p = " + p, expectedVariance, variance, 5.0 * expectedVariance * Math.sqrt(2.0 / samples));
+    }
+    
+    @Test
+    public void testDistribution()
+    {
+        System.out.println("Binomial distribution");
+        check(10, 0.3);
+        check(1000, 0.001);
+        check(100000, 0.0001);
+        check(1000, 0.4);
+        check(1000000, 0.25);
+        check(1000000000L, 0.5);
+        check(5000, 0.97);
+    }
+    
+    @Test
+    public void testEdges()
+    {
+        System.out.println("Binomial edges");
+        Random rnd = new Random(1);
+        assertEquals(0, Binomial.sample(rnd, 0, 0.5));
+        assertEquals(0, Binomial.sample(rnd, 100, 0.0));
+        assertEquals(100, Binomial.sample(rnd, 100, 1.0));
+        assertEquals(Binomial.logFactorial(300), Binomial.logFactorial(299) + Math.log(300), 1e-9);
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Harri Pellikka.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.manabreak.libclicker;
+
+import java.math.BigInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Harri Pellikka
+ */
+public class CommandQueueTest
+{
+    @Test
+    public void testCommands()
+    {
+        System.out.println("Command queue");
+        World w = new World();
+        Currency c = new Currency.Builder(w).name("Gold").build();
+        Generator g = new Generator.Builder(w).baseAmount(1).generate(c).build();
+        g.upgrade();
+        Generator mine = new Generator.Builder(w).price(10).generate(c).build();
+        Modifier m = new Modifier.Builder().modify(g).multiplier(2.0).build();
+        
+        CommandQueue q = w.openCommandQueue(5);
+        assertSame(q, w.openCommandQueue(100));
+        assertSame(q, w.getCommandQueue());
+        assertEquals(8, q.getCapacity());
+        
+        // Applied in order: ten clicks, a purchase, a doubler, one more click
+        assertTrue(q.click(g, 10));
+        assertTrue(q.buy(mine, c));
+        assertTrue(q.enable(m));
+        assertTrue(q.click(g, 1));
+        assertEquals(4, q.size());
+        assertEquals(BigInteger.ZERO, c.getValue());
+        
+        w.update(0.0);
+        assertEquals(0, q.size());
+        assertEquals(1, mine.getItemLevel());
+        assertTrue(m.isEnabled());
+        assertEquals(new BigInteger("2"), c.getValue());
+        
+        assertTrue(q.disable(m));
+        w.update(0.0);
+        assertFalse(m.isEnabled());
+    }
+    
+    @Test
+    public void testBackpressure()
+    {
+        System.out.println("Command queue backpressure");
+        World w = new World();
+        Currency c = new Currency.Builder(w).name("Gold").build();
+        Generator g = new Generator.Builder(w).baseAmount(1).generate(c).build();
+        g.upgrade();
+        
+        CommandQueue q = w.openCommandQueue(4);
+        for(int i = 0; i < 4; ++i)
+        {
+            assertTrue(q.click(g, 1));
+        }
+        assertFalse(q.click(g, 1));
+        assertFalse(q.click(g, 1));
+        assertEquals(2, q.getRejectedCount());
+        
+        w.update(0.0);
+        assertEquals(new BigInteger("4"), c.getValue());
+        
+        // The ring wraps around after draining
+        for(int i = 0; i < 4; ++i)
+        {
+            assertTrue(q.click(g, 1));
+        }
+        w.update(0.0);
+        assertEquals(new BigInteger("8"), c.getValue());
+    }
+    
+    @Test
+    public void testForeignItems()
+    {
+        System.out.println("Command queue with foreign items");
+        World w = new World();
+        World other = new World();
+        Currency c = new Currency.Builder(other).name("Gold").build();
+        Generator g = new Generator.Builder(other).generate(c).build();
+        
+        CommandQueue q = w.openCommandQueue(4);
+        try
+        {
+            q.click(g, 1);
+            fail("Expected an exception");
+        }
+        catch(IllegalArgumentException e)
+        {
+            // OK
+        }
+        assertEquals(0, q.size());
+    }
+    
+    @Test
+    public void testProducers() throws InterruptedException
+    {
+        System.out.println("Command queue with many producers");
+        final World w = new World();
+        Currency c = new Currency.Builder(w).name("Gold").build();
+        final Generator g = new Generator.Builder(w).baseAmount(1).generate(c).build();
+        g.upgrade();
+        
+        final CommandQueue q = w.openCommandQueue(64);
+        final AtomicLong accepted = new AtomicLong();
+        Thread[] producers = new Thread[4];
+        for(int i = 0; i < producers.length; ++i)
+        {
+            producers[i] = new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    for(int j = 0; j < 20000; ++j)
+                    {
+                        if(q.click(g, 1)) accepted.incrementAndGet();
+                    }
+                }
+            });
+            producers[i].start();
+        }
+        
+        // This thread owns the world
+        boolean running = true;
+        while(running)
+        {
+            running = false;
+            for(Thread t : producers)
+            {
+                running |= t.isAlive();
+            }
+            w.update(0.01);
+        }
+        w.update(0.01);
+        
+        assertEquals(0, q.size());
+        assertEquals(80000, accepted.get() + q.getRejectedCount());
+        assertEquals(accepted.get(), c.getValue().longValue());
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Harri Pellikka.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.manabreak.libclicker;
+
+import java.math.BigInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Harri Pellikka
+ */
+public class ConcurrentCurrencyTest
+{
+    private static void run(Runnable... tasks) throws InterruptedException
+    {
+        Thread[] threads = new Thread[tasks.length];
+        for(int i = 0; i < tasks.length; ++i)
+        {
+            threads[i] = new Thread(tasks[i]);
+            threads[i].start();
+        }
+        for(Thread t : threads)
+        {
+            t.join();
+        }
+    }
+    
+    @Test
+    public void testArithmetic()
+    {
+        System.out.println("Concurrent currency arithmetic");
+        World world = new World();
+        Currency c = new Currency.Builder(world).concurrent().build();
+        
+        c.add(new BigInteger("100"));
+        c.add(new BigInteger("-30"));
+        c.sub(new BigInteger("20"));
+        assertEquals(new BigInteger("50"), c.getValue());
+        
+        c.multiply(2.0);
+        assertEquals(new BigInteger("100"), c.getValue());
+        
+        assertFalse(c.trySub(new BigInteger("101")));
+        assertTrue(c.trySub(new BigInteger("100")));
+        assertEquals(BigInteger.ZERO, c.getValue());
+        
+        // Cells overflow into the base
+        BigInteger big = BigInteger.valueOf(Long.MAX_VALUE / 2 + 1);
+        for(int i = 0; i < 5; ++i)
+        {
+            c.add(big);
+        }
+        assertEquals(big.multiply(BigInteger.valueOf(5)), c.getValue());
+        
+        BigInteger huge = BigInteger.TEN.pow(300);
+        c.set(huge);
+        c.add(huge);
+        assertEquals(huge.shiftLeft(1), c.getValue());
+        assertEquals(huge.shiftLeft(1).toString(), c.getAmountAsString());
+    }
+    
+    @Test
+    public void testContributors() throws InterruptedException
+    {
+        System.out.println("Concurrent currency contributors");
+        World world = new World();
+        final Currency c = new Currency.Builder(world).concurrent().build();
+        
+        Runnable contributor = new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                for(int i = 0; i < 100000; ++i)
+                {
+                    c.add(BigInteger.ONE);
+                }
+            }
+        };
+        run(contributor, contributor, contributor, contributor);
+        assertEquals(new BigInteger("400000"), c.getValue());
+    }
+    
+    @Test
+    public void testPurchases() throws InterruptedException
+    {
+        System.out.println("Concurrent currency purchases");
+        World world = new World();
+        final Currency c = new Currency.Builder(world).concurrent().build();
+        final BigInteger price = BigInteger.TEN;
+        final AtomicLong bought = new AtomicLong();
+        final AtomicLong overdrawn = new AtomicLong();
+        
+        Runnable contributor = new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                for(int i = 0; i < 100000; ++i)
+                {
+                    c.add(BigInteger.ONE);
+                }
+            }
+        };
+        Runnable buyer = new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                for(int i = 0; i < 20000; ++i)
+                {
+                    if(c.trySub(price)) bought.incrementAndGet();
+                    if(c.getValue().signum() < 0) overdrawn.incrementAndGet();
+                }
+            }
+        };
+        run(contributor, contributor, buyer, buyer);
+        
+        BigInteger spent = price.multiply(BigInteger.valueOf(bought.get()));
+        assertEquals(new BigInteger("200000"), c.getValue().add(spent));
+        assertEquals(0, overdrawn.get());
+    }
+    
+    @Test
+    public void testThresholds()
+    {
+        System.out.println("Concurrent currency thresholds");
+        World world = new World();
+        Currency c = new Currency.Builder(world).concurrent().build();
+        final int[] crossed = { 0 };
+        c.addThreshold(new BigInteger("10"), (currency, threshold) -> crossed[0]++);
+        
+        c.add(new BigInteger("15"));
+        assertEquals(0, crossed[0]);
+        
+        // Checked by the world thread
+        world.update(0.0);
+        assertEquals(1, crossed[0]);
+        assertEquals(0, c.getPendingThresholdCount());
+    }
+}
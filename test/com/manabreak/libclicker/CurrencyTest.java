@@ -1,82 +1,164 @@
-/*
- * The MIT License
- *
- * Copyright 2015 Harri Pellikka.
- *
- * Permission is hereby granted, free of charge, to any person obtaining a copy
- * of this software and associated documentation files (the "Software"), to deal
- * in the Software without restriction, including without limitation the rights
- * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
- * copies of the Software, and to permit persons to whom the Software is
- * furnished to do so, subject to the following conditions:
- *
- * The above copyright notice and this permission notice shall be included in
- * all copies or substantial portions of the Software.
- *
- * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
- * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
- * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
- * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
- * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
- * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
- * THE SOFTWARE.
- */
-package com.manabreak.libclicker;
-
-import java.math.BigInteger;
-import org.junit.Test;
-import static org.junit.Assert.*;
-
-/**
- *
- * @author Harri Pellikka
- */
-public class CurrencyTest
-{
-
-    /**
-     * Test of getName method, of class Currency.
-     */
-    @Test
-    public void testGetName()
-    {
-        World world = new World();
-        System.out.println("getName()");
-        Currency instance = new Currency.Builder(world).name("TestCurrency").build();
-        String expResult = "TestCurrency";
-        String result = instance.getName();
-        assertEquals(expResult, result);
-    }
-
-    /**
-     * Test of add method, of class Currency.
-     */
-    @Test
-    public void testArithmetic()
-    {
-        World world = new World();
-        
-        System.out.println("testArithmetic()");
-        Currency c = new Currency.Builder(world).build();
-        assertEquals(BigInteger.ZERO, c.getValue());
-        
-        c.add(new BigInteger("1"));
-        assertEquals(BigInteger.ONE, c.getValue());
-        
-        c.add(new BigInteger("12344"));
-        assertEquals(new BigInteger("12345"), c.getValue());
-        
-        c.sub(new BigInteger("300"));
-        assertEquals(new BigInteger("12045"), c.getValue());
-        
-        c.set(new BigInteger("100"));
-        assertEquals(new BigInteger("100"), c.getValue());
-        
-        c.multiply(2.0);
-        assertEquals(new BigInteger("200"), c.getValue());
-        
-        c.multiply(1.145);
-        int targetVal = (int)(1.145 * 200);
-        assertEquals(new BigInteger("" + targetVal), c.getValue());
-    }
-}
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Harri Pellikka.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.manabreak.libclicker;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Harri Pellikka
+ */
+public class CurrencyTest
+{
+
+    /**
+     * Test of getName method, of class Currency.
+     */
+    @Test
+    public void testGetName()
+    {
+        World world = new World();
+        System.out.println("getName()");
+        Currency instance = new Currency.Builder(world).name("TestCurrency").build();
+        String expResult = "TestCurrency";
+        String result = instance.getName();
+        assertEquals(expResult, result);
+    }
+
+    /**
+     * Test of add method, of class Currency.
+     */
+    @Test
+    public void testArithmetic()
+    {
+        World world = new World();
+        
+        System.out.println("testArithmetic()");
+        Currency c = new Currency.Builder(world).build();
+        assertEquals(BigInteger.ZERO, c.getValue());
+        
+        c.add(new BigInteger("1"));
+        assertEquals(BigInteger.ONE, c.getValue());
+        
+        c.add(new BigInteger("12344"));
+        assertEquals(new BigInteger("12345"), c.getValue());
+        
+        c.sub(new BigInteger("300"));
+        assertEquals(new BigInteger("12045"), c.getValue());
+        
+        c.set(new BigInteger("100"));
+        assertEquals(new BigInteger("100"), c.getValue());
+        
+        c.multiply(2.0);
+        assertEquals(new BigInteger("200"), c.getValue());
+        
+        c.multiply(1.145);
+        int targetVal = (int)(1.145 * 200);
+        assertEquals(new BigInteger("" + targetVal), c.getValue());
+    }
+    
+    @Test
+    public void testThresholds()
+    {
+        World world = new World();
+        Currency c = new Currency.Builder(world).build();
+        
+        final ArrayList<BigInteger> crossed = new ArrayList<>();
+        Currency.ThresholdCallback callback = new Currency.ThresholdCallback()
+        {
+            @Override
+            public void onThresholdCrossed(Currency currency, BigInteger threshold)
+            {
+                crossed.add(threshold);
+            }
+        };
+        
+        c.addThreshold(new BigInteger("100"), callback);
+        c.addThreshold(new BigInteger("10"), callback);
+        c.addThreshold(new BigInteger("50"), callback);
+        c.addThreshold(new BigInteger("1000"), callback);
+        assertEquals(4, c.getPendingThresholdCount());
+        
+        c.add(new BigInteger("9"));
+        assertTrue(crossed.isEmpty());
+        
+        c.add(BigInteger.ONE);
+        assertEquals(1, crossed.size());
+        assertEquals(new BigInteger("10"), crossed.get(0));
+        
+        // One bulk add crosses two thresholds, in ascending order
+        c.add(new BigInteger("200"));
+        assertEquals(3, crossed.size());
+        assertEquals(new BigInteger("50"), crossed.get(1));
+        assertEquals(new BigInteger("100"), crossed.get(2));
+        
+        // Thresholds fire only once
+        c.sub(new BigInteger("200"));
+        c.add(new BigInteger("200"));
+        assertEquals(3, crossed.size());
+        
+        c.removeThreshold(new BigInteger("1000"));
+        c.add(new BigInteger("10000"));
+        assertEquals(3, crossed.size());
+        assertEquals(0, c.getPendingThresholdCount());
+        
+        // A threshold already reached fires right away
+        c.addThreshold(new BigInteger("5"), callback);
+        assertEquals(4, crossed.size());
+    }
+    
+    @Test
+    public void testThresholdEvents()
+    {
+        World world = new World();
+        Currency c = new Currency.Builder(world).build();
+        Generator g = new Generator.Builder(world)
+            .baseAmount(1)
+            .generate(c)
+            .build();
+        g.upgrade();
+        new Automator.Builder(world)
+            .automate(g)
+            .every(1.0)
+            .build()
+            .upgrade();
+        
+        final ArrayList<EventBus.ThresholdCrossed> events = new ArrayList<>();
+        world.getEvents().subscribe(EventBus.ThresholdCrossed.class, events::add);
+        
+        for(int i = 1; i <= 1000; ++i)
+        {
+            c.addThreshold(new BigInteger("" + i * 10));
+        }
+        
+        world.update(95.0);
+        assertEquals(9, events.size());
+        assertEquals(new BigInteger("90"), events.get(8).getThreshold());
+        assertSame(c, events.get(0).getCurrency());
+        assertEquals(991, c.getPendingThresholdCount());
+    }
+}
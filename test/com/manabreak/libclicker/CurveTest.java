@@ -0,0 +1,165 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Harri Pellikka.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.manabreak.libclicker;
+
+import java.math.BigInteger;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Harri Pellikka
+ */
+public class CurveTest
+{
+    /**
+     * Custom curve relying on the cached table
+     */
+    private static class Squares extends Curve
+    {
+        @Override
+        public double valueAt(long level)
+        {
+            return 1.0 + (double)level * level;
+        }
+    }
+    
+    /**
+     * Checks the sums and the inverse against summing level by level
+     */
+    private static void check(String name, Curve curve, long from)
+    {
+        double sum = 0.0;
+        for(long n = 1; n <= 300; ++n)
+        {
+            sum += curve.valueAt(from + n - 1);
+            assertEquals(name + " sum to " + n, sum, curve.sum(from, from + n), sum * 1e-9);
+        }
+        assertEquals(0.0, curve.sum(from, from), 0.0);
+        
+        double total = 0.0;
+        for(long n = 0; n < 200; ++n)
+        {
+            double next = total + curve.valueAt(from + n);
+            
+            // Budgets just below, at and between the prefix sums
+            assertEquals(name + " inverse at " + n, n, curve.maxAffordable(from, total * (1.0 + 1e-12)));
+            assertEquals(name + " inverse below " + (n + 1), n, curve.maxAffordable(from, (total + next) / 2.0));
+            total = next;
+        }
+    }
+    
+    @Test
+    public void testBuiltInCurves()
+    {
+        System.out.println("Built-in curves");
+        for(long from : new long[] { 0, 1, 17, 1000 })
+        {
+            check("exponential", Curve.exponential(1.07), from);
+            check("flat", Curve.exponential(1.0), from);
+            check("linear", Curve.linear(0.5), from);
+            check("polynomial", Curve.polynomial(2.0, 0.5, 0.25, 0.01), from);
+            check("stepped", Curve.stepped(25, 2.0), from);
+            check("piecewise", Curve.piecewise(new long[] { 10, 150 },
+                    Curve.linear(1.0), Curve.polynomial(0.0, 0.0, 1.0), Curve.stepped(10, 1.5)), from);
+        }
+        
+        assertEquals(Math.pow(1.15, 20), Curve.exponential(1.15).valueAt(20), 0.0);
+        assertEquals(11.0, Curve.linear(1.0).valueAt(10), 0.0);
+        assertEquals(8.0, Curve.stepped(10, 2.0).valueAt(35), 0.0);
+        
+        // A shrinking exponential never exceeds 1 / (1 - 0.5) = 2
+        assertEquals(Long.MAX_VALUE, Curve.exponential(0.5).maxAffordable(0, 3.0));
+    }
+    
+    @Test
+    public void testCustomCurve()
+    {
+        System.out.println("Custom curve");
+        check("custom", new Squares(), 0);
+        check("custom", new Squares(), 500);
+        
+        // Past the cached table
+        Curve curve = new Squares();
+        long from = Curve.TABLE_LIMIT - 10;
+        double sum = 0.0;
+        for(long level = from; level < from + 20; ++level)
+        {
+            sum += curve.valueAt(level);
+        }
+        assertEquals(sum, curve.sum(from, from + 20), sum * 1e-12);
+    }
+    
+    @Test
+    public void testLongRanges()
+    {
+        System.out.println("Curves over long ranges");
+        Curve linear = Curve.linear(2.0);
+        
+        // n + 2 * n (n - 1) / 2 = n^2 for n levels from 0
+        assertEquals(1e12, linear.sum(0, 1000000), 1.0);
+        assertEquals(1000000, linear.maxAffordable(0, 1e12));
+        assertEquals(999999, linear.maxAffordable(0, 1e12 - 1.0));
+        
+        Curve exponential = Curve.exponential(1.1);
+        long n = exponential.maxAffordable(100, 1e30);
+        assertTrue(exponential.sum(100, 100 + n) <= 1e30);
+        assertTrue(exponential.sum(100, 100 + n + 1) > 1e30);
+    }
+    
+    @Test
+    public void testAffordableLimit()
+    {
+        System.out.println("Affordable levels up to a limit");
+        Curve flat = new Curve()
+        {
+            @Override
+            public double valueAt(long level)
+            {
+                return 1.0;
+            }
+        };
+        
+        // Past the table the levels are added one by one until the budget
+        // or the limit is passed, rather than summed over doubling ranges
+        assertEquals(1000000, flat.maxAffordable(0, 1e6));
+        assertEquals(100, flat.maxAffordable(Curve.TABLE_LIMIT * 2, 100.0));
+        assertEquals(1000, flat.maxAffordable(0, 1e18, 1000));
+        assertEquals(Curve.TABLE_LIMIT + 5, flat.maxAffordable(0, 1e18, Curve.TABLE_LIMIT + 5));
+        assertEquals(7, flat.maxAffordable(0, Double.POSITIVE_INFINITY, 7));
+        assertEquals(0, flat.maxAffordable(0, 1e6, 0));
+        
+        // The closed forms respect the limit as well
+        assertEquals(10, Curve.linear(0.0).maxAffordable(0, 100.0, 10));
+        assertEquals(7, Curve.exponential(0.5).maxAffordable(0, 3.0, 7));
+        assertEquals(3, Curve.polynomial(1.0).maxAffordable(0, 100.0, 3));
+        
+        // An item passes the levels left below its max level
+        World w = new World();
+        Currency gold = new Currency.Builder(w).name("Gold").build();
+        Generator g = new Generator.Builder(w).generate(gold).priceCurve(flat).maxLevel(100000).build();
+        gold.set(BigInteger.TEN.pow(30));
+        assertEquals(100000, g.getMaxAffordable(gold));
+    }
+}
@@ -0,0 +1,534 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Harri Pellikka.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.manabreak.libclicker;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Differential tests: random worlds are advanced both by the exact
+ * reference loop and by a fast path, and the results are compared.
+ * 
+ * The reference loop updates the world in steps of QUANTUM seconds, i.e.
+ * at least once per automator tick, so it exercises Automator.update,
+ * Generator.process and the remainder handling one tick at a time.
+ * 
+ * All tick rates and time deltas are dyadic fractions, so the tick timers
+ * are exact in floating point and any difference between the loop and a
+ * fast path is a real divergence, not rounding. Generators using
+ * probability are left out, as their output is random.
+ * 
+ * Each trial reports its seed on failure. Set the system property
+ * libclicker.seed to rerun a single trial.
+ *
+ * @author Harri Pellikka
+ */
+public class DifferentialTest
+{
+    private static final int TRIALS = 100;
+    
+    private static final double QUANTUM = 1.0 / 256.0;
+    
+    /**
+     * A random world, with handles to its contents
+     */
+    static final class Fixture
+    {
+        final long seed;
+        final World world = new World();
+        final ArrayList<Currency> currencies = new ArrayList<>();
+        final ArrayList<Generator> generators = new ArrayList<>();
+        final ArrayList<Automator> automators = new ArrayList<>();
+        final ArrayList<Boolean> remainders = new ArrayList<>();
+        final ArrayList<Boolean> modified = new ArrayList<>();
+        
+        /**
+         * True if some modifiers expire, which changes the income over time
+         */
+        final boolean timed;
+        
+        /**
+         * Generators with a cooldown, and whether any of them has several
+         * automators, which the income only estimates
+         */
+        final ArrayList<Boolean> cooled = new ArrayList<>();
+        boolean sharedCooldown = false;
+        
+        /**
+         * True if some generators are converters, whose ticks may only
+         * use the inputs produced before them
+         */
+        final boolean converting;
+        
+        /**
+         * Builds the world of the given seed. The same seed always
+         * builds the same world.
+         */
+        Fixture(long seed)
+        {
+            this.seed = seed;
+            Random rnd = new Random(seed);
+            
+            int currencies = 1 + rnd.nextInt(3);
+            for(int i = 0; i < currencies; ++i)
+            {
+                Currency c = new Currency.Builder(world).name("Currency " + i).build();
+                c.set(BigInteger.valueOf(rnd.nextInt(1000)));
+                this.currencies.add(c);
+            }
+            
+            int generators = 1 + rnd.nextInt(5);
+            for(int i = 0; i < generators; ++i)
+            {
+                boolean remainder = rnd.nextBoolean();
+                Generator.Builder b = new Generator.Builder(world)
+                    .name("Generator " + i)
+                    .baseAmount(rnd.nextInt(4) == 0 ? BigInteger.TEN.pow(20 + rnd.nextInt(200)) : BigInteger.valueOf(1 + rnd.nextInt(100)))
+                    .multiplier(1.0 + rnd.nextInt(5) * 0.25 + (rnd.nextBoolean() ? rnd.nextDouble() * 0.1 : 0.0))
+                    .generate(this.currencies.get(rnd.nextInt(currencies)));
+                if(remainder) b.useRemainder();
+                else b.discardRemainder();
+                boolean cooldown = rnd.nextInt(4) == 0;
+                if(cooldown) b.cooldown((1 + rnd.nextInt(64)) / 32.0);
+                Generator g = b.build();
+                cooled.add(cooldown);
+                g.setItemLevel(rnd.nextInt(8) == 0 ? 0 : 1 + rnd.nextInt(5));
+                this.generators.add(g);
+                remainders.add(remainder);
+                
+                boolean mod = rnd.nextInt(3) == 0;
+                if(mod)
+                {
+                    new Modifier.Builder()
+                        .modify(g)
+                        .multiplier(1.0 + rnd.nextDouble() * 2.0)
+                        .build()
+                        .enable();
+                }
+                modified.add(mod);
+                
+                int automators = rnd.nextInt(3);
+                for(int j = 0; j < automators; ++j)
+                {
+                    Automator a = new Automator.Builder(world)
+                        .automate(g)
+                        .every((1 + rnd.nextInt(64)) / 16.0)
+                        .tickRateMultiplier(2.0)
+                        .build();
+                    a.setItemLevel(rnd.nextInt(8) == 0 ? 0 : 1 + rnd.nextInt(4));
+                    this.automators.add(a);
+                }
+                if(cooldown && automators > 1) sharedCooldown = true;
+            }
+            
+            if(rnd.nextBoolean())
+            {
+                for(int i = 0; i < this.generators.size(); ++i)
+                {
+                    if(rnd.nextBoolean())
+                    {
+                        this.generators.get(i).addTag("tagged");
+                        modified.set(i, true);
+                    }
+                }
+                new Modifier.Builder()
+                    .modifyTagged(world, "tagged")
+                    .multiplier(1.0 + rnd.nextDouble() * 2.0)
+                    .build()
+                    .enable();
+            }
+            
+            double speed = new double[] { 1.0, 0.5, 2.0, 4.0 }[rnd.nextInt(4)];
+            if(speed != 1.0)
+            {
+                new Modifier.Builder()
+                    .modify(world)
+                    .speedBy(speed)
+                    .build()
+                    .enable();
+            }
+            
+            timed = rnd.nextInt(3) == 0;
+            if(timed)
+            {
+                for(Generator g : this.generators)
+                {
+                    if(rnd.nextBoolean())
+                    {
+                        new Modifier.Builder()
+                            .modify(g)
+                            .multiplier(1.0 + rnd.nextDouble() * 4.0)
+                            .duration((1 + rnd.nextInt(256)) / 32.0)
+                            .build()
+                            .enable();
+                    }
+                }
+                if(rnd.nextBoolean())
+                {
+                    new Modifier.Builder()
+                        .modify(world)
+                        .speedBy(rnd.nextBoolean() ? 2.0 : 0.25)
+                        .duration((1 + rnd.nextInt(256)) / 32.0)
+                        .build()
+                        .enable();
+                }
+            }
+            
+            // Converters only lead to later currencies, so there are no
+            // cycles. They often run short of their inputs.
+            converting = currencies > 1 && rnd.nextInt(3) == 0;
+            if(converting)
+            {
+                int converters = 1 + rnd.nextInt(3);
+                for(int i = 0; i < converters; ++i)
+                {
+                    int from = rnd.nextInt(currencies - 1);
+                    int to = from + 1 + rnd.nextInt(currencies - 1 - from);
+                    boolean remainder = rnd.nextBoolean();
+                    Generator.Builder b = new Generator.Builder(world)
+                        .name("Converter " + i)
+                        .baseAmount(1 + rnd.nextInt(10))
+                        .multiplier(1.0 + rnd.nextInt(3) * 0.5)
+                        .consume(this.currencies.get(from), 1 + rnd.nextInt(rnd.nextBoolean() ? 10 : 200))
+                        .generate(this.currencies.get(to));
+                    if(remainder) b.useRemainder();
+                    else b.discardRemainder();
+                    boolean cooldown = rnd.nextInt(4) == 0;
+                    if(cooldown) b.cooldown((1 + rnd.nextInt(64)) / 32.0);
+                    Generator g = b.build();
+                    g.setItemLevel(1 + rnd.nextInt(3));
+                    this.generators.add(g);
+                    remainders.add(remainder);
+                    modified.add(false);
+                    cooled.add(cooldown);
+                    
+                    int automators = 1 + rnd.nextInt(2);
+                    for(int j = 0; j < automators; ++j)
+                    {
+                        Automator a = new Automator.Builder(world)
+                            .automate(g)
+                            .every((1 + rnd.nextInt(64)) / 16.0)
+                            .tickRateMultiplier(2.0)
+                            .build();
+                        a.setItemLevel(1 + rnd.nextInt(4));
+                        this.automators.add(a);
+                    }
+                    if(cooldown && automators > 1) sharedCooldown = true;
+                }
+            }
+        }
+        
+        /**
+         * Advances the world tick by tick. This is the reference every
+         * fast path is compared against.
+         */
+        void reference(double seconds)
+        {
+            while(seconds > QUANTUM)
+            {
+                world.update(QUANTUM);
+                seconds -= QUANTUM;
+            }
+            world.update(seconds);
+        }
+        
+        String describe()
+        {
+            return "seed " + seed;
+        }
+    }
+    
+    private static long[] seeds()
+    {
+        String fixed = System.getProperty("libclicker.seed");
+        if(fixed != null) return new long[] { Long.parseLong(fixed) };
+        
+        Random rnd = new Random(0x5EED);
+        long[] seeds = new long[TRIALS];
+        for(int i = 0; i < seeds.length; ++i)
+        {
+            seeds[i] = rnd.nextLong();
+        }
+        return seeds;
+    }
+    
+    /**
+     * Random time delta, a multiple of 1/64 s between 0 and 8 s
+     */
+    private static double delta(Random rnd)
+    {
+        return rnd.nextInt(8 * 64 + 1) / 64.0;
+    }
+    
+    private static void assertSameState(Fixture expected, Fixture actual)
+    {
+        for(int i = 0; i < expected.currencies.size(); ++i)
+        {
+            assertEquals(expected.describe() + ", currency " + i,
+                expected.currencies.get(i).getValue(), actual.currencies.get(i).getValue());
+        }
+        for(int i = 0; i < expected.generators.size(); ++i)
+        {
+            assertEquals(expected.describe() + ", generator " + i,
+                expected.generators.get(i).getTimesProcessed(), actual.generators.get(i).getTimesProcessed());
+        }
+    }
+    
+    @Test
+    public void testCoarseUpdate()
+    {
+        System.out.println("Differential: coarse World.update");
+        
+        for(long seed : seeds())
+        {
+            Fixture ref = new Fixture(seed);
+            Fixture fast = new Fixture(seed);
+            Random rnd = new Random(seed);
+            
+            int steps = 1 + rnd.nextInt(4);
+            for(int i = 0; i < steps; ++i)
+            {
+                double dt = delta(rnd);
+                ref.reference(dt);
+                fast.world.update(dt);
+                assertSameState(ref, fast);
+            }
+        }
+    }
+    
+    /**
+     * Timed modifiers expire in the middle of long updates, which must be
+     * split at the expiry, exactly like the reference loop does
+     */
+    @Test
+    public void testUpdateAcrossExpiries()
+    {
+        System.out.println("Differential: World.update across expiries");
+        
+        for(long seed : seeds())
+        {
+            Fixture ref = new Fixture(seed);
+            if(!ref.timed) continue;
+            Fixture fast = new Fixture(seed);
+            
+            double seconds = 16.0;
+            ref.reference(seconds);
+            fast.world.update(seconds);
+            assertSameState(ref, fast);
+            assertEquals(ref.describe(), ref.world.getTime(), fast.world.getTime(), 0.0);
+            assertEquals(ref.describe(), ref.world.getModifiers().size(), fast.world.getModifiers().size());
+        }
+    }
+    
+    /**
+     * click(n) must produce what n calls to process() do, and leave the
+     * remainder where they leave it.
+     */
+    @Test
+    public void testClick()
+    {
+        System.out.println("Differential: Generator.click");
+        
+        for(long seed : seeds())
+        {
+            Fixture ref = new Fixture(seed);
+            Fixture fast = new Fixture(seed);
+            Random rnd = new Random(seed);
+            double dt = delta(rnd);
+            ref.reference(dt);
+            fast.reference(dt);
+            
+            for(int i = 0; i < ref.generators.size(); ++i)
+            {
+                long clicks = 1 + rnd.nextInt(rnd.nextBoolean() ? 10 : 5000);
+                Generator g = ref.generators.get(i);
+                for(long j = 0; j < clicks; ++j)
+                {
+                    g.process();
+                }
+                fast.generators.get(i).click(clicks);
+                
+                assertEquals(ref.describe(), g.getTimesProcessed(), fast.generators.get(i).getTimesProcessed());
+                assertEquals(ref.describe(), g.getCurrency().getValue(), fast.generators.get(i).getCurrency().getValue());
+                assertEquals(ref.describe(), g.peekGeneratedAmount(), fast.generators.get(i).peekGeneratedAmount());
+            }
+        }
+    }
+    
+    @Test
+    public void testPeekGeneratedAmount()
+    {
+        System.out.println("Differential: Generator.peekGeneratedAmount");
+        
+        for(long seed : seeds())
+        {
+            Fixture f = new Fixture(seed);
+            Random rnd = new Random(seed);
+            f.reference(delta(rnd));
+            
+            for(Generator g : f.generators)
+            {
+                Currency c = g.getCurrency();
+                for(int i = 0; i < 3 && g.isReady(); ++i)
+                {
+                    BigInteger peeked = g.peekGeneratedAmount();
+                    BigInteger before = c.getValue();
+                    long processed = g.getTimesProcessed();
+                    g.process();
+                    
+                    // A converter short of its inputs doesn't process
+                    if(g.getTimesProcessed() == processed) break;
+                    assertEquals(f.describe(), peeked, c.getValue().subtract(before));
+                }
+            }
+        }
+    }
+    
+    /**
+     * The income is the average production, so the reference may differ
+     * from income * time by the ticks in progress: at most one tick and
+     * one remainder unit per automator. Modifiers are applied after the
+     * remainder, so an overflow that has not yet happened (or happened
+     * early) moves a modified generator by one modified unit: at most
+     * 3 * 3 from the direct and the tagged modifier, plus one from the
+     * truncation. A generator with a cooldown may wait for one more tick.
+     */
+    @Test
+    public void testIncomePerSecond()
+    {
+        System.out.println("Differential: World.getIncomePerSecond");
+        
+        for(long seed : seeds())
+        {
+            Fixture f = new Fixture(seed);
+            // Converters also spend the inputs at hand, which the income
+            // leaves out
+            if(f.timed || f.sharedCooldown || f.converting) continue;
+            Random rnd = new Random(seed);
+            f.reference(delta(rnd));
+            
+            double seconds = 16.0 + delta(rnd);
+            BigInteger[] before = new BigInteger[f.currencies.size()];
+            BigDecimal[] expected = new BigDecimal[before.length];
+            BigDecimal[] tolerance = new BigDecimal[before.length];
+            for(int i = 0; i < before.length; ++i)
+            {
+                Currency c = f.currencies.get(i);
+                before[i] = c.getValue();
+                expected[i] = f.world.getIncomePerSecond(c).multiply(new BigDecimal(seconds));
+                tolerance[i] = BigDecimal.ZERO;
+            }
+            for(Automator a : f.automators)
+            {
+                double period = a.getActualTickRate();
+                if(period <= 0.0) continue;
+                Generator g = a.getGenerator();
+                int gi = f.generators.indexOf(g);
+                BigDecimal slack = g.getExpectedAmount().add(BigDecimal.ONE);
+                if(f.remainders.get(gi) && f.modified.get(gi))
+                {
+                    slack = slack.add(BigDecimal.TEN);
+                }
+                if(f.cooled.get(gi))
+                {
+                    // The first processing may wait for a cooldown
+                    slack = slack.add(g.getExpectedAmount());
+                }
+                int ci = f.currencies.indexOf(g.getCurrency());
+                tolerance[ci] = tolerance[ci].add(slack);
+            }
+            
+            f.reference(seconds);
+            
+            for(int i = 0; i < before.length; ++i)
+            {
+                BigDecimal produced = new BigDecimal(f.currencies.get(i).getValue().subtract(before[i]));
+                BigDecimal error = produced.subtract(expected[i]).abs();
+                assertTrue(f.describe() + ", currency " + i + ": produced " + produced + ", expected " + expected[i],
+                    error.compareTo(tolerance[i]) <= 0);
+            }
+        }
+    }
+    
+    /**
+     * timeUntil() is exact for generators that discard remainders: the
+     * target is reached at the returned time and not a moment before.
+     * Remainders and cooldowns are estimated by their average, and the
+     * currencies of converters by the income, so currencies produced by
+     * generators using them are skipped.
+     */
+    @Test
+    public void testTimeUntil()
+    {
+        System.out.println("Differential: World.timeUntil");
+        
+        for(long seed : seeds())
+        {
+            Fixture f = new Fixture(seed);
+            if(f.timed) continue;
+            Random rnd = new Random(seed);
+            f.reference(delta(rnd));
+            
+            for(int i = 0; i < f.currencies.size(); ++i)
+            {
+                Currency c = f.currencies.get(i);
+                boolean exact = true;
+                for(int j = 0; j < f.generators.size(); ++j)
+                {
+                    Generator g = f.generators.get(j);
+                    if(g.getCurrency() == c && (f.remainders.get(j) || f.cooled.get(j))) exact = false;
+                    
+                    // Converters are estimated by the income
+                    if(g.isConverter() && (g.getCurrency() == c || g.getInputs().contains(c))) exact = false;
+                }
+                if(!exact) continue;
+                
+                BigDecimal income = f.world.getIncomePerSecond(c);
+                BigInteger target = c.getValue().add(income.multiply(new BigDecimal(delta(rnd) * 2.0)).toBigInteger()).add(BigInteger.ONE);
+                double time = f.world.timeUntil(c, target);
+                if(income.signum() == 0)
+                {
+                    assertTrue(f.describe(), Double.isInfinite(time));
+                    continue;
+                }
+                
+                Fixture before = new Fixture(seed);
+                before.reference(delta(new Random(seed)));
+                before.reference(time - QUANTUM / 64.0);
+                assertTrue(f.describe() + ", currency " + i + ": reached before " + time,
+                    before.currencies.get(i).getValue().compareTo(target) < 0);
+                
+                Fixture at = new Fixture(seed);
+                at.reference(delta(new Random(seed)));
+                at.reference(time);
+                assertTrue(f.describe() + ", currency " + i + ": not reached at " + time,
+                    at.currencies.get(i).getValue().compareTo(target) >= 0);
+            }
+        }
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Harri Pellikka.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.manabreak.libclicker;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.concurrent.Executor;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the world event bus
+ *
+ * @author Harri Pellikka
+ */
+public class EventBusTest
+{
+    World w;
+    Currency c;
+    Generator g;
+    Automator a;
+    
+    @Before
+    public void setUp()
+    {
+        w = new World();
+        c = new Currency.Builder(w).name("Gold").build();
+        g = new Generator.Builder(w)
+            .baseAmount(3)
+            .price(10)
+            .generate(c)
+            .build();
+        g.upgrade();
+        a = new Automator.Builder(w)
+            .automate(g)
+            .every(1.0)
+            .build();
+        a.upgrade();
+    }
+    
+    @Test
+    public void testCoalescedDuringUpdate()
+    {
+        final ArrayList<EventBus.GeneratorProcessed> events = new ArrayList<>();
+        final ArrayList<EventBus.GeneratorProcessed> events2 = new ArrayList<>();
+        w.getEvents().subscribe(EventBus.GeneratorProcessed.class, new EventBus.Listener<EventBus.GeneratorProcessed>()
+        {
+            @Override
+            public void onEvent(EventBus.GeneratorProcessed event)
+            {
+                events.add(event);
+            }
+        });
+        w.getEvents().subscribe(EventBus.GeneratorProcessed.class, events2::add);
+        
+        w.update(10.0);
+        
+        assertEquals(1, events.size());
+        assertEquals(1, events2.size());
+        assertSame(g, events.get(0).getGenerator());
+        assertSame(c, events.get(0).getCurrency());
+        assertEquals(10, events.get(0).getCount());
+        assertEquals(new BigInteger("30"), events.get(0).getAmount());
+        
+        // Manual processing is delivered right away
+        g.process();
+        assertEquals(2, events.size());
+        assertEquals(1, events.get(1).getCount());
+    }
+    
+    @Test
+    public void testBatchOrder()
+    {
+        final ArrayList<Object> events = new ArrayList<>();
+        w.getEvents().subscribe(EventBus.GeneratorProcessed.class, events::add);
+        w.getEvents().subscribe(EventBus.ThresholdCrossed.class, events::add);
+        w.getEvents().subscribe(EventBus.LevelChanged.class, events::add);
+        c.addThreshold(new BigInteger("10"), (currency, threshold) -> g.upgrade());
+        
+        // The production crossing the threshold comes before the threshold,
+        // and the level change raised by the threshold after it
+        w.update(10.0);
+        assertEquals(3, events.size());
+        assertTrue(events.get(0) instanceof EventBus.GeneratorProcessed);
+        assertTrue(events.get(1) instanceof EventBus.ThresholdCrossed);
+        assertTrue(events.get(2) instanceof EventBus.LevelChanged);
+    }
+    
+    @Test
+    public void testPurchaseAndLevelEvents()
+    {
+        final ArrayList<EventBus.ItemPurchased> purchases = new ArrayList<>();
+        final ArrayList<EventBus.LevelChanged> levels = new ArrayList<>();
+        w.getEvents().subscribe(EventBus.ItemPurchased.class, purchases::add);
+        w.getEvents().subscribe(EventBus.LevelChanged.class, levels::add);
+        
+        c.add(new BigInteger("100"));
+        assertEquals(PurchaseResult.OK, g.buyWith(c));
+        
+        assertEquals(1, purchases.size());
+        assertSame(g, purchases.get(0).getItem());
+        assertEquals(new BigInteger("11"), purchases.get(0).getPrice());
+        assertEquals(1, levels.size());
+        assertEquals(2, levels.get(0).getLevel());
+        
+        a.setItemLevel(5);
+        assertEquals(2, levels.size());
+        assertSame(a, levels.get(1).getItem());
+    }
+    
+    @Test
+    public void testModifierEvents()
+    {
+        final ArrayList<EventBus.ModifierToggled> events = new ArrayList<>();
+        EventBus.Listener<EventBus.ModifierToggled> listener = events::add;
+        w.getEvents().subscribe(EventBus.ModifierToggled.class, listener);
+        
+        Modifier m = new Modifier.Builder()
+            .modify(g)
+            .multiplier(2.0)
+            .build();
+        m.enable();
+        m.disable();
+        
+        assertEquals(2, events.size());
+        assertTrue(events.get(0).isEnabled());
+        assertFalse(events.get(1).isEnabled());
+        
+        w.getEvents().unsubscribe(EventBus.ModifierToggled.class, listener);
+        m.enable();
+        assertEquals(2, events.size());
+    }
+    
+    @Test
+    public void testAsynchronousDelivery()
+    {
+        final ArrayList<Runnable> queued = new ArrayList<>();
+        final ArrayList<EventBus.GeneratorProcessed> events = new ArrayList<>();
+        w.getEvents().subscribe(EventBus.GeneratorProcessed.class, events::add);
+        w.getEvents().setExecutor(new Executor()
+        {
+            @Override
+            public void execute(Runnable command)
+            {
+                queued.add(command);
+            }
+        });
+        
+        w.update(5.0);
+        assertEquals(0, events.size());
+        assertEquals(1, queued.size());
+        
+        queued.get(0).run();
+        assertEquals(1, events.size());
+        assertEquals(5, events.get(0).getCount());
+    }
+}
@@ -1,108 +1,360 @@
-/*
- * The MIT License
- *
- * Copyright 2015 Harri Pellikka.
- *
- * Permission is hereby granted, free of charge, to any person obtaining a copy
- * of this software and associated documentation files (the "Software"), to deal
- * in the Software without restriction, including without limitation the rights
- * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
- * copies of the Software, and to permit persons to whom the Software is
- * furnished to do so, subject to the following conditions:
- *
- * The above copyright notice and this permission notice shall be included in
- * all copies or substantial portions of the Software.
- *
- * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
- * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
- * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
- * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
- * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
- * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
- * THE SOFTWARE.
- */
-package com.manabreak.libclicker;
-
-import com.manabreak.libclicker.Formatter.CurrencyFormatter;
-import java.math.BigInteger;
-import org.junit.Test;
-import static org.junit.Assert.*;
-
-/**
- *
- * @author Harri Pellikka
- */
-public class GeneratorTest
-{
-    
-    @Test
-    public void testGeneration() throws Exception
-    {
-        World w = new World();
-        Currency c = new Currency.Builder(w).name("Gold").build();
-        
-        Formatter cf = new Formatter.ForCurrency(c)
-            .showHighestThousand()
-            .showDecimals()
-            .build();
-        
-        Generator g = new Generator.Builder(w)
-            .baseAmount(100)
-            .multiplier(1.2)
-            .generate(c)
-            .build();
-        
-        assertEquals(BigInteger.ZERO, g.getGeneratedAmount());
-        g.process();
-        assertEquals(BigInteger.ZERO, c.getValue());
-        
-        g.upgrade();
-        assertEquals(new BigInteger("" + 100), g.getGeneratedAmount());
-        g.process();
-        assertEquals(new BigInteger("" + 100), c.getValue());
-        
-        BigInteger amount = g.getGeneratedAmount();
-        g.upgrade();
-        g.process();
-        amount = amount.add(g.getGeneratedAmount());
-        // assertEquals(amount, c.getValue());
-        assertEquals(amount, c.getValue());
-    }
-    
-    @Test
-    public void testRemainderUsage() throws Exception
-    {
-        World w = new World();
-        
-        Currency c = new Currency.Builder(w)
-            .name("Gold")
-            .build();
-        
-        Generator g = new Generator.Builder(w)
-            .baseAmount(1)
-            .multiplier(1.2)
-            .useRemainder()
-            .generate(c)
-            .build();
-        
-        // Set to level 2
-        g.setItemLevel(2);
-        
-        assertEquals(BigInteger.ZERO, c.getValue());
-        
-        g.process();
-        assertEquals(new BigInteger("1"), c.getValue());
-        
-        g.process();
-        assertEquals(new BigInteger("2"), c.getValue());
-        
-        g.process();
-        assertEquals(new BigInteger("3"), c.getValue());
-        
-        g.process();
-        assertEquals(new BigInteger("4"), c.getValue());
-        
-        g.process();
-        assertEquals(new BigInteger("6"), c.getValue());
-    }
-}
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Harri Pellikka.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.manabreak.libclicker;
+
+import com.manabreak.libclicker.Formatter.CurrencyFormatter;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Harri Pellikka
+ */
+public class GeneratorTest
+{
+    
+    @Test
+    public void testGeneration() throws Exception
+    {
+        World w = new World();
+        Currency c = new Currency.Builder(w).name("Gold").build();
+        
+        Formatter cf = new Formatter.ForCurrency(c)
+            .showHighestThousand()
+            .showDecimals()
+            .build();
+        
+        Generator g = new Generator.Builder(w)
+            .baseAmount(100)
+            .multiplier(1.2)
+            .generate(c)
+            .build();
+        
+        assertEquals(BigInteger.ZERO, g.getGeneratedAmount());
+        g.process();
+        assertEquals(BigInteger.ZERO, c.getValue());
+        
+        g.upgrade();
+        assertEquals(new BigInteger("" + 100), g.getGeneratedAmount());
+        g.process();
+        assertEquals(new BigInteger("" + 100), c.getValue());
+        
+        BigInteger amount = g.getGeneratedAmount();
+        g.upgrade();
+        g.process();
+        amount = amount.add(g.getGeneratedAmount());
+        // assertEquals(amount, c.getValue());
+        assertEquals(amount, c.getValue());
+    }
+    
+    @Test
+    public void testRemainderUsage() throws Exception
+    {
+        World w = new World();
+        
+        Currency c = new Currency.Builder(w)
+            .name("Gold")
+            .build();
+        
+        Generator g = new Generator.Builder(w)
+            .baseAmount(1)
+            .multiplier(1.2)
+            .useRemainder()
+            .generate(c)
+            .build();
+        
+        // Set to level 2
+        g.setItemLevel(2);
+        
+        assertEquals(BigInteger.ZERO, c.getValue());
+        
+        g.process();
+        assertEquals(new BigInteger("1"), c.getValue());
+        
+        g.process();
+        assertEquals(new BigInteger("2"), c.getValue());
+        
+        g.process();
+        assertEquals(new BigInteger("3"), c.getValue());
+        
+        g.process();
+        assertEquals(new BigInteger("4"), c.getValue());
+        
+        g.process();
+        assertEquals(new BigInteger("6"), c.getValue());
+    }
+    
+    @Test
+    public void testPeekGeneratedAmount() throws Exception
+    {
+        World w = new World();
+        
+        Currency c = new Currency.Builder(w)
+            .name("Gold")
+            .build();
+        
+        Generator g = new Generator.Builder(w)
+            .baseAmount(1)
+            .multiplier(1.5)
+            .useRemainder()
+            .generate(c)
+            .build();
+        g.setItemLevel(2);
+        
+        // Peeking repeatedly must not accumulate the remainder
+        for(int i = 0; i < 10; ++i)
+        {
+            assertEquals(BigInteger.ONE, g.peekGeneratedAmount());
+        }
+        
+        g.process();
+        assertEquals(BigInteger.ONE, c.getValue());
+        
+        // The remainder is now 0.5, so the next cycle overflows it
+        assertEquals(new BigInteger("2"), g.peekGeneratedAmount());
+        g.process();
+        assertEquals(new BigInteger("3"), c.getValue());
+    }
+    
+    @Test
+    public void testCooldown()
+    {
+        System.out.println("Cooldown");
+        World w = new World();
+        Currency c = new Currency.Builder(w).name("Gold").build();
+        Generator g = new Generator.Builder(w)
+            .baseAmount(1)
+            .cooldown(2.0)
+            .generate(c)
+            .build();
+        g.upgrade();
+        
+        assertTrue(g.isReady());
+        g.process();
+        g.process();
+        g.process();
+        assertEquals(BigInteger.ONE, c.getValue());
+        assertFalse(g.isReady());
+        assertEquals(2.0, g.getCooldownRemaining(), 0.0);
+        
+        w.update(1.5);
+        g.process();
+        assertEquals(BigInteger.ONE, c.getValue());
+        assertEquals(0.5, g.getCooldownRemaining(), 0.0);
+        
+        w.update(0.5);
+        assertTrue(g.isReady());
+        g.process();
+        assertEquals(new BigInteger("2"), c.getValue());
+    }
+    
+    @Test
+    public void testCooldownWithAutomators()
+    {
+        System.out.println("Cooldown with automators");
+        World w = new World();
+        Currency c = new Currency.Builder(w).name("Gold").build();
+        Generator g = new Generator.Builder(w)
+            .baseAmount(1)
+            .cooldown(2.5)
+            .generate(c)
+            .build();
+        g.upgrade();
+        
+        // Ticks every second, but processes only every third tick
+        Automator a = new Automator.Builder(w).automate(g).every(1.0).build();
+        a.upgrade();
+        assertEquals(0, w.getIncomePerSecond(c).compareTo(new BigDecimal("1").divide(new BigDecimal("3"), MathContext.DECIMAL64)));
+        
+        w.update(9.0);
+        assertEquals(new BigInteger("3"), c.getValue());
+        
+        // One long update skips the ticks inside the cooldowns
+        w.update(3000000.0);
+        assertEquals(new BigInteger("1000003"), c.getValue());
+        
+        // A second automator can't get around the cooldown
+        Automator a2 = new Automator.Builder(w).automate(g).every(0.5).build();
+        a2.upgrade();
+        BigInteger before = c.getValue();
+        w.update(100.0);
+        assertEquals(40, c.getValue().subtract(before).intValue());
+    }
+    
+    @Test
+    public void testClick()
+    {
+        System.out.println("Batched clicks");
+        World w = new World();
+        Currency c = new Currency.Builder(w).name("Gold").build();
+        final long[] callbacks = { 0 };
+        Generator g = new Generator.Builder(w)
+            .baseAmount(3)
+            .callback(new Generator.Callback()
+            {
+                @Override
+                public void onProcessed()
+                {
+                    callbacks[0]++;
+                }
+            })
+            .generate(c)
+            .build();
+        
+        assertEquals(BigInteger.ZERO, g.click(10));
+        g.upgrade();
+        
+        InMemoryMetrics metrics = new InMemoryMetrics();
+        w.setMetrics(metrics);
+        final int[] events = { 0 };
+        w.getEvents().subscribe(EventBus.GeneratorProcessed.class, new EventBus.Listener<EventBus.GeneratorProcessed>()
+        {
+            @Override
+            public void onEvent(EventBus.GeneratorProcessed event)
+            {
+                events[0] += event.getCount();
+            }
+        });
+        
+        assertEquals(new BigInteger("3000000"), g.click(1000000));
+        assertEquals(new BigInteger("3000000"), c.getValue());
+        assertEquals(1000000, g.getTimesProcessed());
+        assertEquals(1000000, callbacks[0]);
+        assertEquals(1000000, metrics.getGeneratorProcessCount());
+        assertEquals(1000000, events[0]);
+    }
+    
+    @Test
+    public void testClickWithProbability()
+    {
+        System.out.println("Batched clicks with probability");
+        World w = new World();
+        Currency c = new Currency.Builder(w).name("Gold").build();
+        Generator g = new Generator.Builder(w)
+            .baseAmount(1)
+            .probability(0.25)
+            .generate(c)
+            .build();
+        g.upgrade();
+        
+        g.click(4000000);
+        assertEquals(1000000.0, g.getTimesProcessed(), 5.0 * Math.sqrt(4000000 * 0.25 * 0.75));
+        assertEquals(g.getTimesProcessed(), c.getValue().longValue());
+    }
+    
+    @Test
+    public void testClickWithCooldown()
+    {
+        System.out.println("Batched clicks with cooldown");
+        World w = new World();
+        Currency c = new Currency.Builder(w).name("Gold").build();
+        Generator g = new Generator.Builder(w)
+            .baseAmount(5)
+            .cooldown(1.0)
+            .generate(c)
+            .build();
+        g.upgrade();
+        
+        assertEquals(new BigInteger("5"), g.click(100));
+        assertEquals(BigInteger.ZERO, g.click(100));
+        w.update(1.0);
+        assertEquals(new BigInteger("5"), g.click(100));
+    }
+    
+    @Test
+    public void testConverter()
+    {
+        System.out.println("Converter");
+        World w = new World();
+        Currency ore = new Currency.Builder(w).name("Ore").build();
+        Currency coal = new Currency.Builder(w).name("Coal").build();
+        Currency ingots = new Currency.Builder(w).name("Ingots").build();
+        Generator smelter = new Generator.Builder(w)
+            .generate(ingots)
+            .baseAmount(1)
+            .multiplier(2.0)
+            .consume(ore, 3)
+            .consume(coal, 1)
+            .build();
+        smelter.upgrade();
+        
+        assertTrue(smelter.isConverter());
+        assertEquals(2, smelter.getInputs().size());
+        assertEquals(new BigInteger("3"), smelter.getInputAmount(ore));
+        
+        // Nothing to smelt
+        smelter.process();
+        assertEquals(BigInteger.ZERO, ingots.getValue());
+        assertEquals(0, smelter.getTimesProcessed());
+        
+        ore.set(new BigInteger("10"));
+        coal.set(new BigInteger("10"));
+        smelter.process();
+        assertEquals(BigInteger.ONE, ingots.getValue());
+        assertEquals(new BigInteger("7"), ore.getValue());
+        assertEquals(new BigInteger("9"), coal.getValue());
+        
+        // Ore runs out after two more
+        assertEquals(new BigInteger("2"), smelter.click(100));
+        assertEquals(BigInteger.ONE, ore.getValue());
+        assertEquals(new BigInteger("7"), coal.getValue());
+        assertEquals(3, smelter.getTimesProcessed());
+        
+        // Inputs grow with the level like the output
+        smelter.upgrade();
+        assertEquals(new BigInteger("6"), smelter.getInputAmount(ore));
+        ore.set(new BigInteger("6"));
+        assertEquals(new BigInteger("2"), smelter.click(5));
+        assertEquals(new BigInteger("5"), coal.getValue());
+    }
+    
+    @Test
+    public void testAmountCurve()
+    {
+        System.out.println("Amount curve");
+        World w = new World();
+        Currency c = new Currency.Builder(w).name("Gold").build();
+        Generator g = new Generator.Builder(w)
+            .baseAmount(10)
+            .amountCurve(Curve.polynomial(1.0, 0.0, 1.0))
+            .priceCurve(Curve.linear(1.0))
+            .price(5)
+            .generate(c)
+            .build();
+        
+        // 10 * (1 + (level - 1)^2)
+        g.upgrade();
+        assertEquals(new BigInteger("10"), g.peekGeneratedAmount());
+        g.upgrade();
+        assertEquals(new BigInteger("20"), g.peekGeneratedAmount());
+        g.upgrade();
+        assertEquals(new BigInteger("50"), g.peekGeneratedAmount());
+        assertEquals(new BigInteger("20"), g.getPrice());
+        
+        assertEquals(new BigInteger("500"), g.click(10));
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Harri Pellikka.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.manabreak.libclicker;
+
+import java.math.BigInteger;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the in-memory metrics recorder
+ *
+ * @author Harri Pellikka
+ */
+public class InMemoryMetricsTest
+{
+    @Test
+    public void testRecording()
+    {
+        World w = new World();
+        InMemoryMetrics metrics = new InMemoryMetrics();
+        w.setMetrics(metrics);
+        
+        Currency c = new Currency.Builder(w).name("Gold").build();
+        Generator g = new Generator.Builder(w)
+            .baseAmount(5)
+            .price(10)
+            .generate(c)
+            .build();
+        g.upgrade();
+        
+        Automator a = new Automator.Builder(w)
+            .automate(g)
+            .every(1.0)
+            .build();
+        a.upgrade();
+        
+        w.update(3.0);
+        w.update(0.5);
+        
+        assertEquals(2, metrics.getUpdateCount());
+        assertEquals(3, metrics.getAutomatorFireCount());
+        assertEquals(3, metrics.getFireCount(a));
+        assertEquals(3, metrics.getGeneratorProcessCount());
+        assertEquals(3, metrics.getProcessCount(g));
+        assertEquals(new BigInteger("15"), metrics.getProduced(c));
+        
+        g.buyWith(c);
+        g.buyWith(c);
+        assertEquals(1, metrics.getPurchaseCount(PurchaseResult.OK));
+        assertEquals(1, metrics.getPurchaseCount(PurchaseResult.INSUFFICIENT_FUNDS));
+        assertEquals(0, metrics.getPurchaseCount(PurchaseResult.MAX_LEVEL_REACHED));
+        
+        Modifier m = new Modifier.Builder()
+            .modify(g)
+            .multiplier(2.0)
+            .build();
+        m.enable();
+        m.disable();
+        assertEquals(2, metrics.getModifierToggleCount());
+        
+        long total = 0;
+        for(long count : metrics.getUpdateLatencyHistogram())
+        {
+            total += count;
+        }
+        assertEquals(2, total);
+        assertTrue(metrics.getUpdateLatencyPercentile(1.0) > 0);
+        
+        metrics.reset();
+        assertEquals(0, metrics.getUpdateCount());
+        assertEquals(BigInteger.ZERO, metrics.getProduced(c));
+    }
+    
+    @Test
+    public void testDisabled()
+    {
+        World w = new World();
+        InMemoryMetrics metrics = new InMemoryMetrics();
+        w.setMetrics(metrics);
+        w.setMetrics(null);
+        
+        w.update(1.0);
+        assertEquals(0, metrics.getUpdateCount());
+        assertNull(w.getMetrics());
+    }
+    
+    @Test
+    public void testUpdateWithoutFires()
+    {
+        final double[] seconds = new double[1];
+        World w = new World();
+        w.setMetrics(new Metrics()
+        {
+            @Override
+            public void onUpdate(World world, double delta, long nanos)
+            {
+                seconds[0] += delta;
+            }
+        });
+        
+        w.update(1.5);
+        w.update(0.5);
+        assertEquals(2.0, seconds[0], 0.0);
+    }
+}
@@ -1,241 +1,416 @@
-/*
- * The MIT License
- *
- * Copyright 2015 Harri Pellikka.
- *
- * Permission is hereby granted, free of charge, to any person obtaining a copy
- * of this software and associated documentation files (the "Software"), to deal
- * in the Software without restriction, including without limitation the rights
- * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
- * copies of the Software, and to permit persons to whom the Software is
- * furnished to do so, subject to the following conditions:
- *
- * The above copyright notice and this permission notice shall be included in
- * all copies or substantial portions of the Software.
- *
- * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
- * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
- * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
- * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
- * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
- * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
- * THE SOFTWARE.
- */
-package com.manabreak.libclicker;
-
-import java.math.BigInteger;
-import org.junit.After;
-import org.junit.AfterClass;
-import org.junit.Before;
-import org.junit.BeforeClass;
-import org.junit.Test;
-import static org.junit.Assert.*;
-
-/**
- * Unit tests for the Item class.
- *
- * @author Harri Pellikka
- */
-public class ItemTest
-{
-
-    /**
-     * Test of getName method, of class Item.
-     */
-    @Test
-    public void testName()
-    {
-        Item item = new ItemImpl();
-        item.setName("Test");
-        assertEquals("Test", item.getName());
-    }
-
-    /**
-     * Test of getDescription method, of class Item.
-     */
-    @Test
-    public void testDescription()
-    {
-        Item item = new ItemImpl();
-        item.setDescription("Description text here.");
-        assertEquals("Description text here.", item.getDescription());
-    }
-
-    /**
-     * Test of getBasePrice method, of class Item.
-     */
-    @Test
-    public void testBasePrice()
-    {
-        Item item = new ItemImpl();
-        item.setBasePrice(10);
-        assertEquals(new BigInteger("10"), item.getBasePrice());
-    }
-
-    /**
-     * Test of getPrice method, of class Item.
-     */
-    @Test
-    public void testPrice()
-    {
-        Item item = new ItemImpl();
-        
-        item.setBasePrice(10);
-        item.setPriceMultiplier(1.5);
-        
-        assertEquals(new BigInteger("10"), item.getPrice());
-        
-        item.upgrade();
-        
-        assertEquals(new BigInteger("15"), item.getPrice());
-    }
-
-    /**
-     * Test of buyWith method, of class Item.
-     */
-    @Test
-    public void testPurchase()
-    {
-        World world = new World();
-        Currency c = new Currency.Builder(world)
-            .name("Gold")
-            .build();
-        
-        Generator g = new Generator.Builder(world)
-            .baseAmount(1000)
-            .price(500)
-            .generate(c)
-            .build();
-        
-        assertEquals(BigInteger.ZERO, c.getValue());
-        
-        PurchaseResult pr = g.buyWith(c);
-        assertEquals(PurchaseResult.INSUFFICIENT_FUNDS, pr);
-        
-        g.upgrade();
-        g.process();
-        
-        assertEquals(1, g.getItemLevel());
-        
-        pr = g.buyWith(c);
-        assertEquals(PurchaseResult.OK, pr);
-        assertEquals(2, g.getItemLevel());
-        
-        g.setMaxItemLevel(2);
-        
-        g.process();
-        pr = g.buyWith(c);
-        assertEquals(PurchaseResult.MAX_LEVEL_REACHED, pr);
-        assertEquals(2, g.getItemLevel());
-    }
-
-    /**
-     * Test of setBasePrice method, of class Item.
-     */
-    @Test
-    public void testSetBasePrice_BigInteger()
-    {
-        Item item = new ItemImpl();
-        item.setBasePrice(new BigInteger("1234"));
-        assertEquals(new BigInteger("1234"), item.getBasePrice());
-    }
-
-    /**
-     * Test of setBasePrice method, of class Item.
-     */
-    @Test
-    public void testSetBasePrice_long()
-    {
-        Item item = new ItemImpl();
-        long price = 1234;
-        item.setBasePrice(1234);
-        assertEquals(new BigInteger("1234"), item.getBasePrice());
-    }
-
-    /**
-     * Test of setBasePrice method, of class Item.
-     */
-    @Test
-    public void testSetBasePrice_int()
-    {
-        Item item = new ItemImpl();
-        int price = 1234;
-        item.setBasePrice(1234);
-        assertEquals(new BigInteger("1234"), item.getBasePrice());
-    }
-
-    /**
-     * Test of getPriceMultiplier method, of class Item.
-     */
-    @Test
-    public void testPriceMultiplier()
-    {
-        Item item = new ItemImpl();
-        item.setPriceMultiplier(1.23);
-        assertEquals(1.23, item.getPriceMultiplier(), 0.001);
-        
-    }
-
-    /**
-     * Test of getMaxItemLevel method, of class Item.
-     */
-    @Test
-    public void testMaxItemLevel()
-    {
-        Item item = new ItemImpl();
-        item.setMaxItemLevel(12);
-        
-        // Try to set the level greater than max level
-        item.setItemLevel(14);
-        assertEquals(12, item.getItemLevel());
-        
-        item.setItemLevel(5);
-        assertEquals(5, item.getItemLevel());
-        
-        item.setItemLevel(12);
-        assertEquals(12, item.getItemLevel());
-        
-        item.upgrade();
-        assertEquals(12, item.getItemLevel());
-        
-        item.setMaxItemLevel(13);
-        assertEquals(12, item.getItemLevel());
-        
-        item.upgrade();
-        assertEquals(13, item.getItemLevel());
-    }
-
-    /**
-     * Test of upgrade method, of class Item.
-     */
-    @Test
-    public void testUpgradeDowngradeMaximize()
-    {
-        Item item = new ItemImpl();
-        assertEquals(0, item.getItemLevel());
-        item.upgrade();
-        assertEquals(1, item.getItemLevel());
-        item.upgrade();
-        assertEquals(2, item.getItemLevel());
-        item.downgrade();
-        assertEquals(1, item.getItemLevel());
-        item.downgrade();
-        assertEquals(0, item.getItemLevel());
-        item.downgrade();
-        assertEquals(0, item.getItemLevel());
-        
-        item.setMaxItemLevel(10);
-        item.maximize();
-        assertEquals(item.getMaxItemLevel(), item.getItemLevel());
-    }
-
-    public class ItemImpl extends Item
-    {
-
-        public ItemImpl()
-        {
-            super(null);
-        }
-    }
-    
-}
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Harri Pellikka.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.manabreak.libclicker;
+
+import java.math.BigInteger;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the Item class.
+ *
+ * @author Harri Pellikka
+ */
+public class ItemTest
+{
+
+    /**
+     * Test of getName method, of class Item.
+     */
+    @Test
+    public void testName()
+    {
+        Item item = new ItemImpl();
+        item.setName("Test");
+        assertEquals("Test", item.getName());
+    }
+
+    /**
+     * Test of getDescription method, of class Item.
+     */
+    @Test
+    public void testDescription()
+    {
+        Item item = new ItemImpl();
+        item.setDescription("Description text here.");
+        assertEquals("Description text here.", item.getDescription());
+    }
+
+    /**
+     * Test of getBasePrice method, of class Item.
+     */
+    @Test
+    public void testBasePrice()
+    {
+        Item item = new ItemImpl();
+        item.setBasePrice(10);
+        assertEquals(new BigInteger("10"), item.getBasePrice());
+    }
+
+    /**
+     * Test of getPrice method, of class Item.
+     */
+    @Test
+    public void testPrice()
+    {
+        Item item = new ItemImpl();
+        
+        item.setBasePrice(10);
+        item.setPriceMultiplier(1.5);
+        
+        assertEquals(new BigInteger("10"), item.getPrice());
+        
+        item.upgrade();
+        
+        assertEquals(new BigInteger("15"), item.getPrice());
+    }
+
+    /**
+     * Test of buyWith method, of class Item.
+     */
+    @Test
+    public void testPurchase()
+    {
+        World world = new World();
+        Currency c = new Currency.Builder(world)
+            .name("Gold")
+            .build();
+        
+        Generator g = new Generator.Builder(world)
+            .baseAmount(1000)
+            .price(500)
+            .generate(c)
+            .build();
+        
+        assertEquals(BigInteger.ZERO, c.getValue());
+        
+        PurchaseResult pr = g.buyWith(c);
+        assertEquals(PurchaseResult.INSUFFICIENT_FUNDS, pr);
+        
+        g.upgrade();
+        g.process();
+        
+        assertEquals(1, g.getItemLevel());
+        
+        pr = g.buyWith(c);
+        assertEquals(PurchaseResult.OK, pr);
+        assertEquals(2, g.getItemLevel());
+        
+        g.setMaxItemLevel(2);
+        
+        g.process();
+        pr = g.buyWith(c);
+        assertEquals(PurchaseResult.MAX_LEVEL_REACHED, pr);
+        assertEquals(2, g.getItemLevel());
+    }
+
+    /**
+     * Test of timeUntilAffordable method, of class Item.
+     */
+    @Test
+    public void testTimeUntilAffordable()
+    {
+        World world = new World();
+        Currency c = new Currency.Builder(world)
+            .name("Gold")
+            .build();
+        
+        Generator g = new Generator.Builder(world)
+            .baseAmount(10)
+            .price(100)
+            .priceMultiplier(2.0)
+            .generate(c)
+            .build();
+        g.upgrade();
+        
+        Automator a = new Automator.Builder(world)
+            .automate(g)
+            .every(3.0)
+            .build();
+        
+        assertEquals(Double.POSITIVE_INFINITY, g.timeUntilAffordable(c), 0.0);
+        
+        a.upgrade();
+        
+        // Price is 200, 10 gold every 3 seconds
+        assertEquals(60.0, g.timeUntilAffordable(c), 0.0001);
+        
+        world.update(1.0);
+        assertEquals(59.0, g.timeUntilAffordable(c), 0.0001);
+        
+        // 195 gold left: the 20th tick is still needed
+        c.add(new BigInteger("5"));
+        assertEquals(59.0, g.timeUntilAffordable(c), 0.0001);
+        
+        g.setMaxItemLevel(1);
+        assertEquals(Double.POSITIVE_INFINITY, g.timeUntilAffordable(c), 0.0);
+    }
+
+    /**
+     * Test of setBasePrice method, of class Item.
+     */
+    @Test
+    public void testSetBasePrice_BigInteger()
+    {
+        Item item = new ItemImpl();
+        item.setBasePrice(new BigInteger("1234"));
+        assertEquals(new BigInteger("1234"), item.getBasePrice());
+    }
+
+    /**
+     * Test of setBasePrice method, of class Item.
+     */
+    @Test
+    public void testSetBasePrice_long()
+    {
+        Item item = new ItemImpl();
+        long price = 1234;
+        item.setBasePrice(1234);
+        assertEquals(new BigInteger("1234"), item.getBasePrice());
+    }
+
+    /**
+     * Test of setBasePrice method, of class Item.
+     */
+    @Test
+    public void testSetBasePrice_int()
+    {
+        Item item = new ItemImpl();
+        int price = 1234;
+        item.setBasePrice(1234);
+        assertEquals(new BigInteger("1234"), item.getBasePrice());
+    }
+
+    /**
+     * Test of getPriceMultiplier method, of class Item.
+     */
+    @Test
+    public void testPriceMultiplier()
+    {
+        Item item = new ItemImpl();
+        item.setPriceMultiplier(1.23);
+        assertEquals(1.23, item.getPriceMultiplier(), 0.001);
+        
+    }
+
+    /**
+     * Test of getMaxItemLevel method, of class Item.
+     */
+    @Test
+    public void testMaxItemLevel()
+    {
+        Item item = new ItemImpl();
+        item.setMaxItemLevel(12);
+        
+        // Try to set the level greater than max level
+        item.setItemLevel(14);
+        assertEquals(12, item.getItemLevel());
+        
+        item.setItemLevel(5);
+        assertEquals(5, item.getItemLevel());
+        
+        item.setItemLevel(12);
+        assertEquals(12, item.getItemLevel());
+        
+        item.upgrade();
+        assertEquals(12, item.getItemLevel());
+        
+        item.setMaxItemLevel(13);
+        assertEquals(12, item.getItemLevel());
+        
+        item.upgrade();
+        assertEquals(13, item.getItemLevel());
+    }
+
+    /**
+     * Test of upgrade method, of class Item.
+     */
+    @Test
+    public void testUpgradeDowngradeMaximize()
+    {
+        Item item = new ItemImpl();
+        assertEquals(0, item.getItemLevel());
+        item.upgrade();
+        assertEquals(1, item.getItemLevel());
+        item.upgrade();
+        assertEquals(2, item.getItemLevel());
+        item.downgrade();
+        assertEquals(1, item.getItemLevel());
+        item.downgrade();
+        assertEquals(0, item.getItemLevel());
+        item.downgrade();
+        assertEquals(0, item.getItemLevel());
+        
+        item.setMaxItemLevel(10);
+        item.maximize();
+        assertEquals(item.getMaxItemLevel(), item.getItemLevel());
+    }
+
+    @Test
+    public void testPriceCurve()
+    {
+        System.out.println("Price curve");
+        Item item = new ItemImpl();
+        item.setBasePrice(100);
+        item.setPriceCurve(Curve.linear(0.5));
+        assertEquals(new BigInteger("100"), item.getPrice());
+        item.upgrade();
+        item.upgrade();
+        assertEquals(new BigInteger("200"), item.getPrice());
+        
+        // The price multiplier goes back to the exponential curve
+        item.setPriceMultiplier(2.0);
+        assertEquals(new BigInteger("400"), item.getPrice());
+    }
+    
+    @Test
+    public void testBulkPurchase()
+    {
+        System.out.println("Bulk purchase");
+        World world = new World();
+        Currency gold = new Currency.Builder(world).build();
+        Item item = new ItemImpl();
+        item.setBasePrice(10);
+        item.setPriceCurve(Curve.linear(1.0));
+        item.setMaxItemLevel(100);
+        
+        // 10 + 20 + 30 + 40
+        assertEquals(new BigInteger("100"), item.getBulkPrice(4));
+        
+        gold.set(new BigInteger("109"));
+        assertEquals(4, item.getMaxAffordable(gold));
+        gold.set(new BigInteger("150"));
+        assertEquals(5, item.getMaxAffordable(gold));
+        
+        assertEquals(PurchaseResult.INSUFFICIENT_FUNDS, item.buyWith(gold, 6));
+        assertEquals(new BigInteger("150"), gold.getValue());
+        assertEquals(PurchaseResult.OK, item.buyWith(gold, 5));
+        assertEquals(BigInteger.ZERO, gold.getValue());
+        assertEquals(5, item.getItemLevel());
+        assertEquals(new BigInteger("60"), item.getPrice());
+        
+        // Capped by the max level
+        gold.set(BigInteger.TEN.pow(30));
+        assertEquals(95, item.getMaxAffordable(gold));
+        assertEquals(PurchaseResult.MAX_LEVEL_REACHED, item.buyWith(gold, 96));
+        assertEquals(PurchaseResult.OK, item.buyWith(gold, 95));
+        assertEquals(100, item.getItemLevel());
+        assertEquals(0, item.getMaxAffordable(gold));
+    }
+    
+    @Test
+    public void testBulkPriceMatchesSinglePurchases()
+    {
+        System.out.println("Bulk price");
+        World world = new World();
+        Currency gold = new Currency.Builder(world).build();
+        Item item = new ItemImpl();
+        item.setBasePrice(1000);
+        item.setPriceCurve(Curve.stepped(10, 3.0));
+        
+        BigInteger total = BigInteger.ZERO;
+        Item single = new ItemImpl();
+        single.setBasePrice(1000);
+        single.setPriceCurve(Curve.stepped(10, 3.0));
+        for(int i = 0; i < 50; ++i)
+        {
+            total = total.add(single.getPrice());
+            single.upgrade();
+        }
+        assertEquals(total, item.getBulkPrice(50));
+        
+        gold.set(total);
+        assertEquals(50, item.getMaxAffordable(gold));
+    }
+    
+    @Test
+    public void testBulkPriceRoundsEachLevel()
+    {
+        System.out.println("Bulk price rounding");
+        World world = new World();
+        Currency gold = new Currency.Builder(world).build();
+        Generator g = new Generator.Builder(world).generate(gold).price(10).priceMultiplier(1.15).build();
+        
+        // 10 + 11 + 13 + 15 + 17 + 20 + 23 + 26 + 30 + 35, each rounded down
+        assertEquals(new BigInteger("200"), g.getBulkPrice(10));
+        gold.set(new BigInteger("200"));
+        assertEquals(10, g.getMaxAffordable(gold));
+        gold.set(new BigInteger("199"));
+        assertEquals(9, g.getMaxAffordable(gold));
+        
+        // A transaction of the same levels costs the same
+        gold.set(new BigInteger("200"));
+        Transaction t = world.transaction();
+        for(int i = 0; i < 10; ++i)
+        {
+            t.buyWith(g, gold);
+        }
+        assertEquals(PurchaseResult.OK, t.commit());
+        assertEquals(BigInteger.ZERO, gold.getValue());
+        
+        // And so does the bulk purchase
+        Generator other = new Generator.Builder(world).generate(gold).price(10).priceMultiplier(1.15).build();
+        gold.set(new BigInteger("200"));
+        assertEquals(PurchaseResult.OK, other.buyWith(gold, 10));
+        assertEquals(BigInteger.ZERO, gold.getValue());
+        assertEquals(10, other.getItemLevel());
+        
+        // Past the levels added one by one, the price follows the curve
+        Generator cheap = new Generator.Builder(world).generate(gold).price(1).priceMultiplier(1.0).build();
+        gold.set(BigInteger.TEN.pow(6));
+        assertEquals(new BigInteger("10000"), cheap.getBulkPrice(10000));
+        assertEquals(1000000, cheap.getMaxAffordable(gold));
+    }
+    
+    @Test
+    public void testFreeBulkPurchase()
+    {
+        System.out.println("Free bulk purchase");
+        World world = new World();
+        Currency gold = new Currency.Builder(world).build();
+        Item item = new ItemImpl();
+        item.setBasePrice(0);
+        item.setMaxItemLevel(50);
+        
+        // Every level is free, so all of them are affordable with nothing
+        assertEquals(50, item.getMaxAffordable(gold));
+        assertEquals(BigInteger.ZERO, item.getBulkPrice(50));
+        assertEquals(PurchaseResult.OK, item.buyWith(gold, 50));
+        assertEquals(0, item.getMaxAffordable(gold));
+    }
+    
+    public class ItemImpl extends Item
+    {
+
+        public ItemImpl()
+        {
+            super(null);
+        }
+    }
+    
+}
@@ -1,189 +1,452 @@
-/*
- * The MIT License
- *
- * Copyright 2015 Harri Pellikka.
- *
- * Permission is hereby granted, free of charge, to any person obtaining a copy
- * of this software and associated documentation files (the "Software"), to deal
- * in the Software without restriction, including without limitation the rights
- * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
- * copies of the Software, and to permit persons to whom the Software is
- * furnished to do so, subject to the following conditions:
- *
- * The above copyright notice and this permission notice shall be included in
- * all copies or substantial portions of the Software.
- *
- * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
- * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
- * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
- * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
- * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
- * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
- * THE SOFTWARE.
- */
-package com.manabreak.libclicker;
-
-import java.math.BigInteger;
-import org.junit.Test;
-import static org.junit.Assert.*;
-
-/**
- * Unit tests for modifiers
- *
- * @author Harri Pellikka
- */
-public class ModifierTest
-{
-    /**
-     * Test of enable method, of class Modifier.
-     */
-    @Test
-    public void testSingleWorldSpeedModifier()
-    {
-        System.out.println("testWorldModifier()");
-        World w = new World();
-        assertEquals(1.0, w.getSpeedMultiplier(), 0.01);
-        
-        Modifier m = new Modifier.Builder()
-            .modify(w)
-            .speedBy(2.0)
-            .build();
-        
-        m.enable();
-        
-        assertEquals(1.0 * 2.0, w.getSpeedMultiplier(), 0.01);
-        
-        m.disable();
-        
-        assertEquals(1.0, w.getSpeedMultiplier(), 0.01);
-    }
-    
-    @Test
-    public void testMultipleWorldSpeedModifiers()
-    {
-        System.out.println("test multiple speed by");
-        World w = new World();
-        
-        Modifier m = new Modifier.Builder()
-            .modify(w)
-            .speedBy(2.0)
-            .build();
-        
-        Modifier m2 = new Modifier.Builder()
-            .modify(w)
-            .speedBy(3.0)
-            .build();
-        
-        m.enable();
-        m2.enable();
-        
-        assertEquals(1.0 * 2.0 * 3.0, w.getSpeedMultiplier(), 0.01);
-        
-        m.disable();
-        
-        assertEquals(1.0 * 3.0, w.getSpeedMultiplier(), 0.01);
-        
-        m2.disable();
-        
-        assertEquals(1.0, w.getSpeedMultiplier(), 0.01);
-    }
-
-    @Test
-    public void testDisableAllAutomators()
-    {
-        World w = new World();
-        
-        Currency c = new Currency.Builder(w)
-            .name("Gold")
-            .build();
-        
-        Generator g = new Generator.Builder(w)
-            .generate(c)
-            .baseAmount(1)
-            .build();
-        g.upgrade();
-        
-        Automator a = new Automator.Builder(w)
-            .automate(g)
-            .every(1.0)
-            .build();
-        a.upgrade();
-        
-        assertEquals(BigInteger.ZERO, c.getValue());
-        
-        w.update(10.0);
-        
-        assertEquals(new BigInteger("10"), c.getValue());
-        
-        Modifier m = new Modifier.Builder()
-            .modify(w)
-            .disableActivators()
-            .build();
-        
-        m.enable();
-        
-        w.update(10.0);
-        
-        assertEquals(new BigInteger("10"), c.getValue());
-        
-        m.disable();
-        
-        w.update(10.0);
-        
-        assertEquals(new BigInteger("20"), c.getValue());
-    }
-    
-    @Test
-    public void testSpeedGenerators()
-    {
-        World w = new World();
-        Currency c = new Currency.Builder(w)
-            .name("Gold")
-            .build();
-        
-        Generator g = new Generator.Builder(w)
-            .baseAmount(1)
-            .generate(c)
-            .build();
-        g.upgrade();
-        
-        g.process();
-        
-        assertEquals(BigInteger.ONE, c.getValue());
-        
-        Modifier m = new Modifier.Builder()
-            .modify(g)
-            .multiplier(2.0)
-            .build();
-        m.enable();
-        
-        g.process();
-        assertEquals(new BigInteger("3"), c.getValue());
-        
-        m.disable();
-        g.process();
-        assertEquals(new BigInteger("4"), c.getValue());
-    }
-    
-    /**
-     * Test of isEnabled method, of class Modifier.
-     */
-    @Test
-    public void testIsEnabled()
-    {
-        System.out.println("isEnabled");
-        
-        World w = new World();
-        
-        Modifier m = new Modifier.Builder()
-            .modify(w)
-            .build();
-        
-        assertFalse(m.isEnabled());
-        m.enable();
-        assertTrue(m.isEnabled());
-        m.disable();
-        assertFalse(m.isEnabled());
-    }
-    
-}
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Harri Pellikka.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.manabreak.libclicker;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for modifiers
+ *
+ * @author Harri Pellikka
+ */
+public class ModifierTest
+{
+    /**
+     * Test of enable method, of class Modifier.
+     */
+    @Test
+    public void testSingleWorldSpeedModifier()
+    {
+        System.out.println("testWorldModifier()");
+        World w = new World();
+        assertEquals(1.0, w.getSpeedMultiplier(), 0.01);
+        
+        Modifier m = new Modifier.Builder()
+            .modify(w)
+            .speedBy(2.0)
+            .build();
+        
+        m.enable();
+        
+        assertEquals(1.0 * 2.0, w.getSpeedMultiplier(), 0.01);
+        
+        m.disable();
+        
+        assertEquals(1.0, w.getSpeedMultiplier(), 0.01);
+    }
+    
+    @Test
+    public void testMultipleWorldSpeedModifiers()
+    {
+        System.out.println("test multiple speed by");
+        World w = new World();
+        
+        Modifier m = new Modifier.Builder()
+            .modify(w)
+            .speedBy(2.0)
+            .build();
+        
+        Modifier m2 = new Modifier.Builder()
+            .modify(w)
+            .speedBy(3.0)
+            .build();
+        
+        m.enable();
+        m2.enable();
+        
+        assertEquals(1.0 * 2.0 * 3.0, w.getSpeedMultiplier(), 0.01);
+        
+        m.disable();
+        
+        assertEquals(1.0 * 3.0, w.getSpeedMultiplier(), 0.01);
+        
+        m2.disable();
+        
+        assertEquals(1.0, w.getSpeedMultiplier(), 0.01);
+    }
+
+    @Test
+    public void testDisableAllAutomators()
+    {
+        World w = new World();
+        
+        Currency c = new Currency.Builder(w)
+            .name("Gold")
+            .build();
+        
+        Generator g = new Generator.Builder(w)
+            .generate(c)
+            .baseAmount(1)
+            .build();
+        g.upgrade();
+        
+        Automator a = new Automator.Builder(w)
+            .automate(g)
+            .every(1.0)
+            .build();
+        a.upgrade();
+        
+        assertEquals(BigInteger.ZERO, c.getValue());
+        
+        w.update(10.0);
+        
+        assertEquals(new BigInteger("10"), c.getValue());
+        
+        Modifier m = new Modifier.Builder()
+            .modify(w)
+            .disableActivators()
+            .build();
+        
+        m.enable();
+        
+        w.update(10.0);
+        
+        assertEquals(new BigInteger("10"), c.getValue());
+        
+        m.disable();
+        
+        w.update(10.0);
+        
+        assertEquals(new BigInteger("20"), c.getValue());
+    }
+    
+    @Test
+    public void testSpeedGenerators()
+    {
+        World w = new World();
+        Currency c = new Currency.Builder(w)
+            .name("Gold")
+            .build();
+        
+        Generator g = new Generator.Builder(w)
+            .baseAmount(1)
+            .generate(c)
+            .build();
+        g.upgrade();
+        
+        g.process();
+        
+        assertEquals(BigInteger.ONE, c.getValue());
+        
+        Modifier m = new Modifier.Builder()
+            .modify(g)
+            .multiplier(2.0)
+            .build();
+        m.enable();
+        
+        g.process();
+        assertEquals(new BigInteger("3"), c.getValue());
+        
+        m.disable();
+        g.process();
+        assertEquals(new BigInteger("4"), c.getValue());
+    }
+    
+    /**
+     * Test of isEnabled method, of class Modifier.
+     */
+    @Test
+    public void testIsEnabled()
+    {
+        System.out.println("isEnabled");
+        
+        World w = new World();
+        
+        Modifier m = new Modifier.Builder()
+            .modify(w)
+            .build();
+        
+        assertFalse(m.isEnabled());
+        m.enable();
+        assertTrue(m.isEnabled());
+        m.disable();
+        assertFalse(m.isEnabled());
+    }
+    
+    
+    @Test
+    public void testCategoryModifier()
+    {
+        System.out.println("Category modifier");
+        World w = new World();
+        Currency c = new Currency.Builder(w).name("Gold").build();
+        
+        Generator mine = new Generator.Builder(w).generate(c).baseAmount(10).build();
+        Generator quarry = new Generator.Builder(w).generate(c).baseAmount(10).build();
+        Generator farm = new Generator.Builder(w).generate(c).baseAmount(10).build();
+        mine.upgrade();
+        quarry.upgrade();
+        farm.upgrade();
+        mine.addTag("mining");
+        quarry.addTag("mining");
+        quarry.addTag("stone");
+        farm.addTag("food");
+        
+        Modifier m = new Modifier.Builder()
+            .modifyTagged(w, "mining")
+            .multiplier(2.0)
+            .build();
+        Modifier m2 = new Modifier.Builder()
+            .modifyTagged(w, "mining")
+            .multiplier(1.5)
+            .build();
+        assertEquals(new BigInteger("10"), mine.peekGeneratedAmount());
+        
+        m.enable();
+        assertEquals(new BigInteger("20"), mine.peekGeneratedAmount());
+        assertEquals(new BigInteger("20"), quarry.peekGeneratedAmount());
+        assertEquals(new BigInteger("10"), farm.peekGeneratedAmount());
+        
+        m2.enable();
+        assertEquals(new BigInteger("30"), mine.peekGeneratedAmount());
+        
+        // Tags added later pick up the factor as well
+        farm.addTag("mining");
+        assertEquals(new BigInteger("30"), farm.peekGeneratedAmount());
+        farm.removeTag("mining");
+        assertEquals(new BigInteger("10"), farm.peekGeneratedAmount());
+        
+        m.disable();
+        assertEquals(new BigInteger("15"), mine.peekGeneratedAmount());
+        m2.disable();
+        assertEquals(new BigInteger("10"), quarry.peekGeneratedAmount());
+    }
+    
+    @Test
+    public void testCategoryModifierIncome()
+    {
+        System.out.println("Category modifier income");
+        World w = new World();
+        Currency c = new Currency.Builder(w).name("Gold").build();
+        Generator g = new Generator.Builder(w).generate(c).baseAmount(10).build();
+        g.upgrade();
+        g.addTag("mining");
+        new Automator.Builder(w).automate(g).every(1.0).build().upgrade();
+        Generator other = new Generator.Builder(w).generate(c).baseAmount(1).build();
+        other.upgrade();
+        new Automator.Builder(w).automate(other).every(1.0).build().upgrade();
+        assertEquals(0, w.getIncomePerSecond(c).compareTo(new BigDecimal("11")));
+        
+        Modifier m = new Modifier.Builder().modifyTagged(w, "mining").multiplier(3.0).build();
+        m.enable();
+        assertEquals(0, w.getIncomePerSecond(c).compareTo(new BigDecimal("31")));
+        other.addTag("mining");
+        assertEquals(0, w.getIncomePerSecond(c).compareTo(new BigDecimal("33")));
+        m.disable();
+        assertEquals(0, w.getIncomePerSecond(c).compareTo(new BigDecimal("11")));
+        
+        // Generators that lose the tag are left out of later toggles
+        g.removeTag("mining");
+        m.enable();
+        assertEquals(0, w.getIncomePerSecond(c).compareTo(new BigDecimal("13")));
+        m.disable();
+        assertEquals(0, w.getIncomePerSecond(c).compareTo(new BigDecimal("11")));
+    }
+    
+    @Test
+    public void testRemainderIncome()
+    {
+        System.out.println("Modified remainder income");
+        World w = new World();
+        Currency c = new Currency.Builder(w).name("Gold").build();
+        Generator g = new Generator.Builder(w).generate(c).baseAmount(1).multiplier(1.5).useRemainder().build();
+        g.upgrade();
+        g.upgrade();
+        new Automator.Builder(w).automate(g).every(1.0).build().upgrade();
+        new Modifier.Builder().modify(g).multiplier(1.5).build().enable();
+        
+        // 1.5 per cycle, so every other cycle carries: 1.5 * 1.5 floors
+        // to 2, and 2.5 * 1.5 floors to 3
+        assertEquals(0, w.getIncomePerSecond(c).compareTo(new BigDecimal("2.5")));
+        
+        for(int i = 0; i < 100; ++i)
+        {
+            g.process();
+        }
+        assertEquals(new BigInteger("250"), c.getValue());
+    }
+    
+    @Test
+    public void testTagQueries()
+    {
+        System.out.println("Tag queries");
+        World w = new World();
+        Currency c = new Currency.Builder(w).name("Gold").build();
+        Generator mine = new Generator.Builder(w).generate(c).build();
+        Generator quarry = new Generator.Builder(w).generate(c).build();
+        Automator a = new Automator.Builder(w).automate(mine).build();
+        mine.addTag("mining");
+        quarry.addTag("mining");
+        quarry.addTag("stone");
+        a.addTag("mining");
+        
+        assertTrue(quarry.hasTag("stone"));
+        assertFalse(mine.hasTag("stone"));
+        assertFalse(mine.hasTag("unknown"));
+        assertEquals(2, quarry.getTags().size());
+        
+        assertEquals(2, w.findGenerators("mining").size());
+        assertEquals(1, w.findGenerators("mining", "stone").size());
+        assertSame(quarry, w.findGenerators("mining", "stone").get(0));
+        assertEquals(0, w.findGenerators("unknown").size());
+        assertEquals(3, w.findItems("mining").size());
+    }
+    
+    @Test
+    public void testTimedModifier()
+    {
+        System.out.println("Timed modifier");
+        World w = new World();
+        Currency c = new Currency.Builder(w).name("Gold").build();
+        Generator g = new Generator.Builder(w).generate(c).baseAmount(10).build();
+        g.upgrade();
+        new Automator.Builder(w).automate(g).every(1.0).build().upgrade();
+        
+        Modifier m = new Modifier.Builder()
+            .modify(g)
+            .multiplier(2.0)
+            .duration(5.0)
+            .build();
+        assertEquals(Double.POSITIVE_INFINITY, m.getRemainingTime(), 0.0);
+        m.enable();
+        assertEquals(5.0, m.getRemainingTime(), 0.0);
+        
+        // One long update: 5 ticks at x2, then 5 ticks at x1
+        w.update(10.0);
+        assertFalse(m.isEnabled());
+        assertEquals(new BigInteger("150"), c.getValue());
+        assertEquals(10.0, w.getTime(), 0.0);
+        
+        // Disabling early cancels the expiry, enabling again restarts it
+        m.enable();
+        w.update(2.0);
+        assertEquals(3.0, m.getRemainingTime(), 0.0);
+        m.disable();
+        m.enable();
+        assertEquals(5.0, m.getRemainingTime(), 0.0);
+        w.update(4.5);
+        assertTrue(m.isEnabled());
+        w.update(0.5);
+        assertFalse(m.isEnabled());
+    }
+    
+    @Test
+    public void testTimedSpeedModifier()
+    {
+        System.out.println("Timed speed modifier");
+        World w = new World();
+        Currency c = new Currency.Builder(w).name("Gold").build();
+        Generator g = new Generator.Builder(w).generate(c).baseAmount(1).build();
+        g.upgrade();
+        new Automator.Builder(w).automate(g).every(1.0).build().upgrade();
+        
+        // Double speed for 4 seconds of world time, i.e. 2 real seconds
+        Modifier m = new Modifier.Builder()
+            .modify(w)
+            .speedBy(2.0)
+            .duration(4.0)
+            .build();
+        m.enable();
+        w.update(3.0);
+        assertFalse(m.isEnabled());
+        assertEquals(1.0, w.getSpeedMultiplier(), 0.0);
+        assertEquals(5.0, w.getTime(), 0.0);
+        assertEquals(new BigInteger("5"), c.getValue());
+    }
+    
+    @Test
+    public void testManyTimedModifiers()
+    {
+        System.out.println("Many timed modifiers");
+        World w = new World();
+        Currency c = new Currency.Builder(w).name("Gold").build();
+        Generator g = new Generator.Builder(w).generate(c).baseAmount(1).build();
+        
+        Modifier[] mods = new Modifier[1000];
+        for(int i = 0; i < mods.length; ++i)
+        {
+            mods[i] = new Modifier.Builder().modify(g).multiplier(1.0).duration(1.0 + i).build();
+            mods[i].enable();
+        }
+        w.update(500.5);
+        for(int i = 0; i < mods.length; ++i)
+        {
+            assertEquals(i >= 500, mods[i].isEnabled());
+        }
+        w.update(1e6);
+        assertEquals(0, w.getModifiers(g).size());
+    }
+    
+    @Test
+    public void testZeroSpeedModifier()
+    {
+        System.out.println("Zero speed modifier");
+        World w = new World();
+        Modifier stop = new Modifier.Builder().modify(w).speedBy(0.0).build();
+        Modifier fast = new Modifier.Builder().modify(w).speedBy(3.0).build();
+        
+        stop.enable();
+        fast.enable();
+        assertEquals(0.0, w.getSpeedMultiplier(), 0.0);
+        stop.disable();
+        assertEquals(3.0, w.getSpeedMultiplier(), 0.0);
+        fast.disable();
+        assertEquals(1.0, w.getSpeedMultiplier(), 0.0);
+    }
+    
+    @Test
+    public void testSpeedModifierDrift()
+    {
+        System.out.println("Speed modifier drift");
+        World w = new World();
+        Random rnd = new Random(3);
+        
+        Modifier[] mods = new Modifier[20];
+        for(int i = 0; i < mods.length; ++i)
+        {
+            mods[i] = new Modifier.Builder().modify(w).speedBy(0.5 + rnd.nextDouble() * 2.0).build();
+        }
+        Modifier keep = new Modifier.Builder().modify(w).speedBy(1.1).build();
+        keep.enable();
+        
+        for(int i = 0; i < 100000; ++i)
+        {
+            Modifier m = mods[rnd.nextInt(mods.length)];
+            if(m.isEnabled()) m.disable();
+            else m.enable();
+        }
+        for(Modifier m : mods)
+        {
+            m.disable();
+        }
+        assertEquals(1.1, w.getSpeedMultiplier(), 1e-13);
+        
+        keep.disable();
+        assertEquals(1.0, w.getSpeedMultiplier(), 0.0);
+    }
+}
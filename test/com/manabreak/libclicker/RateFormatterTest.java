@@ -0,0 +1,163 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Harri Pellikka.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.manabreak.libclicker;
+
+import java.math.BigInteger;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the rate and duration formatters
+ *
+ * @author Harri Pellikka
+ */
+public class RateFormatterTest
+{
+    World w;
+    Currency c;
+    Generator g;
+    Automator a;
+    
+    @Before
+    public void setUp()
+    {
+        w = new World();
+        c = new Currency.Builder(w).name("Gold").build();
+        g = new Generator.Builder(w)
+            .baseAmount(10)
+            .multiplier(2.0)
+            .price(100)
+            .priceMultiplier(2.0)
+            .generate(c)
+            .build();
+        a = new Automator.Builder(w)
+            .automate(g)
+            .every(2.0)
+            .build();
+    }
+    
+    @Test
+    public void testRate()
+    {
+        Formatter rate = new Formatter.ForRate(c)
+            .showFully()
+            .build();
+        
+        assertEquals("0/s", rate.toString());
+        
+        g.upgrade();
+        a.upgrade();
+        assertEquals("5/s", rate.toString());
+        
+        g.upgrade();
+        assertEquals("10/s", rate.toString());
+        
+        Modifier m = new Modifier.Builder()
+            .modify(w)
+            .speedBy(3.0)
+            .build();
+        m.enable();
+        assertEquals("30/s", rate.toString());
+        
+        m.disable();
+        a.disable();
+        assertEquals("0/s", rate.toString());
+    }
+    
+    @Test
+    public void testRateSuffix()
+    {
+        g.upgrade();
+        a.upgrade();
+        
+        Formatter rate = new Formatter.ForRate(c)
+            .suffix(" gold per second")
+            .showFully()
+            .build();
+        assertEquals("5 gold per second", rate.toString());
+    }
+    
+    @Test
+    public void testRateDecimals()
+    {
+        g.upgrade();
+        a.upgrade();
+        a.setTickRate(20.0);
+        
+        Formatter.RateFormatter rate = new Formatter.ForRate(c)
+            .showFully()
+            .showDecimals()
+            .build();
+        assertEquals("0.50/s", rate.toString());
+        
+        a.setTickRate(3.0);
+        assertEquals("3.33/s", rate.toString());
+        
+        Formatter.RateFormatter whole = new Formatter.ForRate(c)
+            .showFully()
+            .build();
+        assertEquals("3/s", whole.toString());
+    }
+    
+    @Test
+    public void testDuration()
+    {
+        Formatter.DurationFormatter f = new Formatter.ForDuration()
+            .build();
+        
+        assertEquals("0s", f.format(0.0));
+        assertEquals("1s", f.format(0.2));
+        assertEquals("59s", f.format(59.0));
+        assertEquals("1m", f.format(60.0));
+        assertEquals("1m 1s", f.format(61.0));
+        assertEquals("1h", f.format(3601.0));
+        assertEquals("1h 2m", f.format(3725.0));
+        assertEquals("2d 3h", f.format(2 * 86400 + 3 * 3600 + 59));
+        assertEquals("1,234d", f.format(1234 * 86400.0));
+        assertEquals("never", f.format(Double.POSITIVE_INFINITY));
+    }
+    
+    @Test
+    public void testTimeUntilAffordable()
+    {
+        Formatter f = new Formatter.ForTimeUntilAffordable(g, c)
+            .never("-")
+            .build();
+        
+        assertEquals("-", f.toString());
+        
+        g.upgrade();
+        a.upgrade();
+        
+        // Price 200 at level 1, income 5 per second
+        assertEquals("40s", f.toString());
+        
+        c.add(new BigInteger("50"));
+        assertEquals("30s", f.toString());
+        
+        c.add(new BigInteger("150"));
+        assertEquals("0s", f.toString());
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Harri Pellikka.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.manabreak.libclicker;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Harri Pellikka
+ */
+public class RegistryTest
+{
+    private static Generator generator(World w, Currency c, String name)
+    {
+        return new Generator.Builder(w).name(name).generate(c).build();
+    }
+    
+    @Test
+    public void testIds()
+    {
+        System.out.println("Registry ids");
+        World w = new World();
+        Currency c = new Currency.Builder(w).name("Gold").build();
+        
+        Generator g0 = generator(w, c, "A");
+        Generator g1 = generator(w, c, "B");
+        Generator g2 = generator(w, c, "C");
+        
+        assertEquals(0, c.getId());
+        assertEquals(0, g0.getId());
+        assertEquals(1, g1.getId());
+        assertEquals(2, g2.getId());
+        assertSame(c, w.getCurrency(0));
+        assertSame(g1, w.getGenerator(1));
+        assertNull(w.getGenerator(3));
+        assertNull(w.getGenerator(-1));
+        
+        // The last generator takes the place of the removed one, ids stay
+        w.removeGenerator(g0);
+        assertEquals(-1, g0.getId());
+        assertEquals(2, w.getGeneratorCount());
+        assertNull(w.getGenerator(0));
+        assertSame(g1, w.getGenerator(1));
+        assertSame(g2, w.getGenerator(2));
+        
+        // Removing twice does nothing
+        w.removeGenerator(g0);
+        assertEquals(2, w.getGeneratorCount());
+        
+        // Freed ids are reused
+        Generator g3 = generator(w, c, "D");
+        assertEquals(0, g3.getId());
+        assertSame(g3, w.getGenerator(0));
+        
+        w.removeAllGenerators();
+        assertEquals(0, w.getGeneratorCount());
+        assertEquals(-1, g1.getId());
+        assertNull(w.getGenerator("B"));
+    }
+    
+    @Test
+    public void testNames()
+    {
+        System.out.println("Registry names");
+        World w = new World();
+        Currency gold = new Currency.Builder(w).name("Gold").build();
+        Currency gems = new Currency.Builder(w).name("Gems").build();
+        assertSame(gold, w.getCurrency("Gold"));
+        assertSame(gems, w.getCurrency("Gems"));
+        assertNull(w.getCurrency("Coins"));
+        
+        Generator a = generator(w, gold, "Mine");
+        Generator b = generator(w, gold, "Mine");
+        Generator c = generator(w, gold, "Farm");
+        
+        // Shared names resolve to the newest holder, then fall back
+        assertSame(b, w.getGenerator("Mine"));
+        w.removeGenerator(b);
+        assertSame(a, w.getGenerator("Mine"));
+        w.removeGenerator(a);
+        assertNull(w.getGenerator("Mine"));
+        
+        c.setName("Mine");
+        assertSame(c, w.getGenerator("Mine"));
+        assertNull(w.getGenerator("Farm"));
+    }
+    
+    @Test
+    public void testAutomatorsAndModifiers()
+    {
+        System.out.println("Registry automators and modifiers");
+        World w = new World();
+        Currency gold = new Currency.Builder(w).name("Gold").build();
+        Generator g = generator(w, gold, "Mine");
+        
+        Automator a = new Automator.Builder(w).automate(g).name("Miner").every(1.0).build();
+        assertSame(a, w.getAutomator(a.getId()));
+        assertSame(a, w.getAutomator("Miner"));
+        
+        Modifier m = new Modifier.Builder().modify(g).multiplier(2.0).build();
+        assertSame(m, w.getModifier(m.getId()));
+        m.enable();
+        assertSame(m, w.getModifier(m.getId()));
+    }
+    
+    @Test
+    public void testIdsAcrossDisable()
+    {
+        System.out.println("Registry ids across disable and enable");
+        World w = new World();
+        Currency gold = new Currency.Builder(w).name("Gold").build();
+        Generator g = generator(w, gold, "Mine");
+        g.upgrade();
+        
+        Automator a = new Automator.Builder(w).automate(g).name("Miner").every(1.0).build();
+        Modifier m = new Modifier.Builder().modify(g).multiplier(2.0).build();
+        m.enable();
+        int automatorId = a.getId();
+        int modifierId = m.getId();
+        
+        // Disabled items keep their ids, so new items can't take them
+        a.disable();
+        m.disable();
+        Automator b = new Automator.Builder(w).automate(g).every(1.0).build();
+        Modifier n = new Modifier.Builder().modify(g).multiplier(3.0).build();
+        b.upgrade();
+        assertTrue(b.getId() != automatorId);
+        assertTrue(n.getId() != modifierId);
+        assertEquals(automatorId, a.getId());
+        assertEquals(modifierId, m.getId());
+        assertSame(a, w.getAutomator(automatorId));
+        assertSame(a, w.getAutomator("Miner"));
+        assertSame(m, w.getModifier(modifierId));
+        
+        a.enable();
+        m.enable();
+        assertEquals(automatorId, a.getId());
+        assertEquals(modifierId, m.getId());
+        
+        // Only the enabled ones are processed
+        a.disable();
+        w.update(2.0);
+        assertEquals(2, g.getTimesProcessed());
+        assertEquals(1, w.getAutomators(g).size());
+        assertSame(b, w.getAutomators(g).get(0));
+    }
+    
+    @Test
+    public void testManyEntities()
+    {
+        System.out.println("Registry with many entities");
+        World w = new World();
+        Currency gold = new Currency.Builder(w).name("Gold").build();
+        
+        int count = 10000;
+        Generator[] gens = new Generator[count];
+        for(int i = 0; i < count; ++i)
+        {
+            gens[i] = generator(w, gold, "G" + i);
+        }
+        for(int i = 0; i < count; i += 2)
+        {
+            w.removeGenerator(gens[i]);
+        }
+        assertEquals(count / 2, w.getGeneratorCount());
+        for(int i = 1; i < count; i += 2)
+        {
+            assertSame(gens[i], w.getGenerator(gens[i].getId()));
+            assertSame(gens[i], w.getGenerator("G" + i));
+        }
+        for(int i = 0; i < count; i += 2)
+        {
+            w.addGenerator(gens[i]);
+            assertTrue(gens[i].getId() < count);
+        }
+        assertEquals(count, w.getGeneratorCount());
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Harri Pellikka.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.manabreak.libclicker;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Harri Pellikka
+ */
+public class TimingWheelTest
+{
+    @Test
+    public void testOrder()
+    {
+        System.out.println("Timing wheel order");
+        World w = new World();
+        Random rnd = new Random(7);
+        TimingWheel wheel = new TimingWheel(0.0);
+        
+        ArrayList<Double> times = new ArrayList<>();
+        HashSet<TimingWheel.Entry> cancelled = new HashSet<>();
+        for(int i = 0; i < 2000; ++i)
+        {
+            // Spread over several levels of the wheel
+            double t = Math.pow(10.0, rnd.nextDouble() * 6.0) * rnd.nextDouble();
+            TimingWheel.Entry e = wheel.schedule(new Modifier.Builder().modify(w).build(), t);
+            if(rnd.nextInt(10) == 0)
+            {
+                wheel.cancel(e);
+                cancelled.add(e);
+            }
+            else
+            {
+                times.add(t);
+            }
+        }
+        Collections.sort(times);
+        
+        double now = 0.0;
+        int next = 0;
+        while(next < times.size())
+        {
+            now += rnd.nextDouble() * rnd.nextDouble() * 5000.0;
+            TimingWheel.Entry e;
+            while((e = wheel.pollDue(now)) != null)
+            {
+                assertFalse(cancelled.contains(e));
+                assertEquals(times.get(next), e.getTime(), 0.0);
+                assertTrue(e.getTime() <= now);
+                next++;
+            }
+            assertTrue(next == times.size() || times.get(next) > now);
+        }
+        assertTrue(wheel.isEmpty());
+    }
+    
+    @Test
+    public void testScheduleBehindAndFarAhead()
+    {
+        System.out.println("Timing wheel edges");
+        World w = new World();
+        TimingWheel wheel = new TimingWheel(100.0);
+        
+        TimingWheel.Entry now = wheel.schedule(new Modifier.Builder().modify(w).build(), 100.0);
+        TimingWheel.Entry far = wheel.schedule(new Modifier.Builder().modify(w).build(), 1e12);
+        assertSame(now, wheel.pollDue(100.0));
+        assertNull(wheel.pollDue(1e12 - 1.0));
+        assertFalse(wheel.isEmpty());
+        assertSame(far, wheel.pollDue(1e12));
+        assertTrue(wheel.isEmpty());
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Harri Pellikka.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.manabreak.libclicker;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Harri Pellikka
+ */
+public class TransactionTest
+{
+    @Test
+    public void testMultiCurrencyPrice()
+    {
+        System.out.println("Multi-currency price");
+        World w = new World();
+        Currency gold = new Currency.Builder(w).name("Gold").build();
+        Currency gems = new Currency.Builder(w).name("Gems").build();
+        Generator g = new Generator.Builder(w)
+            .generate(gold)
+            .price(gold, 100)
+            .price(gems, 5)
+            .priceMultiplier(2.0)
+            .build();
+        
+        assertEquals(2, g.getPriceCurrencies().size());
+        assertEquals(new BigInteger("100"), g.getPrice(gold));
+        assertEquals(new BigInteger("5"), g.getBasePrice(gems));
+        
+        // Not enough gems: nothing is spent
+        gold.set(new BigInteger("1000"));
+        gems.set(new BigInteger("4"));
+        assertEquals(PurchaseResult.INSUFFICIENT_FUNDS, g.buy());
+        assertEquals(new BigInteger("1000"), gold.getValue());
+        assertEquals(0, g.getItemLevel());
+        
+        gems.set(new BigInteger("20"));
+        assertEquals(PurchaseResult.OK, g.buy());
+        assertEquals(new BigInteger("900"), gold.getValue());
+        assertEquals(new BigInteger("15"), gems.getValue());
+        assertEquals(1, g.getItemLevel());
+        assertEquals(new BigInteger("10"), g.getPrice(gems));
+        
+        g.setBasePrice(gems, null);
+        assertNull(g.getPrice(gems));
+        assertEquals(1, g.getPriceCurrencies().size());
+    }
+    
+    @Test
+    public void testTransaction()
+    {
+        System.out.println("Transaction");
+        World w = new World();
+        Currency gold = new Currency.Builder(w).name("Gold").build();
+        Currency gems = new Currency.Builder(w).name("Gems").build();
+        Generator mine = new Generator.Builder(w).generate(gold).price(10).priceMultiplier(2.0).build();
+        Generator quarry = new Generator.Builder(w).generate(gems).price(gold, 5).price(gems, 1).priceMultiplier(1.0).build();
+        
+        final ArrayList<EventBus.ItemPurchased> events = new ArrayList<>();
+        w.getEvents().subscribe(EventBus.ItemPurchased.class, events::add);
+        InMemoryMetrics metrics = new InMemoryMetrics();
+        w.setMetrics(metrics);
+        
+        // Mine twice (10 + 20) and the quarry (5 gold, 1 gem) cost 35 gold
+        gold.set(new BigInteger("34"));
+        gems.set(new BigInteger("1"));
+        Transaction t = w.transaction()
+            .buyWith(mine, gold)
+            .buyWith(mine, gold)
+            .buy(quarry);
+        assertEquals(PurchaseResult.INSUFFICIENT_FUNDS, t.commit());
+        assertEquals(new BigInteger("34"), gold.getValue());
+        assertEquals(0, mine.getItemLevel());
+        assertEquals(0, quarry.getItemLevel());
+        assertTrue(events.isEmpty());
+        assertEquals(3, metrics.getPurchaseCount(PurchaseResult.INSUFFICIENT_FUNDS));
+        
+        gold.set(new BigInteger("35"));
+        assertEquals(PurchaseResult.OK, w.transaction()
+            .buyWith(mine, gold)
+            .buyWith(mine, gold)
+            .buy(quarry)
+            .commit());
+        assertEquals(BigInteger.ZERO, gold.getValue());
+        assertEquals(BigInteger.ZERO, gems.getValue());
+        assertEquals(2, mine.getItemLevel());
+        assertEquals(1, quarry.getItemLevel());
+        assertEquals(4, events.size());
+        assertEquals(new BigInteger("20"), events.get(1).getPrice());
+        assertSame(gems, events.get(3).getCurrency());
+        
+        try
+        {
+            t.commit();
+            fail("Expected an exception");
+        }
+        catch(IllegalStateException e)
+        {
+            // OK
+        }
+    }
+    
+    @Test
+    public void testMaxLevel()
+    {
+        System.out.println("Transaction past the max level");
+        World w = new World();
+        Currency gold = new Currency.Builder(w).name("Gold").build();
+        Generator mine = new Generator.Builder(w).generate(gold).price(1).maxLevel(1).build();
+        Generator other = new Generator.Builder(w).generate(gold).price(1).build();
+        gold.set(new BigInteger("100"));
+        
+        assertEquals(PurchaseResult.MAX_LEVEL_REACHED, w.transaction()
+            .buyWith(other, gold)
+            .buyWith(mine, gold)
+            .buyWith(mine, gold)
+            .commit());
+        assertEquals(new BigInteger("100"), gold.getValue());
+        assertEquals(0, other.getItemLevel());
+        assertEquals(0, mine.getItemLevel());
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Harri Pellikka.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.manabreak.libclicker;
+
+import java.math.BigInteger;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Harri Pellikka
+ */
+public class WorldSnapshotTest
+{
+    @Test
+    public void testSnapshot()
+    {
+        System.out.println("World snapshot");
+        World w = new World();
+        Currency c = new Currency.Builder(w).name("Gold").build();
+        Generator g = new Generator.Builder(w).baseAmount(5).price(10).priceMultiplier(2.0).generate(c).build();
+        Automator a = new Automator.Builder(w).automate(g).every(1.0).build();
+        Modifier m = new Modifier.Builder().modify(g).multiplier(2.0).build();
+        g.upgrade();
+        a.upgrade();
+        
+        assertNull(w.getSnapshot());
+        w.setSnapshotsEnabled(true);
+        WorldSnapshot first = w.getSnapshot();
+        assertNotNull(first);
+        assertEquals(BigInteger.ZERO, first.getValue(c));
+        assertEquals(1, first.getLevel(g));
+        assertEquals(new BigInteger("20"), first.getPrice(g));
+        
+        w.update(2.0);
+        WorldSnapshot second = w.getSnapshot();
+        assertNotSame(first, second);
+        assertEquals(2.0, second.getTime(), 0.0);
+        assertEquals(new BigInteger("10"), second.getValue(c));
+        assertEquals(1, second.getLevel(a));
+        assertFalse(second.isEnabled(m));
+        
+        // Changes between updates show up in the next snapshot
+        m.enable();
+        assertEquals(PurchaseResult.INSUFFICIENT_FUNDS, g.buyWith(c));
+        w.update(1.0);
+        assertTrue(w.getSnapshot().isEnabled(m));
+        assertEquals(new BigInteger("20"), w.getSnapshot().getValue(c));
+        assertEquals(PurchaseResult.OK, g.buyWith(c));
+        assertEquals(new BigInteger("20"), w.getSnapshot().getValue(c));
+        WorldSnapshot third = w.publishSnapshot();
+        assertEquals(BigInteger.ZERO, third.getValue(c));
+        assertEquals(2, third.getLevel(g));
+        assertEquals(new BigInteger("40"), third.getPrice(g));
+        
+        // Old snapshots don't change
+        assertEquals(BigInteger.ZERO, first.getValue(c));
+        assertEquals(1, second.getLevel(g));
+        
+        // Entities added later aren't in older snapshots
+        Currency gems = new Currency.Builder(w).name("Gems").build();
+        Generator mine = new Generator.Builder(w).generate(gems).build();
+        assertNull(third.getValue(gems));
+        assertEquals(-1, third.getLevel(mine));
+        assertNull(third.getPrice(mine));
+        
+        // Prices in other currencies are captured as well
+        g.setBasePrice(gems, new BigInteger("3"));
+        WorldSnapshot fourth = w.publishSnapshot();
+        assertEquals(new BigInteger("12"), fourth.getPrice(g, gems));
+        assertNull(fourth.getPrice(g, c));
+        assertNull(third.getPrice(g, gems));
+        g.setBasePrice(gems, new BigInteger("5"));
+        assertEquals(new BigInteger("12"), fourth.getPrice(g, gems));
+        assertEquals(new BigInteger("20"), g.getPrice(gems));
+        
+        w.setSnapshotsEnabled(false);
+        w.update(1.0);
+        assertSame(fourth, w.getSnapshot());
+    }
+    
+    @Test
+    public void testConsistentReads() throws InterruptedException
+    {
+        System.out.println("World snapshot consistency");
+        final World w = new World();
+        final Currency c = new Currency.Builder(w).name("Gold").build();
+        final Generator g = new Generator.Builder(w).baseAmount(20).generate(c).build();
+        final Generator a = new Generator.Builder(w).price(10).priceMultiplier(1.0).generate(c).build();
+        final Generator b = new Generator.Builder(w).price(10).priceMultiplier(1.0).generate(c).build();
+        g.upgrade();
+        
+        // Each step earns 20 gold and buys both items with it, so every
+        // consistent state has no gold and both items on the same level
+        final CommandQueue q = w.openCommandQueue(4);
+        w.setSnapshotsEnabled(true);
+        
+        final AtomicBoolean done = new AtomicBoolean();
+        final AtomicLong torn = new AtomicLong();
+        final AtomicLong reads = new AtomicLong();
+        Thread reader = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                while(!done.get())
+                {
+                    WorldSnapshot s = w.getSnapshot();
+                    if(s.getLevel(a) != s.getLevel(b) || s.getValue(c).signum() != 0) torn.incrementAndGet();
+                    reads.incrementAndGet();
+                }
+            }
+        });
+        reader.start();
+        
+        for(int i = 0; i < 20000; ++i)
+        {
+            q.click(g, 1);
+            q.buy(a, c);
+            q.buy(b, c);
+            w.update(0.01);
+        }
+        done.set(true);
+        reader.join();
+        
+        assertEquals(20000, w.getSnapshot().getLevel(a));
+        assertTrue(reads.get() > 0);
+        assertEquals(0, torn.get());
+    }
+}
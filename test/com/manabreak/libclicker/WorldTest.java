@@ -1,47 +1,425 @@
-/*
- * The MIT License
- *
- * Copyright 2015 Harri Pellikka.
- *
- * Permission is hereby granted, free of charge, to any person obtaining a copy
- * of this software and associated documentation files (the "Software"), to deal
- * in the Software without restriction, including without limitation the rights
- * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
- * copies of the Software, and to permit persons to whom the Software is
- * furnished to do so, subject to the following conditions:
- *
- * The above copyright notice and this permission notice shall be included in
- * all copies or substantial portions of the Software.
- *
- * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
- * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
- * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
- * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
- * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
- * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
- * THE SOFTWARE.
- */
-package com.manabreak.libclicker;
-
-import static junit.framework.Assert.assertEquals;
-import org.junit.Test;
-import static org.junit.Assert.*;
-
-/**
- *
- * @author Harri Pellikka
- */
-public class WorldTest
-{
-    /**
-     * Test of addGenerator method, of class World.
-     */
-    @Test
-    public void testGenerators()
-    {
-        System.out.println("Add / remove generators");
-        
-        
-    }
-
-}
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Harri Pellikka.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.manabreak.libclicker;
+
+import static junit.framework.Assert.assertEquals;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Harri Pellikka
+ */
+public class WorldTest
+{
+    /**
+     * Test of addGenerator method, of class World.
+     */
+    @Test
+    public void testGenerators()
+    {
+        System.out.println("Add / remove generators");
+        
+        
+    }
+    
+    @Test
+    public void testIncomePerSecond()
+    {
+        World w = new World();
+        Currency gold = new Currency.Builder(w).name("Gold").build();
+        Currency gems = new Currency.Builder(w).name("Gems").build();
+        
+        Generator g = new Generator.Builder(w)
+            .baseAmount(10)
+            .multiplier(2.0)
+            .generate(gold)
+            .build();
+        Generator g2 = new Generator.Builder(w)
+            .baseAmount(1)
+            .generate(gems)
+            .build();
+        
+        Automator a = new Automator.Builder(w)
+            .automate(g)
+            .every(2.0)
+            .build();
+        Automator a2 = new Automator.Builder(w)
+            .automate(g)
+            .every(1.0)
+            .build();
+        
+        assertEquals(0, w.getIncomePerSecond(gold).signum());
+        
+        g.upgrade();
+        a.upgrade();
+        assertEquals(0, new BigDecimal("5").compareTo(w.getIncomePerSecond(gold)));
+        
+        a2.upgrade();
+        assertEquals(0, new BigDecimal("15").compareTo(w.getIncomePerSecond(gold)));
+        assertEquals(0, w.getIncomePerSecond(gems).signum());
+        
+        g.upgrade();
+        assertEquals(0, new BigDecimal("30").compareTo(w.getIncomePerSecond(gold)));
+        
+        a2.setTickRate(4.0);
+        assertEquals(0, new BigDecimal("15").compareTo(w.getIncomePerSecond(gold)));
+        
+        Modifier m = new Modifier.Builder()
+            .modify(g)
+            .multiplier(2.0)
+            .build();
+        m.enable();
+        assertEquals(0, new BigDecimal("30").compareTo(w.getIncomePerSecond(gold)));
+        
+        Modifier speed = new Modifier.Builder()
+            .modify(w)
+            .speedBy(2.0)
+            .build();
+        speed.enable();
+        assertEquals(0, new BigDecimal("60").compareTo(w.getIncomePerSecond(gold)));
+        speed.disable();
+        m.disable();
+        
+        a.disable();
+        assertEquals(0, new BigDecimal("5").compareTo(w.getIncomePerSecond(gold)));
+        a.enable();
+        assertEquals(0, new BigDecimal("15").compareTo(w.getIncomePerSecond(gold)));
+        
+        g.setItemLevel(0);
+        assertEquals(0, w.getIncomePerSecond(gold).signum());
+    }
+    
+    @Test
+    public void testIncomeMatchesProduction()
+    {
+        World w = new World();
+        Currency gold = new Currency.Builder(w).name("Gold").build();
+        
+        Generator g = new Generator.Builder(w)
+            .baseAmount(3)
+            .generate(gold)
+            .build();
+        g.upgrade();
+        
+        Automator a = new Automator.Builder(w)
+            .automate(g)
+            .every(0.5)
+            .build();
+        a.upgrade();
+        
+        BigDecimal income = w.getIncomePerSecond(gold);
+        w.update(10.0);
+        
+        assertEquals(0, income.multiply(BigDecimal.TEN).compareTo(new BigDecimal(gold.getValue())));
+    }
+    
+    @Test
+    public void testTimeUntil()
+    {
+        World w = new World();
+        Currency gold = new Currency.Builder(w).name("Gold").build();
+        
+        Generator g = new Generator.Builder(w)
+            .baseAmount(10)
+            .generate(gold)
+            .build();
+        g.upgrade();
+        Generator g2 = new Generator.Builder(w)
+            .baseAmount(7)
+            .generate(gold)
+            .build();
+        g2.upgrade();
+        
+        Automator a = new Automator.Builder(w)
+            .automate(g)
+            .every(2.0)
+            .build();
+        a.upgrade();
+        Automator a2 = new Automator.Builder(w)
+            .automate(g2)
+            .every(1.5)
+            .build();
+        a2.upgrade();
+        
+        assertEquals(0.0, w.timeUntil(gold, BigInteger.ZERO), 0.0);
+        
+        // Start from the middle of a tick
+        w.update(0.5);
+        
+        for(int target = 1; target < 500; target += 13)
+        {
+            double predicted = w.timeUntil(gold, new BigInteger("" + target));
+            
+            World copy = new World();
+            Currency c = new Currency.Builder(copy).name("Gold").build();
+            Generator cg = new Generator.Builder(copy).baseAmount(10).generate(c).build();
+            cg.upgrade();
+            Generator cg2 = new Generator.Builder(copy).baseAmount(7).generate(c).build();
+            cg2.upgrade();
+            new Automator.Builder(copy).automate(cg).every(2.0).build().upgrade();
+            new Automator.Builder(copy).automate(cg2).every(1.5).build().upgrade();
+            copy.update(0.5);
+            
+            double elapsed = 0.0;
+            while(c.getValue().compareTo(new BigInteger("" + target)) < 0)
+            {
+                copy.update(0.5);
+                elapsed += 0.5;
+            }
+            assertEquals(elapsed, predicted, 1e-9);
+        }
+    }
+    
+    @Test
+    public void testTimeUntilWithoutIncome()
+    {
+        World w = new World();
+        Currency gold = new Currency.Builder(w).name("Gold").build();
+        
+        assertEquals(Double.POSITIVE_INFINITY, w.timeUntil(gold, BigInteger.TEN), 0.0);
+        
+        gold.add(BigInteger.TEN);
+        assertEquals(0.0, w.timeUntil(gold, BigInteger.TEN), 0.0);
+    }
+    
+    @Test
+    public void testIndexes()
+    {
+        System.out.println("Secondary indexes");
+        World w = new World();
+        Currency gold = new Currency.Builder(w).name("Gold").build();
+        Currency gems = new Currency.Builder(w).name("Gems").build();
+        
+        Generator g0 = new Generator.Builder(w).generate(gold).build();
+        Generator g1 = new Generator.Builder(w).generate(gold).build();
+        Generator g2 = new Generator.Builder(w).generate(gems).build();
+        assertEquals(2, w.getGenerators(gold).size());
+        assertTrue(w.getGenerators(gold).contains(g0));
+        assertTrue(w.getGenerators(gold).contains(g1));
+        assertEquals(1, w.getGenerators(gems).size());
+        assertSame(g2, w.getGenerators(gems).get(0));
+        
+        w.removeGenerator(g0);
+        assertEquals(1, w.getGenerators(gold).size());
+        assertSame(g1, w.getGenerators(gold).get(0));
+        
+        Automator a0 = new Automator.Builder(w).automate(g1).build();
+        Automator a1 = new Automator.Builder(w).automate(g1).build();
+        assertEquals(2, w.getAutomators(g1).size());
+        assertEquals(0, w.getAutomators(g2).size());
+        a0.disable();
+        assertEquals(1, w.getAutomators(g1).size());
+        assertSame(a1, w.getAutomators(g1).get(0));
+        a0.enable();
+        assertEquals(2, w.getAutomators(g1).size());
+        
+        Modifier m = new Modifier.Builder().modify(g1).multiplier(2.0).build();
+        Modifier speed = new Modifier.Builder().modify(w).speedBy(2.0).build();
+        assertEquals(0, w.getModifiers(g1).size());
+        m.enable();
+        speed.enable();
+        assertEquals(1, w.getModifiers(g1).size());
+        assertSame(m, w.getModifiers(g1).get(0));
+        assertEquals(0, w.getModifiers(g2).size());
+        assertEquals(1, w.getWorldModifiers().size());
+        assertSame(speed, w.getWorldModifiers().get(0));
+        m.disable();
+        speed.disable();
+        assertEquals(0, w.getModifiers(g1).size());
+        assertEquals(0, w.getWorldModifiers().size());
+        
+        try
+        {
+            w.getGenerators(gold).clear();
+            fail("Index views should be read-only");
+        }
+        catch(UnsupportedOperationException e)
+        {
+            
+        }
+    }
+    
+    @Test
+    public void testConverterOrder()
+    {
+        System.out.println("Converter order");
+        World w = new World();
+        Currency ore = new Currency.Builder(w).name("Ore").build();
+        Currency ingots = new Currency.Builder(w).name("Ingots").build();
+        Currency tools = new Currency.Builder(w).name("Tools").build();
+        
+        // Registered downstream first
+        Generator forge = new Generator.Builder(w).generate(tools).baseAmount(1).consume(ingots, 2).build();
+        Generator smelter = new Generator.Builder(w).generate(ingots).baseAmount(1).consume(ore, 2).build();
+        Generator mine = new Generator.Builder(w).generate(ore).baseAmount(4).build();
+        forge.upgrade();
+        smelter.upgrade();
+        mine.upgrade();
+        new Automator.Builder(w).automate(forge).every(1.0).build().upgrade();
+        new Automator.Builder(w).automate(smelter).every(0.5).build().upgrade();
+        new Automator.Builder(w).automate(mine).every(1.0).build().upgrade();
+        
+        // The ore arrives at one second: the smelter tick at half a second
+        // comes too early, the one at one second smelts one ingot, and the
+        // forge needs two
+        w.update(1.0);
+        assertEquals(new BigInteger("2"), ore.getValue());
+        assertEquals(BigInteger.ONE, ingots.getValue());
+        assertEquals(BigInteger.ZERO, tools.getValue());
+        
+        // From then on one tool per second, however the time is split
+        w.update(100000.0);
+        assertEquals(new BigInteger("100000"), tools.getValue());
+        assertEquals(new BigInteger("2"), ore.getValue());
+        assertEquals(BigInteger.ONE, ingots.getValue());
+        for(int i = 0; i < 8; ++i)
+        {
+            w.update(0.25);
+        }
+        assertEquals(new BigInteger("100002"), tools.getValue());
+        assertEquals(new BigInteger("2"), ore.getValue());
+        assertEquals(BigInteger.ONE, ingots.getValue());
+    }
+    
+    @Test
+    public void testConverterStepSize()
+    {
+        System.out.println("Converter step size");
+        BigInteger[] bars = new BigInteger[2];
+        for(int run = 0; run < 2; ++run)
+        {
+            World w = new World();
+            Currency ore = new Currency.Builder(w).name("Ore").build();
+            Currency bar = new Currency.Builder(w).name("Bars").build();
+            Generator mine = new Generator.Builder(w).generate(ore).baseAmount(10).build();
+            Generator smelter = new Generator.Builder(w).generate(bar).baseAmount(1).consume(ore, 1).build();
+            mine.upgrade();
+            smelter.upgrade();
+            new Automator.Builder(w).automate(mine).every(10.0).build().upgrade();
+            new Automator.Builder(w).automate(smelter).every(1.0).build().upgrade();
+            
+            // The ore of each mining only lasts until the next one
+            if(run == 0)
+            {
+                w.update(100.0);
+            }
+            else
+            {
+                for(int i = 0; i < 100; ++i)
+                {
+                    w.update(1.0);
+                }
+            }
+            bars[run] = bar.getValue();
+        }
+        assertEquals(new BigInteger("91"), bars[0]);
+        assertEquals(bars[0], bars[1]);
+    }
+    
+    @Test
+    public void testConverterIncome()
+    {
+        System.out.println("Converter income");
+        World w = new World();
+        Currency ore = new Currency.Builder(w).name("Ore").build();
+        Currency bars = new Currency.Builder(w).name("Bars").build();
+        Currency plates = new Currency.Builder(w).name("Plates").build();
+        Generator mine = new Generator.Builder(w).generate(ore).baseAmount(10).build();
+        Generator smelter = new Generator.Builder(w).generate(bars).baseAmount(1).consume(ore, 1).build();
+        mine.upgrade();
+        smelter.upgrade();
+        Automator mining = new Automator.Builder(w).automate(mine).every(2.0).build();
+        Automator smelting = new Automator.Builder(w).automate(smelter).every(0.5).build();
+        mining.upgrade();
+        smelting.upgrade();
+        
+        // The smelter draws 2 ore of the 5 mined per second
+        assertEquals(0, w.getIncomePerSecond(ore).compareTo(new BigDecimal("3")));
+        assertEquals(0, w.getIncomePerSecond(bars).compareTo(new BigDecimal("2")));
+        assertEquals(5.0, w.timeUntil(bars, new BigInteger("10")), 1e-9);
+        
+        // Short of ore, the smelter runs at the rate the ore comes in
+        mining.setTickRate(10.0);
+        assertEquals(0, w.getIncomePerSecond(ore).signum());
+        assertEquals(0, w.getIncomePerSecond(bars).compareTo(BigDecimal.ONE));
+        
+        // Converters short of the same input share it
+        Generator press = new Generator.Builder(w).generate(plates).baseAmount(1).consume(ore, 1).build();
+        press.upgrade();
+        new Automator.Builder(w).automate(press).every(0.5).build().upgrade();
+        assertEquals(0, w.getIncomePerSecond(ore).signum());
+        assertEquals(0, w.getIncomePerSecond(bars).compareTo(new BigDecimal("0.5")));
+        assertEquals(0, w.getIncomePerSecond(plates).compareTo(new BigDecimal("0.5")));
+        assertEquals(20.0, w.timeUntil(plates, BigInteger.TEN), 1e-9);
+        
+        // Without the mine nothing is converted
+        mining.disable();
+        assertEquals(0, w.getIncomePerSecond(bars).signum());
+        assertTrue(Double.isInfinite(w.timeUntil(bars, BigInteger.ONE)));
+        mining.enable();
+        smelting.disable();
+        assertEquals(0, w.getIncomePerSecond(bars).signum());
+        assertEquals(0, w.getIncomePerSecond(plates).compareTo(BigDecimal.ONE));
+    }
+    
+    @Test
+    public void testConverterCycle()
+    {
+        System.out.println("Converter cycle");
+        World w = new World();
+        Currency a = new Currency.Builder(w).name("A").build();
+        Currency b = new Currency.Builder(w).name("B").build();
+        Currency c = new Currency.Builder(w).name("C").build();
+        new Generator.Builder(w).generate(b).consume(a, 1).build();
+        new Generator.Builder(w).generate(c).consume(b, 1).build();
+        
+        try
+        {
+            new Generator.Builder(w).name("Loop").generate(a).consume(c, 1).build();
+            fail("Expected an exception");
+        }
+        catch(IllegalStateException e)
+        {
+            // OK
+        }
+        assertEquals(2, w.getGeneratorCount());
+        
+        try
+        {
+            new Generator.Builder(w).generate(a).consume(a, 1).build();
+            fail("Expected an exception");
+        }
+        catch(IllegalStateException e)
+        {
+            // OK
+        }
+        
+        // A diamond is fine
+        new Generator.Builder(w).generate(c).consume(a, 1).build();
+        assertEquals(3, w.getGeneratorCount());
+    }
+}